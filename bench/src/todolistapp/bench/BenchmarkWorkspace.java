@@ -0,0 +1,74 @@
+package todolistapp.bench;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import todolistapp.model.TaskStores;
+import todolistapp.model.TodoListManager;
+
+/**
+ * A temporary directory holding the task files (and journals) of one benchmark trial.
+ */
+final class BenchmarkWorkspace implements AutoCloseable {
+
+    private final Path directory;
+
+    BenchmarkWorkspace() throws IOException {
+        directory = Files.createTempDirectory("todolist-bench");
+    }
+
+    /**
+     * Resolves a file name in the workspace.
+     * @param name The file name.
+     * @return The path of the file.
+     */
+    Path file(String name) {
+        return directory.resolve(name);
+    }
+
+    /**
+     * Writes a generated task file and loads it into a new manager, so the manager's journal is
+     * recording as in the running application.
+     * @param name The data file name; the extension selects the format.
+     * @param rows The number of tasks.
+     * @return The loaded manager; close it with {@link #close(TodoListManager)}.
+     * @throws IOException If the file cannot be written.
+     */
+    TodoListManager loadedManager(String name, int rows) throws IOException {
+        Path file = file(name);
+        TaskFileGenerator.write(file, rows, TaskFileGenerator.DEFAULT_SEED);
+        TodoListManager manager = new TodoListManager(TaskStores.forPath(file));
+        manager.loadTasks();
+        return manager;
+    }
+
+    /**
+     * Waits for a manager's pending writes and stops its persistence thread.
+     * @param manager The manager to close; may be null.
+     */
+    static void close(TodoListManager manager) {
+        if (manager != null && !manager.close(1, TimeUnit.MINUTES)) {
+            throw new IllegalStateException("Pending writes did not finish");
+        }
+    }
+
+    /** Deletes the workspace directory and everything in it. */
+    @Override
+    public void close() {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
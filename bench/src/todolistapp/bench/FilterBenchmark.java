@@ -0,0 +1,114 @@
+package todolistapp.bench;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import todolistapp.model.SearchResult;
+import todolistapp.model.TaskQuery;
+import todolistapp.model.TaskViewEngine;
+import todolistapp.model.TodoItem;
+import todolistapp.model.TodoListManager;
+
+/**
+ * Cost of computing the rows of the task table with {@link TaskViewEngine}, as the filter choice box, the
+ * search box, and a click on a column header do in the UI, of moving the row of an edited task, and of
+ * answering queries from the {@link todolistapp.model.TaskIndex} directly.
+ * <p>
+ * The benchmark thread stands in for the FX thread; results are delivered on the computing thread.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g", "-Djava.awt.headless=true"})
+public class FilterBenchmark {
+
+    private static final TaskQuery[] QUERIES = {
+        TaskQuery.ACTIVE, TaskQuery.COMPLETED, TaskQuery.HIGH_PRIORITY_OVERDUE, TaskQuery.ALL
+    };
+    private static final List<TaskViewEngine.SortKey> BY_DUE_DATE =
+            List.of(new TaskViewEngine.SortKey(TaskViewEngine.SortField.DUE_DATE, true));
+
+    /** Number of tasks in the list. */
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private BenchmarkWorkspace workspace;
+    private TodoListManager manager;
+    private TaskViewEngine engine;
+    /** Active tasks sorted by due date, kept up to date by {@link #toggleDoneSorted()}. */
+    private List<TodoItem> activeByDueDate;
+    private int queryCursor;
+    private int editCursor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workspace = new BenchmarkWorkspace();
+        manager = workspace.loadedManager("tasks.csv", rows);
+        engine = new TaskViewEngine(Runnable::run);
+        activeByDueDate = new ArrayList<>(engine.compute(manager, TaskQuery.ACTIVE, null, BY_DUE_DATE).join());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkWorkspace.close(manager);
+        workspace.close();
+    }
+
+    private TaskQuery nextQuery() {
+        queryCursor = (queryCursor + 1) % QUERIES.length;
+        return QUERIES[queryCursor];
+    }
+
+    /** Switching the filter in list order, as {@code MainViewController.refreshView} requests it. */
+    @Benchmark
+    public int switchFilter() {
+        return engine.compute(manager, nextQuery(), null, List.of()).join().size();
+    }
+
+    /** Switching the filter of a table sorted by due date. */
+    @Benchmark
+    public int switchFilterSorted() {
+        return engine.compute(manager, nextQuery(), null, BY_DUE_DATE).join().size();
+    }
+
+    /** A search followed by computing its rows ranked by relevance, as typing in the search box does. */
+    @Benchmark
+    public int searchAndFilter() {
+        SearchResult result = manager.getSearchIndex().search("budget rev");
+        return engine.compute(manager, TaskQuery.ALL, result, List.of()).join().size();
+    }
+
+    /**
+     * A click on the checkbox of a task in the table of active tasks sorted by due date: the task leaves the
+     * rows, and a task completed before comes back.
+     */
+    @Benchmark
+    public int toggleDoneSorted() {
+        editCursor = (editCursor + 1) % manager.getTasks().size();
+        TodoItem item = manager.getTasks().get(editCursor);
+        item.setDone(!item.isDone());
+        engine.applyEdits(activeByDueDate, List.of(item), manager, TaskQuery.ACTIVE, BY_DUE_DATE);
+        return activeByDueDate.size();
+    }
+
+    @Benchmark
+    public int indexCount() {
+        return manager.getIndex().count(nextQuery());
+    }
+}
@@ -0,0 +1,135 @@
+package todolistapp.bench;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javafx.collections.ObservableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import todolistapp.model.TaskRecord;
+import todolistapp.model.TodoItem;
+import todolistapp.model.TodoListManager;
+
+/**
+ * Latency of single-task edits and of bulk removal on a loaded {@link TodoListManager},
+ * including the journal, counters, and indexes that every change goes through.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g", "-Djava.awt.headless=true"})
+public class MutationBenchmark {
+
+    /** Number of tasks in the list. */
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private BenchmarkWorkspace workspace;
+    private TodoListManager manager;
+    private ObservableList<TodoItem> tasks;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workspace = new BenchmarkWorkspace();
+        manager = workspace.loadedManager("tasks.csv", rows);
+        tasks = manager.getTasks();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkWorkspace.close(manager);
+        workspace.close();
+    }
+
+    /** The next task in a round-robin walk over the list, so edits do not hit one hot item. */
+    private TodoItem next() {
+        cursor = cursor + 1 < tasks.size() ? cursor + 1 : 0;
+        return tasks.get(cursor);
+    }
+
+    @Benchmark
+    public void addAndRemove() {
+        TodoItem item = new TodoItem("benchmark task", TodoItem.Priority.MEDIUM, LocalDate.now());
+        manager.addTask(item);
+        manager.removeTask(item);
+    }
+
+    @Benchmark
+    public void removeAndReinsert() {
+        TodoItem item = next();
+        int position = cursor;
+        manager.removeTask(item);
+        tasks.add(position, item);
+    }
+
+    @Benchmark
+    public void toggleDone() {
+        TodoItem item = next();
+        item.setDone(!item.isDone());
+    }
+
+    @Benchmark
+    public void editDescription() {
+        TodoItem item = next();
+        String description = item.getDescription();
+        item.setDescription(description.endsWith("!") ? description.substring(0, description.length() - 1) : description + "!");
+    }
+
+    @Benchmark
+    public void updateTask() {
+        TodoItem item = next();
+        manager.updateTask(item, item.getDescription(), TodoItem.Priority.HIGH, item.getDueDate(), !item.isDone());
+    }
+
+    /**
+     * "Delete Completed Tasks" on a fresh list each time; the completed tasks are put back between calls.
+     */
+    @State(Scope.Thread)
+    public static class DeleteCompletedState {
+        private final List<TaskRecord> completed = new ArrayList<>();
+
+        @Setup(Level.Invocation)
+        public void restore(MutationBenchmark benchmark) {
+            if (completed.isEmpty()) {
+                for (TodoItem item : benchmark.tasks) {
+                    if (item.isDone()) {
+                        completed.add(TaskRecord.of(item));
+                    }
+                }
+                return;
+            }
+            List<TodoItem> items = new ArrayList<>(completed.size());
+            for (TaskRecord record : completed) {
+                TodoItem item = new TodoItem(record.description(), record.priority(), record.dueDate());
+                item.setDone(true);
+                items.add(item);
+            }
+            benchmark.manager.addAll(items);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 20)
+    public int deleteCompleted(DeleteCompletedState state) {
+        return manager.removeIf(TodoItem::isDone);
+    }
+}
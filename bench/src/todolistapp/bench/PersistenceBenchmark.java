@@ -0,0 +1,94 @@
+package todolistapp.bench;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import todolistapp.model.TaskRecord;
+import todolistapp.model.TaskStore;
+import todolistapp.model.TaskStores;
+import todolistapp.model.TodoItem;
+import todolistapp.model.TodoListManager;
+
+/**
+ * Load and save time of the task stores, on their own and through {@link TodoListManager}
+ * (which adds journal recovery, list listeners, and indexing on load, and the snapshot on save).
+ * Run with {@code -p rows=10000000} for archive-sized lists.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g", "-Djava.awt.headless=true"})
+public class PersistenceBenchmark {
+
+    /** Number of tasks in the file. */
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    /** Storage format, as file extension: {@code csv} or {@code bin}. */
+    @Param({"csv", "bin"})
+    public String format;
+
+    private BenchmarkWorkspace workspace;
+    private TaskStore source;
+    private TaskStore target;
+    private List<TaskRecord> records;
+    private TodoListManager manager;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workspace = new BenchmarkWorkspace();
+        records = TaskFileGenerator.generate(rows, TaskFileGenerator.DEFAULT_SEED, LocalDate.now());
+        source = TaskStores.forPath(workspace.file("source." + format));
+        source.save(records);
+        target = TaskStores.forPath(workspace.file("target." + format));
+        manager = workspace.loadedManager("managed." + format, rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkWorkspace.close(manager);
+        workspace.close();
+    }
+
+    @Benchmark
+    public List<TodoItem> storeLoad() throws IOException {
+        return source.load();
+    }
+
+    @Benchmark
+    public void storeSave() throws IOException {
+        target.save(records);
+    }
+
+    @Benchmark
+    public int managerLoad() {
+        TodoListManager loading = new TodoListManager(source);
+        try {
+            loading.loadTasks();
+            return loading.getTasks().size();
+        } finally {
+            BenchmarkWorkspace.close(loading);
+        }
+    }
+
+    @Benchmark
+    public void managerSave() {
+        manager.saveTasks();
+    }
+}
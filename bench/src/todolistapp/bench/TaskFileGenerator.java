@@ -0,0 +1,97 @@
+package todolistapp.bench;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import todolistapp.model.TaskRecord;
+import todolistapp.model.TaskStores;
+import todolistapp.model.TodoItem;
+
+/**
+ * Generates synthetic task lists for the benchmarks.
+ * The same seed always produces the same tasks, so runs on different machines and builds are comparable.
+ * <p>
+ * Can also be run on its own to write a task file, e.g. to try the application with a large list:
+ * {@code java todolistapp.bench.TaskFileGenerator tasks.csv 1000000}. The format is chosen by the
+ * file extension, as in {@link TaskStores#forPath(Path)}.
+ */
+public final class TaskFileGenerator {
+
+    /** Seed used by the benchmarks. */
+    public static final long DEFAULT_SEED = 42;
+
+    private static final String[] WORDS = {
+        "review", "report", "budget", "meeting", "deploy", "release", "invoice", "customer",
+        "call", "email", "draft", "plan", "update", "fix", "test", "design", "backup", "server",
+        "order", "groceries", "dentist", "renew", "insurance", "tax", "slides", "notes", "team",
+        "quarterly", "weekly", "migration", "database", "contract", "\"quoted\"", "a,b"
+    };
+    private static final TodoItem.Priority[] PRIORITIES = TodoItem.Priority.values();
+
+    private TaskFileGenerator() {
+    }
+
+    /**
+     * Creates {@code rows} random tasks.
+     * About a third are done, a fifth have no due date, and due dates spread from two months ago
+     * to four months ahead of {@code today}, so every filter and due bucket matches some tasks.
+     * Some descriptions contain quotes and commas to exercise CSV escaping.
+     * @param rows The number of tasks.
+     * @param seed The random seed.
+     * @param today The reference date for due and creation dates.
+     * @return The generated tasks.
+     */
+    public static List<TaskRecord> generate(int rows, long seed, LocalDate today) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<TaskRecord> records = new ArrayList<>(rows);
+        StringBuilder description = new StringBuilder(64);
+        for (int i = 0; i < rows; i++) {
+            description.setLength(0);
+            int words = 2 + random.nextInt(6);
+            for (int w = 0; w < words; w++) {
+                if (w > 0) {
+                    description.append(' ');
+                }
+                description.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            description.append(' ').append(i);
+            LocalDate dueDate = random.nextInt(5) == 0 ? null : today.plusDays(random.nextInt(-60, 120));
+            records.add(new TaskRecord(description.toString(), random.nextInt(3) == 0,
+                    PRIORITIES[random.nextInt(PRIORITIES.length)], dueDate, today.minusDays(random.nextInt(365)),
+                    i + 1, 0));
+        }
+        return records;
+    }
+
+    /**
+     * Writes {@code rows} random tasks to a file.
+     * @param file The file to replace; {@code .bin} files use the binary format, all others CSV.
+     * @param rows The number of tasks.
+     * @param seed The random seed.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(Path file, int rows, long seed) throws IOException {
+        TaskStores.forPath(file).save(generate(rows, seed, LocalDate.now()));
+    }
+
+    /**
+     * Writes a task file.
+     * @param args The target file, the number of tasks, and optionally the seed.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: TaskFileGenerator <file> <rows> [seed]");
+            System.exit(2);
+        }
+        Path file = Paths.get(args[0]);
+        int rows = Integer.parseInt(args[1]);
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_SEED;
+        write(file, rows, seed);
+        System.out.println(rows + " tasks written to " + file.toAbsolutePath());
+    }
+}
@@ -1,6 +1,7 @@
 package todolistapp;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
@@ -8,6 +9,7 @@ import javafx.stage.Stage;
 import java.io.IOException;
 import java.net.URL;
 import todolistapp.controller.MainViewController;
+import todolistapp.metrics.Metrics;
 
 /**
  * Main class for the Todo List Application.
@@ -17,24 +19,39 @@ import todolistapp.controller.MainViewController;
  */
 public class TodoListApplication extends Application {
 
+    /** System property that makes the application exit once its startup is complete. */
+    public static final String EXIT_AFTER_STARTUP_PROPERTY = "todolist.exitAfterStartup";
+
+    /** Timing of the current pulse, from its CSS/layout pass starting until it finished. */
+    private Metrics.Sample pulseSample;
+
     /**
      * The main entry point for all JavaFX applications.
      * This method is called after the FX runtime is initialized and the
      * Application class is constructed. It sets up the primary stage,
      * loads the FXML for the main view, retrieves the controller, applies CSS,
      * and sets a handler for the application close request to save tasks.
+     * It also publishes the {@link Metrics} through JMX and JFR and times every pulse of the scene.
      *
      * @param primaryStage The primary stage for this application, onto which
      *                     the application scene can be set.
      */
     @Override
     public void start(Stage primaryStage) {
+        Metrics.register();
         try {
             FXMLLoader loader = new FXMLLoader(getClass().getResource("view/MainView.fxml"));
             Parent root = loader.load();
             MainViewController controller = loader.getController();
 
             Scene scene = new Scene(root);
+            scene.addPreLayoutPulseListener(() -> pulseSample = Metrics.start(Metrics.Operation.PULSE));
+            scene.addPostLayoutPulseListener(() -> {
+                if (pulseSample != null) {
+                    pulseSample.stop();
+                    pulseSample = null;
+                }
+            });
             
             URL cssUrl = getClass().getResource("view/styles.css");
             if (cssUrl != null) {
@@ -49,6 +66,8 @@ public class TodoListApplication extends Application {
 
             // Set up a handler to save tasks when the application window is closed.
             primaryStage.setOnCloseRequest(event -> {
+                // Hide the window first, the final save then finishes in the background.
+                primaryStage.hide();
                 if (controller != null) {
                     controller.handleAppExit(); // Call controller to handle saving tasks
                 } else {
@@ -58,6 +77,16 @@ public class TodoListApplication extends Application {
             });
 
             primaryStage.show();
+
+            // The tasks load after the window is shown. A training run for the class data sharing
+            // archive (see the cds-archive target in build.xml) exits as soon as they are in.
+            if (Boolean.getBoolean(EXIT_AFTER_STARTUP_PROPERTY)) {
+                controller.getStartupLoad().thenRun(() -> {
+                    primaryStage.hide();
+                    controller.handleAppExit();
+                    Platform.exit();
+                });
+            }
         } catch (IOException e) {
             // In a real application, show an Alert to the user for critical errors like FXML loading failure.
             System.err.println("Critical Error: Could not load FXML or initialize the application.");
@@ -0,0 +1,356 @@
+package todolistapp;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import todolistapp.model.DueBucket;
+import todolistapp.model.SearchResult;
+import todolistapp.model.TaskQuery;
+import todolistapp.model.TaskSnapshot;
+import todolistapp.model.TaskStatistics;
+import todolistapp.model.TaskStore;
+import todolistapp.model.TaskStores;
+import todolistapp.model.TodoItem;
+import todolistapp.model.TodoListManager;
+
+/**
+ * Headless entry point for scripts: applies commands to a task file through {@link TodoListManager}
+ * without starting the JavaFX toolkit.
+ * <p>
+ * Usage: {@code java -cp <classpath> todolistapp.TodoListCli [--file PATH] [COMMAND [ARGUMENT...]]}.
+ * With a command on the command line, only that command runs; otherwise commands are read from standard
+ * input, one per line, and each line is applied as soon as it is read, so a batch of any size is never held
+ * in memory. Empty lines and lines starting with {@code #} are skipped. The commands are:
+ * <ul>
+ *   <li>{@code add PRIORITY DUE DESCRIPTION} - adds a task; {@code PRIORITY} is high, medium, or low,
+ *       {@code DUE} an ISO date or {@code -} for none.</li>
+ *   <li>{@code complete ID...} - marks tasks as done.</li>
+ *   <li>{@code purge} - removes all completed tasks.</li>
+ *   <li>{@code query [FILTER...] [WORD...]} - prints the matching tasks as tab-separated
+ *       {@code id, done, priority, due date, description} lines. Filters are all, active, completed,
+ *       overdue, today, upcoming, nodue, high, medium, and low; other words search the descriptions.</li>
+ *   <li>{@code stats} - prints the task counts.</li>
+ *   <li>{@code convert PATH} - writes the current tasks to another file, in the format of its extension.</li>
+ * </ul>
+ * Results go to standard output; diagnostics, including the messages of the model, go to standard error.
+ * The task file is saved once, after the last command, if any command changed it.
+ * <p>
+ * Exit status: {@value #EXIT_OK} if all commands succeeded, {@value #EXIT_COMMAND_FAILED} if some were
+ * rejected (the others are still applied and saved), {@value #EXIT_USAGE} for invalid arguments, and
+ * {@value #EXIT_IO_ERROR} if the task file could not be read or written.
+ */
+public final class TodoListCli {
+
+    static final int EXIT_OK = 0;
+    static final int EXIT_COMMAND_FAILED = 1;
+    static final int EXIT_USAGE = 2;
+    static final int EXIT_IO_ERROR = 3;
+
+    private static final String USAGE = "Usage: TodoListCli [--file PATH] [add PRIORITY DUE DESCRIPTION | complete ID... "
+            + "| purge | query [FILTER...] [WORD...] | stats | convert PATH]";
+    private static final long SAVE_TIMEOUT_SECONDS = 60;
+    /** Lines of standard input applied as one batch of the manager, which keeps the per-change overhead low. */
+    private static final int BATCH_LINES = 4096;
+
+    private final TodoListManager manager;
+    private final Writer out;
+    private boolean changed;
+    private boolean failed;
+    private int lineNumber;
+
+    private TodoListCli(TodoListManager manager, Writer out) {
+        this.manager = manager;
+        this.out = out;
+    }
+
+    /**
+     * Runs the commands given as arguments or on standard input.
+     * @param args The command-line arguments.
+     */
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * Runs the commands and returns the exit status instead of exiting.
+     * @param args The command-line arguments.
+     * @return The exit status.
+     */
+    static int run(String[] args) {
+        Path file = null;
+        int first = 0;
+        if (args.length > 0 && args[0].equals("--file")) {
+            if (args.length < 2) {
+                System.err.println(USAGE);
+                return EXIT_USAGE;
+            }
+            file = Paths.get(args[1]);
+            first = 2;
+        }
+        TaskStore store = file != null ? TaskStores.forPath(file) : TaskStores.defaultStore();
+        TodoListManager manager = new TodoListManager(store);
+        if (!manager.loadTasks()) {
+            manager.close(SAVE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            return EXIT_IO_ERROR;
+        }
+
+        // The file is saved once at the end; a failed run leaves it as it was
+        manager.suspendJournal();
+        // Built only if a query searches for words
+        manager.suspendSearchIndex();
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+        TodoListCli cli = new TodoListCli(manager, out);
+        int status;
+        try {
+            if (first < args.length) {
+                cli.execute(String.join(" ", List.of(args).subList(first, args.length)), 0);
+            } else {
+                BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), 1 << 16);
+                while (cli.executeBatch(in)) {
+                    // Until the end of the input
+                }
+            }
+            out.flush();
+            status = cli.failed ? EXIT_COMMAND_FAILED : EXIT_OK;
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("I/O error: " + e.getMessage());
+            status = EXIT_IO_ERROR;
+        }
+        if (cli.changed) {
+            try {
+                manager.saveTasksAsync().join();
+            } catch (CompletionException e) {
+                status = EXIT_IO_ERROR;
+            }
+        }
+        if (!manager.close(SAVE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            System.err.println("Writing the journal did not finish within " + SAVE_TIMEOUT_SECONDS + " seconds.");
+            status = EXIT_IO_ERROR;
+        }
+        return status;
+    }
+
+    /**
+     * Applies up to {@value #BATCH_LINES} lines of the input as one batch.
+     * @param in The input.
+     * @return False once the input is exhausted.
+     * @throws UncheckedIOException If reading the input or writing the results fails; the batch is rolled back.
+     */
+    private boolean executeBatch(BufferedReader in) {
+        boolean[] more = {true};
+        manager.batch(batch -> {
+            try {
+                for (int i = 0; i < BATCH_LINES; i++) {
+                    String line = in.readLine();
+                    if (line == null) {
+                        more[0] = false;
+                        return;
+                    }
+                    execute(line, ++lineNumber);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return more[0];
+    }
+
+    /**
+     * Parses and applies one command. A rejected command is reported and marks the run as failed.
+     * @param line The command line.
+     * @param lineNumber The line number on standard input, or 0 for a command from the arguments.
+     * @throws IOException If writing the results fails.
+     */
+    private void execute(String line, int lineNumber) throws IOException {
+        String command = line.strip();
+        if (command.isEmpty() || command.startsWith("#")) {
+            return;
+        }
+        int end = wordEnd(command, 0);
+        String name = command.substring(0, end);
+        String rest = command.substring(end).strip();
+        try {
+            switch (name) {
+                case "add":
+                    add(rest);
+                    break;
+                case "complete":
+                    complete(rest);
+                    break;
+                case "purge":
+                    out.write(manager.removeIf(TodoItem::isDone) + " tasks purged\n");
+                    changed = true;
+                    break;
+                case "query":
+                    query(rest);
+                    break;
+                case "stats":
+                    stats();
+                    break;
+                case "convert":
+                    convert(rest);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown command: " + name);
+            }
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            failed = true;
+            System.err.println((lineNumber > 0 ? "Line " + lineNumber + ": " : "") + e.getMessage());
+        }
+    }
+
+    private void add(String arguments) {
+        int priorityEnd = wordEnd(arguments, 0);
+        int dueStart = skipSpaces(arguments, priorityEnd);
+        int dueEnd = wordEnd(arguments, dueStart);
+        String description = arguments.substring(dueEnd).strip();
+        if (description.isEmpty()) {
+            throw new IllegalArgumentException("Usage: add PRIORITY DUE DESCRIPTION");
+        }
+        TodoItem.Priority priority = parsePriority(arguments.substring(0, priorityEnd));
+        String due = arguments.substring(dueStart, dueEnd);
+        manager.addTask(description, priority, due.equals("-") ? null : LocalDate.parse(due));
+        changed = true;
+    }
+
+    private void complete(String arguments) {
+        if (arguments.isEmpty()) {
+            throw new IllegalArgumentException("Usage: complete ID...");
+        }
+        for (String id : arguments.split("\\s+")) {
+            TodoItem item;
+            try {
+                item = manager.getTask(Long.parseLong(id));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a task ID: " + id);
+            }
+            if (item == null) {
+                throw new IllegalArgumentException("No task with ID " + id);
+            }
+            if (!item.isDone()) {
+                item.setDone(true);
+                changed = true;
+            }
+        }
+    }
+
+    /** Streams the matching tasks to the output without collecting them first. */
+    private void query(String arguments) throws IOException {
+        Boolean done = null;
+        Set<TodoItem.Priority> priorities = EnumSet.noneOf(TodoItem.Priority.class);
+        Set<DueBucket> dueBuckets = EnumSet.noneOf(DueBucket.class);
+        StringBuilder words = new StringBuilder();
+        for (String word : arguments.isEmpty() ? new String[0] : arguments.split("\\s+")) {
+            switch (word.toLowerCase(Locale.ROOT)) {
+                case "all":
+                    break;
+                case "active":
+                    done = false;
+                    break;
+                case "completed":
+                    done = true;
+                    break;
+                case "overdue":
+                    dueBuckets.add(DueBucket.OVERDUE);
+                    break;
+                case "today":
+                    dueBuckets.add(DueBucket.TODAY);
+                    break;
+                case "upcoming":
+                    dueBuckets.add(DueBucket.UPCOMING);
+                    break;
+                case "nodue":
+                    dueBuckets.add(DueBucket.NONE);
+                    break;
+                case "high":
+                case "medium":
+                case "low":
+                    priorities.add(parsePriority(word));
+                    break;
+                default:
+                    words.append(word).append(' ');
+                    break;
+            }
+        }
+        TaskQuery query = TaskQuery.ALL.withDone(done).withPriorities(priorities).withDueBuckets(dueBuckets);
+        List<TodoItem> candidates = manager.getTasks();
+        if (words.length() > 0) {
+            SearchResult result = manager.getSearchIndex().search(words.toString());
+            candidates = result.getItems();
+        }
+        StringBuilder row = new StringBuilder(128);
+        for (TodoItem item : candidates) {
+            if (!manager.getIndex().matches(query, item)) {
+                continue;
+            }
+            row.setLength(0);
+            row.append(item.getId()).append('\t')
+                    .append(item.isDone()).append('\t')
+                    .append(item.getPriority() == null ? "-" : item.getPriority().name().toLowerCase(Locale.ROOT)).append('\t')
+                    .append(item.getDueDate() == null ? "-" : item.getDueDate().toString()).append('\t')
+                    .append(item.getDescription()).append('\n');
+            out.append(row);
+        }
+    }
+
+    private void stats() throws IOException {
+        TaskStatistics statistics = manager.getStatistics();
+        out.write("total " + statistics.getTotal() + "\n"
+                + "pending " + statistics.getPending() + "\n"
+                + "completed " + statistics.getCompleted() + "\n"
+                + "overdue " + statistics.getOverdue() + "\n");
+        for (TodoItem.Priority priority : TodoItem.Priority.values()) {
+            out.write(priority.name().toLowerCase(Locale.ROOT) + " " + statistics.getPriorityCount(priority) + "\n");
+        }
+    }
+
+    private void convert(String arguments) throws IOException {
+        if (arguments.isEmpty()) {
+            throw new IllegalArgumentException("Usage: convert PATH");
+        }
+        TaskStore target = TaskStores.forPath(Paths.get(arguments));
+        // Commands run inside a batch, so the published snapshot would not have the changes of this batch yet
+        TaskSnapshot records = manager.currentSnapshot();
+        target.save(records);
+        out.write(records.size() + " tasks written to " + target.getPath() + "\n");
+    }
+
+    private static TodoItem.Priority parsePriority(String text) {
+        try {
+            return TodoItem.Priority.valueOf(text.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Not a priority (high, medium, low): " + text);
+        }
+    }
+
+    private static int wordEnd(String text, int from) {
+        int i = from;
+        while (i < text.length() && !Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipSpaces(String text, int from) {
+        int i = from;
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+}
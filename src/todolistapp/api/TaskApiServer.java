@@ -0,0 +1,957 @@
+package todolistapp.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.System.Logger.Level;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javafx.beans.value.ChangeListener;
+import todolistapp.model.DueBucket;
+import todolistapp.model.TaskChangeListener;
+import todolistapp.model.TaskDueScheduler;
+import todolistapp.model.TaskField;
+import todolistapp.model.TaskJson;
+import todolistapp.model.TaskQuery;
+import todolistapp.model.TaskRecord;
+import todolistapp.model.TaskSnapshot;
+import todolistapp.model.TodoItem;
+import todolistapp.model.TodoListManager;
+
+/**
+ * Local HTTP/JSON API over the tasks of a {@link TodoListManager}, for scripts and tools running next to
+ * the application. Every request is handled on its own virtual thread:
+ * <ul>
+ *   <li>{@code GET /tasks?filter=F,...&q=WORDS&offset=N&limit=N} - a page of the tasks in list order, with
+ *       the total number of matches. Filters are the words of the command line (all, active, completed,
+ *       overdue, today, upcoming, nodue, high, medium, low); {@code q} keeps tasks whose description has a
+ *       word starting with each given word.</li>
+ *   <li>{@code GET /tasks/ID} - one task.</li>
+ *   <li>{@code POST /tasks} - adds a task from a {@link TaskJson} object; {@code description} is required.</li>
+ *   <li>{@code PATCH /tasks/ID} - changes the given fields of a task.</li>
+ *   <li>{@code DELETE /tasks/ID} - removes a task.</li>
+ *   <li>{@code GET /events} - a server-sent event stream of {@code added}, {@code updated}, and {@code removed}
+ *       tasks, or a single {@code reset} when too much changed at once (e.g. another list was shown).</li>
+ * </ul>
+ * <p>
+ * Readers never touch the live list. After changes, the owner thread publishes the manager's
+ * {@link TodoListManager#snapshot() snapshot}, which costs O(1), with a version number through a volatile
+ * field, at most once per run of queued owner thread tasks. Reads then need neither locks nor the owner
+ * thread; a task is looked up by ID in the snapshot's own {@link TaskSnapshot#find(long) index}, which is
+ * shared between versions, so no version builds one. Filtered results are cached with their snapshot, and
+ * the next snapshot derives its results from them by testing only the tasks that were edited or appended
+ * in between.
+ * <p>
+ * Writes are validated on the request thread and queued. The first write of a burst schedules one owner
+ * thread task that applies everything queued by then in a single {@link TodoListManager#batch batch}, so
+ * the table gets one change event, and publishes before answering, so a client always reads its own writes.
+ * A write that fails (e.g. an unknown ID) does not affect the others of its batch.
+ * <p>
+ * Without authentication, the API relies on only local programs reaching it, so it also turns away what a
+ * web page in a local browser could send: requests whose {@code Host} is not the bound address or
+ * {@code localhost} (DNS rebinding), requests with a foreign {@code Origin}, and bodies that are not
+ * {@code application/json}, which a page cannot post across origins without asking first.
+ * <p>
+ * {@link #show(TodoListManager)} must be called on the owner thread; all other public methods on any thread.
+ */
+public class TaskApiServer {
+
+    private static final System.Logger LOG = System.getLogger(TaskApiServer.class.getName());
+
+    /** System property with the local port to serve the API on; the server is off if it is not set. */
+    public static final String PORT_PROPERTY = "todolist.api.port";
+
+    static final int DEFAULT_LIMIT = 100;
+    static final int MAX_LIMIT = 1000;
+    /** Writes waiting for the owner thread beyond which new ones are rejected, so a flood cannot stall the UI. */
+    private static final int MAX_PENDING_WRITES = 10_000;
+    private static final long WRITE_TIMEOUT_SECONDS = 10;
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final String JSON_MEDIA_TYPE = "application/json";
+    /** Above this many changes in one publish, event subscribers get a single reset instead. */
+    private static final int MAX_EVENTS_PER_PUBLISH = 1000;
+    /** Unsent events per subscriber; a subscriber that falls further behind gets a reset. */
+    private static final int SUBSCRIBER_QUEUE_SIZE = 4096;
+    private static final long KEEP_ALIVE_SECONDS = 15;
+    /** Filtered results kept per snapshot. */
+    private static final int MAX_CACHED_QUERIES = 32;
+    private static final String CLOSE = "";
+
+    /** An immutable state of the list, shared by all readers until the next one is published. */
+    private static final class Snapshot {
+        final long version;
+        final LocalDate today;
+        final boolean loading;
+        final TaskSnapshot tasks;
+        /** Positions of the matches of a filter, by filter; filled by readers. */
+        final Map<String, int[]> queries = new ConcurrentHashMap<>();
+        /**
+         * The snapshot this one was derived from by edits and appends, until the next one is published;
+         * lets readers update its filter results instead of scanning all tasks again.
+         */
+        volatile Snapshot previous;
+        /** The positions of the tasks edited since {@code previous}, ascending. */
+        final int[] editedPositions;
+        /** The position of the first task appended since {@code previous}. */
+        final int appendedFrom;
+
+        Snapshot(long version, LocalDate today, boolean loading, TaskSnapshot tasks, int[] editedPositions, int appendedFrom) {
+            this.version = version;
+            this.today = today;
+            this.loading = loading;
+            this.tasks = tasks;
+            this.editedPositions = editedPositions;
+            this.appendedFrom = appendedFrom;
+        }
+
+        TaskRecord get(long id) {
+            return tasks.find(id);
+        }
+    }
+
+    /** A change made on the owner thread: returns the task to answer with, or null for none. */
+    private interface Operation {
+        TodoItem apply(TodoListManager manager);
+    }
+
+    /** The answer to a write, taken after the snapshot that contains it was published. */
+    private record Applied(long version, TaskRecord task) {
+    }
+
+    private static final class Write {
+        final Operation operation;
+        final CompletableFuture<Applied> result = new CompletableFuture<>();
+        TodoItem item;
+        ApiException error;
+
+        Write(Operation operation) {
+            this.operation = operation;
+        }
+    }
+
+    /** An error answered with an HTTP status and a message. */
+    private static final class ApiException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private static final class Subscriber {
+        final BlockingQueue<String> queue = new ArrayBlockingQueue<>(SUBSCRIBER_QUEUE_SIZE);
+
+        void send(String message, String reset) {
+            if (!queue.offer(message)) {
+                // Fallen behind: drop what is queued, the client reloads after the reset
+                queue.clear();
+                queue.offer(reset);
+            }
+        }
+    }
+
+    private final Executor ownerThread;
+    private final HttpServer server;
+    private final ExecutorService handlers = Executors.newVirtualThreadPerTaskExecutor();
+    private volatile Snapshot snapshot = new Snapshot(0, LocalDate.now(), false, TaskSnapshot.EMPTY, new int[0], 0);
+    private volatile boolean running;
+
+    private final ConcurrentLinkedQueue<Write> writes = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingWrites = new AtomicInteger();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    // Owner thread state: the shown list and the changes since the last publish
+    private TodoListManager manager;
+    private long version;
+    private int publishedSize;
+    private boolean publishScheduled;
+    private boolean dirty;
+    /** True if tasks were removed or inserted before the end, so filtered results are computed anew. */
+    private boolean rebuild;
+    private int appendedCount;
+    private final Set<TodoItem> edited = Collections.newSetFromMap(new IdentityHashMap<>());
+    /** Events for subscribers as (type, task) pairs, or null if they get a reset. */
+    private List<Object[]> events = new ArrayList<>();
+
+    private final TaskChangeListener tracker = new TaskChangeListener() {
+        @Override
+        public void tasksAdded(int from, List<? extends TodoItem> added) {
+            if (!rebuild && from == publishedSize + appendedCount) {
+                appendedCount += added.size();
+            } else {
+                rebuild = true;
+            }
+            for (TodoItem item : added) {
+                addEvent("added", item);
+            }
+            changed();
+        }
+
+        @Override
+        public void tasksRemoved(int from, List<? extends TodoItem> removed) {
+            rebuild = true;
+            for (TodoItem item : removed) {
+                addEvent("removed", item);
+            }
+            changed();
+        }
+
+        @Override
+        public void taskUpdated(TodoItem item, TaskField field, Object oldValue, Object newValue) {
+            if (edited.add(item)) {
+                addEvent("updated", item);
+            }
+            changed();
+        }
+    };
+    private final ChangeListener<Boolean> loadingTracker = (observable, wasLoading, isLoading) -> changed();
+    private final TaskDueScheduler.Listener dateTracker = (today, dueToday, overdue) -> changed();
+
+    /**
+     * Creates a server that is not yet listening.
+     * @param address The address to listen on; should be a loopback address, the API has no authentication.
+     * @param ownerThread Runs tasks on the thread that modifies the list, e.g. {@code Platform::runLater}.
+     * @throws IOException If the address cannot be bound.
+     */
+    public TaskApiServer(InetSocketAddress address, Executor ownerThread) throws IOException {
+        this.ownerThread = ownerThread;
+        server = HttpServer.create(address, 0);
+        server.setExecutor(handlers);
+        server.createContext("/tasks", this::handleTasks);
+        server.createContext("/events", this::handleEvents);
+    }
+
+    /** @return The address the server listens on, with the actual port if port 0 was requested. */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /** Starts accepting requests. */
+    public void start() {
+        running = true;
+        server.start();
+        LOG.log(Level.INFO, "Listening on http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort());
+    }
+
+    /**
+     * Stops accepting requests, ends the event streams, and detaches from the list. Queued writes are rejected.
+     * Must be called on the owner thread.
+     */
+    public void stop() {
+        running = false;
+        for (Subscriber subscriber : subscribers) {
+            subscriber.queue.clear();
+            subscriber.queue.offer(CLOSE);
+        }
+        server.stop(1);
+        handlers.shutdownNow();
+        detach();
+        failPendingWrites();
+    }
+
+    /**
+     * Serves another list, e.g. after the user switched lists; event subscribers get a reset.
+     * Must be called on the owner thread.
+     * @param manager The manager of the list to serve.
+     */
+    public void show(TodoListManager manager) {
+        detach();
+        this.manager = manager;
+        manager.addTaskChangeListener(tracker);
+        manager.loadingProperty().addListener(loadingTracker);
+        manager.getDueScheduler().addListener(dateTracker);
+        rebuild = true;
+        events = null;
+        changed();
+    }
+
+    private void detach() {
+        if (manager != null) {
+            manager.removeTaskChangeListener(tracker);
+            manager.loadingProperty().removeListener(loadingTracker);
+            manager.getDueScheduler().removeListener(dateTracker);
+            manager = null;
+        }
+    }
+
+    // ---- Publishing, on the owner thread ----
+
+    private void addEvent(String type, TodoItem item) {
+        if (events != null) {
+            if (events.size() < MAX_EVENTS_PER_PUBLISH) {
+                events.add(new Object[] {type, type.equals("removed") ? item.getId() : item});
+            } else {
+                events = null;
+            }
+        }
+    }
+
+    private void changed() {
+        dirty = true;
+        if (!publishScheduled) {
+            publishScheduled = true;
+            ownerThread.execute(this::publish);
+        }
+    }
+
+    /** Publishes a snapshot with the changes made since the last one and sends their events. */
+    private void publish() {
+        publishScheduled = false;
+        if (!dirty || manager == null) {
+            return;
+        }
+        int[] editedPositions = new int[0];
+        if (!rebuild) {
+            List<TodoItem> tasks = manager.getTasks();
+            editedPositions = new int[edited.size()];
+            int count = 0;
+            for (TodoItem item : edited) {
+                int position = tasks.indexOf(item);
+                if (position >= 0 && position < publishedSize) {
+                    editedPositions[count++] = position;
+                }
+            }
+            editedPositions = Arrays.copyOf(editedPositions, count);
+            Arrays.sort(editedPositions);
+        }
+        version++;
+        Snapshot last = snapshot;
+        TaskSnapshot records = manager.snapshot();
+        Snapshot next = new Snapshot(version, manager.getDueScheduler().getToday(), manager.isLoading(),
+                records, editedPositions, publishedSize);
+        if (!rebuild && next.today.equals(last.today)) {
+            next.previous = last;
+        }
+        // Only one step back, so old snapshots are not kept alive in a chain
+        last.previous = null;
+        publishedSize = records.size();
+        snapshot = next;
+        if (!subscribers.isEmpty()) {
+            sendEvents();
+        }
+        dirty = false;
+        rebuild = false;
+        appendedCount = 0;
+        edited.clear();
+        events = new ArrayList<>();
+    }
+
+    private void sendEvents() {
+        String reset = event("reset", "{\"version\":" + version + "}");
+        List<String> messages = new ArrayList<>();
+        if (events == null) {
+            messages.add(reset);
+        } else {
+            StringBuilder data = new StringBuilder(256);
+            for (Object[] change : events) {
+                data.setLength(0);
+                data.append("{\"version\":").append(version);
+                if (change[1] instanceof TodoItem item) {
+                    data.append(",\"task\":");
+                    TaskJson.appendRecord(data, TaskRecord.of(item));
+                } else {
+                    data.append(",\"id\":").append(change[1]);
+                }
+                data.append('}');
+                messages.add(event((String) change[0], data.toString()));
+            }
+        }
+        for (Subscriber subscriber : subscribers) {
+            for (String message : messages) {
+                subscriber.send(message, reset);
+            }
+        }
+    }
+
+    private String event(String type, String data) {
+        return "id: " + version + "\nevent: " + type + "\ndata: " + data + "\n\n";
+    }
+
+    // ---- Writes ----
+
+    /**
+     * Queues a change for the owner thread and waits until it is applied and published.
+     * @return The published state that contains the change.
+     */
+    private Applied write(Operation operation) throws InterruptedException {
+        if (pendingWrites.incrementAndGet() > MAX_PENDING_WRITES) {
+            pendingWrites.decrementAndGet();
+            throw new ApiException(503, "Too many pending writes");
+        }
+        Write write = new Write(operation);
+        writes.add(write);
+        if (drainScheduled.compareAndSet(false, true)) {
+            ownerThread.execute(this::drain);
+        }
+        try {
+            return write.result.get(WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof ApiException error ? error : new ApiException(500, String.valueOf(e.getCause()));
+        } catch (TimeoutException e) {
+            // Still queued; it is applied once the owner thread gets to it
+            throw new ApiException(504, "The application did not apply the change in time");
+        }
+    }
+
+    /** Applies all queued writes in one batch, on the owner thread. */
+    private void drain() {
+        drainScheduled.set(false);
+        List<Write> batch = new ArrayList<>();
+        for (Write write = writes.poll(); write != null; write = writes.poll()) {
+            batch.add(write);
+        }
+        pendingWrites.addAndGet(-batch.size());
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (manager == null || manager.isLoading()) {
+            ApiException error = new ApiException(503, manager == null ? "The server is stopping" : "Tasks are still loading");
+            batch.forEach(write -> write.result.completeExceptionally(error));
+            return;
+        }
+        try {
+            manager.batch(m -> {
+                for (Write write : batch) {
+                    try {
+                        write.item = write.operation.apply(m);
+                    } catch (ApiException e) {
+                        write.error = e;
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            // The batch was rolled back as a whole
+            LOG.log(Level.WARNING, "Batch of " + batch.size() + " writes failed", e);
+            ApiException error = new ApiException(500, "The change could not be applied");
+            batch.forEach(write -> write.result.completeExceptionally(error));
+            return;
+        }
+        publish();
+        long published = version;
+        for (Write write : batch) {
+            if (write.error != null) {
+                write.result.completeExceptionally(write.error);
+            } else {
+                write.result.complete(new Applied(published, write.item == null ? null : TaskRecord.of(write.item)));
+            }
+        }
+    }
+
+    private void failPendingWrites() {
+        ApiException error = new ApiException(503, "The server is stopping");
+        for (Write write = writes.poll(); write != null; write = writes.poll()) {
+            pendingWrites.decrementAndGet();
+            write.result.completeExceptionally(error);
+        }
+    }
+
+    // ---- Request handling, on virtual threads ----
+
+    private void handleTasks(HttpExchange exchange) throws IOException {
+        try {
+            checkCaller(exchange);
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            if (path.equals("/tasks") || path.equals("/tasks/")) {
+                switch (method) {
+                    case "GET":
+                        listTasks(exchange);
+                        break;
+                    case "POST":
+                        addTask(exchange);
+                        break;
+                    default:
+                        throw new ApiException(405, "Use GET or POST on /tasks");
+                }
+                return;
+            }
+            long id = parseId(path.substring("/tasks/".length()));
+            switch (method) {
+                case "GET":
+                    Snapshot current = snapshot;
+                    TaskRecord record = current.get(id);
+                    if (record == null) {
+                        throw new ApiException(404, "No task with ID " + id);
+                    }
+                    StringBuilder body = new StringBuilder(256);
+                    TaskJson.appendRecord(body, record);
+                    send(exchange, 200, current.version, body);
+                    break;
+                case "PATCH":
+                    updateTask(exchange, id);
+                    break;
+                case "DELETE":
+                    Applied applied = write(manager -> {
+                        if (manager.removeTask(id) == null) {
+                            throw new ApiException(404, "No task with ID " + id);
+                        }
+                        return null;
+                    });
+                    send(exchange, 204, applied.version(), null);
+                    break;
+                default:
+                    throw new ApiException(405, "Use GET, PATCH, or DELETE on /tasks/ID");
+            }
+        } catch (ApiException e) {
+            sendError(exchange, e.status, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            sendError(exchange, 503, "The server is stopping");
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Request " + exchange.getRequestURI() + " failed", e);
+            sendError(exchange, 500, "Internal error");
+        }
+    }
+
+    private void listTasks(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+        int offset = parseInt(parameters.get("offset"), 0, Integer.MAX_VALUE, 0);
+        int limit = parseInt(parameters.get("limit"), 0, MAX_LIMIT, DEFAULT_LIMIT);
+        String filter = parameters.getOrDefault("filter", "");
+        String text = parameters.getOrDefault("q", "").trim().toLowerCase(Locale.ROOT);
+        TaskQuery query = parseFilter(filter);
+        Snapshot current = snapshot;
+        List<TaskRecord> tasks = current.tasks;
+        int[] matches = null;
+        if (query != TaskQuery.ALL || !text.isEmpty()) {
+            String key = filter + '\n' + text;
+            matches = current.queries.get(key);
+            if (matches == null) {
+                matches = match(current, key, query, text.isEmpty() ? new String[0] : text.split("\\s+"));
+                if (current.queries.size() < MAX_CACHED_QUERIES) {
+                    current.queries.put(key, matches);
+                }
+            }
+        }
+        int total = matches == null ? tasks.size() : matches.length;
+        int from = Math.min(offset, total);
+        int to = (int) Math.min((long) from + limit, total);
+        StringBuilder body = new StringBuilder(64 + (to - from) * 192);
+        body.append("{\"version\":").append(current.version)
+                .append(",\"loading\":").append(current.loading)
+                .append(",\"total\":").append(total)
+                .append(",\"offset\":").append(from)
+                .append(",\"tasks\":[");
+        for (int i = from; i < to; i++) {
+            if (i > from) {
+                body.append(',');
+            }
+            TaskJson.appendRecord(body, tasks.get(matches == null ? i : matches[i]));
+        }
+        body.append("]}");
+        send(exchange, 200, current.version, body);
+    }
+
+    /**
+     * Finds the matching tasks of a snapshot. If the previous snapshot has the result of the same filter,
+     * only the tasks edited or appended since then are tested.
+     * @return The positions of the matching tasks, ascending.
+     */
+    private static int[] match(Snapshot snapshot, String key, TaskQuery query, String[] words) {
+        List<TaskRecord> tasks = snapshot.tasks;
+        Snapshot previous = snapshot.previous;
+        int[] known = previous == null ? null : previous.queries.get(key);
+        int[] edited = snapshot.editedPositions;
+        int[] matches = new int[known == null ? 16 : known.length + edited.length + tasks.size() - snapshot.appendedFrom];
+        int count = 0;
+        int from = 0;
+        if (known != null) {
+            // Merge the earlier matches with the edited positions, which are tested again
+            int k = 0;
+            for (int e = 0; e < edited.length; e++) {
+                while (k < known.length && known[k] < edited[e]) {
+                    matches[count++] = known[k++];
+                }
+                if (k < known.length && known[k] == edited[e]) {
+                    k++;
+                }
+                TaskRecord record = tasks.get(edited[e]);
+                if (query.matches(record, snapshot.today) && containsWords(record.description(), words)) {
+                    matches[count++] = edited[e];
+                }
+            }
+            while (k < known.length) {
+                matches[count++] = known[k++];
+            }
+            from = snapshot.appendedFrom;
+        }
+        int i = from;
+        for (TaskRecord record : from == 0 ? tasks : tasks.subList(from, tasks.size())) {
+            if (query.matches(record, snapshot.today) && containsWords(record.description(), words)) {
+                if (count == matches.length) {
+                    matches = Arrays.copyOf(matches, count * 2);
+                }
+                matches[count++] = i;
+            }
+            i++;
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    /** @return True if, for every word, the description has a word that starts with it, ignoring case. */
+    private static boolean containsWords(String description, String[] words) {
+        if (words.length == 0) {
+            return true;
+        }
+        String text = description.toLowerCase(Locale.ROOT);
+        for (String word : words) {
+            boolean found = false;
+            for (int at = text.indexOf(word); at >= 0 && !found; at = text.indexOf(word, at + 1)) {
+                found = at == 0 || !Character.isLetterOrDigit(text.charAt(at - 1));
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void addTask(HttpExchange exchange) throws IOException, InterruptedException {
+        Map<String, Object> values = readObject(exchange);
+        String description = descriptionValue(values);
+        if (description == null || description.isBlank()) {
+            throw new ApiException(400, "A description is required");
+        }
+        TodoItem.Priority priority = values.containsKey("priority") ? parsePriority(values.get("priority")) : TodoItem.Priority.MEDIUM;
+        LocalDate dueDate = values.containsKey("dueDate") ? parseDate(values.get("dueDate")) : null;
+        boolean done = Boolean.TRUE.equals(booleanValue(values, "done"));
+        Applied applied = write(manager -> {
+            TodoItem item = new TodoItem(description.trim(), priority, dueDate);
+            item.setDone(done);
+            manager.addTask(item);
+            return item;
+        });
+        StringBuilder body = new StringBuilder(256);
+        TaskJson.appendRecord(body, applied.task());
+        exchange.getResponseHeaders().set("Location", "/tasks/" + applied.task().id());
+        send(exchange, 201, applied.version(), body);
+    }
+
+    private void updateTask(HttpExchange exchange, long id) throws IOException, InterruptedException {
+        Map<String, Object> values = readObject(exchange);
+        String description = descriptionValue(values);
+        if (description != null && description.isBlank()) {
+            throw new ApiException(400, "The description must not be empty");
+        }
+        boolean hasPriority = values.containsKey("priority");
+        TodoItem.Priority priority = hasPriority ? parsePriority(values.get("priority")) : null;
+        boolean hasDueDate = values.containsKey("dueDate");
+        LocalDate dueDate = hasDueDate ? parseDate(values.get("dueDate")) : null;
+        Boolean done = booleanValue(values, "done");
+        Applied applied = write(manager -> {
+            TodoItem item = manager.getTask(id);
+            if (item == null) {
+                throw new ApiException(404, "No task with ID " + id);
+            }
+            if (description != null) {
+                item.setDescription(description.trim());
+            }
+            if (hasPriority) {
+                item.setPriority(priority);
+            }
+            if (hasDueDate) {
+                item.setDueDate(dueDate);
+            }
+            if (done != null) {
+                item.setDone(done);
+            }
+            return item;
+        });
+        StringBuilder body = new StringBuilder(256);
+        TaskJson.appendRecord(body, applied.task());
+        send(exchange, 200, applied.version(), body);
+    }
+
+    private void handleEvents(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            sendError(exchange, 405, "Use GET on /events");
+            return;
+        }
+        try {
+            checkCaller(exchange);
+        } catch (ApiException e) {
+            sendError(exchange, e.status, e.getMessage());
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        Subscriber subscriber = new Subscriber();
+        // Subscribe before reading the version, so no event after it is missed
+        subscribers.add(subscriber);
+        try (OutputStream body = exchange.getResponseBody()) {
+            long current = snapshot.version;
+            body.write(("id: " + current + "\nevent: hello\ndata: {\"version\":" + current + "}\n\n").getBytes(StandardCharsets.UTF_8));
+            body.flush();
+            while (running) {
+                String message = subscriber.queue.poll(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+                if (message == CLOSE) {
+                    break;
+                }
+                // A comment line keeps proxies from closing an idle stream and detects closed clients
+                body.write((message != null ? message : ": keep-alive\n\n").getBytes(StandardCharsets.UTF_8));
+                body.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // The client went away.
+        } finally {
+            subscribers.remove(subscriber);
+        }
+    }
+
+    /**
+     * Rejects requests that a web page may have sent: with a Host that is not this server, as after DNS
+     * rebinding, or from another origin.
+     */
+    private void checkCaller(HttpExchange exchange) {
+        String host = exchange.getRequestHeaders().getFirst("Host");
+        if (host == null || !isOwnAuthority(host.trim())) {
+            throw new ApiException(403, "Unknown host: " + host);
+        }
+        String origin = exchange.getRequestHeaders().getFirst("Origin");
+        if (origin != null && !origin.isEmpty()
+                && !(origin.startsWith("http://") && isOwnAuthority(origin.substring("http://".length())))) {
+            throw new ApiException(403, "Requests from " + origin + " are not allowed");
+        }
+    }
+
+    /**
+     * @param authority A host and optional port from a Host or Origin header.
+     * @return True if it names this server: localhost or the bound address, with the bound port.
+     */
+    private boolean isOwnAuthority(String authority) {
+        InetSocketAddress bound = server.getAddress();
+        String host = authority;
+        int port = 80;
+        int colon = authority.lastIndexOf(':');
+        if (colon > authority.lastIndexOf(']')) {
+            host = authority.substring(0, colon);
+            try {
+                port = Integer.parseInt(authority.substring(colon + 1));
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+        if (port != bound.getPort()) {
+            return false;
+        }
+        if (host.startsWith("[") && host.endsWith("]")) {
+            host = host.substring(1, host.length() - 1);
+        }
+        if (host.equalsIgnoreCase("localhost")) {
+            return true;
+        }
+        // Only address literals are compared: looking up a name would ask the DNS server of whoever chose it
+        if (!host.contains(":") && !host.matches("[0-9.]+")) {
+            return false;
+        }
+        try {
+            InetAddress address = InetAddress.getByName(host);
+            return address.equals(bound.getAddress())
+                    || (bound.getAddress().isAnyLocalAddress() && address.isLoopbackAddress());
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+
+    // ---- Parsing and responses ----
+
+    private static Map<String, Object> readObject(HttpExchange exchange) throws IOException {
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        int parameters = contentType == null ? -1 : contentType.indexOf(';');
+        String mediaType = parameters < 0 ? contentType : contentType.substring(0, parameters);
+        if (mediaType == null || !mediaType.trim().equalsIgnoreCase(JSON_MEDIA_TYPE)) {
+            throw new ApiException(415, "The body must be " + JSON_MEDIA_TYPE);
+        }
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (bytes.length > MAX_BODY_BYTES) {
+                throw new ApiException(413, "The body is larger than " + MAX_BODY_BYTES + " bytes");
+            }
+            return TaskJson.parseObject(new String(bytes, StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(400, "Malformed JSON: " + e.getMessage());
+        }
+    }
+
+    private static String stringValue(Map<String, Object> values, String key) {
+        Object value = values.get(key);
+        if (value != null && !(value instanceof String)) {
+            throw new ApiException(400, key + " must be a string");
+        }
+        return (String) value;
+    }
+
+    /** @return The description, which may not contain control characters such as line breaks; null if absent. */
+    private static String descriptionValue(Map<String, Object> values) {
+        String description = stringValue(values, "description");
+        if (description != null && description.chars().anyMatch(Character::isISOControl)) {
+            throw new ApiException(400, "The description must not contain control characters");
+        }
+        return description;
+    }
+
+    private static Boolean booleanValue(Map<String, Object> values, String key) {
+        Object value = values.get(key);
+        if (value != null && !(value instanceof Boolean)) {
+            throw new ApiException(400, key + " must be true or false");
+        }
+        return (Boolean) value;
+    }
+
+    private static TodoItem.Priority parsePriority(Object value) {
+        try {
+            return TodoItem.Priority.valueOf(((String) value).toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException | ClassCastException | NullPointerException e) {
+            throw new ApiException(400, "priority must be HIGH, MEDIUM, or LOW");
+        }
+    }
+
+    private static LocalDate parseDate(Object value) {
+        try {
+            return value == null ? null : LocalDate.parse((String) value);
+        } catch (DateTimeException | ClassCastException e) {
+            throw new ApiException(400, "dueDate must be an ISO date or null");
+        }
+    }
+
+    private static long parseId(String text) {
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            throw new ApiException(404, "No task with ID " + text);
+        }
+    }
+
+    private static int parseInt(String text, int min, int max, int defaultValue) {
+        if (text == null || text.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(min, Math.min(max, Integer.parseInt(text)));
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, "Not a number: " + text);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), StandardCharsets.UTF_8);
+            String value = equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+            parameters.put(name, value);
+        }
+        return parameters;
+    }
+
+    /** Parses the comma-separated filter words of the command line into a query. */
+    private static TaskQuery parseFilter(String filter) {
+        if (filter.isEmpty()) {
+            return TaskQuery.ALL;
+        }
+        Boolean done = null;
+        Set<TodoItem.Priority> priorities = EnumSet.noneOf(TodoItem.Priority.class);
+        Set<DueBucket> dueBuckets = EnumSet.noneOf(DueBucket.class);
+        for (String word : filter.split(",")) {
+            switch (word.trim().toLowerCase(Locale.ROOT)) {
+                case "":
+                case "all":
+                    break;
+                case "active":
+                    done = false;
+                    break;
+                case "completed":
+                    done = true;
+                    break;
+                case "overdue":
+                    dueBuckets.add(DueBucket.OVERDUE);
+                    break;
+                case "today":
+                    dueBuckets.add(DueBucket.TODAY);
+                    break;
+                case "upcoming":
+                    dueBuckets.add(DueBucket.UPCOMING);
+                    break;
+                case "nodue":
+                    dueBuckets.add(DueBucket.NONE);
+                    break;
+                case "high":
+                case "medium":
+                case "low":
+                    priorities.add(parsePriority(word.trim()));
+                    break;
+                default:
+                    throw new ApiException(400, "Unknown filter: " + word);
+            }
+        }
+        if (done == null && priorities.isEmpty() && dueBuckets.isEmpty()) {
+            return TaskQuery.ALL;
+        }
+        return TaskQuery.ALL.withDone(done).withPriorities(priorities).withDueBuckets(dueBuckets);
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        StringBuilder body = new StringBuilder("{\"error\":");
+        TaskJson.appendString(body, message);
+        body.append('}');
+        send(exchange, status, -1, body);
+    }
+
+    private static void send(HttpExchange exchange, int status, long version, StringBuilder body) throws IOException {
+        if (version >= 0) {
+            exchange.getResponseHeaders().set("X-Task-Version", Long.toString(version));
+        }
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+            return;
+        }
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -1,29 +1,84 @@
 package todolistapp.controller;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.System.Logger.Level;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.URL;
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.ResourceBundle;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.beans.WeakInvalidationListener;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.control.Button;
 import javafx.scene.control.ComboBox;
+import javafx.scene.control.ContextMenu;
 import javafx.scene.control.DatePicker;
 import javafx.scene.control.Label;
+import javafx.scene.control.Menu;
+import javafx.scene.control.MenuItem;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.control.SelectionMode;
+import javafx.scene.control.SeparatorMenuItem;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.scene.control.TextField;
+import javafx.scene.control.TextInputDialog;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.control.cell.TextFieldTableCell;
 import javafx.scene.control.cell.ComboBoxTableCell;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
+import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.BorderPane;
+import javafx.stage.FileChooser;
+import javafx.util.Duration;
+import todolistapp.api.TaskApiServer;
+import todolistapp.metrics.Metrics;
+import todolistapp.model.ColumnarTaskList;
+import todolistapp.model.SearchResult;
+import todolistapp.model.TaskIndex;
+import todolistapp.model.TaskDueScheduler;
+import todolistapp.model.TaskQuery;
+import todolistapp.model.TaskStatistics;
+import todolistapp.model.TaskTransfer;
+import todolistapp.model.TaskViewEngine;
+import todolistapp.model.TaskWorkspace;
+import todolistapp.model.TransferProgress;
 import todolistapp.model.TodoItem;
 import todolistapp.model.TodoListManager;
 import todolistapp.model.TodoItem.Priority;
 import javafx.scene.control.TableCell;
 import javafx.scene.control.CheckBox;
-import javafx.collections.transformation.FilteredList;
-import javafx.collections.transformation.SortedList;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
 import javafx.util.converter.LocalDateStringConverter;
@@ -35,12 +90,20 @@ import javafx.css.PseudoClass;
  * Handles user interactions, manages the display of tasks, and coordinates
  * with the {@link TodoListManager} for data operations.
  */
-public class MainViewController implements Initializable {
+public final class MainViewController implements Initializable {
+
+    private static final System.Logger LOG = System.getLogger(MainViewController.class.getName());
 
     //<editor-fold desc="@FXML Variables">
     @FXML
     private BorderPane rootPane;
 
+    @FXML
+    private ComboBox<String> listComboBox;
+
+    @FXML
+    private Button newListButton;
+
     @FXML
     private TextField descriptionTextField;
 
@@ -77,15 +140,145 @@ public class MainViewController implements Initializable {
     @FXML
     private ComboBox<String> filterComboBox;
 
+    @FXML
+    private TextField searchTextField;
+
     @FXML
     private Button deleteCompletedButton;
 
+    @FXML
+    private Button undoButton;
+
+    @FXML
+    private Button redoButton;
+
     @FXML
     private Label summaryLabel;
+
+    @FXML
+    private Label dueLabel;
+
+    @FXML
+    private Button importButton;
+
+    @FXML
+    private Button exportButton;
+
+    @FXML
+    private ProgressBar transferProgressBar;
+
+    @FXML
+    private Label transferLabel;
     //</editor-fold>
 
+    /** The entries of the filter ComboBox and the queries they select. */
+    private static final Map<String, TaskQuery> FILTERS = new LinkedHashMap<>();
+    static {
+        FILTERS.put("All", TaskQuery.ALL);
+        FILTERS.put("Active", TaskQuery.ACTIVE);
+        FILTERS.put("Completed", TaskQuery.COMPLETED);
+        FILTERS.put("High priority overdue", TaskQuery.HIGH_PRIORITY_OVERDUE);
+    }
+
+    /** Maximum time the exit path waits for the final background save. */
+    private static final long EXIT_SAVE_TIMEOUT_SECONDS = 10;
+
+    /** Delay after the last keystroke before the search is run. */
+    private static final Duration SEARCH_DEBOUNCE = Duration.millis(150);
+
+    private static final KeyCombination UNDO_KEY = new KeyCodeCombination(KeyCode.Z, KeyCombination.SHORTCUT_DOWN);
+    private static final KeyCombination REDO_KEY = new KeyCodeCombination(KeyCode.Y, KeyCombination.SHORTCUT_DOWN);
+    private static final KeyCombination REDO_ALT_KEY = new KeyCodeCombination(KeyCode.Z, KeyCombination.SHORTCUT_DOWN, KeyCombination.SHIFT_DOWN);
+
+    private TaskWorkspace workspace;
+    /** The manager of the list shown in the table; replaced when another list is selected, null while an archive is shown. */
     private TodoListManager todoListManager;
-    private FilteredList<TodoItem> filteredTasks;
+    /** The archive shown in the table instead of a list, or null; see {@link TaskWorkspace#openArchive}. */
+    private ColumnarTaskList archive;
+    /** The rows of the table: the shown list filtered and sorted by {@code viewEngine}. */
+    private final ObservableList<TodoItem> viewItems = FXCollections.observableArrayList();
+    private final TaskViewEngine viewEngine = new TaskViewEngine(Platform::runLater);
+    /** The sort field of each sortable column. */
+    private final Map<TableColumn<TodoItem, ?>, TaskViewEngine.SortField> sortFields = new HashMap<>();
+    /** The sort order of the latest view request, to tell real sort order changes from repeated sort calls. */
+    private List<TaskViewEngine.SortKey> requestedOrder = List.of();
+
+    /** The result of the current search, or null if the search box is empty. */
+    private final ObjectProperty<SearchResult> searchResult = new SimpleObjectProperty<>(this, "searchResult");
+    private final PauseTransition searchDebounce = new PauseTransition(SEARCH_DEBOUNCE);
+    /** Coalesces refreshes of derived UI state into one per pulse. */
+    private final RefreshScheduler refreshScheduler = new RefreshScheduler();
+    private final Runnable summaryRefresh = this::updateSummaryLabel;
+    private final Runnable viewRefresh = this::refreshView;
+    private final Runnable searchRefresh = this::handleSearch;
+    private final Runnable editRefresh = this::applyEdits;
+    /** Tasks of the shown list edited since the rows were computed, whose rows may have to move. */
+    private final Set<TodoItem> editedTasks = Collections.newSetFromMap(new IdentityHashMap<>());
+    /** True while the rows are computed in the background; edits made meanwhile are applied to the result. */
+    private boolean viewComputing;
+    /** Follows changes of the tasks of the shown list in the rows, at most once per pulse. */
+    private final ListChangeListener<TodoItem> viewRefresher = change -> {
+        while (change.next()) {
+            if (searchResult.get() != null) {
+                // A search result is a snapshot, and an edited description may start or stop matching
+                refreshScheduler.schedule(searchRefresh);
+                return;
+            }
+            if (!change.wasUpdated()) {
+                refreshScheduler.schedule(viewRefresh);
+                return;
+            }
+            // Edits only move rows if the view depends on the task fields; list order needs nothing
+            if (selectedQuery() != TaskQuery.ALL || !requestedOrder.isEmpty()) {
+                for (int i = change.getFrom(); i < change.getTo(); i++) {
+                    editedTasks.add(change.getList().get(i));
+                }
+            }
+        }
+        if (!editedTasks.isEmpty()) {
+            refreshScheduler.schedule(editRefresh);
+        }
+    };
+    /**
+     * Follows changes of the shown archive. The selected rows do not survive added or removed tasks, so they are
+     * selected again right away; edits only change which rows match, which waits for the next pulse.
+     */
+    private final ListChangeListener<TodoItem> archiveRefresher = change -> {
+        boolean structural = false;
+        while (change.next()) {
+            structural |= !change.wasUpdated();
+        }
+        if (structural) {
+            refreshView();
+        } else if (selectedQuery() != TaskQuery.ALL) {
+            refreshScheduler.schedule(viewRefresh);
+        }
+        refreshScheduler.schedule(summaryRefresh);
+    };
+    /** Keeps the summary in sync with the live counters of the shown list, at most once per pulse. */
+    private final ChangeListener<Number> summaryUpdater = (observable, oldValue, newValue) -> refreshScheduler.schedule(summaryRefresh);
+
+    /** The current date, for the overdue styling of rows; moved by the due scheduler of the shown list. */
+    private final ObjectProperty<LocalDate> today = new SimpleObjectProperty<>(this, "today", LocalDate.now());
+    private final TaskDueScheduler.Listener dateUpdater = this::handleDateChanged;
+    /** Locks editing while the shown list is still loading in the background. */
+    private final ChangeListener<Boolean> loadingUpdater = (observable, wasLoading, isLoading) -> setLoading(isLoading);
+    private final Label loadingPlaceholder = new Label("Loading tasks...");
+    private final Label emptyPlaceholder = new Label("No tasks");
+    private final Label failedPlaceholder = new Label("The list could not be loaded");
+    /** Completes once the list shown at startup is completely loaded. */
+    private final CompletableFuture<Void> startupLoad = new CompletableFuture<>();
+
+    /** Serves the shown list over HTTP if {@link TaskApiServer#PORT_PROPERTY} is set, otherwise null. */
+    private TaskApiServer apiServer;
+
+    private final TaskTransfer taskTransfer = new TaskTransfer();
+    /** Latest progress of every file of the running import or export; written by the transfer threads. */
+    private final Map<Path, TransferProgress> transferProgress = new ConcurrentHashMap<>();
+    /** Set while a progress display update is queued on the FX thread, so bursts of progress coalesce. */
+    private final AtomicBoolean transferRefreshScheduled = new AtomicBoolean();
+    /** "Importing" or "Exporting" while a transfer runs. */
+    private String transferVerb;
 
     /**
      * Initializes the controller class. This method is automatically called
@@ -98,19 +291,37 @@ public class MainViewController implements Initializable {
      */
     @Override
     public void initialize(URL url, ResourceBundle rb) {
-        this.todoListManager = new TodoListManager();
+        this.workspace = TaskWorkspace.defaultWorkspace();
 
         priorityComboBox.getItems().setAll(Priority.values());
 
         tasksTableView.setEditable(true);
 
+        // Rows are filtered and sorted in the background; the table only asks for it
+        sortFields.put(statusColumn, TaskViewEngine.SortField.DONE);
+        sortFields.put(descriptionColumn, TaskViewEngine.SortField.DESCRIPTION);
+        sortFields.put(priorityColumn, TaskViewEngine.SortField.PRIORITY);
+        sortFields.put(dueDateColumn, TaskViewEngine.SortField.DUE_DATE);
+        sortFields.put(creationDateColumn, TaskViewEngine.SortField.CREATION_DATE);
+        actionsColumn.setSortable(false);
+        tasksTableView.setItems(viewItems);
+        tasksTableView.setSortPolicy(table -> {
+            if (archive != null) {
+                // Archives are shown in list order
+                return false;
+            }
+            if (!sortOrder().equals(requestedOrder)) {
+                refreshScheduler.schedule(viewRefresh);
+            }
+            return true;
+        });
+
         // Configure Description Column
         descriptionColumn.setCellValueFactory(new PropertyValueFactory<>("description"));
         descriptionColumn.setCellFactory(TextFieldTableCell.forTableColumn());
         descriptionColumn.setOnEditCommit(event -> {
             TodoItem item = event.getRowValue();
             item.setDescription(event.getNewValue());
-            // todoListManager.saveTasks(); // Or a specific update method in manager
         });
 
         // Configure Priority Column
@@ -119,7 +330,6 @@ public class MainViewController implements Initializable {
         priorityColumn.setOnEditCommit(event -> {
             TodoItem item = event.getRowValue();
             item.setPriority(event.getNewValue());
-            // todoListManager.saveTasks();
         });
 
         // Configure Due Date Column
@@ -128,7 +338,6 @@ public class MainViewController implements Initializable {
         dueDateColumn.setOnEditCommit(event -> {
             TodoItem item = event.getRowValue();
             item.setDueDate(event.getNewValue());
-            // todoListManager.saveTasks();
         });
 
         // Configure Creation Date Column (read-only)
@@ -139,17 +348,13 @@ public class MainViewController implements Initializable {
         statusColumn.setCellFactory(column -> new TableCell<TodoItem, Boolean>() {
             private final CheckBox checkBox = new CheckBox();
             {
+                checkBox.disableProperty().bind(tasksTableView.editableProperty().not());
                 checkBox.setOnAction(event -> {
                     if (getIndex() >= 0 && getIndex() < getTableView().getItems().size()) {
                         TodoItem item = getTableView().getItems().get(getIndex());
+                        // The model reports the edit as an update change, so the filter re-evaluates just this task;
+                        // the row restyles itself and the summary follows the statistics in the next pulse
                         item.setDone(checkBox.isSelected());
-                        updateSummaryLabel();
-                        if (filteredTasks != null && filteredTasks.getPredicate() != null) {
-                            // Re-apply predicate to refresh view if filtering is active
-                            filteredTasks.setPredicate(filteredTasks.getPredicate()); 
-                        }
-                        tasksTableView.refresh(); // Refresh row to apply CSS changes
-                        // todoListManager.saveTasks();
                     }
                 });
             }
@@ -173,6 +378,7 @@ public class MainViewController implements Initializable {
         actionsColumn.setCellFactory(column -> new TableCell<TodoItem, Void>() {
             private final Button deleteButton = new Button("Delete");
             {
+                deleteButton.disableProperty().bind(tasksTableView.editableProperty().not());
                 // Apply a style class for specific CSS styling if needed
                 // deleteButton.getStyleClass().add("action-button-delete"); 
                 deleteButton.setOnAction(event -> {
@@ -184,9 +390,11 @@ public class MainViewController implements Initializable {
                         alert.setContentText("Are you sure you want to delete this task?");
                         alert.showAndWait().ifPresent(response -> {
                             if (response == javafx.scene.control.ButtonType.OK) {
-                                todoListManager.removeTask(item);
-                                updateSummaryLabel();
-                                // todoListManager.saveTasks();
+                                if (archive != null) {
+                                    archive.remove(item);
+                                } else {
+                                    todoListManager.removeTask(item);
+                                }
                             }
                         });
                     }
@@ -205,31 +413,268 @@ public class MainViewController implements Initializable {
             }
         });
 
-        // Setup FilteredList and SortedList for the TableView
-        filteredTasks = new FilteredList<>(todoListManager.getTasks(), p -> true); 
-        SortedList<TodoItem> sortedTasks = new SortedList<>(filteredTasks);
-        sortedTasks.comparatorProperty().bind(tasksTableView.comparatorProperty());
-        tasksTableView.setItems(sortedTasks);
-        
         // Set up RowFactory for CSS pseudo-classes (completed, priority, due status)
         setupRowStyling();
+        setupSelectionMenu();
 
         // Configure Filter ComboBox
-        filterComboBox.getItems().addAll("All", "Active", "Completed");
+        filterComboBox.getItems().addAll(FILTERS.keySet());
         filterComboBox.setValue("All"); 
         filterComboBox.setOnAction(event -> handleFilterTasks());
 
-        // Load tasks from persistence layer
-        todoListManager.loadTasks(); 
-        updateSummaryLabel(); 
-        
-        // Initial log to confirm initialization
-        // System.out.println("MainViewController initialized."); // Removed - redundant
+        // Configure the search box; queries run once typing pauses
+        searchDebounce.setOnFinished(event -> handleSearch());
+
+        // Undo and redo with the usual shortcuts, unless a text field handles them itself
+        rootPane.addEventHandler(KeyEvent.KEY_PRESSED, event -> {
+            if (UNDO_KEY.match(event)) {
+                handleUndo(null);
+                event.consume();
+            } else if (REDO_KEY.match(event) || REDO_ALT_KEY.match(event)) {
+                handleRedo(null);
+                event.consume();
+            }
+        });
+        searchTextField.textProperty().addListener((observable, oldValue, newValue) -> searchDebounce.playFromStart());
+
+        // Configure the list selector; the default list is shown first and fills in while the window is up
+        listComboBox.getItems().setAll(workspace.getListNames());
+        listComboBox.setValue(TaskWorkspace.DEFAULT_LIST);
+        listComboBox.setOnAction(event -> handleSwitchList());
+        startApiServer();
+        openList(TaskWorkspace.DEFAULT_LIST);
+        watchStartupLoad(todoListManager);
+    }
+
+    /**
+     * Starts the local HTTP API on the port given by {@link TaskApiServer#PORT_PROPERTY}, if any.
+     * It only listens on the loopback address, since it has no authentication.
+     */
+    private void startApiServer() {
+        String port = System.getProperty(TaskApiServer.PORT_PROPERTY);
+        if (port == null || port.isBlank()) {
+            return;
+        }
+        try {
+            apiServer = new TaskApiServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(port.trim())),
+                    Platform::runLater);
+            apiServer.start();
+        } catch (IOException | IllegalArgumentException e) {
+            LOG.log(Level.WARNING, "Could not start the API server on port " + port + ": " + e.getMessage());
+            apiServer = null;
+        }
+    }
+
+    /**
+     * @return A future that completes on the JavaFX Application Thread once the list shown at startup is
+     *         loaded and editable.
+     */
+    public CompletableFuture<Void> getStartupLoad() {
+        return startupLoad;
+    }
+
+    private void watchStartupLoad(TodoListManager manager) {
+        if (!manager.isLoading()) {
+            startupLoad.complete(null);
+            return;
+        }
+        manager.loadingProperty().addListener(new ChangeListener<Boolean>() {
+            @Override
+            public void changed(ObservableValue<? extends Boolean> observable, Boolean wasLoading, Boolean isLoading) {
+                if (!isLoading) {
+                    observable.removeListener(this);
+                    startupLoad.complete(null);
+                }
+            }
+        });
+    }
+
+    /**
+     * Locks or unlocks everything that edits the shown list. While a list is loading, its rows are
+     * shown as they arrive but the list is not yet complete, so it must not be edited or saved.
+     * @param loading True while the shown list is loading.
+     */
+    private void setLoading(boolean loading) {
+        tasksTableView.setEditable(!loading);
+        tasksTableView.setPlaceholder(loading ? loadingPlaceholder : emptyPlaceholder);
+        tasksTableView.getContextMenu().getItems().forEach(item -> item.setDisable(loading));
+        descriptionTextField.setDisable(loading);
+        priorityComboBox.setDisable(loading);
+        dueDatePicker.setDisable(loading);
+        addTaskButton.setDisable(loading);
+        deleteCompletedButton.setDisable(loading);
+        if (transferVerb == null) {
+            importButton.setDisable(loading);
+            exportButton.setDisable(loading);
+        }
+    }
+
+    /**
+     * Opens a list in the workspace and shows it. If its file cannot be read, the empty list stays locked,
+     * so it is not edited or saved over the file, and the error is reported.
+     * @param name The name of the list.
+     */
+    private void openList(String name) {
+        TodoListManager manager = workspace.open(name, Platform::runLater);
+        showList(manager);
+        workspace.whenLoaded(name).exceptionally(error -> {
+            if (todoListManager == manager) {
+                Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                setLoading(true);
+                tasksTableView.setPlaceholder(failedPlaceholder);
+                showAlert(AlertType.ERROR, "List Not Loaded", "The list " + name + " could not be loaded: " + cause.getMessage());
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Shows the tasks of a list in the table, detaching the views and listeners of the previous list.
+     * @param manager The manager of the list to show.
+     */
+    private void showList(TodoListManager manager) {
+        detachList();
+        todoListManager = manager;
+        undoButton.disableProperty().bind(todoListManager.getHistory().canUndoProperty().not());
+        redoButton.disableProperty().bind(todoListManager.getHistory().canRedoProperty().not());
+        // Move "today" at midnight, for the overdue styling, counters, and filters; catches up if the list was hidden over midnight
+        todoListManager.getDueScheduler().addListener(dateUpdater);
+        todoListManager.getDueScheduler().start(Platform::runLater);
+        todoListManager.loadingProperty().addListener(loadingUpdater);
+        setLoading(todoListManager.isLoading());
+        searchTextField.setDisable(false);
+
+        // The rows of the previous list must not be edited any more; the new ones follow shortly
+        viewItems.clear();
+        tasksTableView.setItems(viewItems);
+
+        // Edits move single rows; other changes, and any change during a search, compute the rows again
+        todoListManager.getTasks().addListener(viewRefresher);
+        setSummaryListeners(todoListManager.getStatistics(), true);
+        if (apiServer != null) {
+            apiServer.show(todoListManager);
+        }
+
+        if (searchResult.get() != null) {
+            handleSearch();
+        } else {
+            handleFilterTasks();
+        }
+    }
+
+    /**
+     * Shows an archive in the table once it is loaded, detaching the previous list. Archives are edited in place:
+     * tasks can be added, edited, and deleted, but there is no search, sorting, undo, or import and export.
+     * @param name The name of the archive.
+     */
+    private void showArchive(String name) {
+        detachList();
+        viewItems.clear();
+        tasksTableView.setItems(viewItems);
+        setLoading(true);
+        disableListOnlyControls();
+        workspace.openArchive(name, Platform::runLater).whenComplete((list, error) -> {
+            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+            if (list != null) {
+                archive = list;
+                archive.addListener(archiveRefresher);
+                today.set(LocalDate.now());
+                setLoading(false);
+                disableListOnlyControls();
+                refreshView();
+            } else if (!(cause instanceof CancellationException)) {
+                tasksTableView.setPlaceholder(emptyPlaceholder);
+                showAlert(AlertType.ERROR, "Archive Not Opened", "The archive " + name + " could not be loaded: " + cause.getMessage());
+            }
+        });
+    }
+
+    /** Detaches the views and listeners of the shown list or archive. */
+    private void detachList() {
+        if (todoListManager != null) {
+            todoListManager.getTasks().removeListener(viewRefresher);
+            setSummaryListeners(todoListManager.getStatistics(), false);
+            todoListManager.loadingProperty().removeListener(loadingUpdater);
+            todoListManager.getDueScheduler().stop();
+            todoListManager.getDueScheduler().removeListener(dateUpdater);
+            todoListManager = null;
+        }
+        dueLabel.setText("");
+        if (archive != null) {
+            archive.removeListener(archiveRefresher);
+            archive = null;
+        }
+        undoButton.disableProperty().unbind();
+        redoButton.disableProperty().unbind();
+    }
+
+    /** Disables the controls that need the manager of a list, while an archive is shown or loading. */
+    private void disableListOnlyControls() {
+        searchTextField.setDisable(true);
+        undoButton.setDisable(true);
+        redoButton.setDisable(true);
+        importButton.setDisable(true);
+        exportButton.setDisable(true);
+        tasksTableView.getContextMenu().getItems().forEach(item -> item.setDisable(true));
+    }
+
+    private void setSummaryListeners(TaskStatistics statistics, boolean add) {
+        List<ObservableValue<Number>> counters = List.of(statistics.totalProperty(), statistics.pendingProperty(),
+                statistics.overdueProperty(), statistics.priorityCountProperty(Priority.HIGH));
+        for (ObservableValue<Number> counter : counters) {
+            if (add) {
+                counter.addListener(summaryUpdater);
+            } else {
+                counter.removeListener(summaryUpdater);
+            }
+        }
+    }
+
+    /**
+     * Handles a selection in the list ComboBox: opens the selected list or archive (loading it if needed) and shows it.
+     */
+    private void handleSwitchList() {
+        String name = listComboBox.getValue();
+        if (name == null || name.equals(workspace.getActiveList())) {
+            return;
+        }
+        if (workspace.isArchive(name)) {
+            showArchive(name);
+        } else {
+            openList(name);
+        }
+    }
+
+    /**
+     * Handles the "New List..." button: asks for a name, creates an empty list, and switches to it.
+     * @param event The action event.
+     */
+    @FXML
+    private void handleNewList(ActionEvent event) {
+        TextInputDialog dialog = new TextInputDialog();
+        dialog.setTitle("New List");
+        dialog.setHeaderText(null);
+        dialog.setContentText("Name of the new list:");
+        dialog.showAndWait().ifPresent(name -> {
+            try {
+                workspace.createList(name);
+            } catch (IllegalArgumentException e) {
+                showAlert(AlertType.WARNING, "Invalid Name", e.getMessage());
+                return;
+            } catch (IOException e) {
+                showAlert(AlertType.ERROR, "List Not Created", "The list could not be created: " + e.getMessage());
+                return;
+            }
+            listComboBox.getItems().setAll(workspace.getListNames());
+            listComboBox.setValue(name);
+        });
     }
 
     /**
      * Sets up the row factory for the tasks TableView to apply dynamic CSS styling
      * based on task properties like completion status, priority, and due date.
+     * Each row listens to the properties of its task and to {@code today}, so an edit restyles
+     * just the row showing the task instead of refreshing the whole table.
      */
     private void setupRowStyling() {
         final PseudoClass completedClass = PseudoClass.getPseudoClass("completed");
@@ -239,46 +684,67 @@ public class MainViewController implements Initializable {
         final PseudoClass overdueClass = PseudoClass.getPseudoClass("overdue");
 
         tasksTableView.setRowFactory(tableView -> new TableRow<TodoItem>() {
+            /** The task whose properties this row listens to. */
+            private TodoItem observed;
+            private final InvalidationListener restyle = observable -> applyStyle();
+            {
+                // Rows are dropped by the table when it shrinks; the weak listener lets them go
+                today.addListener(new WeakInvalidationListener(restyle));
+            }
+
             @Override
             protected void updateItem(TodoItem item, boolean empty) {
                 super.updateItem(item, empty);
-                // Reset all pseudo-classes first for the row
-                pseudoClassStateChanged(completedClass, false);
-                pseudoClassStateChanged(highPriorityClass, false);
-                pseudoClassStateChanged(mediumPriorityClass, false);
-                pseudoClassStateChanged(lowPriorityClass, false);
-                pseudoClassStateChanged(overdueClass, false);
-
-                if (item != null && !empty) {
-                    boolean isCompleted = item.isDone();
-                    pseudoClassStateChanged(completedClass, isCompleted);
-
-                    if (item.getPriority() != null) {
-                        switch (item.getPriority()) {
-                            case HIGH: pseudoClassStateChanged(highPriorityClass, true); break;
-                            case MEDIUM: pseudoClassStateChanged(mediumPriorityClass, true); break;
-                            case LOW: pseudoClassStateChanged(lowPriorityClass, true); break;
-                        }
+                TodoItem shown = empty ? null : item;
+                if (shown != observed) {
+                    if (observed != null) {
+                        observed.doneProperty().removeListener(restyle);
+                        observed.priorityProperty().removeListener(restyle);
+                        observed.dueDateProperty().removeListener(restyle);
                     }
-
-                    if (!isCompleted && item.getDueDate() != null) {
-                        LocalDate today = LocalDate.now();
-                        if (item.getDueDate().isBefore(today)) {
-                            pseudoClassStateChanged(overdueClass, true);
-                        }
+                    observed = shown;
+                    if (observed != null) {
+                        observed.doneProperty().addListener(restyle);
+                        observed.priorityProperty().addListener(restyle);
+                        observed.dueDateProperty().addListener(restyle);
                     }
-                } else {
-                    // Ensure no styles are applied to empty rows
-                    setStyle("");
                 }
+                applyStyle();
+            }
+
+            private void applyStyle() {
+                TodoItem item = observed;
+                boolean isCompleted = item != null && item.isDone();
+                Priority priority = item != null ? item.getPriority() : null;
+                LocalDate dueDate = item != null ? item.getDueDate() : null;
+                pseudoClassStateChanged(completedClass, isCompleted);
+                pseudoClassStateChanged(highPriorityClass, priority == Priority.HIGH);
+                pseudoClassStateChanged(mediumPriorityClass, priority == Priority.MEDIUM);
+                pseudoClassStateChanged(lowPriorityClass, priority == Priority.LOW);
+                pseudoClassStateChanged(overdueClass, !isCompleted && dueDate != null && dueDate.isBefore(today.get()));
             }
         });
     }
 
+    /**
+     * Follows a date change of the shown list: shows how many tasks became due or overdue, restyles overdue rows,
+     * and re-applies the filter, whose matches depend on the date. The counters and due buckets of the list were
+     * already moved by its due scheduler.
+     * @param date The new current date.
+     * @param dueToday The pending tasks that became due today.
+     * @param overdue The pending tasks that became overdue.
+     */
+    private void handleDateChanged(LocalDate date, List<TodoItem> dueToday, List<TodoItem> overdue) {
+        dueLabel.setText(dueToday.isEmpty() && overdue.isEmpty() ? ""
+                : dueToday.size() + " due today, " + overdue.size() + " newly overdue");
+        today.set(date);
+        handleFilterTasks();
+    }
+
     /**
      * Handles the "Add Task" button action. Validates input fields (description, priority, due date),
-     * adds a new task to the {@link TodoListManager} if valid, clears input fields,
-     * and updates the summary label.
+     * adds a new task to the {@link TodoListManager} if valid, and clears input fields.
+     * The summary label follows the model's statistics automatically.
      *
      * @param event The ActionEvent triggered by the button click.
      */
@@ -302,78 +768,357 @@ public class MainViewController implements Initializable {
             return;
         }
 
-        todoListManager.addTask(description, priority, dueDate);
-        // todoListManager.saveTasks(); // Save if save-on-change is active
+        if (archive != null) {
+            archive.add(new TodoItem(description, priority, dueDate));
+        } else {
+            todoListManager.addTask(description, priority, dueDate);
+        }
 
         descriptionTextField.clear();
         priorityComboBox.setValue(null);
         dueDatePicker.setValue(null);
-        updateSummaryLabel();
     }
 
     /**
      * Handles the "Delete Completed" button action.
-     * Removes all tasks marked as done from the {@link TodoListManager}
-     * and updates the summary label.
+     * Removes all tasks marked as done from the {@link TodoListManager}.
      *
      * @param event The ActionEvent triggered by the button click.
      */
     @FXML
     private void handleDeleteCompleted(ActionEvent event) {
-        java.util.List<TodoItem> toRemove = new java.util.ArrayList<>();
-        for (TodoItem item : todoListManager.getTasks()) { // Iterate over original list for collection
-            if (item.isDone()) {
-                toRemove.add(item);
+        if (archive != null) {
+            if (archive.removeDone() == 0) {
+                showAlert(AlertType.INFORMATION, "No Tasks", "No completed tasks to delete.");
             }
-        }
-        if (!toRemove.isEmpty()) {
-            // Optional: Confirmation Dialog before deleting multiple items
-            // Alert confirmAlert = new Alert(Alert.AlertType.CONFIRMATION, "Delete all " + toRemove.size() + " completed tasks?", javafx.scene.control.ButtonType.YES, javafx.scene.control.ButtonType.NO);
-            // confirmAlert.showAndWait().ifPresent(response -> {
-            // if (response == javafx.scene.control.ButtonType.YES) {
-            // toRemove.forEach(todoListManager::removeTask); // This modifies the underlying list of filteredTasks
-            // updateSummaryLabel();
-            // todoListManager.saveTasks(); 
-            // }
-            // });
-            toRemove.forEach(todoListManager::removeTask); 
-            updateSummaryLabel();
-            // todoListManager.saveTasks(); 
+        } else if (todoListManager.getStatistics().getCompleted() > 0) {
+            // Removed in one pass over the list with a single change event
+            todoListManager.removeIf(TodoItem::isDone);
         } else {
             showAlert(AlertType.INFORMATION, "No Tasks", "No completed tasks to delete.");
         }
     }
+
+    /**
+     * Handles the "Undo" button action and shortcut. Reverts the latest change of the shown list,
+     * e.g. an edit or all tasks removed by "Delete Completed".
+     * @param event The action event, or null for the shortcut.
+     */
+    @FXML
+    private void handleUndo(ActionEvent event) {
+        if (todoListManager != null && !todoListManager.isLoading()) {
+            todoListManager.getHistory().undo();
+        }
+    }
+
+    /**
+     * Handles the "Redo" button action and shortcut. Applies the latest undone change of the shown list again.
+     * @param event The action event, or null for the shortcut.
+     */
+    @FXML
+    private void handleRedo(ActionEvent event) {
+        if (todoListManager != null && !todoListManager.isLoading()) {
+            todoListManager.getHistory().redo();
+        }
+    }
+
+    /**
+     * Handles the "Import..." button. Imports the chosen task files (CSV, binary, or JSON Lines) into
+     * the list on background threads through {@link TaskTransfer}; duplicates of existing tasks are skipped.
+     * @param event The action event.
+     */
+    @FXML
+    private void handleImport(ActionEvent event) {
+        FileChooser chooser = taskFileChooser("Import Tasks");
+        List<File> files = chooser.showOpenMultipleDialog(rootPane.getScene().getWindow());
+        if (files == null || files.isEmpty()) {
+            return;
+        }
+        List<Path> paths = new ArrayList<>(files.size());
+        for (File file : files) {
+            paths.add(file.toPath());
+        }
+        startTransfer("Importing");
+        taskTransfer.importFiles(paths, todoListManager, Platform::runLater, this::onTransferProgress)
+                .whenComplete((result, error) -> Platform.runLater(() -> finishTransfer("Imported", result, error)));
+    }
+
+    /**
+     * Handles the "Export..." button. Writes all tasks to the chosen file in the background,
+     * in the format given by its extension.
+     * @param event The action event.
+     */
+    @FXML
+    private void handleExport(ActionEvent event) {
+        FileChooser chooser = taskFileChooser("Export Tasks");
+        File file = chooser.showSaveDialog(rootPane.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+        Path target = file.toPath();
+        startTransfer("Exporting");
+        taskTransfer.exportFiles(todoListManager.snapshot(), record -> target, this::onTransferProgress)
+                .whenComplete((result, error) -> Platform.runLater(() -> finishTransfer("Exported", result, error)));
+    }
+
+    private static FileChooser taskFileChooser(String title) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle(title);
+        chooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("Task files", "*.csv", "*.bin", "*.jsonl"),
+                new FileChooser.ExtensionFilter("CSV", "*.csv"),
+                new FileChooser.ExtensionFilter("Binary", "*.bin"),
+                new FileChooser.ExtensionFilter("JSON Lines", "*.jsonl"));
+        return chooser;
+    }
+
+    private void startTransfer(String verb) {
+        transferVerb = verb;
+        transferProgress.clear();
+        importButton.setDisable(true);
+        exportButton.setDisable(true);
+        // Merges go to the list the transfer started on
+        listComboBox.setDisable(true);
+        newListButton.setDisable(true);
+        transferProgressBar.setProgress(0);
+        transferProgressBar.setVisible(true);
+        transferProgressBar.setManaged(true);
+        transferLabel.setText(verb + "...");
+    }
+
+    /** Called from the transfer threads; the display is updated at most once per FX event. */
+    private void onTransferProgress(TransferProgress progress) {
+        transferProgress.put(progress.file(), progress);
+        if (transferRefreshScheduled.compareAndSet(false, true)) {
+            Platform.runLater(() -> {
+                transferRefreshScheduled.set(false);
+                if (transferVerb != null) {
+                    updateTransferDisplay();
+                }
+            });
+        }
+    }
+
+    private void updateTransferDisplay() {
+        int finished = 0;
+        long tasks = 0;
+        for (TransferProgress progress : transferProgress.values()) {
+            if (progress.isFinished()) {
+                finished++;
+            }
+            tasks += progress.tasks();
+        }
+        int files = transferProgress.size();
+        transferProgressBar.setProgress(files == 0 ? 0 : (double) finished / files);
+        transferLabel.setText(transferVerb + ": " + finished + " of " + files + " files, " + tasks + " tasks");
+    }
+
+    private void finishTransfer(String verb, List<TransferProgress> result, Throwable error) {
+        transferVerb = null;
+        importButton.setDisable(todoListManager.isLoading());
+        exportButton.setDisable(todoListManager.isLoading());
+        listComboBox.setDisable(false);
+        newListButton.setDisable(false);
+        transferProgressBar.setVisible(false);
+        transferProgressBar.setManaged(false);
+        if (error != null) {
+            transferLabel.setText(verb + " failed");
+            showAlert(AlertType.ERROR, "Transfer Failed", error.getMessage());
+            return;
+        }
+        long tasks = 0;
+        long duplicates = 0;
+        StringBuilder failures = new StringBuilder();
+        for (TransferProgress progress : result) {
+            tasks += "Imported".equals(verb) ? progress.merged() : progress.tasks();
+            duplicates += progress.duplicates();
+            if (progress.status() == TransferProgress.Status.FAILED) {
+                failures.append(progress.file().getFileName()).append(": ").append(progress.error()).append('\n');
+            }
+        }
+        transferLabel.setText(verb + " " + tasks + " tasks" + (duplicates > 0 ? " (" + duplicates + " duplicates skipped)" : ""));
+        if (failures.length() > 0) {
+            showAlert(AlertType.WARNING, "Some Files Failed", failures.toString());
+        }
+    }
+
+    /**
+     * Sets up the context menu of the tasks TableView, which applies bulk operations
+     * of the {@link TodoListManager} to all selected tasks.
+     */
+    private void setupSelectionMenu() {
+        tasksTableView.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+
+        MenuItem markDoneItem = new MenuItem("Mark Done");
+        markDoneItem.setOnAction(event -> todoListManager.markAllDone(selectedTasks(), true));
+        MenuItem markNotDoneItem = new MenuItem("Mark Not Done");
+        markNotDoneItem.setOnAction(event -> todoListManager.markAllDone(selectedTasks(), false));
+        Menu priorityMenu = new Menu("Set Priority");
+        for (Priority priority : Priority.values()) {
+            MenuItem priorityItem = new MenuItem(priority.toString());
+            priorityItem.setOnAction(event -> todoListManager.setPriority(selectedTasks(), priority));
+            priorityMenu.getItems().add(priorityItem);
+        }
+        MenuItem deleteItem = new MenuItem("Delete");
+        deleteItem.setOnAction(event -> {
+            Set<TodoItem> selected = new HashSet<>(selectedTasks());
+            todoListManager.removeIf(selected::contains);
+        });
+        tasksTableView.setContextMenu(new ContextMenu(markDoneItem, markNotDoneItem, priorityMenu, new SeparatorMenuItem(), deleteItem));
+    }
+
+    /**
+     * @return A copy of the tasks selected in the TableView.
+     */
+    private List<TodoItem> selectedTasks() {
+        return new ArrayList<>(tasksTableView.getSelectionModel().getSelectedItems());
+    }
     
     /**
      * Handles changes in the filter ComboBox selection.
-     * Updates the predicate of the {@link FilteredList} to show tasks
-     * based on the selected filter ("All", "Active", "Completed")
-     * and updates the summary label.
+     * Requests the rows matching the selected {@link TaskQuery} (see {@code FILTERS}) from the
+     * {@link TaskViewEngine}; the table and the summary label are updated once they arrive.
      */
     private void handleFilterTasks() {
-        String filterType = filterComboBox.getValue();
-        if (filterType == null) filterType = "All"; // Default to "All" if null
-
-        final String selectedFilter = filterType; 
-        filteredTasks.setPredicate(item -> {
-            if (selectedFilter.equals("Completed")) {
-                return item.isDone();
-            } else if (selectedFilter.equals("Active")) {
-                return !item.isDone();
+        refreshView();
+    }
+
+    /**
+     * Recomputes the rows of the table for the current filter, search, and column sort order in the
+     * background and swaps them in when done. A newer request cancels an older one, so only the latest
+     * result reaches the table. Without a column sort order, search matches are ranked by relevance.
+     */
+    private void refreshView() {
+        refreshScheduler.cancel(viewRefresh);
+        refreshScheduler.cancel(editRefresh);
+        // The computation sees all edits made so far
+        editedTasks.clear();
+        if (archive != null) {
+            // Archives are filtered by a scan of their columns; the table materializes only the visible rows
+            Metrics.Sample sample = Metrics.start(Metrics.Operation.FILTER);
+            tasksTableView.setItems(archive.select(selectedQuery(), today.get()));
+            sample.stop();
+            updateSummaryLabel();
+            return;
+        }
+        if (todoListManager == null) {
+            return;
+        }
+        viewComputing = true;
+        requestedOrder = sortOrder();
+        Metrics.Sample sample = Metrics.start(Metrics.Operation.FILTER);
+        viewEngine.compute(todoListManager, selectedQuery(), searchResult.get(), requestedOrder).whenComplete((items, error) -> {
+            if (items != null && todoListManager != null) {
+                viewComputing = false;
+                viewItems.setAll(items);
+                sample.stop();
+                applyEdits();
+                updateSummaryLabel();
+            } else if (!(error instanceof CancellationException)) {
+                viewComputing = false;
+                LOG.log(Level.WARNING, "Could not compute the task view: " + error.getMessage());
             }
-            return true; // "All"
         });
-        updateSummaryLabel();
+    }
+
+    /**
+     * Moves the rows of the tasks edited since the rows were computed, one task at a time, so a click on a
+     * checkbox of a filtered or sorted table does not compute the whole view again. Many edits at once (e.g.
+     * a bulk operation) compute it again. Edits made while the rows are computed wait for the result.
+     */
+    private void applyEdits() {
+        if (viewComputing || editedTasks.isEmpty() || todoListManager == null) {
+            return;
+        }
+        List<TodoItem> edited = new ArrayList<>(editedTasks);
+        editedTasks.clear();
+        if (!viewEngine.applyEdits(viewItems, edited, todoListManager, selectedQuery(), requestedOrder)) {
+            refreshView();
+        }
+    }
+
+    /**
+     * @return The column sort order of the table, most significant column first.
+     */
+    private List<TaskViewEngine.SortKey> sortOrder() {
+        List<TaskViewEngine.SortKey> order = new ArrayList<>();
+        for (TableColumn<TodoItem, ?> column : tasksTableView.getSortOrder()) {
+            TaskViewEngine.SortField field = sortFields.get(column);
+            if (field != null) {
+                order.add(new TaskViewEngine.SortKey(field, column.getSortType() == TableColumn.SortType.ASCENDING));
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Runs the text of the search box against the model's {@link todolistapp.model.TaskSearchIndex}
+     * and narrows the current filter to the matches. Called once typing pauses (see {@code SEARCH_DEBOUNCE}).
+     */
+    private void handleSearch() {
+        if (todoListManager == null) {
+            return;
+        }
+        String text = searchTextField.getText();
+        searchResult.set(text == null || text.isBlank() ? null : todoListManager.getSearchIndex().search(text));
+        handleFilterTasks();
+    }
+
+    /**
+     * @return The query of the selected filter, defaulting to "All".
+     */
+    private TaskQuery selectedQuery() {
+        String filterType = filterComboBox.getValue();
+        return FILTERS.getOrDefault(filterType, TaskQuery.ALL);
     }
 
     /**
      * Updates the summary label to display the count of pending tasks
      * and the total number of tasks currently visible in the TableView (respecting filters).
+     * The basic filters read the model's {@link TaskStatistics} in O(1); other filters are
+     * counted by bitset intersection in the {@link TaskIndex}. During a search only the matches are counted.
+     * Archives are counted by a scan of their columns.
      */
     private void updateSummaryLabel() {
-        long pendingTasks = filteredTasks.stream().filter(item -> !item.isDone()).count();
-        long totalTasksInView = filteredTasks.size();
+        if (todoListManager == null && archive == null) {
+            return;
+        }
+        Metrics.Sample sample = Metrics.start(Metrics.Operation.SUMMARY);
+        TaskQuery query = selectedQuery();
+        long pendingTasks;
+        long totalTasksInView;
+        if (archive != null) {
+            totalTasksInView = archive.count(query, today.get());
+            pendingTasks = Boolean.TRUE.equals(query.getDone()) ? 0 : archive.count(query.withDone(false), today.get());
+            summaryLabel.setText(pendingTasks + " pending / " + totalTasksInView + " tasks in view");
+            sample.stop();
+            return;
+        }
+        TaskStatistics statistics = todoListManager.getStatistics();
+        if (searchResult.get() != null) {
+            pendingTasks = 0;
+            for (TodoItem item : viewItems) {
+                if (!item.isDone()) {
+                    pendingTasks++;
+                }
+            }
+            totalTasksInView = viewItems.size();
+        } else if (query == TaskQuery.COMPLETED) {
+            pendingTasks = 0;
+            totalTasksInView = statistics.getCompleted();
+        } else if (query == TaskQuery.ACTIVE) {
+            pendingTasks = statistics.getPending();
+            totalTasksInView = pendingTasks;
+        } else if (query == TaskQuery.ALL) {
+            pendingTasks = statistics.getPending();
+            totalTasksInView = statistics.getTotal();
+        } else {
+            TaskIndex index = todoListManager.getIndex();
+            totalTasksInView = index.count(query);
+            pendingTasks = Boolean.TRUE.equals(query.getDone()) ? 0 : index.count(query.withDone(false));
+        }
         summaryLabel.setText(pendingTasks + " pending / " + totalTasksInView + " tasks in view");
+        sample.stop();
     }
 
     /**
@@ -393,14 +1138,21 @@ public class MainViewController implements Initializable {
     /**
      * Handles application exit operations. This method is intended to be called
      * by the main application class when the application is closing.
-     * It triggers the saving of tasks through the {@link TodoListManager}.
+     * It saves the tasks in the background through the {@link TodoListManager}
+     * and waits at most {@code EXIT_SAVE_TIMEOUT_SECONDS} for the write to finish.
      */
     public void handleAppExit() {
+        if (apiServer != null) {
+            apiServer.stop();
+        }
         if (todoListManager != null) {
-            todoListManager.saveTasks();
-            System.out.println("MainViewController: Tasks saved on application exit.");
+            todoListManager.getDueScheduler().stop();
+        }
+        // Unsaved lists and the open archive are saved and the files of evicted lists finished before the managers close
+        if (workspace.close(EXIT_SAVE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            LOG.log(Level.INFO, "Tasks saved on application exit.");
         } else {
-            System.err.println("MainViewController: TodoListManager was null during app exit, tasks not saved.");
+            LOG.log(Level.WARNING, "Saving tasks did not finish within " + EXIT_SAVE_TIMEOUT_SECONDS + " seconds.");
         }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,63 @@
+package todolistapp.controller;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import javafx.animation.AnimationTimer;
+
+/**
+ * Coalesces UI refreshes into at most one run per animation pulse.
+ * <p>
+ * Model changes can arrive many times per frame (e.g. while tasks are toggled in quick succession),
+ * but the screen only changes once per pulse. A refresh requested with {@link #schedule(Runnable)}
+ * runs once at the start of the next pulse, however often it was requested before. The timer only
+ * runs while refreshes are pending, so an idle view costs nothing.
+ * Must be used on the JavaFX Application Thread.
+ */
+final class RefreshScheduler {
+
+    /** Pending refreshes in request order; the same runnable is only kept once. */
+    private final Set<Runnable> pending = new LinkedHashSet<>();
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            runPending();
+        }
+    };
+    private boolean running;
+
+    /**
+     * Requests a refresh for the next pulse.
+     * @param refresh The refresh; pass the same instance each time so repeated requests coalesce.
+     */
+    void schedule(Runnable refresh) {
+        pending.add(refresh);
+        if (!running) {
+            running = true;
+            timer.start();
+        }
+    }
+
+    /**
+     * Drops a pending refresh, e.g. because its target was replaced.
+     * @param refresh The refresh to drop.
+     */
+    void cancel(Runnable refresh) {
+        pending.remove(refresh);
+    }
+
+    private void runPending() {
+        if (pending.isEmpty()) {
+            timer.stop();
+            running = false;
+            return;
+        }
+        // A refresh may request another one; that one runs in the following pulse
+        List<Runnable> refreshes = new ArrayList<>(pending);
+        pending.clear();
+        for (Runnable refresh : refreshes) {
+            refresh.run();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package todolistapp.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+/**
+ * Periodic JFR event with the current values of the {@link Metrics.Counter}s.
+ */
+@Name("todolistapp.Counters")
+@Label("Todo List Counters")
+@Category("Todo List")
+@Description("Tasks added, removed, and edited, and malformed CSV lines skipped, since startup")
+@Period("1 s")
+@StackTrace(false)
+final class CountersEvent extends Event {
+
+    @Label("Tasks Added")
+    long tasksAdded;
+
+    @Label("Tasks Removed")
+    long tasksRemoved;
+
+    @Label("Tasks Edited")
+    long tasksEdited;
+
+    @Label("Malformed Lines Skipped")
+    long malformedLinesSkipped;
+}
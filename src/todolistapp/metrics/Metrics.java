@@ -0,0 +1,201 @@
+package todolistapp.metrics;
+
+import java.lang.System.Logger.Level;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Process-wide timers and counters for the hot paths of the application.
+ * <p>
+ * Timers are started with {@link #start(Operation)} and stopped with {@link Sample#stop()};
+ * counters are bumped with {@link #increment(Counter)}. Both are lock-free and may be used from any thread.
+ * After {@link #register()} the values can be read through JMX (e.g. with JConsole, under {@code todolistapp})
+ * and every timed operation is also a {@code todolistapp.Operation} event in Java Flight Recorder recordings,
+ * next to a periodic {@code todolistapp.Counters} event.
+ */
+public final class Metrics {
+
+    private static final System.Logger LOG = System.getLogger(Metrics.class.getName());
+
+    /** The timed operations. */
+    public enum Operation {
+        /** Loading the task file, including journal recovery. */
+        LOAD,
+        /** Saving the task file, from the request until the file is on disk. */
+        SAVE,
+        /** Applying a filter or search to the table. */
+        FILTER,
+        /** Recomputing the summary label. */
+        SUMMARY,
+        /** Synchronizing a task list with a replica, from the request until both sides are written. */
+        SYNC,
+        /** CSS and layout of one JavaFX pulse. */
+        PULSE
+    }
+
+    /** The counted events. */
+    public enum Counter {
+        /** Tasks added, not counting loaded tasks. */
+        TASKS_ADDED,
+        /** Tasks removed. */
+        TASKS_REMOVED,
+        /** Edits of a task field. */
+        TASKS_EDITED,
+        /** Malformed lines of CSV or JSON Lines task files skipped while loading. */
+        MALFORMED_LINES_SKIPPED
+    }
+
+    private static final String DOMAIN = "todolistapp";
+
+    private static final OperationTimer[] TIMERS = new OperationTimer[Operation.values().length];
+    private static final LongAdder[] COUNTERS = new LongAdder[Counter.values().length];
+    private static boolean registered;
+
+    static {
+        for (int i = 0; i < TIMERS.length; i++) {
+            TIMERS[i] = new OperationTimer();
+        }
+        for (int i = 0; i < COUNTERS.length; i++) {
+            COUNTERS[i] = new LongAdder();
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Starts timing an operation.
+     * @param operation The operation.
+     * @return The running sample; call {@link Sample#stop()} (or close it) when the operation is done.
+     */
+    public static Sample start(Operation operation) {
+        return new Sample(operation);
+    }
+
+    /**
+     * Counts one event.
+     * @param counter The counter to increment.
+     */
+    public static void increment(Counter counter) {
+        COUNTERS[counter.ordinal()].increment();
+    }
+
+    /**
+     * Counts several events.
+     * @param counter The counter to increase.
+     * @param amount The number of events.
+     */
+    public static void add(Counter counter, long amount) {
+        COUNTERS[counter.ordinal()].add(amount);
+    }
+
+    /**
+     * @param counter A counter.
+     * @return Its current value.
+     */
+    public static long get(Counter counter) {
+        return COUNTERS[counter.ordinal()].sum();
+    }
+
+    /**
+     * @param operation An operation.
+     * @return The timer recording it.
+     */
+    public static OperationTimer timer(Operation operation) {
+        return TIMERS[operation.ordinal()];
+    }
+
+    /**
+     * Registers the timers and counters as MBeans on the platform MBean server and the periodic
+     * counters event with Flight Recorder. Calling it again has no effect.
+     */
+    public static synchronized void register() {
+        if (registered) {
+            return;
+        }
+        registered = true;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            for (Operation operation : Operation.values()) {
+                server.registerMBean(new StandardMBean(timer(operation), OperationTimerMXBean.class, true),
+                        new ObjectName(DOMAIN + ":type=Timer,name=" + operation.name().toLowerCase(Locale.ROOT)));
+            }
+            server.registerMBean(new StandardMBean(new Counters(), TaskCountersMXBean.class, true),
+                    new ObjectName(DOMAIN + ":type=Counters"));
+        } catch (JMException e) {
+            LOG.log(Level.WARNING, "Error registering metrics MBeans: " + e.getMessage());
+        }
+        FlightRecorder.addPeriodicEvent(CountersEvent.class, () -> {
+            CountersEvent event = new CountersEvent();
+            event.tasksAdded = get(Counter.TASKS_ADDED);
+            event.tasksRemoved = get(Counter.TASKS_REMOVED);
+            event.tasksEdited = get(Counter.TASKS_EDITED);
+            event.malformedLinesSkipped = get(Counter.MALFORMED_LINES_SKIPPED);
+            event.commit();
+        });
+    }
+
+    /**
+     * One running timing of an operation. Use it once, on any thread.
+     */
+    public static final class Sample implements AutoCloseable {
+        private final Operation operation;
+        private final long startNanos = System.nanoTime();
+        private final OperationEvent event;
+
+        private Sample(Operation operation) {
+            this.operation = operation;
+            OperationEvent candidate = new OperationEvent();
+            if (candidate.isEnabled()) {
+                candidate.operation = operation.name().toLowerCase(Locale.ROOT);
+                candidate.begin();
+                event = candidate;
+            } else {
+                event = null;
+            }
+        }
+
+        /** Records the time since the sample was started. */
+        public void stop() {
+            timer(operation).record(System.nanoTime() - startNanos);
+            if (event != null) {
+                event.commit();
+            }
+        }
+
+        /** Same as {@link #stop()}, for try-with-resources. */
+        @Override
+        public void close() {
+            stop();
+        }
+    }
+
+    /** The counters as one MBean. */
+    private static final class Counters implements TaskCountersMXBean {
+        @Override
+        public long getTasksAdded() {
+            return get(Counter.TASKS_ADDED);
+        }
+
+        @Override
+        public long getTasksRemoved() {
+            return get(Counter.TASKS_REMOVED);
+        }
+
+        @Override
+        public long getTasksEdited() {
+            return get(Counter.TASKS_EDITED);
+        }
+
+        @Override
+        public long getMalformedLinesSkipped() {
+            return get(Counter.MALFORMED_LINES_SKIPPED);
+        }
+    }
+}
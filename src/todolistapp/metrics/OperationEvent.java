@@ -0,0 +1,22 @@
+package todolistapp.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for one timed {@link Metrics.Operation}; the event duration is the operation's duration.
+ */
+@Name("todolistapp.Operation")
+@Label("Todo List Operation")
+@Category("Todo List")
+@Description("A timed load, save, filter, summary update, or FX pulse")
+@StackTrace(false)
+final class OperationEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+}
@@ -0,0 +1,126 @@
+package todolistapp.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram for one kind of operation.
+ * <p>
+ * Durations are counted in log-linear buckets: four buckets per power of two of nanoseconds,
+ * so recording is a few atomic increments without allocation, and percentiles are accurate
+ * to within 25% over the whole range from nanoseconds to minutes.
+ * May be recorded to from any thread.
+ */
+public final class OperationTimer implements OperationTimerMXBean {
+
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Records one operation.
+     * @param nanos The duration of the operation in nanoseconds; negative values count as 0.
+     */
+    public void record(long nanos) {
+        nanos = Math.max(0, nanos);
+        buckets.incrementAndGet(bucketOf(nanos));
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public double getTotalMillis() {
+        return totalNanos.sum() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getMeanMillis() {
+        long n = count.sum();
+        return n == 0 ? 0 : totalNanos.sum() / NANOS_PER_MILLI / n;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return maxNanos.get() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP50Millis() {
+        return percentileNanos(0.50) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP90Millis() {
+        return percentileNanos(0.90) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP99Millis() {
+        return percentileNanos(0.99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        totalNanos.reset();
+        maxNanos.set(0);
+    }
+
+    /**
+     * @param fraction The percentile as a fraction, e.g. 0.99.
+     * @return The upper bound of the bucket holding the percentile, capped at the maximum; 0 if nothing was recorded.
+     */
+    long percentileNanos(double fraction) {
+        long total = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            total += buckets.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(fraction * total);
+        long seen = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+
+    /** Bucket index: the position of the highest set bit, refined by the next {@value #SUB_BUCKET_BITS} bits. */
+    private static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        long lower = (long) (SUB_BUCKETS + sub) << (exponent - SUB_BUCKET_BITS);
+        return lower + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
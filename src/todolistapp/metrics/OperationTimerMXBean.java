@@ -0,0 +1,32 @@
+package todolistapp.metrics;
+
+/**
+ * JMX view of an {@link OperationTimer}, registered as {@code todolistapp:type=Timer,name=<operation>}.
+ * All times are in milliseconds; percentiles are accurate to within 25%.
+ */
+public interface OperationTimerMXBean {
+
+    /** @return The number of recorded operations. */
+    long getCount();
+
+    /** @return The sum of all recorded durations. */
+    double getTotalMillis();
+
+    /** @return The mean duration, or 0 if nothing was recorded. */
+    double getMeanMillis();
+
+    /** @return The longest recorded duration. */
+    double getMaxMillis();
+
+    /** @return The median duration. */
+    double getP50Millis();
+
+    /** @return The 90th percentile of the durations. */
+    double getP90Millis();
+
+    /** @return The 99th percentile of the durations. */
+    double getP99Millis();
+
+    /** Discards all recorded durations. */
+    void reset();
+}
@@ -0,0 +1,19 @@
+package todolistapp.metrics;
+
+/**
+ * JMX view of the {@link Metrics.Counter}s, registered as {@code todolistapp:type=Counters}.
+ */
+public interface TaskCountersMXBean {
+
+    /** @return The number of tasks added since startup, not counting loaded tasks. */
+    long getTasksAdded();
+
+    /** @return The number of tasks removed since startup. */
+    long getTasksRemoved();
+
+    /** @return The number of task field edits since startup. */
+    long getTasksEdited();
+
+    /** @return The number of malformed lines in task files skipped while loading. */
+    long getMalformedLinesSkipped();
+}
@@ -0,0 +1,57 @@
+package todolistapp.model;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Helper for replacing data files without ever exposing a partially written file.
+ * Content is written to a temporary file in the target's directory, forced to disk,
+ * and then renamed over the target.
+ */
+final class AtomicFiles {
+
+    private AtomicFiles() {
+    }
+
+    /**
+     * Writes content produced by {@code writer} to {@code target}, replacing it atomically.
+     * @param target The file to replace.
+     * @param writer Writes the new content to the given channel of the temporary file.
+     * @throws IOException If writing or renaming fails. The previous target is left untouched in that case.
+     */
+    static void replace(Path target, ChannelWriter writer) throws IOException {
+        Path absoluteTarget = target.toAbsolutePath();
+        Path temp = Files.createTempFile(absoluteTarget.getParent(), absoluteTarget.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                writer.write(channel);
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, absoluteTarget, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, absoluteTarget, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Produces the content of a file.
+     */
+    @FunctionalInterface
+    interface ChannelWriter {
+        /**
+         * Writes the complete content to the channel.
+         * @param channel The channel of the temporary file, positioned at its start.
+         * @throws IOException If writing fails.
+         */
+        void write(FileChannel channel) throws IOException;
+    }
+}
@@ -0,0 +1,348 @@
+package todolistapp.model;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link TaskStore} for a compact, versioned binary snapshot format.
+ * <p>
+ * Layout (big-endian): a header of {@code int magic, short version, int count}, followed by
+ * {@code count} records of {@code byte flags, long id, long lastModified, int dueEpochDay, int creationEpochDay,
+ * int descriptionLength, UTF-8 description bytes}. The flags pack the completion status (bit 0),
+ * the priority ordinal (bits 1-2), and whether the due and creation dates are present (bits 3 and 4).
+ * Version 1 files, whose records have no ID and last-modified time, are still read; their tasks get new IDs.
+ * <p>
+ * Dates need no text parsing and descriptions no unescaping, so loading is a straight scan
+ * through a reused {@link ByteBuffer} filled from a {@link FileChannel}.
+ */
+public class BinaryTaskStore implements TaskStore {
+
+    private static final int MAGIC = 0x544F4442; // "TODB"
+    private static final short VERSION = 2;
+    /** The version without IDs and last-modified times. */
+    private static final short VERSION_WITHOUT_IDS = 1;
+    private static final int HEADER_SIZE = 4 + 2 + 4;
+    private static final int RECORD_FIXED_SIZE = 1 + 8 + 8 + 4 + 4 + 4;
+    private static final int RECORD_FIXED_SIZE_WITHOUT_IDS = 1 + 4 + 4 + 4;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /** Epoch day passed to {@link TodoItem} for no date. */
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    private static final int DONE_BIT = 1;
+    private static final int PRIORITY_SHIFT = 1;
+    private static final int PRIORITY_MASK = 0b11;
+    private static final int HAS_DUE_BIT = 1 << 3;
+    private static final int HAS_CREATION_BIT = 1 << 4;
+    private static final TodoItem.Priority[] PRIORITIES = TodoItem.Priority.values();
+
+    private final Path path;
+
+    /**
+     * Creates a store for the given binary file.
+     * @param path The data file.
+     */
+    public BinaryTaskStore(Path path) {
+        this.path = path;
+    }
+
+    @Override
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public List<TodoItem> load() throws IOException {
+        if (!Files.exists(path)) {
+            return new ArrayList<>();
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            boolean withIds = readHeader(channel, buffer) == VERSION;
+            int count = buffer.getInt();
+            List<TodoItem> items = new ArrayList<>(count);
+            byte[] scratch = new byte[256];
+            for (int i = 0; i < count; i++) {
+                ensure(channel, buffer, withIds ? RECORD_FIXED_SIZE : RECORD_FIXED_SIZE_WITHOUT_IDS);
+                int flags = buffer.get();
+                long id = withIds ? buffer.getLong() : TaskIds.NONE;
+                long lastModified = withIds ? buffer.getLong() : 0;
+                int due = buffer.getInt();
+                int creation = buffer.getInt();
+                int length = buffer.getInt();
+                if (length > scratch.length) {
+                    scratch = new byte[Math.max(length, scratch.length * 2)];
+                }
+                readFully(channel, buffer, scratch, length);
+
+                items.add(item(flags, id, lastModified, due, creation, new String(scratch, 0, length, StandardCharsets.UTF_8)));
+            }
+            return items;
+        }
+    }
+
+    /**
+     * Opens the file for reading in chunks of whole records, for {@link TaskTransfer}.
+     * @return A reader positioned at the first record.
+     * @throws IOException If the file cannot be opened or is not a binary task file.
+     */
+    TaskFileReader openChunks() throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new ChunkReader(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static TodoItem item(int flags, long id, long lastModified, int due, int creation, String description) {
+        return new TodoItem(description, (flags & DONE_BIT) != 0, PRIORITIES[(flags >> PRIORITY_SHIFT) & PRIORITY_MASK],
+                (flags & HAS_DUE_BIT) != 0 ? due : NO_DATE,
+                (flags & HAS_CREATION_BIT) != 0 ? creation : NO_DATE, id, lastModified);
+    }
+
+    /**
+     * Loads the file into columns for a {@link ColumnarTaskList}; descriptions are copied from the read buffer
+     * straight into the off-heap arena, without decoding them or creating an object per task.
+     * @return The loaded columns; empty if the file does not exist.
+     * @throws IOException If the file cannot be read or is not a binary task file.
+     */
+    TaskColumns loadColumns() throws IOException {
+        if (!Files.exists(path)) {
+            return new TaskColumns(0);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            boolean withIds = readHeader(channel, buffer) == VERSION;
+            int count = buffer.getInt();
+            TaskColumns columns = new TaskColumns(count);
+            DescriptionArena arena = columns.arena();
+            for (int i = 0; i < count; i++) {
+                ensure(channel, buffer, withIds ? RECORD_FIXED_SIZE : RECORD_FIXED_SIZE_WITHOUT_IDS);
+                int flags = buffer.get();
+                long id = withIds ? buffer.getLong() : TaskIds.next();
+                long lastModified = withIds ? buffer.getLong() : 0;
+                int due = buffer.getInt();
+                int creation = buffer.getInt();
+                int length = buffer.getInt();
+                long address;
+                if (length <= buffer.capacity()) {
+                    ensure(channel, buffer, length);
+                    address = arena.write(buffer, length);
+                } else {
+                    byte[] description = new byte[length];
+                    readFully(channel, buffer, description, length);
+                    address = arena.write(description);
+                }
+                columns.append(address, length, (flags & DONE_BIT) != 0, (flags >> PRIORITY_SHIFT) & PRIORITY_MASK,
+                        (flags & HAS_DUE_BIT) != 0 ? due : NO_DATE,
+                        (flags & HAS_CREATION_BIT) != 0 ? creation : NO_DATE, id, lastModified);
+                TaskIds.observe(id);
+            }
+            return columns;
+        }
+    }
+
+    /**
+     * Reads and checks the file header into a fresh read buffer, up to the record count.
+     * @return The format version.
+     */
+    private short readHeader(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        ensure(channel, buffer, HEADER_SIZE);
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a binary task file: " + path);
+        }
+        short version = buffer.getShort();
+        if (version != VERSION && version != VERSION_WITHOUT_IDS) {
+            throw new IOException("Unsupported binary task file version " + version + ": " + path);
+        }
+        return version;
+    }
+
+    @Override
+    public void save(List<TaskRecord> records) throws IOException {
+        AtomicFiles.replace(path, channel -> {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.putInt(MAGIC).putShort(VERSION).putInt(records.size());
+            for (TaskRecord record : records) {
+                byte[] description = record.description().getBytes(StandardCharsets.UTF_8);
+                if (buffer.remaining() < RECORD_FIXED_SIZE) {
+                    flush(channel, buffer);
+                }
+                int flags = (record.done() ? DONE_BIT : 0)
+                        | record.priority().ordinal() << PRIORITY_SHIFT
+                        | (record.dueDate() != null ? HAS_DUE_BIT : 0)
+                        | (record.creationDate() != null ? HAS_CREATION_BIT : 0);
+                buffer.put((byte) flags)
+                        .putLong(record.id())
+                        .putLong(record.lastModified())
+                        .putInt(record.dueDate() != null ? (int) record.dueDate().toEpochDay() : 0)
+                        .putInt(record.creationDate() != null ? (int) record.creationDate().toEpochDay() : 0)
+                        .putInt(description.length);
+                int offset = 0;
+                while (offset < description.length) {
+                    if (!buffer.hasRemaining()) {
+                        flush(channel, buffer);
+                    }
+                    int chunk = Math.min(buffer.remaining(), description.length - offset);
+                    buffer.put(description, offset, chunk);
+                    offset += chunk;
+                }
+            }
+            flush(channel, buffer);
+        });
+    }
+
+    /**
+     * Writes columns in the same format as {@link #save(List)}, copying descriptions straight from the off-heap arena.
+     * @param columns The tasks to write.
+     * @throws IOException If the file cannot be written.
+     */
+    void saveColumns(TaskColumns columns) throws IOException {
+        AtomicFiles.replace(path, channel -> {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.putInt(MAGIC).putShort(VERSION).putInt(columns.size());
+            DescriptionArena arena = columns.arena();
+            for (int row = 0; row < columns.size(); row++) {
+                int length = columns.descriptionLength(row);
+                if (buffer.remaining() < RECORD_FIXED_SIZE + length) {
+                    flush(channel, buffer);
+                }
+                int due = columns.dueEpochDay(row);
+                int creation = columns.creationEpochDay(row);
+                int flags = (columns.isDone(row) ? DONE_BIT : 0)
+                        | columns.priorityOrdinal(row) << PRIORITY_SHIFT
+                        | (due != NO_DATE ? HAS_DUE_BIT : 0)
+                        | (creation != NO_DATE ? HAS_CREATION_BIT : 0);
+                buffer.put((byte) flags)
+                        .putLong(columns.id(row))
+                        .putLong(columns.lastModified(row))
+                        .putInt(due != NO_DATE ? due : 0)
+                        .putInt(creation != NO_DATE ? creation : 0)
+                        .putInt(length);
+                if (length <= buffer.remaining()) {
+                    arena.copyTo(columns.descriptionAddress(row), length, buffer);
+                } else {
+                    flush(channel, buffer);
+                    ByteBuffer large = ByteBuffer.allocate(length);
+                    arena.copyTo(columns.descriptionAddress(row), length, large);
+                    large.flip();
+                    while (large.hasRemaining()) {
+                        channel.write(large);
+                    }
+                }
+            }
+            flush(channel, buffer);
+        });
+    }
+
+    /** Makes sure at least {@code needed} bytes are available in the buffer (which is in read mode). */
+    private static void ensure(FileChannel channel, ByteBuffer buffer, int needed) throws IOException {
+        if (buffer.remaining() >= needed) {
+            return;
+        }
+        buffer.compact();
+        while (buffer.position() < needed) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Unexpected end of binary task file");
+            }
+        }
+        buffer.flip();
+    }
+
+    /** Copies {@code length} bytes into {@code target}, refilling the buffer as often as needed. */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, byte[] target, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            if (!buffer.hasRemaining()) {
+                ensure(channel, buffer, 1);
+            }
+            int chunk = Math.min(buffer.remaining(), length - offset);
+            buffer.get(target, offset, chunk);
+            offset += chunk;
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /** Cuts the records of a binary task file into chunks without decoding them. */
+    private final class ChunkReader extends TaskFileReader {
+        private final FileChannel channel;
+        private final boolean withIds;
+        private final int fixedSize;
+        /** Read bytes in read mode. */
+        private ByteBuffer buffer = ByteBuffer.allocate(TaskFileReader.CHUNK_SIZE);
+        private int remaining;
+
+        ChunkReader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            withIds = readHeader(channel, buffer) == VERSION;
+            fixedSize = withIds ? RECORD_FIXED_SIZE : RECORD_FIXED_SIZE_WITHOUT_IDS;
+            remaining = buffer.getInt();
+        }
+
+        @Override
+        ByteBuffer nextChunk() throws IOException {
+            if (remaining == 0) {
+                return null;
+            }
+            ByteBuffer chunk = ByteBuffer.allocate(TaskFileReader.CHUNK_SIZE);
+            while (remaining > 0) {
+                ensure(channel, buffer, fixedSize);
+                int size = fixedSize + buffer.getInt(buffer.position() + fixedSize - 4);
+                if (size > buffer.capacity()) {
+                    buffer = ByteBuffer.allocate(size).put(buffer).flip();
+                }
+                ensure(channel, buffer, size);
+                if (chunk.position() > 0 && size > chunk.remaining()) {
+                    break;
+                }
+                if (size > chunk.remaining()) {
+                    chunk = ByteBuffer.allocate(size);
+                }
+                chunk.put(chunk.position(), buffer, buffer.position(), size);
+                chunk.position(chunk.position() + size);
+                buffer.position(buffer.position() + size);
+                remaining--;
+            }
+            return chunk.flip();
+        }
+
+        @Override
+        List<TodoItem> parse(ByteBuffer chunk) {
+            List<TodoItem> items = new ArrayList<>();
+            while (chunk.hasRemaining()) {
+                int flags = chunk.get();
+                long id = withIds ? chunk.getLong() : TaskIds.NONE;
+                long lastModified = withIds ? chunk.getLong() : 0;
+                int due = chunk.getInt();
+                int creation = chunk.getInt();
+                int length = chunk.getInt();
+                String description = new String(chunk.array(), chunk.arrayOffset() + chunk.position(), length, StandardCharsets.UTF_8);
+                chunk.position(chunk.position() + length);
+                items.add(item(flags, id, lastModified, due, creation, description));
+            }
+            return items;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,502 @@
+package todolistapp.model;
+
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ModifiableObservableListBase;
+import javafx.collections.ObservableList;
+import javafx.collections.ObservableListBase;
+
+/**
+ * A virtualized {@code ObservableList<TodoItem>} over {@link TaskColumns}, for archive-sized lists
+ * with many millions of tasks (see {@link TaskWorkspace#openArchive(String)}).
+ * <p>
+ * The tasks are not held as {@link TodoItem} objects. {@link #get(int)} creates a flyweight item for
+ * a row on demand, so a {@code TableView} showing this list only ever materializes the rows on screen.
+ * A flyweight stands for a task, not a row: edits of it (from table cells or setters) are written back
+ * to the row that has its ID, wherever that row has moved, and reported as update changes. Flyweights are
+ * only weakly cached, and as long as one is reachable, {@code get} returns that same object for its task,
+ * so there is never more than one item per task whose fields could go stale.
+ * <p>
+ * Items passed to {@code add} or {@code set} are copied into the columns; an item that belongs to no
+ * other list becomes the flyweight of its task. A task added with an ID that is already in the list gets
+ * a new one. Removed flyweights are detached, and later edits of them are ignored.
+ * <p>
+ * For the table, {@link #select(TaskQuery, LocalDate)} returns the rows matching a filter as a read-only
+ * view, and {@link #count(TaskQuery, LocalDate)} counts them; both scan the columns without materializing tasks.
+ * Must only be used from one thread (the JavaFX Application Thread when shown in the UI).
+ */
+public final class ColumnarTaskList extends ModifiableObservableListBase<TodoItem> implements TodoItem.Owner {
+
+    private TaskColumns columns;
+    /** Reachable flyweights by task ID. */
+    private final Map<Long, Flyweight> flyweights = new HashMap<>();
+    private final ReferenceQueue<TodoItem> collected = new ReferenceQueue<>();
+
+    /** Creates an empty list. */
+    public ColumnarTaskList() {
+        this(new TaskColumns(0));
+    }
+
+    private ColumnarTaskList(TaskColumns columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * Loads a list from a binary task file without creating an object per task.
+     * @param store The binary store to read.
+     * @return The loaded list; empty if the file does not exist.
+     * @throws IOException If the file cannot be read or is not a binary task file.
+     */
+    public static ColumnarTaskList load(BinaryTaskStore store) throws IOException {
+        return new ColumnarTaskList(store.loadColumns());
+    }
+
+    /**
+     * Writes all tasks to a binary task file, replacing it atomically.
+     * The list must not be changed while this runs.
+     * @param store The binary store to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public void save(BinaryTaskStore store) throws IOException {
+        store.saveColumns(columns);
+    }
+
+    @Override
+    public TodoItem get(int index) {
+        Objects.checkIndex(index, columns.size());
+        TodoItem item = flyweight(columns.id(index));
+        if (item == null) {
+            item = materialize(columns, index);
+            adopt(item);
+        }
+        item.listPosition = index;
+        return item;
+    }
+
+    @Override
+    public int size() {
+        return columns.size();
+    }
+
+    /** Finds a flyweight by its ID instead of materializing and comparing every row. */
+    @Override
+    public int indexOf(Object o) {
+        return o instanceof TodoItem item && item.owner == this ? rowOf(item) : -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    /**
+     * Counts the tasks that match a query by scanning the columns, without materializing tasks.
+     * @param query The filter.
+     * @param today The date the due buckets are relative to.
+     * @return The number of matching tasks.
+     */
+    public int count(TaskQuery query, LocalDate today) {
+        IntPredicate matcher = matcher(query, today);
+        if (matcher == null) {
+            return columns.size();
+        }
+        int count = 0;
+        for (int row = 0; row < columns.size(); row++) {
+            if (matcher.test(row)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Selects the tasks that match a query, in list order, by scanning the columns.
+     * The result holds only the matching row numbers and materializes its items through {@link #get(int)};
+     * it does not follow later changes. After a structural change of this list it throws
+     * {@link ConcurrentModificationException} and has to be selected again; edits of task fields are
+     * seen right away, but a task does not enter or leave the selection until it is selected again.
+     * @param query The filter.
+     * @param today The date the due buckets are relative to.
+     * @return A read-only list of the matching tasks.
+     */
+    public ObservableList<TodoItem> select(TaskQuery query, LocalDate today) {
+        IntPredicate matcher = matcher(query, today);
+        if (matcher == null) {
+            return new Selection(null, columns.size());
+        }
+        int[] rows = new int[16];
+        int count = 0;
+        for (int row = 0; row < columns.size(); row++) {
+            if (matcher.test(row)) {
+                if (count == rows.length) {
+                    rows = Arrays.copyOf(rows, count * 2);
+                }
+                rows[count++] = row;
+            }
+        }
+        return new Selection(rows, count);
+    }
+
+    /** @return A test of a row against the query, or null if every row matches. */
+    private IntPredicate matcher(TaskQuery query, LocalDate today) {
+        Boolean done = query.getDone();
+        int priorityMask = query.priorityMask();
+        int dueBucketMask = query.dueBucketMask();
+        if (done == null && priorityMask == 0 && dueBucketMask == 0) {
+            return null;
+        }
+        int todayEpochDay = (int) today.toEpochDay();
+        TaskColumns rows = columns;
+        return row -> (done == null || done == rows.isDone(row))
+                && (priorityMask == 0 || (priorityMask & 1 << rows.priorityOrdinal(row)) != 0)
+                && (dueBucketMask == 0 || (dueBucketMask & 1 << dueBucket(rows.dueEpochDay(row), todayEpochDay).ordinal()) != 0);
+    }
+
+    private static DueBucket dueBucket(int dueEpochDay, int todayEpochDay) {
+        if (dueEpochDay == TaskColumns.NO_DATE) {
+            return DueBucket.NONE;
+        }
+        return dueEpochDay < todayEpochDay ? DueBucket.OVERDUE : dueEpochDay == todayEpochDay ? DueBucket.TODAY : DueBucket.UPCOMING;
+    }
+
+    @Override
+    protected void doAdd(int index, TodoItem element) {
+        if (columns.rowOf(element.getId(), -1) >= 0) {
+            element.setId(TaskIds.next());
+        }
+        columns.insert(index, element);
+        if (element.owner == null) {
+            adopt(element);
+            element.listPosition = index;
+        }
+    }
+
+    @Override
+    protected TodoItem doSet(int index, TodoItem element) {
+        TodoItem previous = detach(index);
+        int existing = columns.rowOf(element.getId(), -1);
+        if (existing >= 0 && existing != index) {
+            element.setId(TaskIds.next());
+        }
+        columns.set(index, element);
+        columns.compactIfWasteful();
+        if (element.owner == null) {
+            adopt(element);
+            element.listPosition = index;
+        }
+        return previous;
+    }
+
+    @Override
+    protected TodoItem doRemove(int index) {
+        TodoItem removed = detach(index);
+        columns.remove(index);
+        columns.compactIfWasteful();
+        return removed;
+    }
+
+    @Override
+    public boolean setAll(Collection<? extends TodoItem> col) {
+        TaskColumns replacement = new TaskColumns(col.size());
+        Set<Long> ids = new HashSet<>();
+        for (TodoItem item : col) {
+            if (!ids.add(item.getId())) {
+                item.setId(TaskIds.next());
+                ids.add(item.getId());
+            }
+            replacement.insert(replacement.size(), item);
+        }
+        detachAll();
+        replaceColumns(replacement);
+        int row = 0;
+        for (TodoItem item : col) {
+            if (item.owner == null) {
+                adopt(item);
+                item.listPosition = row;
+            }
+            row++;
+        }
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        if (columns.size() > 0) {
+            detachAll();
+            replaceColumns(new TaskColumns(0));
+        }
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        removeRows(row -> row >= fromIndex && row < toIndex);
+    }
+
+    /**
+     * Removes all matching tasks in one pass over the columns, reported as a single replacement.
+     * The predicate is called with the flyweight of a row if there is one, otherwise with a temporary item.
+     * @param filter Selects the tasks to remove.
+     * @return True if any task was removed.
+     */
+    @Override
+    public boolean removeIf(Predicate<? super TodoItem> filter) {
+        TaskColumns old = columns;
+        return removeRows(row -> filter.test(itemAt(old, row))) > 0;
+    }
+
+    /**
+     * Removes all completed tasks by scanning the completion column only.
+     * @return The number of removed tasks.
+     */
+    public int removeDone() {
+        TaskColumns old = columns;
+        return removeRows(old::isDone);
+    }
+
+    /**
+     * Writes an edit of a flyweight back to the row of its task.
+     */
+    @Override
+    public void taskChanged(TodoItem item, TaskField field, Object oldValue, Object newValue) {
+        int row = rowOf(item);
+        if (row < 0) {
+            return;
+        }
+        switch (field) {
+            case DESCRIPTION:
+                columns.setDescription(row, (String) newValue);
+                columns.compactIfWasteful();
+                break;
+            case DONE:
+                columns.setDone(row, Boolean.TRUE.equals(newValue));
+                break;
+            case PRIORITY:
+                columns.setPriority(row, (TodoItem.Priority) newValue);
+                break;
+            case DUE_DATE:
+                columns.setDueEpochDay(row, TaskColumns.toEpochDay((LocalDate) newValue));
+                break;
+        }
+        columns.setLastModified(row, item.getLastModified());
+        beginChange();
+        nextUpdate(row);
+        endChange();
+    }
+
+    /** @return The row of a flyweight, found through its position hint or by ID; -1 if its task was removed. */
+    private int rowOf(TodoItem item) {
+        int row = columns.rowOf(item.getId(), item.listPosition);
+        item.listPosition = row;
+        return row;
+    }
+
+    /** @return The number of removed rows; reported as a single replacement if any. */
+    private int removeRows(IntPredicate remove) {
+        TaskColumns old = columns;
+        TaskColumns remaining = old.filter(row -> {
+            if (!remove.test(row)) {
+                return true;
+            }
+            release(old.id(row));
+            return false;
+        });
+        int removed = old.size() - remaining.size();
+        if (removed > 0) {
+            replaceColumns(remaining);
+        }
+        return removed;
+    }
+
+    /** Swaps in new columns and reports the whole content as replaced, without materializing the old rows. */
+    private void replaceColumns(TaskColumns replacement) {
+        TaskColumns old = columns;
+        columns = replacement;
+        modCount++;
+        if (old.size() > 0 || replacement.size() > 0) {
+            // Fired directly: the change builder would copy (and thereby materialize) every removed row.
+            fireChange(new ReplaceAllChange(this, replacement.size(), new RowView(old)));
+        }
+        columns.compactIfWasteful();
+    }
+
+    /** @return The reachable flyweight of a task, or null. */
+    private TodoItem flyweight(long id) {
+        for (Object reference; (reference = collected.poll()) != null;) {
+            Flyweight flyweight = (Flyweight) reference;
+            flyweights.remove(flyweight.id, flyweight);
+        }
+        Flyweight flyweight = flyweights.get(id);
+        return flyweight != null ? flyweight.get() : null;
+    }
+
+    /** Makes an item the flyweight of its task, so edits of it are written back. */
+    private void adopt(TodoItem item) {
+        item.owner = this;
+        flyweights.put(item.getId(), new Flyweight(item, collected));
+    }
+
+    /** @return The flyweight of a row, or a temporary item that is not kept. */
+    private TodoItem itemAt(TaskColumns rows, int row) {
+        TodoItem item = flyweights.isEmpty() ? null : flyweight(rows.id(row));
+        return item != null ? item : materialize(rows, row);
+    }
+
+    /** Detaches the flyweight of a row that is about to be removed or replaced. */
+    private TodoItem detach(int row) {
+        TodoItem item = itemAt(columns, row);
+        release(item.getId());
+        return item;
+    }
+
+    private void release(long id) {
+        if (flyweights.isEmpty()) {
+            return;
+        }
+        Flyweight flyweight = flyweights.remove(id);
+        TodoItem item = flyweight != null ? flyweight.get() : null;
+        if (item != null) {
+            item.owner = null;
+            item.listPosition = -1;
+        }
+    }
+
+    private void detachAll() {
+        for (Flyweight flyweight : flyweights.values()) {
+            TodoItem item = flyweight.get();
+            if (item != null) {
+                item.owner = null;
+                item.listPosition = -1;
+            }
+        }
+        flyweights.clear();
+    }
+
+    private static TodoItem materialize(TaskColumns columns, int row) {
+        return new TodoItem(columns.description(row), columns.isDone(row), columns.priority(row),
+                columns.dueEpochDay(row), columns.creationEpochDay(row), columns.id(row), columns.lastModified(row));
+    }
+
+    /** Weak reference to a flyweight that remembers its ID, so its map entry can be removed once it is collected. */
+    private static final class Flyweight extends WeakReference<TodoItem> {
+        final long id;
+
+        Flyweight(TodoItem item, ReferenceQueue<TodoItem> queue) {
+            super(item, queue);
+            this.id = item.getId();
+        }
+    }
+
+    /** The rows selected by {@link #select(TaskQuery, LocalDate)}; never changes. */
+    private final class Selection extends ObservableListBase<TodoItem> {
+        /** The selected rows, or null for all rows. */
+        private final int[] rows;
+        private final int size;
+        private final int expectedModCount = modCount;
+
+        Selection(int[] rows, int size) {
+            this.rows = rows;
+            this.size = size;
+        }
+
+        @Override
+        public TodoItem get(int index) {
+            Objects.checkIndex(index, size);
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException("The list changed since the rows were selected");
+            }
+            return ColumnarTaskList.this.get(rows == null ? index : rows[index]);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /** A change that replaces the whole content of the list. */
+    private static final class ReplaceAllChange extends ListChangeListener.Change<TodoItem> {
+        private final int addedSize;
+        private final List<TodoItem> removed;
+        private boolean onChange;
+
+        ReplaceAllChange(ObservableList<TodoItem> list, int addedSize, List<TodoItem> removed) {
+            super(list);
+            this.addedSize = addedSize;
+            this.removed = removed;
+        }
+
+        @Override
+        public boolean next() {
+            if (onChange) {
+                return false;
+            }
+            onChange = true;
+            return true;
+        }
+
+        @Override
+        public void reset() {
+            onChange = false;
+        }
+
+        @Override
+        public int getFrom() {
+            return 0;
+        }
+
+        @Override
+        public int getTo() {
+            return addedSize;
+        }
+
+        @Override
+        public List<TodoItem> getRemoved() {
+            return removed;
+        }
+
+        @Override
+        protected int[] getPermutation() {
+            return new int[0];
+        }
+    }
+
+    /** Read-only list view of columns that materializes rows on access; used for the removed part of change events. */
+    private static final class RowView extends AbstractList<TodoItem> {
+        private final TaskColumns columns;
+
+        RowView(TaskColumns columns) {
+            this.columns = columns;
+        }
+
+        @Override
+        public TodoItem get(int index) {
+            Objects.checkIndex(index, columns.size());
+            return materialize(columns, index);
+        }
+
+        @Override
+        public int size() {
+            return columns.size();
+        }
+    }
+}
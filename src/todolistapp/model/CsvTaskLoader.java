@@ -0,0 +1,424 @@
+package todolistapp.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import todolistapp.metrics.Metrics;
+
+/**
+ * Parallel loader for the tasks CSV file written by {@link TodoListManager#saveTasks()}.
+ * The file is memory-mapped in chunks that are split on line boundaries, and every chunk
+ * is parsed on a worker thread by a hand-written field scanner that works directly on the
+ * mapped bytes instead of creating a line {@code String} and splitting it.
+ * The chunk results are concatenated in file order, so the caller can publish them
+ * to the observable task list in a single {@code setAll}.
+ */
+final class CsvTaskLoader {
+
+    private static final System.Logger LOG = System.getLogger(CsvTaskLoader.class.getName());
+
+    /** Files smaller than this are parsed as a single chunk. */
+    private static final long MIN_CHUNK_SIZE = 1L << 20;
+    /** Upper bound for a single mapping, well below the 2 GiB limit of a {@link MappedByteBuffer}. */
+    private static final long MAX_CHUNK_SIZE = 1L << 28;
+    /** Chunks per core, so that uneven chunks still keep every worker busy. */
+    private static final int CHUNKS_PER_CORE = 4;
+
+    private static final byte QUOTE = '"';
+    private static final byte BACKSLASH = '\\';
+    private static final byte COMMA = ',';
+    private static final byte LF = '\n';
+    private static final byte CR = '\r';
+
+    private CsvTaskLoader() {
+    }
+
+    /**
+     * Loads all tasks from the given CSV file.
+     * Malformed lines are logged and skipped, as with the previous line-by-line loader.
+     *
+     * @param path The CSV file to read.
+     * @return The parsed tasks, in file order. The items are not attached to any list yet.
+     * @throws IOException If the file cannot be opened or mapped.
+     */
+    static List<TodoItem> load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) {
+                return new ArrayList<>();
+            }
+            long[] bounds = splitOnLineBoundaries(channel, size);
+            int chunkCount = bounds.length - 1;
+
+            List<List<TodoItem>> parsedChunks;
+            try {
+                parsedChunks = IntStream.range(0, chunkCount)
+                        .parallel()
+                        .mapToObj(i -> parseChunk(channel, bounds[i], bounds[i + 1]))
+                        .toList();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            int total = 0;
+            for (List<TodoItem> chunk : parsedChunks) {
+                total += chunk.size();
+            }
+            List<TodoItem> result = new ArrayList<>(total);
+            for (List<TodoItem> chunk : parsedChunks) {
+                result.addAll(chunk);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Computes chunk boundaries so that every chunk starts at the beginning of a line.
+     * @return An array of {@code chunkCount + 1} file offsets, starting with 0 and ending with {@code size}.
+     */
+    private static long[] splitOnLineBoundaries(FileChannel channel, long size) throws IOException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        long wanted = Math.min((size + MIN_CHUNK_SIZE - 1) / MIN_CHUNK_SIZE, (long) cores * CHUNKS_PER_CORE);
+        long needed = (size + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE;
+        int chunkCount = (int) Math.max(1, Math.max(wanted, needed));
+
+        long[] bounds = new long[chunkCount + 1];
+        bounds[chunkCount] = size;
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        for (int i = 1; i < chunkCount; i++) {
+            long start = Math.max(size * i / chunkCount, bounds[i - 1]);
+            bounds[i] = nextLineStart(channel, start, size, probe);
+        }
+        return bounds;
+    }
+
+    /** Returns the offset just after the first line feed at or after {@code position}, or {@code size}. */
+    private static long nextLineStart(FileChannel channel, long position, long size, ByteBuffer probe) throws IOException {
+        long pos = position;
+        while (pos < size) {
+            probe.clear();
+            int read = channel.read(probe, pos);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == LF) {
+                    return pos + i + 1;
+                }
+            }
+            pos += read;
+        }
+        return size;
+    }
+
+    private static List<TodoItem> parseChunk(FileChannel channel, long start, long end) {
+        if (end <= start) {
+            return new ArrayList<>();
+        }
+        MappedByteBuffer buffer;
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return parseLines(buffer);
+    }
+
+    /**
+     * Parses whole lines, e.g. a mapped chunk or a chunk read by {@link TaskFileReader}.
+     * Malformed lines are logged and skipped.
+     * @param buffer The lines, from index 0 to the limit; the last one may lack its line feed.
+     * @return The parsed tasks, in file order.
+     */
+    static List<TodoItem> parseLines(ByteBuffer buffer) {
+        List<TodoItem> items = new ArrayList<>();
+        LineScanner scanner = new LineScanner(buffer);
+        int limit = buffer.limit();
+        int lineStart = 0;
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && buffer.get(lineEnd) != LF) {
+                lineEnd++;
+            }
+            int next = lineEnd + 1;
+            if (lineEnd > lineStart && buffer.get(lineEnd - 1) == CR) {
+                lineEnd--;
+            }
+            TodoItem item = scanner.parse(lineStart, lineEnd);
+            if (item != null) {
+                items.add(item);
+            } else {
+                Metrics.increment(Metrics.Counter.MALFORMED_LINES_SKIPPED);
+            }
+            lineStart = next;
+        }
+        return items;
+    }
+
+    /**
+     * Field scanner for one chunk. It reuses a single scratch array for descriptions,
+     * so the only allocations per line are the description string and the {@link TodoItem} itself.
+     */
+    private static final class LineScanner {
+
+        private final ByteBuffer buffer;
+        private byte[] scratch = new byte[256];
+
+        LineScanner(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * Parses one line. Expected format: "description",isDone,priority,dueDate,creationDate,id,lastModified,
+         * with the escapes of {@link CsvTaskWriter} in the quoted description.
+         * Lines of files written before tasks had IDs end after the creation date; they get new IDs.
+         * @return The parsed item, or null if the line was malformed (the problem is logged).
+         */
+        TodoItem parse(int start, int end) {
+            // Description: quoted with doubled inner quotes and escaped line breaks, or a plain field up to the first comma.
+            int pos = start;
+            int descriptionLength = 0;
+            if (pos < end && buffer.get(pos) == QUOTE) {
+                pos++;
+                boolean closed = false;
+                while (pos < end) {
+                    byte b = buffer.get(pos);
+                    if (b == QUOTE) {
+                        if (pos + 1 < end && buffer.get(pos + 1) == QUOTE) {
+                            descriptionLength = append(descriptionLength, QUOTE);
+                            pos += 2;
+                            continue;
+                        }
+                        closed = true;
+                        pos++;
+                        break;
+                    }
+                    if (b == BACKSLASH && pos + 1 < end) {
+                        byte unescaped = unescape(buffer.get(pos + 1));
+                        if (unescaped != 0) {
+                            descriptionLength = append(descriptionLength, unescaped);
+                            pos += 2;
+                            continue;
+                        }
+                    }
+                    descriptionLength = append(descriptionLength, b);
+                    pos++;
+                }
+                if (!closed) {
+                    reportMalformed(start, end);
+                    return null;
+                }
+            } else {
+                while (pos < end && buffer.get(pos) != COMMA) {
+                    descriptionLength = append(descriptionLength, buffer.get(pos));
+                    pos++;
+                }
+            }
+            if (pos >= end || buffer.get(pos) != COMMA) {
+                reportMalformed(start, end);
+                return null;
+            }
+            int doneStart = ++pos;
+            int doneEnd = indexOfComma(doneStart, end);
+            int priorityStart = doneEnd + 1;
+            int priorityEnd = indexOfComma(priorityStart, end);
+            int dueStart = priorityEnd + 1;
+            int dueEnd = indexOfComma(dueStart, end);
+            int creationStart = dueEnd + 1;
+            int creationEnd = indexOfComma(creationStart, end);
+            if (doneEnd >= end || priorityEnd >= end || dueEnd >= end) {
+                reportMalformed(start, end);
+                return null;
+            }
+            int idStart = creationEnd + 1;
+            int idEnd = indexOfComma(idStart, end);
+            int modifiedStart = idEnd + 1;
+            if (creationEnd < end && (idEnd >= end || indexOfComma(modifiedStart, end) < end)) {
+                reportMalformed(start, end);
+                return null;
+            }
+
+            try {
+                boolean isDone = matchesIgnoreCase(doneStart, doneEnd, "true");
+                TodoItem.Priority priority = parsePriority(priorityStart, priorityEnd);
+                LocalDate dueDate = parseDate(dueStart, dueEnd);
+                LocalDate creationDate = parseCreationDate(creationStart, creationEnd, start, end);
+                long id = creationEnd < end ? parseLong(idStart, idEnd) : TaskIds.NONE;
+                long lastModified = creationEnd < end ? parseLong(modifiedStart, end) : 0;
+                String description = new String(scratch, 0, descriptionLength, StandardCharsets.UTF_8);
+
+                return new TodoItem(description, isDone, priority, epochDay(dueDate),
+                        creationDate != null ? epochDay(creationDate) : (int) LocalDate.now().toEpochDay(), id, lastModified);
+            } catch (DateTimeException e) {
+                LOG.log(Level.WARNING, "Error parsing date for task line: [" + text(start, end) + "]. Details: " + e.getMessage());
+            } catch (IllegalArgumentException e) {
+                LOG.log(Level.WARNING, "Error parsing priority, boolean, or number for task line: [" + text(start, end) + "]. Details: " + e.getMessage());
+            }
+            return null;
+        }
+
+        /**
+         * Parses the creation date leniently: it is informational only, and files written before it was stored
+         * always got the current date, so a task is not dropped for an unreadable creation date.
+         * @return The date, or null if the field is empty or unparsable (the caller uses today then).
+         */
+        private LocalDate parseCreationDate(int from, int to, int lineStart, int lineEnd) {
+            try {
+                return parseDate(from, to);
+            } catch (DateTimeException e) {
+                LOG.log(Level.WARNING, "Error parsing creation date, using today for task line: [" + text(lineStart, lineEnd) + "]. Details: " + e.getMessage());
+                return null;
+            }
+        }
+
+        /**
+         * @return The character that a backslash followed by {@code b} stands for, or 0 if that is no escape
+         *         (a lone backslash of a file written before line breaks were escaped is kept as is).
+         */
+        private static byte unescape(byte b) {
+            return switch (b) {
+                case 'n' -> LF;
+                case 'r' -> CR;
+                case BACKSLASH -> BACKSLASH;
+                default -> 0;
+            };
+        }
+
+        private int append(int length, byte b) {
+            if (length == scratch.length) {
+                byte[] grown = new byte[scratch.length * 2];
+                System.arraycopy(scratch, 0, grown, 0, length);
+                scratch = grown;
+            }
+            scratch[length] = b;
+            return length + 1;
+        }
+
+        private int indexOfComma(int from, int end) {
+            int pos = from;
+            while (pos < end && buffer.get(pos) != COMMA) {
+                pos++;
+            }
+            return pos;
+        }
+
+        private boolean matchesIgnoreCase(int from, int to, String expected) {
+            if (to - from != expected.length()) {
+                return false;
+            }
+            for (int i = 0; i < expected.length(); i++) {
+                if (Character.toLowerCase((char) buffer.get(from + i)) != expected.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private TodoItem.Priority parsePriority(int from, int to) {
+            for (TodoItem.Priority priority : TodoItem.Priority.values()) {
+                if (matchesExactly(from, to, priority.name())) {
+                    return priority;
+                }
+            }
+            throw new IllegalArgumentException("No enum constant " + TodoItem.Priority.class.getCanonicalName() + "." + text(from, to));
+        }
+
+        private boolean matchesExactly(int from, int to, String expected) {
+            if (to - from != expected.length()) {
+                return false;
+            }
+            for (int i = 0; i < expected.length(); i++) {
+                if (buffer.get(from + i) != expected.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Parses an ISO local date. The common {@code yyyy-MM-dd} shape is decoded by hand,
+         * anything else (e.g. years beyond 9999) falls back to {@link DateTimeFormatter#ISO_LOCAL_DATE}.
+         * @return The date, or null for an empty or blank field.
+         */
+        private LocalDate parseDate(int from, int to) {
+            int trimmedFrom = from;
+            int trimmedTo = to;
+            while (trimmedFrom < trimmedTo && buffer.get(trimmedFrom) <= ' ') {
+                trimmedFrom++;
+            }
+            while (trimmedTo > trimmedFrom && buffer.get(trimmedTo - 1) <= ' ') {
+                trimmedTo--;
+            }
+            if (trimmedFrom == trimmedTo) {
+                return null;
+            }
+            if (to - from == 10 && buffer.get(from + 4) == '-' && buffer.get(from + 7) == '-') {
+                int year = digits(from, 4);
+                int month = digits(from + 5, 2);
+                int day = digits(from + 8, 2);
+                if (year >= 0 && month >= 0 && day >= 0) {
+                    return LocalDate.of(year, month, day);
+                }
+            }
+            return LocalDate.parse(text(from, to), DateTimeFormatter.ISO_LOCAL_DATE);
+        }
+
+        /**
+         * Parses a non-negative decimal number.
+         * @throws NumberFormatException If the field is empty or contains a non-digit.
+         */
+        private long parseLong(int from, int to) {
+            if (from >= to) {
+                throw new NumberFormatException("Empty number field");
+            }
+            long value = 0;
+            for (int i = from; i < to; i++) {
+                int digit = buffer.get(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new NumberFormatException("For input string: \"" + text(from, to) + "\"");
+                }
+                value = value * 10 + digit;
+            }
+            return value;
+        }
+
+        private static int epochDay(LocalDate date) {
+            return date == null ? Integer.MIN_VALUE : (int) date.toEpochDay();
+        }
+
+        /** @return The decimal value of {@code count} ASCII digits, or -1 if a non-digit is found. */
+        private int digits(int from, int count) {
+            int value = 0;
+            for (int i = from; i < from + count; i++) {
+                int digit = buffer.get(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    return -1;
+                }
+                value = value * 10 + digit;
+            }
+            return value;
+        }
+
+        private void reportMalformed(int start, int end) {
+            LOG.log(Level.WARNING, "Skipping malformed task line (incorrect number of parts, expected 5 or 7): [" + text(start, end) + "]");
+        }
+
+        private String text(int from, int to) {
+            byte[] bytes = new byte[to - from];
+            buffer.get(from, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package todolistapp.model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link TaskStore} for the human-readable CSV layout:
+ * "description",isDone,priority,dueDate,creationDate,id,lastModified.
+ * Lines of older files with only the first five fields are still read; their tasks get new IDs.
+ * Loading is done in parallel by {@link CsvTaskLoader}, saving by {@link CsvTaskWriter}.
+ */
+public class CsvTaskStore implements TaskStore {
+
+    private final Path path;
+
+    /**
+     * Creates a store for the given CSV file.
+     * @param path The data file.
+     */
+    public CsvTaskStore(Path path) {
+        this.path = path;
+    }
+
+    @Override
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public List<TodoItem> load() throws IOException {
+        if (!Files.exists(path)) {
+            return new ArrayList<>();
+        }
+        return CsvTaskLoader.load(path);
+    }
+
+    @Override
+    public void save(List<TaskRecord> records) throws IOException {
+        CsvTaskWriter.write(path, records);
+    }
+}
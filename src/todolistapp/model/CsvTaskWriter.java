@@ -0,0 +1,97 @@
+package todolistapp.model;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Writes task snapshots in the CSV layout read by {@link CsvTaskLoader}.
+ * The file is replaced through {@link AtomicFiles}, so a crash in the middle of a save never
+ * leaves a truncated data file behind.
+ */
+final class CsvTaskWriter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private CsvTaskWriter() {
+    }
+
+    /**
+     * Writes the given records to {@code target}, replacing it atomically.
+     * Format per line: "description",isDone,priority,dueDate,creationDate,id,lastModified.
+     * Inside the quoted description, quotes are doubled, and backslashes and line breaks are written as
+     * {@code \\}, {@code \n} and {@code \r}, so every task stays on one line.
+     *
+     * @param target The data file to replace.
+     * @param records The tasks to write, in order.
+     * @throws IOException If writing or renaming fails. The previous target file is left untouched in that case.
+     */
+    static void write(Path target, List<TaskRecord> records) throws IOException {
+        AtomicFiles.replace(target, channel -> {
+            Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8);
+            StringBuilder buffer = new StringBuilder(BUFFER_SIZE + 256);
+            for (TaskRecord record : records) {
+                appendRecord(buffer, record);
+                if (buffer.length() >= BUFFER_SIZE) {
+                    writer.append(buffer);
+                    buffer.setLength(0);
+                }
+            }
+            writer.append(buffer);
+            writer.flush();
+        });
+    }
+
+    private static void appendRecord(StringBuilder line, TaskRecord record) {
+        line.append('"');
+        String description = record.description();
+        for (int i = 0; i < description.length(); i++) {
+            char c = description.charAt(i);
+            switch (c) {
+                case '"' -> line.append("\"\"");
+                case '\\' -> line.append("\\\\");
+                case '\n' -> line.append("\\n");
+                case '\r' -> line.append("\\r");
+                default -> line.append(c);
+            }
+        }
+        line.append('"').append(',')
+                .append(record.done()).append(',')
+                .append(record.priority().name()).append(',');
+        appendDate(line, record.dueDate());
+        line.append(',');
+        appendDate(line, record.creationDate());
+        line.append(',').append(record.id())
+                .append(',').append(record.lastModified());
+        line.append(System.lineSeparator());
+    }
+
+    /** Appends an ISO local date without going through a {@code DateTimeFormatter}. */
+    private static void appendDate(StringBuilder line, LocalDate date) {
+        if (date == null) {
+            return;
+        }
+        int year = date.getYear();
+        if (year < 0 || year > 9999) {
+            line.append(date);
+            return;
+        }
+        pad(line, year, 4);
+        line.append('-');
+        pad(line, date.getMonthValue(), 2);
+        line.append('-');
+        pad(line, date.getDayOfMonth(), 2);
+    }
+
+    private static void pad(StringBuilder line, int value, int width) {
+        int digits = value == 0 ? 1 : (int) Math.log10(value) + 1;
+        for (int i = digits; i < width; i++) {
+            line.append('0');
+        }
+        line.append(value);
+    }
+}
@@ -0,0 +1,122 @@
+package todolistapp.model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only off-heap storage for the UTF-8 bytes of task descriptions.
+ * <p>
+ * Bytes live in direct {@link ByteBuffer} segments outside the Java heap, so millions of
+ * descriptions add no objects for the garbage collector to trace. A description is addressed by
+ * a {@code long} packing the segment index (high 32 bits) and the offset in the segment (low 32 bits),
+ * plus its length, which the caller keeps. Rewritten or removed descriptions are not reclaimed;
+ * they are only counted in {@link #garbageBytes()}, and the owner copies the live ones into a
+ * fresh arena once that gets large.
+ */
+final class DescriptionArena {
+
+    private static final int SEGMENT_SIZE = 64 << 20;
+
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    private ByteBuffer current;
+    private long usedBytes;
+    private long garbageBytes;
+
+    /**
+     * Stores a description.
+     * @param utf8 The UTF-8 encoded description.
+     * @return The address of the stored bytes.
+     */
+    long write(byte[] utf8) {
+        ByteBuffer segment = segmentFor(utf8.length);
+        int offset = segment.position();
+        segment.put(utf8);
+        usedBytes += utf8.length;
+        return address(segments.size() - 1, offset);
+    }
+
+    /**
+     * Stores {@code length} bytes taken from the current position of a buffer.
+     * @param source The buffer to copy from; its position is advanced.
+     * @param length The number of bytes.
+     * @return The address of the stored bytes.
+     */
+    long write(ByteBuffer source, int length) {
+        ByteBuffer segment = segmentFor(length);
+        int offset = segment.position();
+        segment.put(segment.position(), source, source.position(), length);
+        segment.position(offset + length);
+        source.position(source.position() + length);
+        usedBytes += length;
+        return address(segments.size() - 1, offset);
+    }
+
+    /**
+     * Copies a description from another arena without decoding it.
+     * @param source The arena holding the description.
+     * @param address The address of the description in {@code source}.
+     * @param length The length of the description in bytes.
+     * @return The address of the copy in this arena.
+     */
+    long copy(DescriptionArena source, long address, int length) {
+        ByteBuffer segment = segmentFor(length);
+        int offset = segment.position();
+        source.copyTo(address, length, segment);
+        usedBytes += length;
+        return address(segments.size() - 1, offset);
+    }
+
+    /**
+     * @param address The address returned when the description was written.
+     * @param length The length of the description in bytes.
+     * @return The decoded description.
+     */
+    String read(long address, int length) {
+        byte[] bytes = new byte[length];
+        segments.get((int) (address >>> 32)).get((int) address, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Copies the stored bytes into a buffer.
+     * @param address The address of the description.
+     * @param length The length of the description in bytes.
+     * @param target The buffer to copy to, at its position, which is advanced.
+     */
+    void copyTo(long address, int length, ByteBuffer target) {
+        target.put(target.position(), segments.get((int) (address >>> 32)), (int) address, length);
+        target.position(target.position() + length);
+    }
+
+    /**
+     * Marks stored bytes as no longer referenced.
+     * @param length The length of the abandoned description.
+     */
+    void release(int length) {
+        garbageBytes += length;
+    }
+
+    /** @return The number of stored bytes, including garbage. */
+    long usedBytes() {
+        return usedBytes;
+    }
+
+    /** @return The number of stored bytes that are no longer referenced. */
+    long garbageBytes() {
+        return garbageBytes;
+    }
+
+    private ByteBuffer segmentFor(int length) {
+        if (current == null || current.remaining() < length) {
+            current = ByteBuffer.allocateDirect(Math.max(SEGMENT_SIZE, length));
+            segments.add(current);
+        }
+        return current;
+    }
+
+    private static long address(int segment, int offset) {
+        return (long) segment << 32 | (offset & 0xFFFFFFFFL);
+    }
+}
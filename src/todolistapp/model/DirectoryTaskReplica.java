@@ -0,0 +1,151 @@
+package todolistapp.model;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * {@link TaskReplica} kept in a directory, one small file per bucket plus a file with all bucket digests,
+ * e.g. on a shared drive or in a folder that a file-syncing service copies between machines.
+ * <p>
+ * The digests are read from {@value #DIGESTS_FILE} ({@code int magic, int version, int bucketCount,
+ * long digest per bucket}), so comparing a replica with a list reads a few kilobytes however many tasks
+ * it has, and a sync touches only the {@code bucket-xxx.bin} files of changed buckets. A bucket file holds
+ * {@code int magic, int count} and {@code count} records in the layout of {@link TaskRecordCodec};
+ * empty buckets have no file. Every file is replaced atomically, bucket files first
+ * and the digests last.
+ * <p>
+ * There is no locking: two machines must not sync with the same directory at the same moment.
+ */
+public class DirectoryTaskReplica implements TaskReplica {
+
+    /** Name of the file with the bucket digests. */
+    public static final String DIGESTS_FILE = "digests.bin";
+
+    private static final int DIGESTS_MAGIC = 0x54445347; // "TDSG"
+    private static final int BUCKET_MAGIC = 0x54444B54; // "TDKT"
+    private static final int VERSION = 1;
+
+    private final Path directory;
+
+    /**
+     * Creates a replica in a directory. The directory is created by the first write.
+     * @param directory The directory.
+     */
+    public DirectoryTaskReplica(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return The directory of the replica.
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public long[] readDigests() throws IOException {
+        long[] digests = new long[TaskSync.BUCKETS];
+        ByteBuffer buffer;
+        try {
+            buffer = ByteBuffer.wrap(Files.readAllBytes(directory.resolve(DIGESTS_FILE)));
+        } catch (NoSuchFileException e) {
+            return digests;
+        }
+        try {
+            if (buffer.getInt() != DIGESTS_MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not a task replica digest file: " + directory.resolve(DIGESTS_FILE));
+            }
+            int buckets = buffer.getInt();
+            if (buckets != TaskSync.BUCKETS) {
+                throw new IOException("Replica has " + buckets + " buckets, expected " + TaskSync.BUCKETS);
+            }
+            buffer.asLongBuffer().get(digests);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated task replica digest file: " + directory.resolve(DIGESTS_FILE), e);
+        }
+        return digests;
+    }
+
+    @Override
+    public List<TaskRecord> readBucket(int bucket) throws IOException {
+        Path file = bucketFile(bucket);
+        ByteBuffer buffer;
+        try {
+            buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        } catch (NoSuchFileException e) {
+            return new ArrayList<>();
+        }
+        try {
+            if (buffer.getInt() != BUCKET_MAGIC) {
+                throw new IOException("Not a task replica bucket file: " + file);
+            }
+            int count = buffer.getInt();
+            List<TaskRecord> records = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                records.add(TaskRecordCodec.decode(buffer));
+            }
+            return records;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated task replica bucket file: " + file, e);
+        }
+    }
+
+    @Override
+    public void writeBuckets(Map<Integer, List<TaskRecord>> buckets, long[] digests) throws IOException {
+        Files.createDirectories(directory);
+        for (Map.Entry<Integer, List<TaskRecord>> bucket : buckets.entrySet()) {
+            Path file = bucketFile(bucket.getKey());
+            if (bucket.getValue().isEmpty()) {
+                Files.deleteIfExists(file);
+            } else {
+                ByteBuffer content = encodeBucket(bucket.getValue());
+                AtomicFiles.replace(file, channel -> writeFully(channel, content));
+            }
+        }
+        ByteBuffer content = ByteBuffer.allocate(4 + 4 + 4 + 8 * digests.length);
+        content.putInt(DIGESTS_MAGIC).putInt(VERSION).putInt(digests.length);
+        content.asLongBuffer().put(digests);
+        content.rewind();
+        AtomicFiles.replace(directory.resolve(DIGESTS_FILE), channel -> writeFully(channel, content));
+    }
+
+    private Path bucketFile(int bucket) {
+        return directory.resolve(String.format(Locale.ROOT, "bucket-%03x.bin", bucket));
+    }
+
+    private static ByteBuffer encodeBucket(List<TaskRecord> records) {
+        List<byte[]> descriptions = new ArrayList<>(records.size());
+        int size = 4 + 4;
+        for (TaskRecord record : records) {
+            byte[] description = TaskRecordCodec.descriptionBytes(record);
+            descriptions.add(description);
+            size += TaskRecordCodec.encodedSize(description);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(BUCKET_MAGIC).putInt(records.size());
+        for (int i = 0; i < records.size(); i++) {
+            TaskRecordCodec.encode(buffer, records.get(i), descriptions.get(i));
+        }
+        return buffer.flip();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer content) throws IOException {
+        while (content.hasRemaining()) {
+            channel.write(content);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return directory.toString();
+    }
+}
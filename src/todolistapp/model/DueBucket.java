@@ -0,0 +1,31 @@
+package todolistapp.model;
+
+import java.time.LocalDate;
+
+/**
+ * Coarse due-date classes relative to the current date, used by {@link TaskIndex}.
+ */
+public enum DueBucket {
+    /** The due date is before today. */
+    OVERDUE,
+    /** The task is due today. */
+    TODAY,
+    /** The due date is after today. */
+    UPCOMING,
+    /** The task has no due date. */
+    NONE;
+
+    /**
+     * Classifies a due date.
+     * @param dueDate The due date, may be null.
+     * @param today The current date.
+     * @return The bucket of the due date.
+     */
+    public static DueBucket of(LocalDate dueDate, LocalDate today) {
+        if (dueDate == null) {
+            return NONE;
+        }
+        int compared = dueDate.compareTo(today);
+        return compared < 0 ? OVERDUE : compared == 0 ? TODAY : UPCOMING;
+    }
+}
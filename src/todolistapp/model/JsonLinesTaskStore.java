@@ -0,0 +1,182 @@
+package todolistapp.model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import todolistapp.metrics.Metrics;
+
+/**
+ * {@link TaskStore} for JSON Lines files: one flat JSON object ({@link TaskJson}) per line,
+ * e.g. {@code {"description":"Buy milk","done":false,"priority":"HIGH","dueDate":"2025-06-01","creationDate":"2025-05-20",
+ * "id":7215841795424256,"lastModified":1748180000000}}.
+ * <p>
+ * Meant for exchanging tasks with other tools. Missing or unknown keys are tolerated (a missing priority
+ * becomes {@code MEDIUM}, a missing ID is assigned on load); lines that are not a flat object are logged and skipped, like malformed CSV lines.
+ */
+public class JsonLinesTaskStore implements TaskStore {
+
+    private static final System.Logger LOG = System.getLogger(JsonLinesTaskStore.class.getName());
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path path;
+
+    /**
+     * Creates a store for the given JSON Lines file.
+     * @param path The data file.
+     */
+    public JsonLinesTaskStore(Path path) {
+        this.path = path;
+    }
+
+    @Override
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public List<TodoItem> load() throws IOException {
+        List<TodoItem> items = new ArrayList<>();
+        if (!Files.exists(path)) {
+            return items;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                TodoItem item = parse(line);
+                if (item != null) {
+                    items.add(item);
+                } else {
+                    Metrics.increment(Metrics.Counter.MALFORMED_LINES_SKIPPED);
+                }
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Parses whole lines read by {@link TaskFileReader}; blank lines are skipped, malformed ones logged and skipped.
+     * @param lines UTF-8 lines, from index 0 to the limit; the last one may lack its line feed.
+     * @return The parsed tasks, in file order.
+     */
+    static List<TodoItem> parseLines(ByteBuffer lines) {
+        List<TodoItem> items = new ArrayList<>();
+        String text = StandardCharsets.UTF_8.decode(lines).toString();
+        int start = 0;
+        while (start < text.length()) {
+            int end = text.indexOf('\n', start);
+            if (end < 0) {
+                end = text.length();
+            }
+            String line = text.substring(start, end > start && text.charAt(end - 1) == '\r' ? end - 1 : end);
+            start = end + 1;
+            if (line.isBlank()) {
+                continue;
+            }
+            TodoItem item = parse(line);
+            if (item != null) {
+                items.add(item);
+            } else {
+                Metrics.increment(Metrics.Counter.MALFORMED_LINES_SKIPPED);
+            }
+        }
+        return items;
+    }
+
+    @Override
+    public void save(List<TaskRecord> records) throws IOException {
+        AtomicFiles.replace(path, channel -> {
+            Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8);
+            StringBuilder buffer = new StringBuilder(BUFFER_SIZE + 256);
+            for (TaskRecord record : records) {
+                TaskJson.appendRecord(buffer, record);
+                buffer.append('\n');
+                if (buffer.length() >= BUFFER_SIZE) {
+                    writer.append(buffer);
+                    buffer.setLength(0);
+                }
+            }
+            writer.append(buffer);
+            writer.flush();
+        });
+    }
+
+    /**
+     * Parses one line.
+     * @return The parsed item, or null if the line was malformed (the problem is logged).
+     */
+    private static TodoItem parse(String line) {
+        String description = null;
+        boolean done = false;
+        TodoItem.Priority priority = TodoItem.Priority.MEDIUM;
+        LocalDate dueDate = null;
+        LocalDate creationDate = null;
+        long id = TaskIds.NONE;
+        long lastModified = 0;
+        try {
+            TaskJson.Scanner scanner = new TaskJson.Scanner(line);
+            scanner.expect('{');
+            if (!scanner.consume('}')) {
+                do {
+                    String key = scanner.string();
+                    scanner.expect(':');
+                    Object value = scanner.value();
+                    switch (key) {
+                        case "description":
+                            description = (String) value;
+                            break;
+                        case "done":
+                            done = Boolean.TRUE.equals(value);
+                            break;
+                        case "priority":
+                            priority = value == null ? priority : TodoItem.Priority.valueOf((String) value);
+                            break;
+                        case "dueDate":
+                            dueDate = value == null ? null : LocalDate.parse((String) value);
+                            break;
+                        case "creationDate":
+                            creationDate = value == null ? null : LocalDate.parse((String) value);
+                            break;
+                        case "id":
+                            id = value == null ? TaskIds.NONE : (Long) value;
+                            break;
+                        case "lastModified":
+                            lastModified = value == null ? 0 : (Long) value;
+                            break;
+                        default:
+                            // Unknown keys are ignored.
+                            break;
+                    }
+                } while (scanner.consume(','));
+                scanner.expect('}');
+            }
+            scanner.expectEnd();
+        } catch (IllegalArgumentException | ClassCastException | DateTimeException e) {
+            LOG.log(Level.WARNING, "Skipping malformed JSON task line: [" + line + "]. Details: " + e.getMessage());
+            return null;
+        }
+        if (description == null) {
+            LOG.log(Level.WARNING, "Skipping JSON task line without description: [" + line + "]");
+            return null;
+        }
+        return new TodoItem(description, done, priority, toEpochDay(dueDate),
+                creationDate != null ? toEpochDay(creationDate) : (int) LocalDate.now().toEpochDay(), id, lastModified);
+    }
+
+    private static int toEpochDay(LocalDate date) {
+        return date == null ? Integer.MIN_VALUE : (int) date.toEpochDay();
+    }
+}
@@ -0,0 +1,816 @@
+package todolistapp.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.System.Logger.Level;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * {@link TaskStore} backed by an embedded log-structured key-value store in a directory, with tasks keyed by ID.
+ * <p>
+ * Besides loading and saving whole lists, it reads and writes single tasks: {@link #get(long)}, {@link #put(TaskRecord)},
+ * {@link #delete(long)}, and {@link #scanByDueDate(LocalDate, LocalDate)}, so tools can work on lists that do not fit
+ * into memory. A put or delete appends one record to a write-ahead log ({@value #WAL_FILE}) and updates an in-memory
+ * sorted table; it costs microseconds, and reaches the disk with the next {@link #sync()}. Once the table holds more
+ * than {@code memtableLimit} bytes, it is written as an immutable {@link TaskSegment} sorted by ID and the log starts
+ * over. Reads look at the table and then at the segments from newest to oldest, each guarded by a Bloom filter, so a
+ * point read needs at most one small disk read per segment that may hold the task. When there are more than
+ * {@value #MAX_SEGMENTS} segments, they are merged into one, dropping overwritten and deleted tasks.
+ * <p>
+ * Memory use is bounded by the table limit plus about 1.5 bytes per stored task for the sparse indexes and Bloom
+ * filters of the segments; merging segments additionally needs 12 bytes per task with a due date while it runs.
+ * The list of live segments is kept in {@value #MANIFEST_FILE}, which is replaced atomically, so a crash leaves
+ * either the old or the new set of segments, plus the log to replay. Each log starts with a generation number, and
+ * the manifest names the generation whose records are not yet in its segments, so a log that was already written
+ * into a segment when the process died is discarded rather than replayed over newer data.
+ * <p>
+ * Segments are sorted by ID, but a list is not: imports and syncs add tasks with older or foreign IDs, and
+ * {@link TaskJournal} replays its edits by position. So {@link #save(List)} also writes the IDs in list order to
+ * an order file ({@value #ORDER_SUFFIX}) listed in the manifest, and {@link #load()} returns the tasks in that
+ * order. Tasks put since the last save that were not in it follow in ID order; deleted ones are left out.
+ * {@link #saveChanges(List, Set, Set)} saves a list of which only a few tasks changed: it writes them and the new
+ * order file name as a single log record, so a checkpoint of a large list costs its order file plus the changes.
+ * <p>
+ * Thread-safe; operations are serialized. The directory is opened on first use.
+ */
+public class LogStructuredTaskStore implements TaskStore, Closeable {
+
+    private static final System.Logger LOG = System.getLogger(LogStructuredTaskStore.class.getName());
+
+    /** Default size of the in-memory table before it is written as a segment. */
+    public static final long DEFAULT_MEMTABLE_LIMIT = 8L << 20;
+
+    /** Name of the write-ahead log in the store directory. */
+    static final String WAL_FILE = "wal.log";
+    /** Name of the file listing the live segments. */
+    static final String MANIFEST_FILE = "MANIFEST";
+    /** Number of segments above which all segments are merged into one. */
+    static final int MAX_SEGMENTS = 8;
+
+    private static final int MANIFEST_MAGIC = 0x54444D46; // "TDMF"
+    private static final int WAL_MAGIC = 0x5444574C; // "TDWL"
+    private static final int VERSION = 1;
+    /** Version 3 of the manifest names the log generation; version 1 and 2 manifests are still read. */
+    private static final int MANIFEST_VERSION = 3;
+    /** The first manifest version that names an order file. */
+    private static final int MANIFEST_VERSION_WITH_ORDER = 2;
+    /** Version 2 of the log has a generation in its header; version 1 logs, of generation 0, are still replayed. */
+    private static final int WAL_VERSION = 2;
+    private static final int ORDER_MAGIC = 0x54444F52; // "TDOR"
+    private static final int ORDER_HEADER_SIZE = 4 + 4 + 4;
+    private static final int WAL_HEADER_SIZE = 4 + 4 + 8;
+    private static final int WAL_V1_HEADER_SIZE = 4 + 4;
+    private static final int WAL_RECORD_OVERHEAD = 4 + 4;
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+    /** A save of changed tasks: the new order file, the tasks put, and the IDs deleted. */
+    private static final byte OP_SAVE = 3;
+    private static final String SEGMENT_SUFFIX = ".seg";
+    static final String ORDER_SUFFIX = ".order";
+    /** Rough heap cost of a table entry besides its encoded record: the tree node and the boxed key. */
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private final Path directory;
+    private final long memtableLimit;
+
+    private boolean open;
+    /** Changes not yet in a segment, by ID; deletions are {@link TaskSegment#TOMBSTONE}. */
+    private final TreeMap<Long, TaskRecord> memtable = new TreeMap<>();
+    private long memtableBytes;
+    /** Live segments, oldest first. */
+    private final List<TaskSegment> segments = new ArrayList<>();
+    private long nextSegment = 1;
+    /** The number of the live order file, or 0 if the store was never saved as a whole. */
+    private long order;
+    /** The generation of the log; the records of older generations are all in segments. */
+    private long walGeneration;
+    private FileChannel wal;
+    private ByteBuffer walBuffer = ByteBuffer.allocate(256);
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Creates a store in a directory with the default table limit.
+     * @param directory The store directory; created on first use.
+     */
+    public LogStructuredTaskStore(Path directory) {
+        this(directory, DEFAULT_MEMTABLE_LIMIT);
+    }
+
+    /**
+     * Creates a store in a directory.
+     * @param directory The store directory; created on first use.
+     * @param memtableLimit The estimated heap size, in bytes, of unwritten changes after which they are written
+     *                      as a segment.
+     */
+    public LogStructuredTaskStore(Path directory, long memtableLimit) {
+        this.directory = directory;
+        this.memtableLimit = memtableLimit;
+    }
+
+    @Override
+    public Path getPath() {
+        return directory;
+    }
+
+    /**
+     * Reads a single task.
+     * @param id The ID of the task.
+     * @return The task, or null if the store has no task with this ID.
+     * @throws IOException If the store cannot be read.
+     */
+    public synchronized TaskRecord get(long id) throws IOException {
+        ensureOpen();
+        TaskRecord record = memtable.get(id);
+        for (int i = segments.size() - 1; record == null && i >= 0; i--) {
+            record = segments.get(i).get(id);
+        }
+        return record == TaskSegment.TOMBSTONE ? null : record;
+    }
+
+    /**
+     * Adds or replaces a single task.
+     * @param record The task; its ID is the key.
+     * @throws IOException If the log cannot be written.
+     */
+    public synchronized void put(TaskRecord record) throws IOException {
+        if (record.id() == TaskIds.NONE) {
+            throw new IllegalArgumentException("Task has no ID: " + record);
+        }
+        ensureOpen();
+        byte[] description = TaskRecordCodec.descriptionBytes(record);
+        ByteBuffer payload = beginLog(OP_PUT, TaskRecordCodec.encodedSize(description));
+        TaskRecordCodec.encode(payload, record, description);
+        appendLog();
+        remember(record.id(), record, TaskRecordCodec.encodedSize(description));
+        flushIfFull();
+    }
+
+    /**
+     * Removes a single task. Nothing happens if there is no task with this ID.
+     * @param id The ID of the task.
+     * @throws IOException If the log cannot be written.
+     */
+    public synchronized void delete(long id) throws IOException {
+        ensureOpen();
+        beginLog(OP_DELETE, 8).putLong(id);
+        appendLog();
+        remember(id, TaskSegment.TOMBSTONE, 8);
+        flushIfFull();
+    }
+
+    /**
+     * Reads the tasks due in a range of days, using the due-date indexes of the segments.
+     * @param from The first due date of the range.
+     * @param to The last due date of the range.
+     * @return The tasks, ordered by due date and then by ID.
+     * @throws IOException If the store cannot be read.
+     */
+    public synchronized List<TaskRecord> scanByDueDate(LocalDate from, LocalDate to) throws IOException {
+        ensureOpen();
+        int fromDay = (int) from.toEpochDay();
+        int toDay = (int) to.toEpochDay();
+        Set<Long> candidates = new HashSet<>();
+        for (Map.Entry<Long, TaskRecord> entry : memtable.entrySet()) {
+            int due = TaskRecordCodec.dueEpochDay(entry.getValue());
+            if (entry.getValue() != TaskSegment.TOMBSTONE && due >= fromDay && due <= toDay) {
+                candidates.add(entry.getKey());
+            }
+        }
+        for (TaskSegment segment : segments) {
+            segment.forEachDue(fromDay, toDay, candidates::add);
+        }
+        // A candidate may have been moved out of the range or deleted by a newer entry
+        List<TaskRecord> records = new ArrayList<>(candidates.size());
+        for (long id : candidates) {
+            TaskRecord record = get(id);
+            if (record != null) {
+                int due = TaskRecordCodec.dueEpochDay(record);
+                if (due >= fromDay && due <= toDay) {
+                    records.add(record);
+                }
+            }
+        }
+        records.sort(Comparator.comparing(TaskRecord::dueDate).thenComparingLong(TaskRecord::id));
+        return records;
+    }
+
+    /**
+     * Makes all puts and deletes so far durable.
+     * @throws IOException If forcing the log fails.
+     */
+    public synchronized void sync() throws IOException {
+        ensureOpen();
+        wal.force(false);
+    }
+
+    /**
+     * Writes the in-memory table as a segment, so the log can start over.
+     * @throws IOException If writing fails.
+     */
+    public synchronized void flush() throws IOException {
+        ensureOpen();
+        if (memtable.isEmpty()) {
+            return;
+        }
+        TaskSegment segment = TaskSegment.write(nextSegmentPath(), memtable.entrySet().iterator(), memtable.size());
+        List<TaskSegment> live = new ArrayList<>(segments);
+        live.add(segment);
+        replaceSegments(live);
+        if (segments.size() > MAX_SEGMENTS) {
+            compact();
+        }
+    }
+
+    /**
+     * Merges all segments into one, dropping overwritten and deleted tasks.
+     * @throws IOException If writing fails.
+     */
+    public synchronized void compact() throws IOException {
+        ensureOpen();
+        if (!memtable.isEmpty()) {
+            flush();
+            if (segments.size() <= 1) {
+                return;
+            }
+        }
+        int expected = 0;
+        for (TaskSegment segment : segments) {
+            expected += segment.size();
+        }
+        TaskSegment merged = TaskSegment.write(nextSegmentPath(), new MergingIterator(false, true), expected);
+        replaceSegments(new ArrayList<>(List.of(merged)));
+    }
+
+    @Override
+    public synchronized List<TodoItem> load() throws IOException {
+        ensureOpen();
+        List<TaskRecord> records = new ArrayList<>();
+        try {
+            Iterator<Map.Entry<Long, TaskRecord>> live = new MergingIterator(true, true);
+            while (live.hasNext()) {
+                records.add(live.next().getValue());
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        long[] ids = new long[records.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = records.get(i).id();
+        }
+        // The records are in ID order, so the order file is resolved by binary search
+        List<TodoItem> items = new ArrayList<>(records.size());
+        boolean[] listed = new boolean[records.size()];
+        if (order != 0) {
+            for (long id : readOrder(orderPath(order))) {
+                int index = Arrays.binarySearch(ids, id);
+                if (index >= 0 && !listed[index]) {
+                    listed[index] = true;
+                    items.add(TodoItem.of(records.get(index)));
+                }
+            }
+        }
+        for (int i = 0; i < listed.length; i++) {
+            if (!listed[i]) {
+                items.add(TodoItem.of(records.get(i)));
+            }
+        }
+        return items;
+    }
+
+    @Override
+    public synchronized void save(List<TaskRecord> records) throws IOException {
+        ensureOpen();
+        List<TaskRecord> sorted = new ArrayList<>(records.size());
+        for (TaskRecord record : records) {
+            sorted.add(record.id() == TaskIds.NONE ? withNewId(record) : record);
+        }
+        long number = nextSegment;
+        writeOrder(orderPath(number), sorted);
+        sorted.sort(Comparator.comparingLong(TaskRecord::id));
+        Iterator<Map.Entry<Long, TaskRecord>> entries = sorted.stream()
+                .map(record -> Map.entry(record.id(), record)).iterator();
+        TaskSegment segment = TaskSegment.write(nextSegmentPath(), entries, sorted.size());
+        long previousOrder = order;
+        order = number;
+        replaceSegments(new ArrayList<>(List.of(segment)));
+        if (previousOrder != 0) {
+            Files.deleteIfExists(orderPath(previousOrder));
+        }
+    }
+
+    /**
+     * Saves a list of which only some tasks changed since it was last saved or loaded. Unlike {@link #save(List)},
+     * which writes every task into a new segment, this writes the order file and one log record with the changed
+     * tasks and the removed IDs, and makes it durable; the record is replayed as a whole or not at all.
+     * @param records The whole list, in list order.
+     * @param changed The IDs of the tasks added or edited since the last save.
+     * @param removed The IDs of the tasks removed since the last save; none of them may be in {@code changed}.
+     * @throws IOException If writing fails.
+     */
+    public synchronized void saveChanges(List<TaskRecord> records, Set<Long> changed, Set<Long> removed)
+            throws IOException {
+        ensureOpen();
+        List<TaskRecord> puts = new ArrayList<>(changed.size());
+        List<byte[]> descriptions = new ArrayList<>(changed.size());
+        int payloadSize = 8 + 4 + 4 + 8 * removed.size();
+        for (TaskRecord record : records) {
+            if (record.id() == TaskIds.NONE) {
+                // A task without ID is not in the store yet and has no key to put it under
+                save(records);
+                return;
+            }
+            if (changed.contains(record.id())) {
+                byte[] description = TaskRecordCodec.descriptionBytes(record);
+                puts.add(record);
+                descriptions.add(description);
+                payloadSize += TaskRecordCodec.encodedSize(description);
+            }
+        }
+        long number = nextSegment++;
+        writeOrder(orderPath(number), records);
+        ByteBuffer payload = beginLog(OP_SAVE, payloadSize).putLong(number).putInt(puts.size());
+        for (int i = 0; i < puts.size(); i++) {
+            TaskRecordCodec.encode(payload, puts.get(i), descriptions.get(i));
+        }
+        payload.putInt(removed.size());
+        for (long id : removed) {
+            payload.putLong(id);
+        }
+        appendLog();
+        wal.force(false);
+        for (int i = 0; i < puts.size(); i++) {
+            remember(puts.get(i).id(), puts.get(i), TaskRecordCodec.encodedSize(descriptions.get(i)));
+        }
+        for (long id : removed) {
+            remember(id, TaskSegment.TOMBSTONE, 8);
+        }
+        long previousOrder = order;
+        order = number;
+        if (previousOrder != 0) {
+            Files.deleteIfExists(orderPath(previousOrder));
+        }
+        flushIfFull();
+    }
+
+    /**
+     * Identifies the list last saved: changes with every {@link #save(List)} and {@link #saveChanges(List, Set, Set)}
+     * that reached the disk, and with nothing else.
+     * @return The number of the live order file, or 0 if the store was never saved as a whole.
+     * @throws IOException If the store cannot be opened.
+     */
+    synchronized long savedListNumber() throws IOException {
+        ensureOpen();
+        return order;
+    }
+
+    /**
+     * Writes pending changes to the disk and closes the files. The store opens again on its next use.
+     * @throws IOException If forcing the log fails.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!open) {
+            return;
+        }
+        open = false;
+        try {
+            wal.force(false);
+            wal.close();
+        } finally {
+            for (TaskSegment segment : segments) {
+                segment.close();
+            }
+            segments.clear();
+            memtable.clear();
+            memtableBytes = 0;
+            order = 0;
+        }
+    }
+
+    /** Enters a logged change into the table; see {@link #flushIfFull()}. */
+    private void remember(long id, TaskRecord record, int encodedSize) {
+        TaskRecord previous = memtable.put(id, record);
+        memtableBytes += ENTRY_OVERHEAD + encodedSize;
+        if (previous != null) {
+            memtableBytes -= ENTRY_OVERHEAD + (previous == TaskSegment.TOMBSTONE ? 8
+                    : TaskRecordCodec.encodedSize(TaskRecordCodec.descriptionBytes(previous)));
+        }
+    }
+
+    /** Writes the table as a segment once it is over its limit; only between log records, as it resets the log. */
+    private void flushIfFull() throws IOException {
+        if (memtableBytes > memtableLimit) {
+            flush();
+        }
+    }
+
+    /**
+     * Makes the given segments the live ones: records them in the manifest, closes and deletes the segments
+     * they replace, and starts a new log, since the memtable is now in a segment. The manifest names the new log
+     * generation, so should the process die before the log is reset, the old log is not replayed over the segments.
+     */
+    private void replaceSegments(List<TaskSegment> live) throws IOException {
+        long generation = walGeneration + 1;
+        writeManifest(live, generation);
+        walGeneration = generation;
+        for (TaskSegment segment : segments) {
+            if (!live.contains(segment)) {
+                segment.close();
+                Files.deleteIfExists(segment.getPath());
+            }
+        }
+        segments.clear();
+        segments.addAll(live);
+        memtable.clear();
+        memtableBytes = 0;
+        resetLog();
+    }
+
+    /** Empties the log and starts it over with the current generation. */
+    private void resetLog() throws IOException {
+        // Truncated first, so a crash in between leaves an empty log rather than old records under a new header
+        wal.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(WAL_HEADER_SIZE)
+                .putInt(WAL_MAGIC).putInt(WAL_VERSION).putLong(walGeneration).flip();
+        wal.position(0);
+        while (header.hasRemaining()) {
+            wal.write(header);
+        }
+        wal.force(false);
+    }
+
+    private void ensureOpen() throws IOException {
+        if (open) {
+            return;
+        }
+        Files.createDirectories(directory);
+        Set<Path> live = new HashSet<>();
+        try {
+            readManifest(live);
+            openLog();
+            // The log may name a newer order file than the manifest
+            if (order != 0) {
+                live.add(orderPath(order));
+            }
+            deleteStrayFiles(live);
+        } catch (IOException | RuntimeException e) {
+            if (wal != null) {
+                wal.close();
+            }
+            for (TaskSegment segment : segments) {
+                segment.close();
+            }
+            segments.clear();
+            memtable.clear();
+            memtableBytes = 0;
+            order = 0;
+            throw e;
+        }
+        open = true;
+    }
+
+    private void readManifest(Set<Path> live) throws IOException {
+        walGeneration = 0;
+        ByteBuffer manifest;
+        try {
+            manifest = ByteBuffer.wrap(Files.readAllBytes(directory.resolve(MANIFEST_FILE)));
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        try {
+            int version = manifest.getInt() == MANIFEST_MAGIC ? manifest.getInt() : -1;
+            if (version < VERSION || version > MANIFEST_VERSION) {
+                throw new IOException("Not a task store manifest: " + directory.resolve(MANIFEST_FILE));
+            }
+            nextSegment = manifest.getLong();
+            int count = manifest.getInt();
+            for (int i = 0; i < count; i++) {
+                Path path = segmentPath(manifest.getLong());
+                segments.add(TaskSegment.open(path));
+                live.add(path);
+            }
+            order = version >= MANIFEST_VERSION_WITH_ORDER ? manifest.getLong() : 0;
+            if (order != 0) {
+                live.add(orderPath(order));
+            }
+            walGeneration = version >= MANIFEST_VERSION ? manifest.getLong() : 0;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated task store manifest: " + directory.resolve(MANIFEST_FILE), e);
+        }
+    }
+
+    private void writeManifest(List<TaskSegment> live, long generation) throws IOException {
+        ByteBuffer manifest = ByteBuffer.allocate(4 + 4 + 8 + 4 + 8 * live.size() + 8 + 8);
+        manifest.putInt(MANIFEST_MAGIC).putInt(MANIFEST_VERSION).putLong(nextSegment).putInt(live.size());
+        for (TaskSegment segment : live) {
+            String name = segment.getPath().getFileName().toString();
+            manifest.putLong(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+        }
+        manifest.putLong(order).putLong(generation);
+        manifest.flip();
+        AtomicFiles.replace(directory.resolve(MANIFEST_FILE), channel -> {
+            while (manifest.hasRemaining()) {
+                channel.write(manifest);
+            }
+        });
+    }
+
+    /** Removes segments that are not in the manifest and temporary files, left over from a crash. */
+    private void deleteStrayFiles(Set<Path> live) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (((name.endsWith(SEGMENT_SUFFIX) || name.endsWith(ORDER_SUFFIX)) && !live.contains(file))
+                        || name.endsWith(".tmp")) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Opens the log, replaying its records into the table, and cuts off a torn last record. A log of an older
+     * generation than the manifest names is already in the segments and starts over instead.
+     */
+    private void openLog() throws IOException {
+        Path file = directory.resolve(WAL_FILE);
+        wal = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer log = ByteBuffer.allocate((int) wal.size());
+        while (log.hasRemaining() && wal.read(log) >= 0) {
+            // read the whole log
+        }
+        log.flip();
+        long generation = -1;
+        if (log.remaining() >= WAL_V1_HEADER_SIZE && log.getInt() == WAL_MAGIC) {
+            int version = log.getInt();
+            if (version == VERSION) {
+                generation = 0;
+            } else if (version == WAL_VERSION && log.remaining() >= 8) {
+                generation = log.getLong();
+            }
+        }
+        if (generation < walGeneration) {
+            if (generation >= 0 && log.hasRemaining()) {
+                LOG.log(Level.INFO, "Discarding " + file + ", which is already in the segments.");
+            }
+            resetLog();
+            return;
+        }
+        int replayed = 0;
+        while (log.remaining() >= WAL_RECORD_OVERHEAD) {
+            int start = log.position();
+            int length = log.getInt();
+            int checksum = log.getInt();
+            if (length <= 0 || length > log.remaining()) {
+                log.position(start);
+                break;
+            }
+            ByteBuffer payload = log.slice(log.position(), length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                log.position(start);
+                break;
+            }
+            log.position(log.position() + length);
+            byte op = payload.get();
+            if (op == OP_PUT) {
+                TaskRecord record = TaskRecordCodec.decode(payload);
+                memtable.put(record.id(), record);
+                memtableBytes += ENTRY_OVERHEAD + length;
+            } else if (op == OP_DELETE) {
+                memtable.put(payload.getLong(), TaskSegment.TOMBSTONE);
+                memtableBytes += ENTRY_OVERHEAD + length;
+            } else {
+                replaySave(payload);
+            }
+            replayed++;
+        }
+        if (log.hasRemaining()) {
+            LOG.log(Level.WARNING, "Discarding a torn record at the end of " + file);
+            wal.truncate(log.position());
+        }
+        wal.position(log.position());
+        if (replayed > 0) {
+            LOG.log(Level.INFO, replayed + " log records replayed from " + file + ".");
+        }
+    }
+
+    /** Replays a {@link #saveChanges(List, Set, Set)} record. */
+    private void replaySave(ByteBuffer payload) {
+        order = payload.getLong();
+        nextSegment = Math.max(nextSegment, order + 1);
+        for (int i = payload.getInt(); i > 0; i--) {
+            int start = payload.position();
+            TaskRecord record = TaskRecordCodec.decode(payload);
+            remember(record.id(), record, payload.position() - start);
+        }
+        for (int i = payload.getInt(); i > 0; i--) {
+            remember(payload.getLong(), TaskSegment.TOMBSTONE, 8);
+        }
+    }
+
+    /** Starts a log record; the payload is written into the returned buffer, then {@link #appendLog()} is called. */
+    private ByteBuffer beginLog(byte op, int payloadSize) {
+        int size = WAL_RECORD_OVERHEAD + 1 + payloadSize;
+        if (walBuffer.capacity() < size) {
+            walBuffer = ByteBuffer.allocate(Math.max(size, walBuffer.capacity() * 2));
+        }
+        walBuffer.clear();
+        walBuffer.position(WAL_RECORD_OVERHEAD);
+        return walBuffer.put(op);
+    }
+
+    private void appendLog() throws IOException {
+        int length = walBuffer.position() - WAL_RECORD_OVERHEAD;
+        crc.reset();
+        crc.update(walBuffer.array(), WAL_RECORD_OVERHEAD, length);
+        walBuffer.putInt(0, length).putInt(4, (int) crc.getValue());
+        walBuffer.flip();
+        while (walBuffer.hasRemaining()) {
+            wal.write(walBuffer);
+        }
+    }
+
+    /** Writes the IDs of a list in list order; the file only becomes live with the next manifest. */
+    private static void writeOrder(Path file, List<TaskRecord> records) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        buffer.putInt(ORDER_MAGIC).putInt(VERSION).putInt(records.size());
+        AtomicFiles.replace(file, channel -> {
+            for (TaskRecord record : records) {
+                if (buffer.remaining() < 8) {
+                    write(channel, buffer);
+                }
+                buffer.putLong(record.id());
+            }
+            write(channel, buffer);
+        });
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /** @return The IDs of the last saved list, in list order. */
+    private static long[] readOrder(Path file) throws IOException {
+        ByteBuffer order = ByteBuffer.wrap(Files.readAllBytes(file));
+        try {
+            if (order.getInt() != ORDER_MAGIC || order.getInt() != VERSION) {
+                throw new IOException("Not a task order file: " + file);
+            }
+            long[] ids = new long[order.getInt()];
+            order.asLongBuffer().get(ids);
+            return ids;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated task order file: " + file, e);
+        }
+    }
+
+    private Path orderPath(long number) {
+        return directory.resolve(String.format(Locale.ROOT, "%08d%s", number, ORDER_SUFFIX));
+    }
+
+    private Path nextSegmentPath() {
+        return segmentPath(nextSegment++);
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve(String.format(Locale.ROOT, "%08d%s", number, SEGMENT_SUFFIX));
+    }
+
+    private static TaskRecord withNewId(TaskRecord record) {
+        return new TaskRecord(record.description(), record.done(), record.priority(), record.dueDate(),
+                record.creationDate(), TaskIds.next(), record.lastModified());
+    }
+
+    /**
+     * Merges the table and all segments into one stream of entries in ID order, keeping only the newest entry of
+     * every ID. Reading errors surface as {@link UncheckedIOException}.
+     */
+    private final class MergingIterator implements Iterator<Map.Entry<Long, TaskRecord>> {
+        private final PriorityQueue<Source> sources = new PriorityQueue<>(
+                Comparator.comparingLong(Source::id).thenComparingInt(source -> -source.age));
+        private final boolean dropDeletions;
+        private Map.Entry<Long, TaskRecord> next;
+
+        /**
+         * @param includeMemtable True to merge the table as well; false to merge only the segments.
+         * @param dropDeletions True to leave deletions out, which is only right if all levels are merged.
+         */
+        MergingIterator(boolean includeMemtable, boolean dropDeletions) {
+            this.dropDeletions = dropDeletions;
+            for (int i = 0; i < segments.size(); i++) {
+                TaskSegment.Cursor cursor = segments.get(i).cursor();
+                addSource(new Source(i) {
+                    @Override
+                    boolean advance() throws IOException {
+                        if (!cursor.next()) {
+                            return false;
+                        }
+                        id = cursor.id();
+                        record = cursor.record();
+                        return true;
+                    }
+                });
+            }
+            if (includeMemtable) {
+                Iterator<Map.Entry<Long, TaskRecord>> entries = memtable.entrySet().iterator();
+                addSource(new Source(segments.size()) {
+                    @Override
+                    boolean advance() {
+                        if (!entries.hasNext()) {
+                            return false;
+                        }
+                        Map.Entry<Long, TaskRecord> entry = entries.next();
+                        id = entry.getKey();
+                        record = entry.getValue();
+                        return true;
+                    }
+                });
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && !sources.isEmpty()) {
+                Source newest = sources.poll();
+                long id = newest.id;
+                TaskRecord record = newest.record;
+                addSource(newest);
+                // Older entries of the same ID are shadowed
+                while (!sources.isEmpty() && sources.peek().id == id) {
+                    addSource(sources.poll());
+                }
+                if (!(dropDeletions && record == TaskSegment.TOMBSTONE)) {
+                    next = Map.entry(id, record);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<Long, TaskRecord> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<Long, TaskRecord> entry = next;
+            next = null;
+            return entry;
+        }
+
+        /** Moves a source to its next entry and queues it again, unless it is exhausted. */
+        private void addSource(Source source) {
+            try {
+                if (source.advance()) {
+                    sources.add(source);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /** One level in a {@link MergingIterator}; higher ages are newer. */
+    private abstract static class Source {
+        final int age;
+        long id;
+        TaskRecord record;
+
+        Source(int age) {
+            this.age = age;
+        }
+
+        long id() {
+            return id;
+        }
+
+        /** Moves to the next entry; returns false if there is none. */
+        abstract boolean advance() throws IOException;
+    }
+}
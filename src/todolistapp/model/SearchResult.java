@@ -0,0 +1,72 @@
+package todolistapp.model;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The tasks matching a {@link TaskSearchIndex} query, with their relevance scores.
+ * A result is a snapshot: it does not follow later changes of the task list. It can also be asked about
+ * the {@link TaskRecord}s of a {@link TaskSnapshot}, by task ID, on any thread.
+ */
+public final class SearchResult {
+
+    /** The result of a query that matches nothing. */
+    public static final SearchResult EMPTY = new SearchResult(List.of(), new int[0]);
+
+    private final List<TodoItem> items;
+    private final Map<TodoItem, Integer> scores = new IdentityHashMap<>();
+    private final Map<Long, Integer> scoresById = new HashMap<>();
+
+    SearchResult(List<TodoItem> items, int[] scores) {
+        this.items = Collections.unmodifiableList(items);
+        for (int i = 0; i < items.size(); i++) {
+            this.scores.put(items.get(i), scores[i]);
+            scoresById.put(items.get(i).getId(), scores[i]);
+        }
+    }
+
+    /** @return The matching tasks, in no particular order. */
+    public List<TodoItem> getItems() {
+        return items;
+    }
+
+    /** @return The number of matching tasks. */
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * @param item The task to check.
+     * @return True if the task matched the query.
+     */
+    public boolean contains(TodoItem item) {
+        return scores.containsKey(item);
+    }
+
+    /**
+     * @param item The task to rank.
+     * @return The relevance of the task, higher is better; 0 if it did not match.
+     */
+    public int score(TodoItem item) {
+        return scores.getOrDefault(item, 0);
+    }
+
+    /**
+     * @param record The snapshot of a task to check.
+     * @return True if the task with the record's ID matched the query.
+     */
+    public boolean contains(TaskRecord record) {
+        return scoresById.containsKey(record.id());
+    }
+
+    /**
+     * @param record The snapshot of a task to rank.
+     * @return The relevance of the task with the record's ID, higher is better; 0 if it did not match.
+     */
+    public int score(TaskRecord record) {
+        return scoresById.getOrDefault(record.id(), 0);
+    }
+}
@@ -0,0 +1,111 @@
+package todolistapp.model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link TaskReplica} backed by a single task file of any {@link TaskStore}, e.g. a copy of {@code tasks.csv}
+ * from another machine.
+ * <p>
+ * A plain task file has no digests, so {@link #readDigests()} reads the whole file and computes them; that
+ * part of a sync costs time proportional to the size of the list. Only the tasks of changed buckets are
+ * compared and merged, though, and the file is rewritten (keeping its task order) only if the sync changed
+ * it. Use a {@link DirectoryTaskReplica} where the replica itself should be cheap to compare.
+ * <p>
+ * Tasks from files written before tasks had IDs get new IDs on every read, so such a file should be
+ * rewritten once (e.g. by loading and saving it) before it is synced.
+ */
+public class StoreTaskReplica implements TaskReplica {
+
+    private final TaskStore store;
+    /** The tasks of the file in file order, read by {@link #readDigests()}. */
+    private List<TaskRecord> records;
+    /** The same tasks grouped by bucket, built when the first bucket is read. */
+    private List<List<TaskRecord>> byBucket;
+
+    /**
+     * Creates a replica for a task file.
+     * @param store The store of the file.
+     */
+    public StoreTaskReplica(TaskStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public long[] readDigests() throws IOException {
+        List<TodoItem> items = store.load();
+        records = new ArrayList<>(items.size());
+        byBucket = null;
+        long[] digests = new long[TaskSync.BUCKETS];
+        for (TodoItem item : items) {
+            TaskRecord record = TaskRecord.of(item);
+            records.add(record);
+            digests[TaskSync.bucketOf(record.id())] ^= TaskSync.contentHash(record);
+        }
+        return digests;
+    }
+
+    @Override
+    public List<TaskRecord> readBucket(int bucket) throws IOException {
+        if (byBucket == null) {
+            byBucket = new ArrayList<>(TaskSync.BUCKETS);
+            for (int i = 0; i < TaskSync.BUCKETS; i++) {
+                byBucket.add(new ArrayList<>());
+            }
+            for (TaskRecord record : records()) {
+                byBucket.get(TaskSync.bucketOf(record.id())).add(record);
+            }
+        }
+        return new ArrayList<>(byBucket.get(bucket));
+    }
+
+    @Override
+    public void writeBuckets(Map<Integer, List<TaskRecord>> buckets, long[] digests) throws IOException {
+        if (buckets.isEmpty()) {
+            return;
+        }
+        Map<Long, TaskRecord> replacements = new HashMap<>();
+        for (List<TaskRecord> bucket : buckets.values()) {
+            for (TaskRecord record : bucket) {
+                replacements.put(record.id(), record);
+            }
+        }
+        // Tasks keep their place in the file; new tasks are appended, removed ones dropped
+        List<TaskRecord> updated = new ArrayList<>(records().size() + replacements.size());
+        for (TaskRecord record : records()) {
+            if (!buckets.containsKey(TaskSync.bucketOf(record.id()))) {
+                updated.add(record);
+            } else {
+                TaskRecord replacement = replacements.remove(record.id());
+                if (replacement != null) {
+                    updated.add(replacement);
+                }
+            }
+        }
+        for (List<TaskRecord> bucket : buckets.values()) {
+            for (TaskRecord record : bucket) {
+                if (replacements.remove(record.id()) != null) {
+                    updated.add(record);
+                }
+            }
+        }
+        store.save(updated);
+        records = updated;
+        byBucket = null;
+    }
+
+    private List<TaskRecord> records() throws IOException {
+        if (records == null) {
+            readDigests();
+        }
+        return records;
+    }
+
+    @Override
+    public String toString() {
+        return store.getPath().toString();
+    }
+}
@@ -0,0 +1,49 @@
+package todolistapp.model;
+
+import java.util.List;
+
+/**
+ * Receives fine-grained notifications about changes to the tasks of a {@link TodoListManager}.
+ * Unlike a plain {@code ListChangeListener}, it also reports edits of individual task fields,
+ * so subsystems such as the journal can react to every mutation without attaching their own
+ * listeners to each {@link TodoItem}.
+ * All callbacks are made on the thread that modifies the list (the JavaFX Application Thread in the UI).
+ */
+public interface TaskChangeListener {
+
+    /**
+     * Called after tasks were inserted into the list.
+     * @param from The list position of the first inserted task.
+     * @param added The inserted tasks, in list order.
+     */
+    void tasksAdded(int from, List<? extends TodoItem> added);
+
+    /**
+     * Called after tasks were removed from the list.
+     * @param from The list position the first removed task had.
+     * @param removed The removed tasks, in their former list order.
+     */
+    void tasksRemoved(int from, List<? extends TodoItem> removed);
+
+    /**
+     * Called after a field of a task in the list was changed.
+     * @param item The changed task.
+     * @param field The field that changed.
+     * @param oldValue The previous value of the field.
+     * @param newValue The new value of the field.
+     */
+    void taskUpdated(TodoItem item, TaskField field, Object oldValue, Object newValue);
+
+    /**
+     * Called before the changes of a {@link TodoListManager#batch(java.util.function.Consumer) batch}.
+     * Listeners that publish derived state may defer doing so until {@link #batchFinished()}.
+     */
+    default void batchStarted() {
+    }
+
+    /**
+     * Called after all changes of a batch, including a rollback if the batch failed, were reported.
+     */
+    default void batchFinished() {
+    }
+}
@@ -0,0 +1,301 @@
+package todolistapp.model;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Tasks stored column by column (struct-of-arrays) instead of as one object per task.
+ * <p>
+ * Each field is a primitive array indexed by row: a bitset for the completion status, a byte per
+ * priority ordinal, epoch-day ints for the due and creation dates ({@code Integer.MIN_VALUE} for no date),
+ * and longs for the ID and the last-modified time. Descriptions are kept off-heap in a {@link DescriptionArena}
+ * and referenced by address and length. Ten million tasks are a few dozen arrays to the garbage
+ * collector rather than tens of millions of objects.
+ * <p>
+ * Not thread-safe.
+ */
+final class TaskColumns {
+
+    /** Epoch day that stands for "no date". */
+    static final int NO_DATE = Integer.MIN_VALUE;
+    private static final TodoItem.Priority[] PRIORITIES = TodoItem.Priority.values();
+    private static final int INITIAL_CAPACITY = 16;
+
+    private DescriptionArena arena;
+    private int size;
+    private long[] done;
+    private byte[] priorities;
+    private int[] dueDays;
+    private int[] creationDays;
+    private long[] ids;
+    private long[] lastModified;
+    private long[] descriptionAddresses;
+    private int[] descriptionLengths;
+
+    /**
+     * Creates empty columns.
+     * @param capacity The number of rows to reserve.
+     */
+    TaskColumns(int capacity) {
+        this(new DescriptionArena(), capacity);
+    }
+
+    private TaskColumns(DescriptionArena arena, int capacity) {
+        this.arena = arena;
+        capacity = Math.max(capacity, INITIAL_CAPACITY);
+        done = new long[(capacity + 63) >>> 6];
+        priorities = new byte[capacity];
+        dueDays = new int[capacity];
+        creationDays = new int[capacity];
+        ids = new long[capacity];
+        lastModified = new long[capacity];
+        descriptionAddresses = new long[capacity];
+        descriptionLengths = new int[capacity];
+    }
+
+    /** @return The number of rows. */
+    int size() {
+        return size;
+    }
+
+    /** @return The arena holding the descriptions. */
+    DescriptionArena arena() {
+        return arena;
+    }
+
+    String description(int row) {
+        return arena.read(descriptionAddresses[row], descriptionLengths[row]);
+    }
+
+    long descriptionAddress(int row) {
+        return descriptionAddresses[row];
+    }
+
+    int descriptionLength(int row) {
+        return descriptionLengths[row];
+    }
+
+    boolean isDone(int row) {
+        return (done[row >>> 6] & 1L << row) != 0;
+    }
+
+    /** @return The priority ordinal. */
+    int priorityOrdinal(int row) {
+        return priorities[row];
+    }
+
+    TodoItem.Priority priority(int row) {
+        return PRIORITIES[priorities[row]];
+    }
+
+    int dueEpochDay(int row) {
+        return dueDays[row];
+    }
+
+    int creationEpochDay(int row) {
+        return creationDays[row];
+    }
+
+    long id(int row) {
+        return ids[row];
+    }
+
+    long lastModified(int row) {
+        return lastModified[row];
+    }
+
+    /**
+     * Finds the row of a task by scanning the ID column, starting at a likely row.
+     * @param id The ID.
+     * @param hint The row to check first, e.g. where the task was last seen; any value is allowed.
+     * @return The row, or -1 if no row has this ID.
+     */
+    int rowOf(long id, int hint) {
+        if (hint >= 0 && hint < size && ids[hint] == id) {
+            return hint;
+        }
+        for (int row = 0; row < size; row++) {
+            if (ids[row] == id) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    void setId(int row, long id) {
+        ids[row] = id;
+    }
+
+    void setLastModified(int row, long time) {
+        lastModified[row] = time;
+    }
+
+    void setDescription(int row, String description) {
+        arena.release(descriptionLengths[row]);
+        byte[] utf8 = encode(description);
+        descriptionAddresses[row] = arena.write(utf8);
+        descriptionLengths[row] = utf8.length;
+    }
+
+    void setDone(int row, boolean value) {
+        if (value) {
+            done[row >>> 6] |= 1L << row;
+        } else {
+            done[row >>> 6] &= ~(1L << row);
+        }
+    }
+
+    void setPriority(int row, TodoItem.Priority priority) {
+        priorities[row] = (byte) priority.ordinal();
+    }
+
+    void setDueEpochDay(int row, int epochDay) {
+        dueDays[row] = epochDay;
+    }
+
+    /**
+     * Appends a row whose description bytes are already in the arena.
+     * @param descriptionAddress The arena address of the description.
+     * @param descriptionLength The length of the description in bytes.
+     * @param isDone The completion status.
+     * @param priorityOrdinal The priority ordinal.
+     * @param dueEpochDay The due date, or {@link #NO_DATE}.
+     * @param creationEpochDay The creation date, or {@link #NO_DATE}.
+     * @param id The ID of the task.
+     * @param modified The last-modified time in epoch milliseconds, or 0 if unknown.
+     */
+    void append(long descriptionAddress, int descriptionLength, boolean isDone, int priorityOrdinal, int dueEpochDay,
+            int creationEpochDay, long id, long modified) {
+        ensureCapacity(size + 1);
+        int row = size++;
+        descriptionAddresses[row] = descriptionAddress;
+        descriptionLengths[row] = descriptionLength;
+        setDone(row, isDone);
+        priorities[row] = (byte) priorityOrdinal;
+        dueDays[row] = dueEpochDay;
+        creationDays[row] = creationEpochDay;
+        ids[row] = id;
+        lastModified[row] = modified;
+    }
+
+    /**
+     * Inserts a row with the values of a task, shifting the following rows up.
+     * @param row The position of the new row.
+     * @param item The task to copy.
+     */
+    void insert(int row, TodoItem item) {
+        ensureCapacity(size + 1);
+        int moved = size - row;
+        if (moved > 0) {
+            System.arraycopy(priorities, row, priorities, row + 1, moved);
+            System.arraycopy(dueDays, row, dueDays, row + 1, moved);
+            System.arraycopy(creationDays, row, creationDays, row + 1, moved);
+            System.arraycopy(ids, row, ids, row + 1, moved);
+            System.arraycopy(lastModified, row, lastModified, row + 1, moved);
+            System.arraycopy(descriptionAddresses, row, descriptionAddresses, row + 1, moved);
+            System.arraycopy(descriptionLengths, row, descriptionLengths, row + 1, moved);
+            for (int i = size; i > row; i--) {
+                setDone(i, isDone(i - 1));
+            }
+        }
+        size++;
+        descriptionLengths[row] = 0;
+        set(row, item);
+    }
+
+    /**
+     * Overwrites all fields of a row, including the creation date and the ID, with those of a task.
+     * @param row The row.
+     * @param item The task to copy.
+     */
+    void set(int row, TodoItem item) {
+        setDescription(row, item.getDescription());
+        setDone(row, item.isDone());
+        setPriority(row, item.getPriority());
+        dueDays[row] = item.getDueEpochDay();
+        creationDays[row] = item.getCreationEpochDay();
+        ids[row] = item.getId();
+        lastModified[row] = item.getLastModified();
+    }
+
+    /**
+     * Removes a row, shifting the following rows down.
+     * @param row The row to remove.
+     */
+    void remove(int row) {
+        arena.release(descriptionLengths[row]);
+        int moved = size - row - 1;
+        if (moved > 0) {
+            System.arraycopy(priorities, row + 1, priorities, row, moved);
+            System.arraycopy(dueDays, row + 1, dueDays, row, moved);
+            System.arraycopy(creationDays, row + 1, creationDays, row, moved);
+            System.arraycopy(ids, row + 1, ids, row, moved);
+            System.arraycopy(lastModified, row + 1, lastModified, row, moved);
+            System.arraycopy(descriptionAddresses, row + 1, descriptionAddresses, row, moved);
+            System.arraycopy(descriptionLengths, row + 1, descriptionLengths, row, moved);
+            for (int i = row; i < size - 1; i++) {
+                setDone(i, isDone(i + 1));
+            }
+        }
+        size--;
+        setDone(size, false);
+    }
+
+    /**
+     * Copies the rows that pass a test into new columns, sharing this arena.
+     * This instance is left unchanged, so it can still describe the old content.
+     * @param keep Tests a row index.
+     * @return The filtered columns.
+     */
+    TaskColumns filter(IntPredicate keep) {
+        TaskColumns result = new TaskColumns(arena, size);
+        for (int row = 0; row < size; row++) {
+            if (keep.test(row)) {
+                result.append(descriptionAddresses[row], descriptionLengths[row], isDone(row),
+                        priorities[row], dueDays[row], creationDays[row], ids[row], lastModified[row]);
+            } else {
+                arena.release(descriptionLengths[row]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Copies the live descriptions into a new arena once more than half of the arena is garbage.
+     */
+    void compactIfWasteful() {
+        if (arena.garbageBytes() * 2 <= arena.usedBytes()) {
+            return;
+        }
+        DescriptionArena compacted = new DescriptionArena();
+        for (int row = 0; row < size; row++) {
+            descriptionAddresses[row] = compacted.copy(arena, descriptionAddresses[row], descriptionLengths[row]);
+        }
+        arena = compacted;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= priorities.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, priorities.length + (priorities.length >> 1));
+        done = Arrays.copyOf(done, (newCapacity + 63) >>> 6);
+        priorities = Arrays.copyOf(priorities, newCapacity);
+        dueDays = Arrays.copyOf(dueDays, newCapacity);
+        creationDays = Arrays.copyOf(creationDays, newCapacity);
+        ids = Arrays.copyOf(ids, newCapacity);
+        lastModified = Arrays.copyOf(lastModified, newCapacity);
+        descriptionAddresses = Arrays.copyOf(descriptionAddresses, newCapacity);
+        descriptionLengths = Arrays.copyOf(descriptionLengths, newCapacity);
+    }
+
+    private static byte[] encode(String description) {
+        return description == null ? new byte[0] : description.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static int toEpochDay(LocalDate date) {
+        return date == null ? NO_DATE : (int) date.toEpochDay();
+    }
+}
@@ -0,0 +1,263 @@
+package todolistapp.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves "today" of a {@link TodoListManager} when the date changes and reports the tasks that became due
+ * or overdue.
+ * <p>
+ * Every task whose due date is today or later has one pending transition: a task due on a later day becomes
+ * due on that day, and a task due today becomes overdue tomorrow. The transitions are kept in a tree ordered
+ * by their day, maintained in O(log n) from {@link TaskChangeListener} notifications, so a changed due date
+ * re-indexes just that task. Tasks without a due date or already overdue have no transition.
+ * <p>
+ * A single daemon thread, shared by all schedulers, sleeps until the next midnight; no transition can be
+ * earlier, since transitions happen on date changes. On waking, the owner thread takes just the transitions
+ * that are due off the front of the tree, moves the overdue counter of {@link TaskStatistics} and the due
+ * buckets of {@link TaskIndex} for those tasks only, and tells the {@link Listener}s, instead of recounting
+ * and re-bucketing the whole list. If the clock was set back, everything is recomputed once.
+ * <p>
+ * Done tasks are tracked too, because the due buckets of the index include them, but they are never
+ * reported. Except for {@link #start(Executor)} and {@link #stop()}, all methods must be called on the
+ * thread that modifies the list.
+ */
+public class TaskDueScheduler implements TaskChangeListener {
+
+    /** Receives the transitions of a date change. */
+    public interface Listener {
+
+        /**
+         * Called on the owner thread after "today" moved.
+         * @param today The new current date.
+         * @param dueToday The tasks that are not done and became due today.
+         * @param overdue The tasks that are not done and became overdue.
+         */
+        void dateChanged(LocalDate today, List<TodoItem> dueToday, List<TodoItem> overdue);
+    }
+
+    /** A pending transition: on {@code day} (as epoch day) the bucket of {@code item} changes. */
+    private record Transition(long day, long id, TodoItem item) {
+    }
+
+    private static final Comparator<Transition> ORDER =
+            Comparator.comparingLong(Transition::day).thenComparingLong(Transition::id);
+
+    /** A second of slack after midnight, so a wake-up never comes just before the date has changed. */
+    private static final long WAKE_SLACK_MILLIS = 1000;
+
+    private static final ScheduledThreadPoolExecutor WAKER = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "todo-due-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        WAKER.setRemoveOnCancelPolicy(true);
+    }
+
+    private final TodoListManager manager;
+    private final NavigableSet<Transition> transitions = new TreeSet<>(ORDER);
+    private final List<Listener> listeners = new ArrayList<>();
+    private LocalDate today;
+
+    // Set by start and stop from any thread; wakeUp is guarded by the monitor
+    private volatile Executor ownerThread;
+    private ScheduledFuture<?> wakeUp;
+
+    /**
+     * Creates a scheduler for the tasks already in a list.
+     * The manager must register the instance as a {@link TaskChangeListener} of the same list.
+     * @param manager The manager whose date is moved.
+     * @param today The date the manager's counters and due buckets are relative to.
+     */
+    TaskDueScheduler(TodoListManager manager, LocalDate today) {
+        this.manager = manager;
+        this.today = today;
+        tasksAdded(0, manager.getTasks());
+    }
+
+    /** @return The date the transitions are relative to. */
+    public LocalDate getToday() {
+        return today;
+    }
+
+    /** @return The day of the next transition, or null if no task will become due or overdue. */
+    public LocalDate getNextTransition() {
+        return transitions.isEmpty() ? null : LocalDate.ofEpochDay(transitions.first().day());
+    }
+
+    /**
+     * @param listener The listener to notify about date changes.
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @param listener A listener added with {@link #addListener(Listener)}.
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Catches up with the current date and wakes at every following midnight until {@link #stop()}.
+     * @param ownerThread Runs tasks on the thread that modifies the list (e.g. {@code Platform::runLater}).
+     */
+    public synchronized void start(Executor ownerThread) {
+        this.ownerThread = ownerThread;
+        ownerThread.execute(this::advance);
+    }
+
+    /**
+     * Stops waking; "today" stays where it is until the next {@link #start(Executor)}.
+     */
+    public synchronized void stop() {
+        ownerThread = null;
+        if (wakeUp != null) {
+            wakeUp.cancel(false);
+            wakeUp = null;
+        }
+    }
+
+    /**
+     * Moves "today" to the current date if it changed, applying the transitions up to it, and schedules the
+     * next wake-up. Wake-ups can come late (e.g. after the computer slept) or early (after a clock change),
+     * so the date is read again each time.
+     */
+    private void advance() {
+        if (ownerThread == null) {
+            return;
+        }
+        LocalDate now = LocalDate.now();
+        if (now.isAfter(today)) {
+            moveTo(now);
+        } else if (now.isBefore(today)) {
+            reset(now);
+        }
+        scheduleWakeUp();
+    }
+
+    private synchronized void scheduleWakeUp() {
+        Executor owner = ownerThread;
+        if (owner == null) {
+            return;
+        }
+        if (wakeUp != null) {
+            wakeUp.cancel(false);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime nextMidnight = now.toLocalDate().plusDays(1).atStartOfDay();
+        long delay = java.time.Duration.between(now, nextMidnight).toMillis() + WAKE_SLACK_MILLIS;
+        wakeUp = WAKER.schedule(() -> owner.execute(this::advance), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Applies the transitions up to a later date.
+     * @param date The new current date.
+     */
+    private void moveTo(LocalDate date) {
+        LocalDate previous = today;
+        long day = date.toEpochDay();
+        List<TodoItem> moved = new ArrayList<>();
+        List<TodoItem> dueToday = new ArrayList<>();
+        List<TodoItem> overdue = new ArrayList<>();
+        today = date;
+        while (!transitions.isEmpty() && transitions.first().day() <= day) {
+            TodoItem item = transitions.pollFirst().item();
+            moved.add(item);
+            boolean due = item.getDueDate().equals(date);
+            if (due) {
+                // Due today; overdue tomorrow
+                transitions.add(new Transition(day + 1, item.getId(), item));
+            }
+            if (!item.isDone()) {
+                (due ? dueToday : overdue).add(item);
+            }
+        }
+        manager.getStatistics().moveToday(date, overdue.size());
+        manager.getIndex().moveToday(previous, date, moved);
+        for (Listener listener : List.copyOf(listeners)) {
+            listener.dateChanged(date, dueToday, overdue);
+        }
+    }
+
+    /**
+     * Recomputes all transitions, the counters, and the due buckets for a date, e.g. after the clock was set back.
+     * @param date The new current date.
+     */
+    void reset(LocalDate date) {
+        if (date.equals(today)) {
+            return;
+        }
+        today = date;
+        transitions.clear();
+        tasksAdded(0, manager.getTasks());
+        manager.getStatistics().setToday(date);
+        manager.getIndex().setToday(date);
+        for (Listener listener : List.copyOf(listeners)) {
+            listener.dateChanged(date, List.of(), List.of());
+        }
+    }
+
+    @Override
+    public void tasksAdded(int from, List<? extends TodoItem> added) {
+        for (TodoItem item : added) {
+            long day = transitionDay(item.getDueDate());
+            if (day != Long.MIN_VALUE) {
+                transitions.add(new Transition(day, item.getId(), item));
+            }
+        }
+    }
+
+    @Override
+    public void tasksRemoved(int from, List<? extends TodoItem> removed) {
+        for (TodoItem item : removed) {
+            remove(item.getId(), item.getDueDate());
+        }
+    }
+
+    @Override
+    public void taskUpdated(TodoItem item, TaskField field, Object oldValue, Object newValue) {
+        switch (field) {
+            case DUE_DATE:
+                remove(item.getId(), (LocalDate) oldValue);
+                long day = transitionDay((LocalDate) newValue);
+                if (day != Long.MIN_VALUE) {
+                    transitions.add(new Transition(day, item.getId(), item));
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void remove(long id, LocalDate dueDate) {
+        long day = transitionDay(dueDate);
+        if (day != Long.MIN_VALUE) {
+            transitions.remove(new Transition(day, id, null));
+        }
+    }
+
+    /**
+     * @param dueDate A due date, may be null.
+     * @return The epoch day a task with this due date changes its due bucket, or {@code Long.MIN_VALUE} if never.
+     */
+    private long transitionDay(LocalDate dueDate) {
+        if (dueDate == null) {
+            return Long.MIN_VALUE;
+        }
+        int compared = dueDate.compareTo(today);
+        return compared < 0 ? Long.MIN_VALUE : compared == 0 ? dueDate.toEpochDay() + 1 : dueDate.toEpochDay();
+    }
+}
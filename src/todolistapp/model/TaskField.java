@@ -0,0 +1,15 @@
+package todolistapp.model;
+
+/**
+ * Identifies an editable field of a {@link TodoItem} in change notifications.
+ */
+public enum TaskField {
+    /** The task description. */
+    DESCRIPTION,
+    /** The completion status. */
+    DONE,
+    /** The task priority. */
+    PRIORITY,
+    /** The due date. */
+    DUE_DATE
+}
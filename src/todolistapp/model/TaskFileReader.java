@@ -0,0 +1,151 @@
+package todolistapp.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads a task file as a sequence of raw chunks that each hold whole lines or records, and parses chunks
+ * into tasks, so that reading and parsing can run as separate stages (see {@link TaskTransfer}).
+ * <p>
+ * {@link #nextChunk()} only moves bytes: it is called by one reading thread per file, in file order.
+ * {@link #parse(ByteBuffer)} does the decoding and may be called on another thread; every chunk is
+ * parsed on its own, so a file never has to be in memory as a whole.
+ */
+abstract class TaskFileReader implements Closeable {
+
+    /** Size of the chunks handed from reading to parsing; a line or record longer than this gets a larger chunk. */
+    static final int CHUNK_SIZE = 1 << 20;
+
+    /**
+     * Opens a reader in the format of a store.
+     * @param store The store of the file, e.g. from {@link TaskStores#forPath(Path)}.
+     * @return A reader positioned at the first task.
+     * @throws IOException If the file cannot be opened or its header is invalid.
+     */
+    static TaskFileReader open(TaskStore store) throws IOException {
+        if (store instanceof CsvTaskStore) {
+            return new LineReader(store.getPath(), CsvTaskLoader::parseLines);
+        }
+        if (store instanceof JsonLinesTaskStore) {
+            return new LineReader(store.getPath(), JsonLinesTaskStore::parseLines);
+        }
+        if (store instanceof BinaryTaskStore binary) {
+            return binary.openChunks();
+        }
+        return new StoreReader(store);
+    }
+
+    /**
+     * Reads the next chunk.
+     * @return A chunk of whole lines or records, positioned at 0, or null after the last one.
+     * @throws IOException If the file cannot be read.
+     */
+    abstract ByteBuffer nextChunk() throws IOException;
+
+    /**
+     * Parses a chunk returned by {@link #nextChunk()}. Malformed lines are logged and skipped, as on load.
+     * @param chunk The chunk.
+     * @return The tasks of the chunk, in file order; not attached to any list yet.
+     * @throws IOException If the chunk cannot be parsed at all.
+     */
+    abstract List<TodoItem> parse(ByteBuffer chunk) throws IOException;
+
+    /** Parses a chunk of whole lines. */
+    interface LineParser {
+        List<TodoItem> parse(ByteBuffer lines);
+    }
+
+    /** Cuts a text file into chunks after the last line feed that fits. */
+    private static final class LineReader extends TaskFileReader {
+        private final FileChannel channel;
+        private final LineParser parser;
+        /** Read bytes in write mode; the bytes after the last handed out line wait here for the next chunk. */
+        private ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+        private boolean endOfFile;
+
+        LineReader(Path file, LineParser parser) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            this.parser = parser;
+        }
+
+        @Override
+        ByteBuffer nextChunk() throws IOException {
+            while (!endOfFile && buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    endOfFile = true;
+                }
+            }
+            if (buffer.position() == 0) {
+                return null;
+            }
+            int end = endOfFile ? buffer.position() : lastLineEnd();
+            if (end == 0) {
+                // A line longer than the buffer; read on until it ends
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip());
+                return nextChunk();
+            }
+            byte[] chunk = Arrays.copyOf(buffer.array(), end);
+            buffer.flip().position(end);
+            buffer.compact();
+            return ByteBuffer.wrap(chunk);
+        }
+
+        /** @return The position after the last line feed in the buffer, or 0 if there is none. */
+        private int lastLineEnd() {
+            byte[] bytes = buffer.array();
+            for (int i = buffer.position() - 1; i >= 0; i--) {
+                if (bytes[i] == '\n') {
+                    return i + 1;
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        List<TodoItem> parse(ByteBuffer chunk) {
+            return parser.parse(chunk);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Reads a store that has no single file to cut into chunks (a {@link LogStructuredTaskStore} directory):
+     * one empty chunk, whose parsing loads the whole store.
+     */
+    private static final class StoreReader extends TaskFileReader {
+        private final TaskStore store;
+        private boolean read;
+
+        StoreReader(TaskStore store) {
+            this.store = store;
+        }
+
+        @Override
+        ByteBuffer nextChunk() {
+            if (read) {
+                return null;
+            }
+            read = true;
+            return ByteBuffer.allocate(0);
+        }
+
+        @Override
+        List<TodoItem> parse(ByteBuffer chunk) throws IOException {
+            return store.load();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
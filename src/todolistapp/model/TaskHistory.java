@@ -0,0 +1,459 @@
+package todolistapp.model;
+
+import java.lang.System.Logger.Level;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+
+/**
+ * Undo and redo for the tasks of a {@link TodoListManager}.
+ * <p>
+ * Instead of copying the list, the history records every change as a compact command from
+ * {@link TaskChangeListener} notifications: inserted runs of tasks, removed runs of tasks, and edits of one
+ * field with the old and new value. The changes of a {@link TodoListManager#batch batch} (e.g. a bulk edit
+ * or "Delete Completed") form one entry, and an edit of the same field of the same task shortly after the
+ * previous one is merged into it, so e.g. toggling a checkbox a few times is undone in one step.
+ * <p>
+ * Undo applies the inverse commands of an entry in a single batch: removed runs are put back in one pass
+ * over the list ({@link TaskList#insertRuns(int[], List)}), so undoing the removal of k tasks costs time
+ * proportional to k plus the tasks after the first run, without reloading anything.
+ * <p>
+ * Entries are kept in a ring buffer of at most {@value #ENTRIES_PROPERTY} entries whose estimated size is
+ * capped at {@value #MEMORY_PROPERTY} megabytes; the oldest entries are dropped first. Changes made while
+ * the list is loading are not recorded, and a load clears the history. All methods must be called on the
+ * thread that modifies the list.
+ */
+public class TaskHistory implements TaskChangeListener {
+
+    private static final System.Logger LOG = System.getLogger(TaskHistory.class.getName());
+
+    /** System property with the maximum number of undoable entries. */
+    public static final String ENTRIES_PROPERTY = "todolist.history.entries";
+    /** System property with the memory cap of the history, in megabytes. */
+    public static final String MEMORY_PROPERTY = "todolist.history.mb";
+    static final int DEFAULT_ENTRIES = 1000;
+    static final long DEFAULT_MEMORY_MB = 64;
+    /** Edits of the same field of the same task within this time are merged into one entry. */
+    static final long COALESCE_MILLIS = 1500;
+
+    /** Estimated heap size of a command and of a task reference held by one. */
+    private static final long COMMAND_BYTES = 48;
+    private static final long REFERENCE_BYTES = 8;
+
+    /** A recorded change that can be reverted and applied again. */
+    private interface Command {
+
+        void undo(TaskList tasks);
+
+        void redo(TaskList tasks);
+
+        /** @return The estimated heap size of the command. */
+        long bytes();
+    }
+
+    /** Tasks inserted at one position. */
+    private record Inserted(int from, List<TodoItem> items) implements Command {
+
+        @Override
+        public void undo(TaskList tasks) {
+            tasks.remove(from, from + items.size());
+        }
+
+        @Override
+        public void redo(TaskList tasks) {
+            tasks.addAll(from, items);
+        }
+
+        @Override
+        public long bytes() {
+            // The tasks are still in the list; only the references are the history's
+            return COMMAND_BYTES + items.size() * REFERENCE_BYTES;
+        }
+    }
+
+    /**
+     * Runs of removed tasks, in the form {@link TaskList#removeIf} reports them: each run is given with the
+     * number of remaining tasks before it, so all runs can be put back in one pass.
+     */
+    private static final class Removed implements Command {
+
+        private int[] starts = new int[4];
+        private final List<List<TodoItem>> runs = new ArrayList<>();
+        private long bytes = COMMAND_BYTES;
+
+        /**
+         * Adds the next removal of the same entry, if it is at or after the previous run.
+         * @return False if the removal has to be recorded as a separate command.
+         */
+        boolean append(int from, List<? extends TodoItem> removed) {
+            int last = runs.size() - 1;
+            if (last >= 0 && from < starts[last]) {
+                return false;
+            }
+            if (last >= 0 && from == starts[last]) {
+                // Right after the previous run in the former list
+                runs.get(last).addAll(removed);
+            } else {
+                if (runs.size() == starts.length) {
+                    starts = Arrays.copyOf(starts, starts.length * 2);
+                }
+                starts[runs.size()] = from;
+                runs.add(new ArrayList<>(removed));
+                bytes += COMMAND_BYTES;
+            }
+            // The removed tasks are kept alive by the history alone
+            bytes += removed.size() * TaskWorkspace.ESTIMATED_BYTES_PER_TASK;
+            return true;
+        }
+
+        @Override
+        public void undo(TaskList tasks) {
+            tasks.insertRuns(starts, runs);
+        }
+
+        @Override
+        public void redo(TaskList tasks) {
+            Set<TodoItem> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (List<TodoItem> run : runs) {
+                removed.addAll(run);
+            }
+            tasks.removeIf(removed::contains);
+        }
+
+        @Override
+        public long bytes() {
+            return bytes;
+        }
+    }
+
+    /** An edit of one field of a task. */
+    private static final class Edited implements Command {
+
+        private final TodoItem item;
+        private final TaskField field;
+        private final Object oldValue;
+        private Object newValue;
+
+        Edited(TodoItem item, TaskField field, Object oldValue, Object newValue) {
+            this.item = item;
+            this.field = field;
+            this.oldValue = oldValue;
+            this.newValue = newValue;
+        }
+
+        @Override
+        public void undo(TaskList tasks) {
+            item.set(field, oldValue);
+        }
+
+        @Override
+        public void redo(TaskList tasks) {
+            item.set(field, newValue);
+        }
+
+        @Override
+        public long bytes() {
+            return COMMAND_BYTES + valueBytes(oldValue) + valueBytes(newValue);
+        }
+
+        private static long valueBytes(Object value) {
+            if (value instanceof String text) {
+                return 40 + text.length();
+            }
+            return value instanceof LocalDate ? 24 : 0;
+        }
+    }
+
+    /** The commands of one undo step. */
+    private static final class Entry {
+        final List<Command> commands = new ArrayList<>(1);
+        long bytes;
+        long time;
+
+        /** @return The only command, if it is a single edit. */
+        Edited singleEdit() {
+            return commands.size() == 1 && commands.get(0) instanceof Edited edit ? edit : null;
+        }
+    }
+
+    private final TodoListManager manager;
+    private final TaskList tasks;
+    private final Entry[] ring;
+    private final long memoryCap;
+    /** Ring index of the oldest entry. */
+    private int first;
+    /** Entries in the ring; the ones from {@code undoable} on were undone and can be redone. */
+    private int size;
+    private int undoable;
+    private long bytes;
+
+    /** The entry being recorded, or null. */
+    private Entry pending;
+    /** The latest recorded entry, while no undo or redo happened since; only it takes merged edits. */
+    private Entry latest;
+    private int batchDepth;
+    /** True while an undo or redo applies its commands, which must not be recorded themselves. */
+    private boolean replaying;
+
+    private final ReadOnlyBooleanWrapper canUndo = new ReadOnlyBooleanWrapper(this, "canUndo");
+    private final ReadOnlyBooleanWrapper canRedo = new ReadOnlyBooleanWrapper(this, "canRedo");
+
+    /**
+     * Creates an empty history.
+     * The manager must register the instance as a {@link TaskChangeListener} of the same list.
+     * @param manager The manager whose changes are recorded.
+     * @param tasks The list of the manager.
+     * @param maxEntries The maximum number of entries.
+     * @param memoryCap The maximum estimated size of all entries, in bytes.
+     */
+    TaskHistory(TodoListManager manager, TaskList tasks, int maxEntries, long memoryCap) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+        }
+        this.manager = manager;
+        this.tasks = tasks;
+        this.ring = new Entry[maxEntries];
+        this.memoryCap = memoryCap;
+        manager.loadingProperty().addListener((observable, wasLoading, isLoading) -> clear());
+    }
+
+    /**
+     * Creates an empty history with the limits from {@value #ENTRIES_PROPERTY} and {@value #MEMORY_PROPERTY}.
+     */
+    TaskHistory(TodoListManager manager, TaskList tasks) {
+        this(manager, tasks, Integer.getInteger(ENTRIES_PROPERTY, DEFAULT_ENTRIES),
+                Long.getLong(MEMORY_PROPERTY, DEFAULT_MEMORY_MB) << 20);
+    }
+
+    /** @return Whether there is a change to undo. */
+    public ReadOnlyBooleanProperty canUndoProperty() {
+        return canUndo.getReadOnlyProperty();
+    }
+
+    /** @return Whether there is an undone change to redo. */
+    public ReadOnlyBooleanProperty canRedoProperty() {
+        return canRedo.getReadOnlyProperty();
+    }
+
+    /** @return The estimated heap size of the recorded entries, in bytes. */
+    public long getEstimatedBytes() {
+        return bytes;
+    }
+
+    /**
+     * Reverts the latest change that was not undone, as one change event.
+     * @return False if there was nothing to undo.
+     */
+    public boolean undo() {
+        if (undoable == 0) {
+            return false;
+        }
+        Entry entry = at(undoable - 1);
+        replay(() -> {
+            for (int i = entry.commands.size() - 1; i >= 0; i--) {
+                entry.commands.get(i).undo(tasks);
+            }
+        });
+        undoable--;
+        latest = null;
+        publish();
+        return true;
+    }
+
+    /**
+     * Applies the latest undone change again, as one change event.
+     * @return False if there was nothing to redo.
+     */
+    public boolean redo() {
+        if (undoable == size) {
+            return false;
+        }
+        Entry entry = at(undoable);
+        replay(() -> {
+            for (Command command : entry.commands) {
+                command.redo(tasks);
+            }
+        });
+        undoable++;
+        latest = null;
+        publish();
+        return true;
+    }
+
+    /** Forgets all entries. */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            ring[(first + i) % ring.length] = null;
+        }
+        first = 0;
+        size = 0;
+        undoable = 0;
+        bytes = 0;
+        pending = null;
+        latest = null;
+        publish();
+    }
+
+    private void replay(Runnable commands) {
+        replaying = true;
+        try {
+            manager.batch(manager -> commands.run());
+        } finally {
+            replaying = false;
+        }
+    }
+
+    @Override
+    public void tasksAdded(int from, List<? extends TodoItem> added) {
+        if (!recording()) {
+            return;
+        }
+        Entry entry = pending();
+        Command last = entry.commands.isEmpty() ? null : entry.commands.get(entry.commands.size() - 1);
+        if (last instanceof Inserted run && from == run.from() + run.items().size()) {
+            // E.g. one task after the other appended by a script or an import
+            run.items().addAll(added);
+            entry.bytes += added.size() * REFERENCE_BYTES;
+            commitUnlessBatch();
+            return;
+        }
+        record(new Inserted(from, new ArrayList<>(added)));
+    }
+
+    @Override
+    public void tasksRemoved(int from, List<? extends TodoItem> removed) {
+        if (!recording()) {
+            return;
+        }
+        Entry entry = pending();
+        Command last = entry.commands.isEmpty() ? null : entry.commands.get(entry.commands.size() - 1);
+        if (last instanceof Removed runs) {
+            long before = runs.bytes();
+            if (runs.append(from, removed)) {
+                entry.bytes += runs.bytes() - before;
+                commitUnlessBatch();
+                return;
+            }
+        }
+        Removed runs = new Removed();
+        runs.append(from, removed);
+        record(runs);
+    }
+
+    @Override
+    public void taskUpdated(TodoItem item, TaskField field, Object oldValue, Object newValue) {
+        if (recording()) {
+            record(new Edited(item, field, oldValue, newValue));
+        }
+    }
+
+    @Override
+    public void batchStarted() {
+        batchDepth++;
+    }
+
+    @Override
+    public void batchFinished() {
+        batchDepth--;
+        commitUnlessBatch();
+    }
+
+    /**
+     * Drops the changes of the running batch, which is being rolled back.
+     */
+    void discardBatch() {
+        pending = null;
+    }
+
+    private boolean recording() {
+        return !replaying && !manager.isLoading();
+    }
+
+    private Entry pending() {
+        if (pending == null) {
+            pending = new Entry();
+        }
+        return pending;
+    }
+
+    private void record(Command command) {
+        Entry entry = pending();
+        entry.commands.add(command);
+        entry.bytes += command.bytes();
+        commitUnlessBatch();
+    }
+
+    private void commitUnlessBatch() {
+        if (batchDepth > 0 || pending == null) {
+            return;
+        }
+        Entry entry = pending;
+        pending = null;
+        entry.time = System.currentTimeMillis();
+        // Entries that were undone cannot be redone after a new change
+        for (int i = undoable; i < size; i++) {
+            bytes -= at(i).bytes;
+            ring[(first + i) % ring.length] = null;
+        }
+        size = undoable;
+        if (!coalesce(entry)) {
+            push(entry);
+            latest = size > 0 ? at(size - 1) : null;
+        }
+        publish();
+    }
+
+    /** Merges a single edit into the latest entry if it edited the same field of the same task just before. */
+    private boolean coalesce(Entry entry) {
+        Edited edit = entry.singleEdit();
+        if (edit == null || latest == null) {
+            return false;
+        }
+        Edited previous = latest.singleEdit();
+        if (previous == null || previous.item != edit.item || previous.field != edit.field
+                || entry.time - latest.time > COALESCE_MILLIS) {
+            return false;
+        }
+        bytes -= latest.bytes;
+        previous.newValue = edit.newValue;
+        latest.bytes = previous.bytes();
+        latest.time = entry.time;
+        bytes += latest.bytes;
+        return true;
+    }
+
+    private void push(Entry entry) {
+        if (entry.bytes > memoryCap) {
+            // Older entries cannot be undone without this one
+            LOG.log(Level.WARNING, "A change of about " + (entry.bytes >> 20) + " MB exceeds the undo memory cap; history cleared.");
+            clear();
+            return;
+        }
+        while (size == ring.length || bytes + entry.bytes > memoryCap) {
+            bytes -= ring[first].bytes;
+            ring[first] = null;
+            first = (first + 1) % ring.length;
+            size--;
+            undoable--;
+        }
+        ring[(first + size) % ring.length] = entry;
+        size++;
+        undoable++;
+        bytes += entry.bytes;
+    }
+
+    private Entry at(int offset) {
+        return ring[(first + offset) % ring.length];
+    }
+
+    private void publish() {
+        canUndo.set(undoable > 0);
+        canRedo.set(undoable < size);
+    }
+}
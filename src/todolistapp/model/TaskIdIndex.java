@@ -0,0 +1,103 @@
+package todolistapp.model;
+
+/**
+ * Hash index from task ID to task for the tasks of a {@link TodoListManager}.
+ * <p>
+ * Open addressing with linear probing over a {@code long[]} of IDs and a parallel array of tasks,
+ * so an entry costs two array slots instead of a boxed key and a map node. Removal shifts the
+ * following entries of the probe run back, so lookups never need tombstones.
+ * The manager keeps it exact on every add and remove; not thread-safe.
+ */
+final class TaskIdIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private TodoItem[] items = new TodoItem[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Looks up a task by ID.
+     * @param id The ID.
+     * @return The task, or null if no task in the list has this ID.
+     */
+    TodoItem get(long id) {
+        int mask = ids.length - 1;
+        for (int i = TaskIds.hash(id) & mask; ids[i] != TaskIds.NONE; i = (i + 1) & mask) {
+            if (ids[i] == id) {
+                return items[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds a task under its ID.
+     * @param item The task; its ID must not be in the index yet.
+     */
+    void put(TodoItem item) {
+        if ((size + 1) * 2 > ids.length) {
+            rehash(ids.length * 2);
+        }
+        insert(item.getId(), item);
+        size++;
+    }
+
+    /**
+     * Removes a task.
+     * @param item The task; nothing happens if another task is indexed under its ID.
+     */
+    void remove(TodoItem item) {
+        int mask = ids.length - 1;
+        int i = TaskIds.hash(item.getId()) & mask;
+        while (ids[i] != item.getId()) {
+            if (ids[i] == TaskIds.NONE) {
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        if (items[i] != item) {
+            return;
+        }
+        size--;
+        // Move later entries of the probe run into the gap if their home slot is not after it
+        int gap = i;
+        for (int next = (gap + 1) & mask; ids[next] != TaskIds.NONE; next = (next + 1) & mask) {
+            int home = TaskIds.hash(ids[next]) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                ids[gap] = ids[next];
+                items[gap] = items[next];
+                gap = next;
+            }
+        }
+        ids[gap] = TaskIds.NONE;
+        items[gap] = null;
+    }
+
+    /** @return The number of indexed tasks. */
+    int size() {
+        return size;
+    }
+
+    private void insert(long id, TodoItem item) {
+        int mask = ids.length - 1;
+        int i = TaskIds.hash(id) & mask;
+        while (ids[i] != TaskIds.NONE) {
+            i = (i + 1) & mask;
+        }
+        ids[i] = id;
+        items[i] = item;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldIds = ids;
+        TodoItem[] oldItems = items;
+        ids = new long[capacity];
+        items = new TodoItem[capacity];
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldIds[i] != TaskIds.NONE) {
+                insert(oldIds[i], oldItems[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package todolistapp.model;
+
+import java.util.List;
+
+/**
+ * Persistent map from task ID to {@link TaskRecord}, kept by every {@link TaskSnapshot} next to its tree of
+ * positions, so a snapshot can find a task by ID without scanning or indexing all its records.
+ * <p>
+ * A hash array mapped trie: each node consumes 5 bits of the hash of an ID and holds, compacted by a bitmap,
+ * only the slots in use, each either a record or a child node. A change copies the nodes on its path and
+ * shares all others with the previous map, so it costs O(log n) with base 32. The hash is a bijection of the
+ * 64-bit ID, so two IDs never share a full path and the trie needs no collision lists.
+ * <p>
+ * A bulk change copies each node at most once and then fills the copy in place; the copies are private to
+ * the change until it returns, and never written again afterwards, so any number of threads can read a map.
+ */
+final class TaskIdTrie {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    /** The empty map. */
+    static final TaskIdTrie EMPTY = new TaskIdTrie(new Node(null, 0, new Object[0]));
+
+    private final Node root;
+
+    private TaskIdTrie(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Looks up a task by ID.
+     * @param id The ID.
+     * @return The record, or null if no record in the map has this ID.
+     */
+    TaskRecord get(long id) {
+        long hash = hash(id);
+        Node node = root;
+        for (int shift = 0;; shift += BITS) {
+            int bit = 1 << (int) ((hash >>> shift) & MASK);
+            if ((node.bitmap & bit) == 0) {
+                return null;
+            }
+            Object slot = node.slots[Integer.bitCount(node.bitmap & (bit - 1))];
+            if (slot instanceof Node child) {
+                node = child;
+            } else {
+                TaskRecord record = (TaskRecord) slot;
+                return record.id() == id ? record : null;
+            }
+        }
+    }
+
+    /**
+     * @param records The records to add; a record replaces the one with the same ID. Records without an ID are skipped.
+     * @return A map with the records added.
+     */
+    TaskIdTrie with(List<TaskRecord> records) {
+        Object owner = new Object();
+        Node node = root;
+        for (TaskRecord record : records) {
+            if (record.id() != TaskIds.NONE) {
+                node = node.put(owner, record, hash(record.id()), 0);
+            }
+        }
+        return node == root ? this : new TaskIdTrie(node);
+    }
+
+    /**
+     * @param records The records to remove; a record is only removed if it is the one mapped to its ID, so
+     *        removing one of two tasks that share an ID keeps the other.
+     * @return A map without the records.
+     */
+    TaskIdTrie without(List<TaskRecord> records) {
+        Object owner = new Object();
+        Node node = root;
+        for (TaskRecord record : records) {
+            if (record.id() != TaskIds.NONE) {
+                Object rest = node.remove(owner, record, hash(record.id()), 0);
+                // The root stays a node even if it is left with a single record
+                node = rest instanceof Node remaining ? remaining : Node.of(owner, rest, hash(record.id()), 0);
+            }
+        }
+        return node == root ? this : new TaskIdTrie(node);
+    }
+
+    /** The fmix64 finalizer of MurmurHash3, a bijection that spreads all bits of an ID over all bits of the hash. */
+    private static long hash(long id) {
+        long h = id;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static final class Node {
+        /** The change that created this node and may write it while it runs; null for the empty root. */
+        final Object owner;
+        int bitmap;
+        /** A record or a child node for every bit set in {@code bitmap}, in bit order. */
+        Object[] slots;
+
+        Node(Object owner, int bitmap, Object[] slots) {
+            this.owner = owner;
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        /** @return A node holding only the given slot, or the empty node for null. */
+        static Node of(Object owner, Object slot, long hash, int shift) {
+            if (slot == null) {
+                return new Node(owner, 0, new Object[0]);
+            }
+            long slotHash = slot instanceof TaskRecord record ? hash(record.id()) : hash;
+            return new Node(owner, 1 << (int) ((slotHash >>> shift) & MASK), new Object[] {slot});
+        }
+
+        /** @return This node if the change may write it, or a copy that it may. */
+        private Node editable(Object owner) {
+            return this.owner == owner ? this : new Node(owner, bitmap, slots.clone());
+        }
+
+        Node put(Object owner, TaskRecord record, long hash, int shift) {
+            int bit = 1 << (int) ((hash >>> shift) & MASK);
+            int index = Integer.bitCount(bitmap & (bit - 1));
+            if ((bitmap & bit) == 0) {
+                Object[] grown = new Object[slots.length + 1];
+                System.arraycopy(slots, 0, grown, 0, index);
+                grown[index] = record;
+                System.arraycopy(slots, index, grown, index + 1, slots.length - index);
+                Node node = this.owner == owner ? this : new Node(owner, bitmap, null);
+                node.bitmap = bitmap | bit;
+                node.slots = grown;
+                return node;
+            }
+            Object slot = slots[index];
+            Object replacement;
+            if (slot instanceof Node child) {
+                replacement = child.put(owner, record, hash, shift + BITS);
+            } else if (((TaskRecord) slot).id() == record.id()) {
+                replacement = record;
+            } else {
+                // Two IDs with the same bits so far: push both one level down
+                replacement = of(owner, slot, hash, shift + BITS).put(owner, record, hash, shift + BITS);
+            }
+            if (replacement == slot) {
+                return this;
+            }
+            Node node = editable(owner);
+            node.slots[index] = replacement;
+            return node;
+        }
+
+        /** @return The node that replaces this one, its only remaining record, or null if nothing is left. */
+        Object remove(Object owner, TaskRecord record, long hash, int shift) {
+            int bit = 1 << (int) ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int index = Integer.bitCount(bitmap & (bit - 1));
+            Object slot = slots[index];
+            Object replacement;
+            if (slot instanceof Node child) {
+                replacement = child.remove(owner, record, hash, shift + BITS);
+            } else {
+                replacement = slot == record ? null : slot;
+            }
+            if (replacement == slot) {
+                return this;
+            }
+            if (replacement == null) {
+                if (slots.length == 1) {
+                    return null;
+                }
+                if (slots.length == 2 && !(slots[1 - index] instanceof Node)) {
+                    return slots[1 - index];
+                }
+                Object[] shrunk = new Object[slots.length - 1];
+                System.arraycopy(slots, 0, shrunk, 0, index);
+                System.arraycopy(slots, index + 1, shrunk, index, slots.length - index - 1);
+                Node node = this.owner == owner ? this : new Node(owner, bitmap, null);
+                node.bitmap = bitmap & ~bit;
+                node.slots = shrunk;
+                return node;
+            }
+            if (slots.length == 1 && !(replacement instanceof Node)) {
+                // A lone record moves up to where its path is unique
+                return replacement;
+            }
+            Node node = editable(owner);
+            node.slots[index] = replacement;
+            return node;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package todolistapp.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out the IDs of {@link TodoItem}s: 64-bit numbers that increase monotonically within the process.
+ * <p>
+ * An ID is the creation time in milliseconds shifted left by {@value #SEQUENCE_BITS} bits, plus a sequence
+ * number for tasks created within the same millisecond (borrowing from the next milliseconds when more than
+ * {@code 2^SEQUENCE_BITS} are created at once). IDs read from files are {@link #observe(long) observed}, so new
+ * IDs are always larger than every known one, even if the clock went backwards. IDs are never 0, which stands
+ * for "no ID" in files written before tasks had IDs.
+ * Thread-safe; parallel loaders assign and observe IDs from worker threads.
+ */
+final class TaskIds {
+
+    /** ID value that stands for "none". */
+    static final long NONE = 0;
+
+    private static final int SEQUENCE_BITS = 12;
+    private static final AtomicLong last = new AtomicLong();
+
+    private TaskIds() {
+    }
+
+    /**
+     * @return A new ID, larger than all IDs handed out or observed before.
+     */
+    static long next() {
+        long floor = System.currentTimeMillis() << SEQUENCE_BITS;
+        return last.accumulateAndGet(floor, (previous, timeFloor) -> Math.max(previous + 1, timeFloor));
+    }
+
+    /**
+     * Makes sure later IDs are larger than an ID read from a file.
+     * @param id The ID.
+     */
+    static void observe(long id) {
+        if (id > last.get()) {
+            last.accumulateAndGet(id, Math::max);
+        }
+    }
+
+    /**
+     * Spreads the low sequence bits and the time bits of an ID over all bits of an int, for hash tables
+     * and for partitioning tasks by ID. The result must stay the same across versions, since it decides
+     * the bucket files of a {@link DirectoryTaskReplica}.
+     * @param id The ID.
+     * @return The hash.
+     */
+    static int hash(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,229 @@
+package todolistapp.model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Secondary indexes over the tasks of a {@link TodoListManager}.
+ * <p>
+ * Every task occupies a slot (a small, reused integer, see {@link TaskSlots}). For each value of the completion
+ * status, each {@link TodoItem.Priority}, and each {@link DueBucket} the index keeps a {@link BitSet}
+ * of slots, updated in O(1) from {@link TaskChangeListener} notifications. A {@link TaskQuery} is
+ * answered by intersecting the relevant bitsets, and checking whether a single task matches is a
+ * handful of bit tests without touching the task's properties.
+ * <p>
+ * Due buckets are relative to {@link #getToday() today}; the owner calls {@link #setToday(LocalDate)}
+ * on date rollover, which re-buckets all tasks once, or lets a {@link TaskDueScheduler} move just the tasks
+ * whose bucket changes.
+ */
+public class TaskIndex implements TaskChangeListener {
+
+    private final BitSet live = new BitSet();
+    private final BitSet done = new BitSet();
+    private final BitSet[] byPriority = new BitSet[TodoItem.Priority.values().length];
+    private final BitSet[] byDueBucket = new BitSet[DueBucket.values().length];
+
+    private final TaskSlots slots;
+    private LocalDate today;
+
+    /**
+     * Creates an empty index.
+     * The owner must register the instance as a {@link TaskChangeListener} of the indexed list.
+     * @param slots The slot table of the indexed list.
+     */
+    TaskIndex(TaskSlots slots) {
+        this.slots = slots;
+        for (int i = 0; i < byPriority.length; i++) {
+            byPriority[i] = new BitSet();
+        }
+        for (int i = 0; i < byDueBucket.length; i++) {
+            byDueBucket[i] = new BitSet();
+        }
+        this.today = LocalDate.now();
+    }
+
+    /** @return The date the due buckets are relative to. */
+    public LocalDate getToday() {
+        return today;
+    }
+
+    /**
+     * Moves the reference date of the due buckets, e.g. at midnight.
+     * @param today The new current date.
+     */
+    public void setToday(LocalDate today) {
+        if (today.equals(this.today)) {
+            return;
+        }
+        this.today = today;
+        for (BitSet bucket : byDueBucket) {
+            bucket.clear();
+        }
+        for (int slot = live.nextSetBit(0); slot >= 0; slot = live.nextSetBit(slot + 1)) {
+            byDueBucket[DueBucket.of(slots.itemAt(slot).getDueDate(), today).ordinal()].set(slot);
+        }
+    }
+
+    /**
+     * Moves the reference date forward when the tasks whose due bucket changes are known, without re-bucketing the rest.
+     * @param previous The current date.
+     * @param today The new current date, after the current one.
+     * @param moved The tasks due from the current date up to the new one.
+     */
+    void moveToday(LocalDate previous, LocalDate today, List<TodoItem> moved) {
+        this.today = today;
+        for (TodoItem item : moved) {
+            int slot = slots.slotOf(item);
+            if (slot < 0) {
+                continue;
+            }
+            byDueBucket[DueBucket.of(item.getDueDate(), previous).ordinal()].clear(slot);
+            byDueBucket[DueBucket.of(item.getDueDate(), today).ordinal()].set(slot);
+        }
+    }
+
+    /**
+     * Checks whether a task matches a query. This only tests the task's bits in the index.
+     * @param query The query.
+     * @param item The task.
+     * @return True if the task is indexed and matches the query.
+     */
+    public boolean matches(TaskQuery query, TodoItem item) {
+        int slot = slots.slotOf(item);
+        if (slot < 0 || !live.get(slot)) {
+            return false;
+        }
+        if (query.getDone() != null && done.get(slot) != query.getDone()) {
+            return false;
+        }
+        if (query.priorityMask() != 0 && !matchesAny(slot, byPriority, query.priorityMask())) {
+            return false;
+        }
+        return query.dueBucketMask() == 0 || matchesAny(slot, byDueBucket, query.dueBucketMask());
+    }
+
+    /**
+     * Computes the slots of all tasks that match a query by bitset intersection.
+     * @param query The query.
+     * @return A new bitset of matching slots.
+     */
+    BitSet select(TaskQuery query) {
+        BitSet result = (BitSet) live.clone();
+        if (query.getDone() != null) {
+            if (query.getDone()) {
+                result.and(done);
+            } else {
+                result.andNot(done);
+            }
+        }
+        if (query.priorityMask() != 0) {
+            result.and(union(byPriority, query.priorityMask()));
+        }
+        if (query.dueBucketMask() != 0) {
+            result.and(union(byDueBucket, query.dueBucketMask()));
+        }
+        return result;
+    }
+
+    /**
+     * Counts the tasks that match a query.
+     * @param query The query.
+     * @return The number of matching tasks.
+     */
+    public int count(TaskQuery query) {
+        return select(query).cardinality();
+    }
+
+    /**
+     * Collects the tasks that match a query.
+     * @param query The query.
+     * @return The matching tasks, in slot order (not necessarily list order).
+     */
+    public List<TodoItem> find(TaskQuery query) {
+        BitSet matches = select(query);
+        List<TodoItem> result = new ArrayList<>(matches.cardinality());
+        for (int slot = matches.nextSetBit(0); slot >= 0; slot = matches.nextSetBit(slot + 1)) {
+            result.add(slots.itemAt(slot));
+        }
+        return result;
+    }
+
+    @Override
+    public void tasksAdded(int from, List<? extends TodoItem> added) {
+        for (TodoItem item : added) {
+            int slot = slots.slotOf(item);
+            live.set(slot);
+            done.set(slot, item.isDone());
+            if (item.getPriority() != null) {
+                byPriority[item.getPriority().ordinal()].set(slot);
+            }
+            byDueBucket[DueBucket.of(item.getDueDate(), today).ordinal()].set(slot);
+        }
+    }
+
+    @Override
+    public void tasksRemoved(int from, List<? extends TodoItem> removed) {
+        for (TodoItem item : removed) {
+            int slot = slots.slotOf(item);
+            if (slot < 0) {
+                continue;
+            }
+            live.clear(slot);
+            done.clear(slot);
+            for (BitSet bits : byPriority) {
+                bits.clear(slot);
+            }
+            for (BitSet bits : byDueBucket) {
+                bits.clear(slot);
+            }
+        }
+    }
+
+    @Override
+    public void taskUpdated(TodoItem item, TaskField field, Object oldValue, Object newValue) {
+        int slot = slots.slotOf(item);
+        if (slot < 0) {
+            return;
+        }
+        switch (field) {
+            case DONE:
+                done.set(slot, Boolean.TRUE.equals(newValue));
+                break;
+            case PRIORITY:
+                if (oldValue != null) {
+                    byPriority[((TodoItem.Priority) oldValue).ordinal()].clear(slot);
+                }
+                if (newValue != null) {
+                    byPriority[((TodoItem.Priority) newValue).ordinal()].set(slot);
+                }
+                break;
+            case DUE_DATE:
+                byDueBucket[DueBucket.of((LocalDate) oldValue, today).ordinal()].clear(slot);
+                byDueBucket[DueBucket.of((LocalDate) newValue, today).ordinal()].set(slot);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static boolean matchesAny(int slot, BitSet[] sets, int mask) {
+        for (int ordinal = 0; ordinal < sets.length; ordinal++) {
+            if ((mask & (1 << ordinal)) != 0 && sets[ordinal].get(slot)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static BitSet union(BitSet[] sets, int mask) {
+        BitSet result = new BitSet();
+        for (int ordinal = 0; ordinal < sets.length; ordinal++) {
+            if ((mask & (1 << ordinal)) != 0) {
+                result.or(sets[ordinal]);
+            }
+        }
+        return result;
+    }
+}
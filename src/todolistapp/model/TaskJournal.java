@@ -0,0 +1,591 @@
+package todolistapp.model;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.System.Logger.Level;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead journal for task mutations.
+ * <p>
+ * Every add, remove, and field edit is encoded as one small binary record on the calling thread
+ * and appended on the {@link TaskPersistenceService} thread. The persistence thread drains all
+ * queued records at once and makes them durable with a single {@code force} (group commit),
+ * so an edit costs O(1) I/O instead of a full rewrite of the data file.
+ * <p>
+ * Once the journal grows past a threshold, it is compacted: a snapshot of the list is written to
+ * the data file of the {@link TaskStore} and the journal is replaced by an empty one. The journal header records the size
+ * and modification time of the data file it applies to, so a journal that belongs to an older
+ * snapshot (e.g. after a crash between the two renames) is recognised and ignored on recovery.
+ * A {@link LogStructuredTaskStore} is checkpointed with only the tasks added, edited, or removed since the
+ * previous checkpoint, which the journal tracks by ID, and identifies its snapshots itself.
+ * <p>
+ * Records address tasks by list position. Record layout: {@code int length, int crc32, payload},
+ * where the payload starts with an operation byte. Added tasks carry their ID, creation date, and
+ * last-modified time, and edits the new last-modified time. Version 1 journals, written before tasks
+ * had IDs, are still replayed; they are then checkpointed into a snapshot right away.
+ */
+final class TaskJournal implements TaskChangeListener {
+
+    private static final System.Logger LOG = System.getLogger(TaskJournal.class.getName());
+
+    /** Default journal size after which it is compacted into a snapshot. */
+    static final long DEFAULT_COMPACTION_THRESHOLD = 4L << 20;
+
+    private static final int MAGIC = 0x544A4E4C; // "TJNL"
+    private static final short VERSION = 2;
+    /** The version whose records have no IDs and last-modified times. */
+    private static final short VERSION_WITHOUT_IDS = 1;
+    private static final int HEADER_SIZE = 4 + 2 + 8 + 8;
+    private static final int RECORD_OVERHEAD = 4 + 4;
+    private static final long NO_SNAPSHOT = -1;
+
+    private static final byte OP_ADD = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte OP_DESCRIPTION = 3;
+    private static final byte OP_DONE = 4;
+    private static final byte OP_PRIORITY = 5;
+    private static final byte OP_DUE_DATE = 6;
+
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    private final Path journalFile;
+    private final TaskStore store;
+    /** The store if it can save only the changed tasks, otherwise null. */
+    private final LogStructuredTaskStore logStructuredStore;
+    private final TaskPersistenceService persistence;
+    private final TaskList tasks;
+    private final Supplier<List<TaskRecord>> snapshotSupplier;
+    private final long compactionThreshold;
+
+    // State owned by the thread that mutates the task list.
+    private boolean recording;
+    /** True between {@link #open()} and {@link #close()}. */
+    private boolean opened;
+    /** Set by {@link #suspend()}: the next checkpoint starts a new journal and resumes recording. */
+    private boolean suspended;
+    private long bytesSinceCheckpoint;
+    private long recoveredLength = -1;
+    private short recoveredVersion = VERSION;
+    private ByteBuffer encoder = ByteBuffer.allocate(256);
+    private final CRC32 crc = new CRC32();
+    /**
+     * IDs of the tasks added or edited since the last checkpoint, and of those removed, for a
+     * {@link #logStructuredStore}; null while the list may have changed unseen, so the next checkpoint saves it whole.
+     */
+    private Set<Long> changedIds;
+    private Set<Long> removedIds;
+    private volatile boolean checkpointPending;
+
+    // State owned by the persistence thread.
+    private FileChannel channel;
+    private OutputStream out;
+    /** True after a failed checkpoint: the store misses changes that later checkpoints do not carry. */
+    private boolean storeBehind;
+
+    // Hand-over between the two: encoded records (byte[]) and Checkpoint markers, in order.
+    private final Queue<Object> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+    TaskJournal(Path journalFile, TaskStore store, TaskPersistenceService persistence, TaskList tasks,
+            Supplier<List<TaskRecord>> snapshotSupplier, long compactionThreshold) {
+        this.journalFile = journalFile;
+        this.store = store;
+        this.logStructuredStore = store instanceof LogStructuredTaskStore logStructured ? logStructured : null;
+        this.persistence = persistence;
+        this.tasks = tasks;
+        this.snapshotSupplier = snapshotSupplier;
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * Stops recording mutations, e.g. while the list is replaced by a load.
+     */
+    void stopRecording() {
+        recording = false;
+        suspended = false;
+        stopTracking();
+    }
+
+    /**
+     * Resumes recording after {@link #stopRecording()} when the list was left unchanged, e.g. because a load
+     * failed. An open journal is continued as it is; one that was never opened stays closed, so it is not
+     * replaced before the data file it belongs to could be read.
+     */
+    void resumeRecording() {
+        recording = opened;
+    }
+
+    /**
+     * Stops recording mutations until the next {@link #checkpoint()}, which writes them all to the snapshot
+     * and then resumes recording in a new journal. For bulk changes that are saved as a whole anyway;
+     * after a crash before that checkpoint, recovery ends at the state from before the suspension.
+     */
+    void suspend() {
+        if (recording) {
+            recording = false;
+            suspended = true;
+            stopTracking();
+        }
+    }
+
+    /**
+     * Replays the journal tail on top of the tasks loaded from the snapshot.
+     * Replay stops at the first torn or corrupt record, which is dropped when the journal is reopened.
+     *
+     * @param items The tasks loaded from the data file; modified in place.
+     * @return The number of replayed records.
+     */
+    int recover(List<TodoItem> items) {
+        recoveredLength = -1;
+        recoveredVersion = VERSION;
+        if (!Files.exists(journalFile)) {
+            return 0;
+        }
+        try (FileChannel in = FileChannel.open(journalFile, StandardOpenOption.READ)) {
+            ByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            short version = buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC ? -1 : buffer.getShort();
+            if (version != VERSION && version != VERSION_WITHOUT_IDS) {
+                LOG.log(Level.WARNING, "Ignoring unreadable journal: " + journalFile);
+                return 0;
+            }
+            long[] expected = snapshotStamp();
+            if (buffer.getLong() != expected[0] || buffer.getLong() != expected[1]) {
+                LOG.log(Level.INFO, "Journal belongs to an older snapshot, ignoring it: " + journalFile);
+                return 0;
+            }
+            int replayed = 0;
+            int validEnd = buffer.position();
+            while (buffer.remaining() >= RECORD_OVERHEAD) {
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) {
+                    break;
+                }
+                ByteBuffer payload = buffer.slice(buffer.position(), length);
+                crc.reset();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != checksum || !apply(payload, items, version == VERSION)) {
+                    break;
+                }
+                buffer.position(buffer.position() + length);
+                validEnd = buffer.position();
+                replayed++;
+            }
+            recoveredLength = validEnd;
+            recoveredVersion = version;
+            if (replayed > 0) {
+                LOG.log(Level.INFO, replayed + " journal records replayed from " + journalFile + ".");
+            }
+            return replayed;
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Error reading journal " + journalFile + ": " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Opens the journal for appending and starts recording mutations.
+     * A journal that was successfully recovered is continued (minus any torn tail),
+     * otherwise a fresh journal for the current data file is started. A journal in the older format is
+     * not continued; its replayed changes are written to a snapshot instead.
+     */
+    void open() {
+        boolean oldFormat = recoveredVersion != VERSION;
+        boolean upgrade = oldFormat && recoveredLength > HEADER_SIZE;
+        long keep = oldFormat ? -1 : recoveredLength;
+        persistence.submit(() -> {
+            closeChannel();
+            if (keep > 0) {
+                channel = FileChannel.open(journalFile, StandardOpenOption.WRITE);
+                channel.truncate(keep);
+                channel.position(keep);
+            } else {
+                channel = createJournal();
+            }
+            out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+        }).exceptionally(e -> {
+            LOG.log(Level.WARNING, "Error opening journal " + journalFile + ": " + e.getMessage());
+            return null;
+        });
+        bytesSinceCheckpoint = Math.max(0, keep);
+        opened = true;
+        recording = true;
+        // Replayed changes are not in the store yet, so the first checkpoint then saves the whole list
+        if (recoveredLength > HEADER_SIZE) {
+            stopTracking();
+        } else {
+            startTracking();
+        }
+        if (upgrade) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Writes a full snapshot to the data file, or the changes since the last one to a {@link LogStructuredTaskStore},
+     * and starts a new, empty journal.
+     * The snapshot is taken on the calling thread, the writing happens on the persistence thread.
+     * @return A future that completes once the snapshot and the new journal are on disk.
+     */
+    CompletableFuture<Void> checkpoint() {
+        if (suspended) {
+            suspended = false;
+            recording = true;
+        }
+        Checkpoint checkpoint = new Checkpoint(snapshotSupplier.get(), changedIds, removedIds, recording,
+                new CompletableFuture<>());
+        if (recording) {
+            startTracking();
+        }
+        bytesSinceCheckpoint = 0;
+        checkpointPending = true;
+        enqueue(checkpoint);
+        return checkpoint.done();
+    }
+
+    /**
+     * Flushes and closes the journal. Records appended afterwards are ignored.
+     * @return A future that completes when the journal is closed.
+     */
+    CompletableFuture<Void> close() {
+        opened = false;
+        recording = false;
+        stopTracking();
+        return persistence.submit(this::closeChannel);
+    }
+
+    private void startTracking() {
+        if (logStructuredStore != null) {
+            changedIds = new HashSet<>();
+            removedIds = new HashSet<>();
+        }
+    }
+
+    private void stopTracking() {
+        changedIds = null;
+        removedIds = null;
+    }
+
+    @Override
+    public void tasksAdded(int from, List<? extends TodoItem> added) {
+        if (!recording) {
+            return;
+        }
+        for (int i = 0; i < added.size(); i++) {
+            TodoItem item = added.get(i);
+            if (changedIds != null) {
+                changedIds.add(item.getId());
+                removedIds.remove(item.getId());
+            }
+            byte[] description = item.getDescription().getBytes(StandardCharsets.UTF_8);
+            ByteBuffer record = begin(OP_ADD, from + i, description.length + 32);
+            record.putInt(description.length).put(description)
+                    .put((byte) (item.isDone() ? 1 : 0))
+                    .put((byte) item.getPriority().ordinal())
+                    .putInt(item.getDueEpochDay())
+                    .putInt(item.getCreationEpochDay())
+                    .putLong(item.getId())
+                    .putLong(item.getLastModified());
+            append();
+        }
+    }
+
+    @Override
+    public void tasksRemoved(int from, List<? extends TodoItem> removed) {
+        if (!recording) {
+            return;
+        }
+        if (changedIds != null) {
+            for (TodoItem item : removed) {
+                changedIds.remove(item.getId());
+                removedIds.add(item.getId());
+            }
+        }
+        begin(OP_REMOVE, from, 4).putInt(removed.size());
+        append();
+    }
+
+    @Override
+    public void taskUpdated(TodoItem item, TaskField field, Object oldValue, Object newValue) {
+        if (!recording) {
+            return;
+        }
+        int position = tasks.positionOf(item);
+        if (position < 0) {
+            return;
+        }
+        if (changedIds != null) {
+            changedIds.add(item.getId());
+        }
+        switch (field) {
+            case DESCRIPTION: {
+                byte[] description = ((String) newValue).getBytes(StandardCharsets.UTF_8);
+                begin(OP_DESCRIPTION, position, description.length + 4).putInt(description.length).put(description);
+                break;
+            }
+            case DONE:
+                begin(OP_DONE, position, 1).put((byte) (Boolean.TRUE.equals(newValue) ? 1 : 0));
+                break;
+            case PRIORITY:
+                begin(OP_PRIORITY, position, 1).put((byte) ((TodoItem.Priority) newValue).ordinal());
+                break;
+            case DUE_DATE:
+                begin(OP_DUE_DATE, position, 4).putInt(epochDay((LocalDate) newValue));
+                break;
+        }
+        encoder.putLong(item.getLastModified());
+        append();
+    }
+
+    /** Starts encoding a record: reserves the length and checksum slots and writes the operation and position. */
+    private ByteBuffer begin(byte op, int position, int payloadHint) {
+        int needed = RECORD_OVERHEAD + 1 + 4 + payloadHint + 8;
+        if (encoder.capacity() < needed) {
+            encoder = ByteBuffer.allocate(Math.max(needed, encoder.capacity() * 2));
+        }
+        encoder.clear();
+        encoder.position(RECORD_OVERHEAD);
+        return encoder.put(op).putInt(position);
+    }
+
+    /** Completes the record in the encoder and queues it for writing, followed by a group-commit sync. */
+    private void append() {
+        int length = encoder.position() - RECORD_OVERHEAD;
+        crc.reset();
+        crc.update(encoder.array(), RECORD_OVERHEAD, length);
+        encoder.putInt(0, length).putInt(4, (int) crc.getValue());
+        byte[] record = new byte[encoder.position()];
+        System.arraycopy(encoder.array(), 0, record, 0, record.length);
+        enqueue(record);
+
+        bytesSinceCheckpoint += record.length;
+        if (bytesSinceCheckpoint > compactionThreshold && !checkpointPending) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Queues a record or a checkpoint and makes sure a drain is scheduled on the persistence thread.
+     * Because the drain clears its flag before polling, every entry is either picked up by a drain
+     * that is already running or triggers a new one.
+     */
+    private void enqueue(Object entry) {
+        pending.add(entry);
+        if (drainScheduled.compareAndSet(false, true)) {
+            persistence.submit(this::drain).exceptionally(this::reportWriteFailure);
+        }
+    }
+
+    /**
+     * Runs on the persistence thread: writes all queued records in order and makes them durable
+     * with a single force (group commit). Checkpoints are executed at their place in the queue,
+     * so records queued before a checkpoint end up in the old journal and later ones in the new one.
+     */
+    private void drain() throws IOException {
+        drainScheduled.set(false);
+        boolean dirty = false;
+        Object entry;
+        while ((entry = pending.poll()) != null) {
+            if (entry instanceof byte[] record) {
+                if (out != null) {
+                    out.write(record);
+                    dirty = true;
+                }
+            } else {
+                writeCheckpoint((Checkpoint) entry);
+                dirty = false;
+            }
+        }
+        if (dirty) {
+            out.flush();
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Runs on the persistence thread: writes the snapshot, then replaces the journal by an empty one.
+     * The future of the checkpoint is completed whatever happens, since a save waits for it.
+     */
+    private void writeCheckpoint(Checkpoint checkpoint) {
+        try {
+            if (checkpoint.changedIds() != null && !storeBehind) {
+                logStructuredStore.saveChanges(checkpoint.snapshot(), checkpoint.changedIds(), checkpoint.removedIds());
+            } else {
+                store.save(checkpoint.snapshot());
+            }
+            storeBehind = false;
+            if (checkpoint.reopen()) {
+                closeChannel();
+                channel = createJournal();
+                out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+            }
+            LOG.log(Level.DEBUG, "Tasks saved successfully.");
+            checkpoint.done().complete(null);
+        } catch (IOException e) {
+            storeBehind = true;
+            LOG.log(Level.ERROR, "Error saving tasks to " + store.getPath() + ": " + e.getMessage());
+            checkpoint.done().completeExceptionally(new UncheckedIOException(e));
+        } catch (Throwable e) {
+            storeBehind = true;
+            LOG.log(Level.ERROR, "Error saving tasks to " + store.getPath(), e);
+            checkpoint.done().completeExceptionally(e);
+        } finally {
+            checkpointPending = false;
+        }
+    }
+
+    private Void reportWriteFailure(Throwable e) {
+        LOG.log(Level.ERROR, "Error writing journal " + journalFile + ": " + e.getMessage());
+        return null;
+    }
+
+    /** Runs on the persistence thread: creates an empty journal for the current data file. */
+    private FileChannel createJournal() throws IOException {
+        long[] stamp = snapshotStamp();
+        AtomicFiles.replace(journalFile, headerChannel -> {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                    .putInt(MAGIC).putShort(VERSION).putLong(stamp[0]).putLong(stamp[1]);
+            header.flip();
+            while (header.hasRemaining()) {
+                headerChannel.write(header);
+            }
+        });
+        FileChannel appendChannel = FileChannel.open(journalFile, StandardOpenOption.WRITE);
+        appendChannel.position(appendChannel.size());
+        return appendChannel;
+    }
+
+    private void closeChannel() throws IOException {
+        if (out != null) {
+            out.flush();
+            channel.force(false);
+            out.close();
+        }
+        out = null;
+        channel = null;
+    }
+
+    /** @return The size and modification time of the data file, identifying the snapshot a journal applies to. */
+    private long[] snapshotStamp() throws IOException {
+        if (logStructuredStore != null) {
+            // Its directory changes with every segment written, so the store names its saved lists instead
+            return new long[] {logStructuredStore.savedListNumber(), NO_SNAPSHOT};
+        }
+        Path snapshotFile = store.getPath();
+        if (!Files.exists(snapshotFile)) {
+            return new long[] {NO_SNAPSHOT, NO_SNAPSHOT};
+        }
+        return new long[] {Files.size(snapshotFile), Files.getLastModifiedTime(snapshotFile).toMillis()};
+    }
+
+    /**
+     * Applies one record payload to the list being recovered.
+     * @param withIds True for records of the current version, which carry IDs and last-modified times.
+     * @return False if the record does not fit the list (e.g. an out-of-range position).
+     */
+    private static boolean apply(ByteBuffer payload, List<TodoItem> items, boolean withIds) {
+        try {
+            byte op = payload.get();
+            int position = payload.getInt();
+            if (op == OP_ADD) {
+                if (position < 0 || position > items.size()) {
+                    return false;
+                }
+                String description = readString(payload);
+                boolean done = payload.get() != 0;
+                TodoItem.Priority priority = TodoItem.Priority.values()[payload.get()];
+                int due = payload.getInt();
+                TodoItem item;
+                if (withIds) {
+                    item = new TodoItem(description, done, priority, due, payload.getInt(), payload.getLong(), payload.getLong());
+                } else {
+                    item = new TodoItem(description, priority, toDate(due));
+                    item.setDone(done);
+                }
+                items.add(position, item);
+                return true;
+            }
+            if (op == OP_REMOVE) {
+                int count = payload.getInt();
+                if (position < 0 || count < 0 || position + count > items.size()) {
+                    return false;
+                }
+                items.subList(position, position + count).clear();
+                return true;
+            }
+            if (position < 0 || position >= items.size()) {
+                return false;
+            }
+            TodoItem item = items.get(position);
+            switch (op) {
+                case OP_DESCRIPTION:
+                    item.setDescription(readString(payload));
+                    break;
+                case OP_DONE:
+                    item.setDone(payload.get() != 0);
+                    break;
+                case OP_PRIORITY:
+                    item.setPriority(TodoItem.Priority.values()[payload.get()]);
+                    break;
+                case OP_DUE_DATE:
+                    item.setDueDate(toDate(payload.getInt()));
+                    break;
+                default:
+                    return false;
+            }
+            if (withIds) {
+                item.setLastModified(payload.getLong());
+            }
+            return true;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            return false;
+        }
+    }
+
+    private static String readString(ByteBuffer payload) {
+        int length = payload.getInt();
+        byte[] bytes = new byte[length];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int epochDay(LocalDate date) {
+        return date == null ? NO_DATE : (int) date.toEpochDay();
+    }
+
+    private static LocalDate toDate(int epochDay) {
+        return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    /**
+     * A queued request to write a snapshot and start a new journal.
+     * @param snapshot The tasks to write to the data file.
+     * @param changedIds The IDs of the tasks added or edited since the last checkpoint, or null to save all tasks.
+     * @param removedIds The IDs of the tasks removed since the last checkpoint, or null to save all tasks.
+     * @param reopen Whether a new journal should be started afterwards.
+     * @param done Completed once the checkpoint has been written.
+     */
+    private record Checkpoint(List<TaskRecord> snapshot, Set<Long> changedIds, Set<Long> removedIds, boolean reopen,
+            CompletableFuture<Void> done) {
+    }
+}
@@ -0,0 +1,223 @@
+package todolistapp.model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The JSON form of a task: a flat object with the fields of {@link TaskRecord}, e.g.
+ * {@code {"description":"Buy milk","done":false,"priority":"HIGH","dueDate":"2025-06-01","creationDate":"2025-05-20",
+ * "id":7215841795424256,"lastModified":1748180000000}}.
+ * Shared by the lines of {@link JsonLinesTaskStore} and the bodies of the local HTTP API.
+ */
+public final class TaskJson {
+
+    private TaskJson() {
+    }
+
+    /**
+     * Appends a task as one JSON object, without a line break.
+     * @param line The text to append to.
+     * @param record The task.
+     */
+    public static void appendRecord(StringBuilder line, TaskRecord record) {
+        line.append("{\"description\":");
+        appendString(line, record.description());
+        line.append(",\"done\":").append(record.done());
+        line.append(",\"priority\":");
+        appendString(line, record.priority() == null ? null : record.priority().name());
+        line.append(",\"dueDate\":");
+        appendString(line, record.dueDate() == null ? null : record.dueDate().toString());
+        line.append(",\"creationDate\":");
+        appendString(line, record.creationDate() == null ? null : record.creationDate().toString());
+        line.append(",\"id\":").append(record.id());
+        line.append(",\"lastModified\":").append(record.lastModified());
+        line.append('}');
+    }
+
+    /**
+     * Appends a JSON string literal, with the characters that need it escaped.
+     * @param line The text to append to.
+     * @param value The string, or null for a JSON {@code null}.
+     */
+    public static void appendString(StringBuilder line, String value) {
+        if (value == null) {
+            line.append("null");
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    line.append("\\\"");
+                    break;
+                case '\\':
+                    line.append("\\\\");
+                    break;
+                case '\n':
+                    line.append("\\n");
+                    break;
+                case '\r':
+                    line.append("\\r");
+                    break;
+                case '\t':
+                    line.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        line.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        line.append(c);
+                    }
+                    break;
+            }
+        }
+        line.append('"');
+    }
+
+    /**
+     * Parses a flat JSON object: string, boolean, null, and number values.
+     * Integers are returned as {@link Long}, other numbers as {@link Double}.
+     * @param text The object.
+     * @return The values by key, in the order of the text.
+     * @throws IllegalArgumentException If the text is not a flat JSON object.
+     */
+    public static Map<String, Object> parseObject(String text) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        Scanner scanner = new Scanner(text);
+        scanner.expect('{');
+        if (!scanner.consume('}')) {
+            do {
+                String key = scanner.string();
+                scanner.expect(':');
+                values.put(key, scanner.value());
+            } while (scanner.consume(','));
+            scanner.expect('}');
+        }
+        scanner.expectEnd();
+        return values;
+    }
+
+    /**
+     * Scanner for flat JSON objects: string, boolean, null, and number values.
+     * Integers are returned as {@link Long}, so 64-bit IDs keep their precision; other numbers as {@link Double}.
+     * Errors are reported as {@link IllegalArgumentException}.
+     */
+    static final class Scanner {
+        private final String text;
+        private int pos;
+
+        Scanner(String text) {
+            this.text = text;
+        }
+
+        void expect(char c) {
+            if (!consume(c)) {
+                throw new IllegalArgumentException("expected '" + c + "' at position " + pos);
+            }
+        }
+
+        boolean consume(char c) {
+            skipWhitespace();
+            if (pos < text.length() && text.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        void expectEnd() {
+            skipWhitespace();
+            if (pos != text.length()) {
+                throw new IllegalArgumentException("unexpected content at position " + pos);
+            }
+        }
+
+        Object value() {
+            skipWhitespace();
+            if (pos >= text.length()) {
+                throw new IllegalArgumentException("missing value");
+            }
+            char c = text.charAt(pos);
+            if (c == '"') {
+                return string();
+            }
+            if (text.startsWith("true", pos)) {
+                pos += 4;
+                return Boolean.TRUE;
+            }
+            if (text.startsWith("false", pos)) {
+                pos += 5;
+                return Boolean.FALSE;
+            }
+            if (text.startsWith("null", pos)) {
+                pos += 4;
+                return null;
+            }
+            int start = pos;
+            boolean integral = true;
+            while (pos < text.length() && "+-.eE0123456789".indexOf(text.charAt(pos)) >= 0) {
+                integral &= "+-0123456789".indexOf(text.charAt(pos)) >= 0;
+                pos++;
+            }
+            if (start == pos) {
+                throw new IllegalArgumentException("unsupported value at position " + pos);
+            }
+            String number = text.substring(start, pos);
+            return integral ? (Object) Long.valueOf(number) : Double.valueOf(number);
+        }
+
+        String string() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (pos < text.length()) {
+                char c = text.charAt(pos++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                if (pos >= text.length()) {
+                    break;
+                }
+                char escaped = text.charAt(pos++);
+                switch (escaped) {
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    case 'f':
+                        value.append('\f');
+                        break;
+                    case 'u':
+                        if (pos + 4 > text.length()) {
+                            throw new IllegalArgumentException("truncated escape");
+                        }
+                        value.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        break;
+                    default:
+                        value.append(escaped);
+                        break;
+                }
+            }
+            throw new IllegalArgumentException("unterminated string");
+        }
+
+        private void skipWhitespace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+    }
+}
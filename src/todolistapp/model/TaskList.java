@@ -0,0 +1,367 @@
+package todolistapp.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import javafx.collections.ModifiableObservableListBase;
+
+/**
+ * The observable list behind {@link TodoListManager#getTasks()}.
+ * Besides the usual {@code ObservableList} behaviour it can report the position of a task
+ * in amortized constant time: every item carries a position hint, and hints are only
+ * recomputed (from the first changed index onwards) after a structural change.
+ * Bulk operations ({@link #setAll(Collection)}, {@code addAll}, {@link #removeIf(Predicate)},
+ * {@code removeAll}, {@code retainAll}, and the inverse of a removal, {@link #insertRuns(int[], List)}) are
+ * done in a single pass with one change event, and edits of a task's fields are reported as update changes
+ * (see {@link #fireUpdated(TodoItem)}).
+ * Several operations can be merged into one change event with {@link #beginBatch()} and {@link #endBatch()}.
+ * <p>
+ * Structural changes are also reported synchronously to a {@link StructureListener}, in the order they
+ * are applied. List change events of a batch are only delivered at its end, but the owner has to
+ * keep per-task state (listeners, slots, the journal) exact after every single step.
+ */
+final class TaskList extends ModifiableObservableListBase<TodoItem> {
+
+    /** Receives every structural change of a {@link TaskList} right after it was applied. */
+    interface StructureListener {
+
+        /**
+         * @param from The position of the first removed task.
+         * @param removed The removed tasks, in their former order.
+         */
+        void removed(int from, List<TodoItem> removed);
+
+        /**
+         * @param from The position of the first inserted task.
+         * @param added The inserted tasks, in list order.
+         */
+        void added(int from, List<TodoItem> added);
+    }
+
+    /** Beyond this many separate runs of removed tasks, {@link #removeIf(Predicate)} reports a single replacement. */
+    private static final int MAX_REMOVED_RUNS = 16;
+
+    private final ArrayList<TodoItem> items = new ArrayList<>();
+    private final StructureListener structureListener;
+    /** Position hints of the items in {@code [0, validPositions)} are known to be correct. */
+    private int validPositions;
+
+    /**
+     * Creates an empty list.
+     * @param structureListener Notified about every insertion and removal.
+     */
+    TaskList(StructureListener structureListener) {
+        this.structureListener = structureListener;
+    }
+
+    @Override
+    public TodoItem get(int index) {
+        return items.get(index);
+    }
+
+    @Override
+    public int size() {
+        return items.size();
+    }
+
+    /** Finds the task through its position hint instead of an equality scan. */
+    @Override
+    public int indexOf(Object o) {
+        return o instanceof TodoItem item ? positionOf(item) : -1;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    @Override
+    protected void doAdd(int index, TodoItem element) {
+        items.add(index, element);
+        if (index == validPositions) {
+            // Inserting right after the valid range (e.g. appending) extends it by one.
+            element.listPosition = index;
+            validPositions = index + 1;
+        } else {
+            validPositions = Math.min(validPositions, index);
+        }
+        structureListener.added(index, List.of(element));
+    }
+
+    @Override
+    protected TodoItem doSet(int index, TodoItem element) {
+        TodoItem previous = items.set(index, element);
+        element.listPosition = index;
+        structureListener.removed(index, List.of(previous));
+        structureListener.added(index, List.of(element));
+        return previous;
+    }
+
+    @Override
+    protected TodoItem doRemove(int index) {
+        validPositions = Math.min(validPositions, index);
+        TodoItem removed = items.remove(index);
+        structureListener.removed(index, List.of(removed));
+        return removed;
+    }
+
+    @Override
+    public boolean setAll(Collection<? extends TodoItem> col) {
+        beginChange();
+        try {
+            if (!items.isEmpty()) {
+                List<TodoItem> removed = new ArrayList<>(items);
+                items.clear();
+                validPositions = 0;
+                modCount++;
+                structureListener.removed(0, removed);
+                nextRemove(0, removed);
+            }
+            addAll(0, col);
+        } finally {
+            endChange();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends TodoItem> col) {
+        return addAll(items.size(), col);
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends TodoItem> col) {
+        if (index < 0 || index > items.size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + items.size());
+        }
+        if (col.isEmpty()) {
+            return false;
+        }
+        beginChange();
+        try {
+            items.addAll(index, col);
+            int end = index + col.size();
+            if (index == validPositions) {
+                for (int i = index; i < end; i++) {
+                    items.get(i).listPosition = i;
+                }
+                validPositions = end == items.size() ? end : index;
+            } else {
+                validPositions = Math.min(validPositions, index);
+            }
+            modCount++;
+            structureListener.added(index, Collections.unmodifiableList(items.subList(index, end)));
+            nextAdd(index, end);
+        } finally {
+            endChange();
+        }
+        return true;
+    }
+
+    /**
+     * Removes all matching tasks in a single compacting pass and one change event.
+     * @param filter Selects the tasks to remove.
+     * @return True if any task was removed.
+     */
+    @Override
+    public boolean removeIf(Predicate<? super TodoItem> filter) {
+        int size = items.size();
+        int write = 0;
+        // Runs of removed tasks as (position after compaction, tasks)
+        List<Integer> runStarts = new ArrayList<>();
+        List<List<TodoItem>> runs = new ArrayList<>();
+        List<TodoItem> run = null;
+        for (int read = 0; read < size; read++) {
+            TodoItem item = items.get(read);
+            if (filter.test(item)) {
+                if (run == null) {
+                    run = new ArrayList<>();
+                    runStarts.add(write);
+                    runs.add(run);
+                }
+                run.add(item);
+            } else {
+                run = null;
+                items.set(write++, item);
+            }
+        }
+        if (runs.isEmpty()) {
+            return false;
+        }
+        items.subList(write, size).clear();
+        validPositions = Math.min(validPositions, runStarts.get(0));
+        modCount++;
+        beginChange();
+        try {
+            for (int i = 0; i < runs.size(); i++) {
+                structureListener.removed(runStarts.get(i), runs.get(i));
+            }
+            if (runs.size() <= MAX_REMOVED_RUNS) {
+                for (int i = 0; i < runs.size(); i++) {
+                    nextRemove(runStarts.get(i), runs.get(i));
+                }
+            } else {
+                // Views such as SortedList handle every removed run in linear time, so a heavily
+                // fragmented removal is reported as one replacement of the affected tail instead.
+                int from = runStarts.get(0);
+                nextReplace(from, write, mergeTail(from, runStarts, runs));
+            }
+        } finally {
+            endChange();
+        }
+        return true;
+    }
+
+    /**
+     * Rebuilds the former content of the list from position {@code from} onwards, given the compacted
+     * list and the removed runs.
+     */
+    private List<TodoItem> mergeTail(int from, List<Integer> runStarts, List<List<TodoItem>> runs) {
+        List<TodoItem> tail = new ArrayList<>();
+        int kept = from;
+        for (int i = 0; i < runs.size(); i++) {
+            int start = runStarts.get(i);
+            tail.addAll(items.subList(kept, start));
+            tail.addAll(runs.get(i));
+            kept = start;
+        }
+        tail.addAll(items.subList(kept, items.size()));
+        return tail;
+    }
+
+    /**
+     * Inserts several runs of tasks in a single pass and one change event; the inverse of
+     * {@link #removeIf(Predicate)}, which reports its removed runs in the same form.
+     * @param starts For each run, the number of tasks of the current list that come before it; non-decreasing.
+     * @param runs The runs of tasks, in list order.
+     */
+    void insertRuns(int[] starts, List<List<TodoItem>> runs) {
+        int size = items.size();
+        if (runs.isEmpty() || starts[runs.size() - 1] > size) {
+            throw new IndexOutOfBoundsException("Run start beyond size " + size);
+        }
+        int total = 0;
+        for (List<TodoItem> run : runs) {
+            total += run.size();
+        }
+        int from = starts[0];
+        List<TodoItem> previousTail = new ArrayList<>(items.subList(from, size));
+        // Grow once, then fill from the back so every task moves at most once
+        items.addAll(Collections.nCopies(total, null));
+        int read = size;
+        int write = size + total;
+        for (int i = runs.size() - 1; i >= 0; i--) {
+            while (read > starts[i]) {
+                items.set(--write, items.get(--read));
+            }
+            List<TodoItem> run = runs.get(i);
+            for (int j = run.size() - 1; j >= 0; j--) {
+                items.set(--write, run.get(j));
+            }
+        }
+        validPositions = Math.min(validPositions, from);
+        modCount++;
+        beginChange();
+        try {
+            int inserted = 0;
+            for (int i = 0; i < runs.size(); i++) {
+                int position = starts[i] + inserted;
+                inserted += runs.get(i).size();
+                structureListener.added(position, Collections.unmodifiableList(items.subList(position, starts[i] + inserted)));
+            }
+            if (runs.size() <= MAX_REMOVED_RUNS) {
+                inserted = 0;
+                for (int i = 0; i < runs.size(); i++) {
+                    int position = starts[i] + inserted;
+                    inserted += runs.get(i).size();
+                    nextAdd(position, starts[i] + inserted);
+                }
+            } else {
+                nextReplace(from, size + total, previousTail);
+            }
+        } finally {
+            endChange();
+        }
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> col) {
+        Set<?> set = col instanceof Set<?> ? (Set<?>) col : new HashSet<>(col);
+        return removeIf(set::contains);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> col) {
+        Set<?> set = col instanceof Set<?> ? (Set<?>) col : new HashSet<>(col);
+        return removeIf(item -> !set.contains(item));
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        if (fromIndex >= toIndex) {
+            return;
+        }
+        beginChange();
+        try {
+            List<TodoItem> range = items.subList(fromIndex, toIndex);
+            List<TodoItem> removed = new ArrayList<>(range);
+            range.clear();
+            validPositions = Math.min(validPositions, fromIndex);
+            modCount++;
+            structureListener.removed(fromIndex, removed);
+            nextRemove(fromIndex, removed);
+        } finally {
+            endChange();
+        }
+    }
+
+    /**
+     * Starts merging all following changes into one change event; must be paired with {@link #endBatch()}.
+     * Batches nest.
+     */
+    void beginBatch() {
+        beginChange();
+    }
+
+    /** Ends a batch started by {@link #beginBatch()}; the outermost end delivers the change event. */
+    void endBatch() {
+        endChange();
+    }
+
+    /**
+     * Notifies list listeners that a field of the given task changed, so views such as a
+     * {@code FilteredList} or {@code SortedList} re-evaluate just that element.
+     * @param item The changed task.
+     */
+    void fireUpdated(TodoItem item) {
+        int position = positionOf(item);
+        if (position < 0) {
+            return;
+        }
+        beginChange();
+        nextUpdate(position);
+        endChange();
+    }
+
+    /**
+     * Returns the position of the given task in this list.
+     * @param item The task to look up.
+     * @return The index of the task, or -1 if it is not in this list.
+     */
+    int positionOf(TodoItem item) {
+        int hint = item.listPosition;
+        if (hint >= 0 && hint < validPositions) {
+            return items.get(hint) == item ? hint : -1;
+        }
+        for (int i = validPositions; i < items.size(); i++) {
+            items.get(i).listPosition = i;
+        }
+        validPositions = items.size();
+        hint = item.listPosition;
+        return hint >= 0 && hint < items.size() && items.get(hint) == item ? hint : -1;
+    }
+}
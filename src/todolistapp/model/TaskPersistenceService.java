@@ -0,0 +1,67 @@
+package todolistapp.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs task persistence off the JavaFX Application Thread.
+ * All writes go through one dedicated daemon thread, so saves are applied in the order
+ * they were requested and never overlap. Callers hand over their work, e.g. writing an immutable snapshot
+ * ({@link TaskRecord}s), and get a {@link CompletableFuture} they can wait on, e.g. with a timeout on shutdown.
+ */
+public class TaskPersistenceService {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "todo-persistence");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Schedules an arbitrary I/O task on the persistence thread, after all previously submitted work.
+     * @param task The work to run.
+     * @return A future that completes when the task has run, or completes exceptionally
+     *         with an {@link UncheckedIOException} if it failed.
+     */
+    CompletableFuture<Void> submit(IOTask task) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                task.run();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Stops accepting new work and waits for pending writes to finish.
+     * @param timeout The maximum time to wait.
+     * @param unit The unit of {@code timeout}.
+     * @return True if all pending writes finished in time, false otherwise.
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) {
+        executor.shutdown();
+        try {
+            return executor.awaitTermination(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * A unit of work for the persistence thread that may fail with an {@link IOException}.
+     */
+    @FunctionalInterface
+    interface IOTask {
+        /**
+         * Runs the task.
+         * @throws IOException If the I/O operation fails.
+         */
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,112 @@
+package todolistapp.model;
+
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * An immutable filter over the indexed fields of a task: completion status, priority, and due bucket.
+ * The conditions are combined with AND; an empty set of priorities or buckets means "any".
+ * Queries are answered by {@link TaskIndex} through bitset intersection.
+ */
+public final class TaskQuery {
+
+    /** Matches every task. */
+    public static final TaskQuery ALL = new TaskQuery(null, EnumSet.noneOf(TodoItem.Priority.class), EnumSet.noneOf(DueBucket.class));
+    /** Matches tasks that are not done. */
+    public static final TaskQuery ACTIVE = ALL.withDone(false);
+    /** Matches tasks that are done. */
+    public static final TaskQuery COMPLETED = ALL.withDone(true);
+    /** Matches high priority tasks that are not done and past their due date. */
+    public static final TaskQuery HIGH_PRIORITY_OVERDUE = ACTIVE
+            .withPriorities(EnumSet.of(TodoItem.Priority.HIGH))
+            .withDueBuckets(EnumSet.of(DueBucket.OVERDUE));
+
+    private final Boolean done;
+    private final Set<TodoItem.Priority> priorities;
+    private final Set<DueBucket> dueBuckets;
+    // Bit i is set if the enum constant with ordinal i is accepted; 0 means any.
+    private final int priorityMask;
+    private final int dueBucketMask;
+
+    private TaskQuery(Boolean done, Set<TodoItem.Priority> priorities, Set<DueBucket> dueBuckets) {
+        this.done = done;
+        this.priorities = priorities;
+        this.dueBuckets = dueBuckets;
+        this.priorityMask = maskOf(priorities);
+        this.dueBucketMask = maskOf(dueBuckets);
+    }
+
+    /**
+     * @param done The required completion status, or null for any.
+     * @return A copy of this query with the given completion condition.
+     */
+    public TaskQuery withDone(Boolean done) {
+        return new TaskQuery(done, priorities, dueBuckets);
+    }
+
+    /**
+     * @param priorities The accepted priorities; empty for any.
+     * @return A copy of this query with the given priority condition.
+     */
+    public TaskQuery withPriorities(Set<TodoItem.Priority> priorities) {
+        return new TaskQuery(done, copyOf(priorities, TodoItem.Priority.class), dueBuckets);
+    }
+
+    /**
+     * @param dueBuckets The accepted due buckets; empty for any.
+     * @return A copy of this query with the given due date condition.
+     */
+    public TaskQuery withDueBuckets(Set<DueBucket> dueBuckets) {
+        return new TaskQuery(done, priorities, copyOf(dueBuckets, DueBucket.class));
+    }
+
+    /** @return The required completion status, or null for any. */
+    public Boolean getDone() {
+        return done;
+    }
+
+    /** @return The accepted priorities; empty means any. */
+    public Set<TodoItem.Priority> getPriorities() {
+        return copyOf(priorities, TodoItem.Priority.class);
+    }
+
+    /** @return The accepted due buckets; empty means any. */
+    public Set<DueBucket> getDueBuckets() {
+        return copyOf(dueBuckets, DueBucket.class);
+    }
+
+    /**
+     * Tests a single task snapshot against this query, for readers that work on a snapshot instead of the index.
+     * @param record The task.
+     * @param today The date the due bucket is relative to.
+     * @return True if the task matches all conditions.
+     */
+    public boolean matches(TaskRecord record, LocalDate today) {
+        return (done == null || done == record.done())
+                && (priorityMask == 0 || record.priority() != null && (priorityMask & 1 << record.priority().ordinal()) != 0)
+                && (dueBucketMask == 0 || (dueBucketMask & 1 << DueBucket.of(record.dueDate(), today).ordinal()) != 0);
+    }
+
+    /** @return A bit mask of accepted priority ordinals, 0 for any. */
+    int priorityMask() {
+        return priorityMask;
+    }
+
+    /** @return A bit mask of accepted due bucket ordinals, 0 for any. */
+    int dueBucketMask() {
+        return dueBucketMask;
+    }
+
+    private static int maskOf(Set<? extends Enum<?>> values) {
+        int mask = 0;
+        for (Enum<?> value : values) {
+            mask |= 1 << value.ordinal();
+        }
+        return mask;
+    }
+
+    private static <E extends Enum<E>> Set<E> copyOf(Set<E> values, Class<E> type) {
+        return values.isEmpty() ? EnumSet.noneOf(type) : EnumSet.copyOf(values);
+    }
+}
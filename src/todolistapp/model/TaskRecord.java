@@ -0,0 +1,31 @@
+package todolistapp.model;
+
+import java.time.LocalDate;
+
+/**
+ * Immutable snapshot of a single {@link TodoItem}.
+ * Records are taken on the JavaFX Application Thread and can then be handed to
+ * background threads (e.g. for saving) without racing against edits made in the UI;
+ * {@link TodoListManager} keeps one per task in its {@link TaskSnapshot}.
+ *
+ * @param description The description of the task.
+ * @param done The completion status of the task.
+ * @param priority The priority of the task.
+ * @param dueDate The due date of the task, may be null.
+ * @param creationDate The creation date of the task.
+ * @param id The ID of the task (see {@link TodoItem#getId()}), or 0 to let the loading side assign one.
+ * @param lastModified The time of the last change of the task in epoch milliseconds, or 0 if unknown.
+ */
+public record TaskRecord(String description, boolean done, TodoItem.Priority priority,
+        LocalDate dueDate, LocalDate creationDate, long id, long lastModified) {
+
+    /**
+     * Takes a snapshot of the current state of the given item.
+     * @param item The item to copy.
+     * @return A new immutable record with the item's values.
+     */
+    public static TaskRecord of(TodoItem item) {
+        return new TaskRecord(item.getDescription(), item.isDone(), item.getPriority(),
+                item.getDueDate(), item.getCreationDate(), item.getId(), item.getLastModified());
+    }
+}
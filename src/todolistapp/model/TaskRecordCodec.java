@@ -0,0 +1,104 @@
+package todolistapp.model;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Binary encoding of a single {@link TaskRecord}, shared by the files that store tasks record by record.
+ * <p>
+ * Layout (big-endian): {@code byte flags, long id, long lastModified, int dueEpochDay, int creationEpochDay,
+ * int descriptionLength, UTF-8 description bytes}, with the flags of {@link BinaryTaskStore}: completion
+ * status (bit 0), priority ordinal (bits 1-2), and whether the due and creation dates are present (bits 3 and 4).
+ */
+final class TaskRecordCodec {
+
+    /** Size of a record without its description bytes. */
+    static final int FIXED_SIZE = 1 + 8 + 8 + 4 + 4 + 4;
+
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    private static final int DONE_BIT = 1;
+    private static final int PRIORITY_SHIFT = 1;
+    private static final int PRIORITY_MASK = 0b11;
+    private static final int HAS_DUE_BIT = 1 << 3;
+    private static final int HAS_CREATION_BIT = 1 << 4;
+    private static final TodoItem.Priority[] PRIORITIES = TodoItem.Priority.values();
+
+    private TaskRecordCodec() {
+    }
+
+    /**
+     * Encodes the description of a record; pass the result to {@link #encode}.
+     * @param record The record.
+     * @return The UTF-8 bytes of the description.
+     */
+    static byte[] descriptionBytes(TaskRecord record) {
+        return record.description().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param description The bytes from {@link #descriptionBytes(TaskRecord)}.
+     * @return The encoded size of a record with this description.
+     */
+    static int encodedSize(byte[] description) {
+        return FIXED_SIZE + description.length;
+    }
+
+    /**
+     * Writes a record at the position of a buffer.
+     * @param buffer The buffer, with at least {@link #encodedSize(byte[])} bytes remaining.
+     * @param record The record.
+     * @param description The bytes from {@link #descriptionBytes(TaskRecord)}.
+     */
+    static void encode(ByteBuffer buffer, TaskRecord record, byte[] description) {
+        int flags = (record.done() ? DONE_BIT : 0)
+                | (record.priority().ordinal() & PRIORITY_MASK) << PRIORITY_SHIFT
+                | (record.dueDate() != null ? HAS_DUE_BIT : 0)
+                | (record.creationDate() != null ? HAS_CREATION_BIT : 0);
+        buffer.put((byte) flags)
+                .putLong(record.id())
+                .putLong(record.lastModified())
+                .putInt(epochDay(record.dueDate()))
+                .putInt(epochDay(record.creationDate()))
+                .putInt(description.length)
+                .put(description);
+    }
+
+    /**
+     * Reads a record at the position of a buffer.
+     * @param buffer A heap buffer.
+     * @return The record.
+     * @throws BufferUnderflowException If the buffer ends within the record.
+     */
+    static TaskRecord decode(ByteBuffer buffer) {
+        int flags = buffer.get();
+        long id = buffer.getLong();
+        long lastModified = buffer.getLong();
+        int due = buffer.getInt();
+        int creation = buffer.getInt();
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String description = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return new TaskRecord(description, (flags & DONE_BIT) != 0, PRIORITIES[(flags >> PRIORITY_SHIFT) & PRIORITY_MASK],
+                (flags & HAS_DUE_BIT) != 0 ? LocalDate.ofEpochDay(due) : null,
+                (flags & HAS_CREATION_BIT) != 0 ? LocalDate.ofEpochDay(creation) : null,
+                id, lastModified);
+    }
+
+    /**
+     * @param record A record.
+     * @return Its due date as epoch day, or {@code Integer.MIN_VALUE} for none.
+     */
+    static int dueEpochDay(TaskRecord record) {
+        return epochDay(record.dueDate());
+    }
+
+    private static int epochDay(LocalDate date) {
+        return date == null ? NO_DATE : (int) date.toEpochDay();
+    }
+}
@@ -0,0 +1,43 @@
+package todolistapp.model;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The other side of a {@link TaskSync}: a copy of a task list, e.g. on another machine or a shared drive.
+ * <p>
+ * A replica is seen as {@value TaskSync#BUCKETS} buckets of tasks, partitioned by task ID, each with a
+ * digest: the XOR of the {@link TaskSync#contentHash(TaskRecord) content hashes} of its tasks (0 for an
+ * empty bucket). A sync first compares digests and then only reads and writes the buckets that differ,
+ * so a replica that can answer {@link #readDigests()} without reading all tasks makes syncing cost
+ * proportional to the number of changed tasks rather than the size of the list.
+ * <p>
+ * A replica is used by one sync at a time, from background threads.
+ */
+public interface TaskReplica {
+
+    /**
+     * Reads the digests of all buckets.
+     * @return {@value TaskSync#BUCKETS} digests, indexed by bucket; all 0 for an empty replica.
+     * @throws IOException If the replica cannot be read.
+     */
+    long[] readDigests() throws IOException;
+
+    /**
+     * Reads the tasks of one bucket.
+     * @param bucket The bucket, see {@link TaskSync#bucketOf(long)}.
+     * @return The tasks in the bucket, in any order.
+     * @throws IOException If the replica cannot be read.
+     */
+    List<TaskRecord> readBucket(int bucket) throws IOException;
+
+    /**
+     * Replaces the contents of some buckets.
+     * @param buckets The new tasks of every changed bucket, by bucket; an empty list empties the bucket.
+     * @param digests The digests of all buckets after the change.
+     * @throws IOException If writing fails. Buckets written before the failure may keep their new contents,
+     *                     which the next sync detects as changes.
+     */
+    void writeBuckets(Map<Integer, List<TaskRecord>> buckets, long[] digests) throws IOException;
+}
@@ -0,0 +1,191 @@
+package todolistapp.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * In-memory inverted index over task descriptions.
+ * <p>
+ * Descriptions are split into lower-cased words; for every word the index keeps a sorted posting
+ * list of task slots (see {@link TaskSlots}). The words are kept in a sorted map, so a query word
+ * also matches every indexed word it is a prefix of, which is what search-as-you-type needs.
+ * The index is maintained incrementally from {@link TaskChangeListener} notifications: only the
+ * words of an added, removed, or edited description are touched.
+ * <p>
+ * A query matches a task if every query word matches one of the task's words. Matches are ranked
+ * by how many query words matched a whole word rather than only a prefix.
+ */
+public class TaskSearchIndex implements TaskChangeListener {
+
+    private static final int EXACT_SCORE = 2;
+    private static final int PREFIX_SCORE = 1;
+
+    private final TaskSlots slots;
+    private final NavigableMap<String, Postings> postings = new TreeMap<>();
+
+    /**
+     * Creates an empty search index.
+     * The owner must register the instance as a {@link TaskChangeListener} of the indexed list.
+     * @param slots The slot table of the indexed list.
+     */
+    TaskSearchIndex(TaskSlots slots) {
+        this.slots = slots;
+    }
+
+    /**
+     * Searches the task descriptions.
+     * @param query The search text; split into words like the descriptions.
+     * @return The matching tasks with their scores. A query without words matches nothing.
+     */
+    public SearchResult search(String query) {
+        List<String> words = tokenize(query);
+        if (words.isEmpty()) {
+            return SearchResult.EMPTY;
+        }
+        int[] scores = null;
+        BitSet matches = null;
+        for (String word : words) {
+            BitSet wordMatches = new BitSet();
+            int[] wordScores = new int[slots.capacity()];
+            for (Map.Entry<String, Postings> entry : postings.subMap(word, true, word + Character.MAX_VALUE, false).entrySet()) {
+                int score = entry.getKey().length() == word.length() ? EXACT_SCORE : PREFIX_SCORE;
+                Postings list = entry.getValue();
+                for (int i = 0; i < list.size; i++) {
+                    int slot = list.slots[i];
+                    wordMatches.set(slot);
+                    wordScores[slot] = Math.max(wordScores[slot], score);
+                }
+            }
+            if (matches == null) {
+                matches = wordMatches;
+                scores = wordScores;
+            } else {
+                matches.and(wordMatches);
+                for (int slot = matches.nextSetBit(0); slot >= 0; slot = matches.nextSetBit(slot + 1)) {
+                    scores[slot] += wordScores[slot];
+                }
+            }
+            if (matches.isEmpty()) {
+                return SearchResult.EMPTY;
+            }
+        }
+        List<TodoItem> items = new ArrayList<>(matches.cardinality());
+        int[] matchScores = new int[matches.cardinality()];
+        for (int slot = matches.nextSetBit(0); slot >= 0; slot = matches.nextSetBit(slot + 1)) {
+            matchScores[items.size()] = scores[slot];
+            items.add(slots.itemAt(slot));
+        }
+        return new SearchResult(items, matchScores);
+    }
+
+    /** Removes all words, e.g. before the index is rebuilt. */
+    void clear() {
+        postings.clear();
+    }
+
+    @Override
+    public void tasksAdded(int from, List<? extends TodoItem> added) {
+        for (TodoItem item : added) {
+            index(item.getDescription(), slots.slotOf(item));
+        }
+    }
+
+    @Override
+    public void tasksRemoved(int from, List<? extends TodoItem> removed) {
+        for (TodoItem item : removed) {
+            unindex(item.getDescription(), slots.slotOf(item));
+        }
+    }
+
+    @Override
+    public void taskUpdated(TodoItem item, TaskField field, Object oldValue, Object newValue) {
+        if (field != TaskField.DESCRIPTION) {
+            return;
+        }
+        int slot = slots.slotOf(item);
+        unindex((String) oldValue, slot);
+        index((String) newValue, slot);
+    }
+
+    private void index(String description, int slot) {
+        if (slot < 0) {
+            return;
+        }
+        for (String word : tokenize(description)) {
+            postings.computeIfAbsent(word, key -> new Postings()).add(slot);
+        }
+    }
+
+    private void unindex(String description, int slot) {
+        if (slot < 0) {
+            return;
+        }
+        for (String word : tokenize(description)) {
+            Postings list = postings.get(word);
+            if (list != null && list.remove(slot) && list.size == 0) {
+                postings.remove(word);
+            }
+        }
+    }
+
+    /**
+     * Splits text into lower-cased words of letters and digits.
+     * @param text The text, may be null.
+     * @return The distinct words in order of first occurrence.
+     */
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String word = text.substring(start, i).toLowerCase();
+                if (!words.contains(word)) {
+                    words.add(word);
+                }
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    /** Sorted, duplicate-free list of slots containing one word. */
+    private static final class Postings {
+        int[] slots = new int[2];
+        int size;
+
+        void add(int slot) {
+            int position = Arrays.binarySearch(slots, 0, size, slot);
+            if (position >= 0) {
+                return;
+            }
+            position = -position - 1;
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            System.arraycopy(slots, position, slots, position + 1, size - position);
+            slots[position] = slot;
+            size++;
+        }
+
+        boolean remove(int slot) {
+            int position = Arrays.binarySearch(slots, 0, size, slot);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(slots, position + 1, slots, position, size - position - 1);
+            size--;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,452 @@
+package todolistapp.model;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+/**
+ * An immutable file of task entries sorted by task ID: one level of a {@link LogStructuredTaskStore}.
+ * <p>
+ * Layout (big-endian): the entries, each {@code byte kind} followed by a record in the layout of
+ * {@link TaskRecordCodec} for a put or by {@code long id} for a deletion; a sparse index with the ID and offset
+ * of every {@value #INDEX_INTERVAL}th entry; a due-date index of {@code int dueEpochDay, long id} pairs for the
+ * puts with a due date, sorted by date and ID; a Bloom filter over all IDs; and a footer of {@code long
+ * indexOffset, int indexCount, long dueOffset, int dueCount, long bloomOffset, int bloomWords, int entryCount,
+ * int magic}.
+ * <p>
+ * Only the sparse index and the Bloom filter are kept in memory, about 1.5 bytes per entry. A point read costs
+ * a Bloom filter probe and, if the ID may be present, one positional read of about {@value #INDEX_INTERVAL}
+ * entries; the due-date index is binary-searched on disk. Thread-safe, since positional reads do not move a
+ * shared file position.
+ */
+final class TaskSegment implements Closeable {
+
+    /** Marks a deleted task in segments and in the memtable of a {@link LogStructuredTaskStore}. */
+    static final TaskRecord TOMBSTONE = new TaskRecord("", false, TodoItem.Priority.LOW, null, null, TaskIds.NONE, 0);
+
+    /** Entries per block of the sparse index. */
+    static final int INDEX_INTERVAL = 64;
+
+    private static final int MAGIC = 0x5444534D; // "TDSM"
+    private static final int FOOTER_SIZE = 8 + 4 + 8 + 4 + 8 + 4 + 4 + 4;
+    private static final byte KIND_DELETE = 0;
+    private static final byte KIND_PUT = 1;
+    private static final int DUE_ENTRY_SIZE = 4 + 8;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int BLOOM_BITS_PER_ENTRY = 10;
+    private static final int BLOOM_HASHES = 7;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long[] indexIds;
+    private final long[] indexOffsets;
+    /** End of the entries, which is where the sparse index starts. */
+    private final long dataEnd;
+    private final long dueOffset;
+    private final int dueCount;
+    private final long[] bloom;
+    private final int entryCount;
+
+    private TaskSegment(Path path, FileChannel channel, long[] indexIds, long[] indexOffsets, long dataEnd,
+            long dueOffset, int dueCount, long[] bloom, int entryCount) {
+        this.path = path;
+        this.channel = channel;
+        this.indexIds = indexIds;
+        this.indexOffsets = indexOffsets;
+        this.dataEnd = dataEnd;
+        this.dueOffset = dueOffset;
+        this.dueCount = dueCount;
+        this.bloom = bloom;
+        this.entryCount = entryCount;
+    }
+
+    /**
+     * Opens an existing segment file.
+     * @param path The file.
+     * @return The segment; close it when it is no longer used.
+     * @throws IOException If the file cannot be read or is not a segment.
+     */
+    static TaskSegment open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < FOOTER_SIZE) {
+                throw new IOException("Truncated task segment: " + path);
+            }
+            ByteBuffer footer = read(channel, size - FOOTER_SIZE, FOOTER_SIZE);
+            long indexOffset = footer.getLong();
+            int indexCount = footer.getInt();
+            long dueOffset = footer.getLong();
+            int dueCount = footer.getInt();
+            long bloomOffset = footer.getLong();
+            int bloomWords = footer.getInt();
+            int entryCount = footer.getInt();
+            if (footer.getInt() != MAGIC) {
+                throw new IOException("Not a task segment: " + path);
+            }
+            ByteBuffer index = read(channel, indexOffset, indexCount * 16);
+            long[] indexIds = new long[indexCount];
+            long[] indexOffsets = new long[indexCount];
+            for (int i = 0; i < indexCount; i++) {
+                indexIds[i] = index.getLong();
+                indexOffsets[i] = index.getLong();
+            }
+            long[] bloom = new long[bloomWords];
+            read(channel, bloomOffset, bloomWords * 8).asLongBuffer().get(bloom);
+            return new TaskSegment(path, channel, indexIds, indexOffsets, indexOffset, dueOffset, dueCount, bloom,
+                    entryCount);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes a segment file, replacing it atomically, and opens it.
+     * @param path The file.
+     * @param entries The entries in ascending ID order; {@link #TOMBSTONE} values mark deletions.
+     * @param expectedEntries The approximate number of entries, which sizes the Bloom filter.
+     * @return The open segment.
+     * @throws IOException If writing fails.
+     */
+    static TaskSegment write(Path path, Iterator<Map.Entry<Long, TaskRecord>> entries, int expectedEntries)
+            throws IOException {
+        AtomicFiles.replace(path, channel -> writeEntries(channel, entries, expectedEntries));
+        return open(path);
+    }
+
+    /** @return The file of this segment. */
+    Path getPath() {
+        return path;
+    }
+
+    /** @return The number of entries, deletions included. */
+    int size() {
+        return entryCount;
+    }
+
+    /**
+     * Looks up the entry of a task.
+     * @param id The ID of the task.
+     * @return Its record, {@link #TOMBSTONE} if the segment records its deletion, or null if it has no entry.
+     * @throws IOException If reading fails.
+     */
+    TaskRecord get(long id) throws IOException {
+        if (!mightContain(id)) {
+            return null;
+        }
+        int block = Arrays.binarySearch(indexIds, id);
+        if (block < 0) {
+            block = -block - 2;
+            if (block < 0) {
+                return null;
+            }
+        }
+        long start = indexOffsets[block];
+        long end = block + 1 < indexOffsets.length ? indexOffsets[block + 1] : dataEnd;
+        ByteBuffer buffer = read(channel, start, (int) (end - start));
+        while (buffer.hasRemaining()) {
+            int position = buffer.position();
+            byte kind = buffer.get(position);
+            long entryId = buffer.getLong(kind == KIND_PUT ? position + 2 : position + 1);
+            if (entryId > id) {
+                return null;
+            }
+            if (kind == KIND_DELETE) {
+                buffer.position(position + 1 + 8);
+                if (entryId == id) {
+                    return TOMBSTONE;
+                }
+            } else if (entryId == id) {
+                buffer.position(position + 1);
+                return TaskRecordCodec.decode(buffer);
+            } else {
+                int length = buffer.getInt(position + 1 + TaskRecordCodec.FIXED_SIZE - 4);
+                buffer.position(position + 1 + TaskRecordCodec.FIXED_SIZE + length);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reports the IDs of the puts in this segment with a due date in a range, in date order.
+     * The entries may be outdated by newer segments.
+     * @param fromEpochDay The first day of the range.
+     * @param toEpochDay The last day of the range.
+     * @param ids Receives the IDs.
+     * @throws IOException If reading fails.
+     */
+    void forEachDue(int fromEpochDay, int toEpochDay, LongConsumer ids) throws IOException {
+        int low = 0;
+        int high = dueCount;
+        ByteBuffer day = ByteBuffer.allocate(4);
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            day.clear();
+            readFully(channel, day, dueOffset + (long) middle * DUE_ENTRY_SIZE);
+            if (day.getInt(0) < fromEpochDay) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        int chunk = BUFFER_SIZE / DUE_ENTRY_SIZE;
+        for (int first = low; first < dueCount; first += chunk) {
+            int count = Math.min(chunk, dueCount - first);
+            ByteBuffer entries = read(channel, dueOffset + (long) first * DUE_ENTRY_SIZE, count * DUE_ENTRY_SIZE);
+            for (int i = 0; i < count; i++) {
+                if (entries.getInt() > toEpochDay) {
+                    return;
+                }
+                ids.accept(entries.getLong());
+            }
+        }
+    }
+
+    /**
+     * @return A cursor over all entries in ID order, reading the file sequentially.
+     */
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private boolean mightContain(long id) {
+        long bits = (long) bloom.length * 64;
+        long h = mix(id);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32);
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, bits);
+            if ((bloom[(int) (bit >>> 6)] & 1L << bit) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeEntries(FileChannel channel, Iterator<Map.Entry<Long, TaskRecord>> entries,
+            int expectedEntries) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long[] bloom = new long[Math.max(1, (int) (((long) Math.max(expectedEntries, 1) * BLOOM_BITS_PER_ENTRY + 63) / 64))];
+        long bloomBits = (long) bloom.length * 64;
+        LongList index = new LongList();
+        LongList dueIds = new LongList();
+        LongList dueKeys = new LongList();
+        long offset = 0;
+        int count = 0;
+        while (entries.hasNext()) {
+            Map.Entry<Long, TaskRecord> entry = entries.next();
+            long id = entry.getKey();
+            TaskRecord record = entry.getValue();
+            if (count % INDEX_INTERVAL == 0) {
+                index.add(id);
+                index.add(offset);
+            }
+            byte[] description = record == TOMBSTONE ? null : TaskRecordCodec.descriptionBytes(record);
+            int size = description == null ? 1 + 8 : 1 + TaskRecordCodec.encodedSize(description);
+            if (buffer.remaining() < size) {
+                buffer.flip();
+                writeFully(channel, buffer);
+                if (size > buffer.capacity()) {
+                    buffer = ByteBuffer.allocate(size);
+                }
+                buffer.clear();
+            }
+            if (description == null) {
+                buffer.put(KIND_DELETE).putLong(id);
+            } else {
+                buffer.put(KIND_PUT);
+                TaskRecordCodec.encode(buffer, record, description);
+                int due = TaskRecordCodec.dueEpochDay(record);
+                if (due != NO_DATE) {
+                    // Date in the high bits, position in the low bits: sorting gives date order, then ID order
+                    dueKeys.add((long) due << 32 | dueIds.size());
+                    dueIds.add(id);
+                }
+            }
+            long h = mix(id);
+            int h1 = (int) h;
+            int h2 = (int) (h >>> 32);
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                long bit = Math.floorMod(h1 + (long) i * h2, bloomBits);
+                bloom[(int) (bit >>> 6)] |= 1L << bit;
+            }
+            offset += size;
+            count++;
+        }
+        buffer.flip();
+        writeFully(channel, buffer);
+
+        long indexOffset = offset;
+        writeLongs(channel, index.toArray());
+        long dueOffset = indexOffset + index.size() * 8L;
+        long[] sortedDue = dueKeys.toArray();
+        Arrays.parallelSort(sortedDue);
+        ByteBuffer dueBuffer = ByteBuffer.allocate(Math.min(BUFFER_SIZE, Math.max(1, sortedDue.length) * DUE_ENTRY_SIZE));
+        for (long key : sortedDue) {
+            if (dueBuffer.remaining() < DUE_ENTRY_SIZE) {
+                dueBuffer.flip();
+                writeFully(channel, dueBuffer);
+                dueBuffer.clear();
+            }
+            dueBuffer.putInt((int) (key >> 32)).putLong(dueIds.get((int) key));
+        }
+        dueBuffer.flip();
+        writeFully(channel, dueBuffer);
+        long bloomOffset = dueOffset + (long) sortedDue.length * DUE_ENTRY_SIZE;
+        writeLongs(channel, bloom);
+        ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+        footer.putLong(indexOffset).putInt(index.size() / 2)
+                .putLong(dueOffset).putInt(sortedDue.length)
+                .putLong(bloomOffset).putInt(bloom.length)
+                .putInt(count).putInt(MAGIC);
+        footer.flip();
+        writeFully(channel, footer);
+    }
+
+    private static void writeLongs(FileChannel channel, long[] values) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Math.min(BUFFER_SIZE, Math.max(1, values.length) * 8));
+        for (long value : values) {
+            if (!buffer.hasRemaining()) {
+                buffer.flip();
+                writeFully(channel, buffer);
+                buffer.clear();
+            }
+            buffer.putLong(value);
+        }
+        buffer.flip();
+        writeFully(channel, buffer);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        readFully(channel, buffer, position);
+        return buffer.flip();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of task segment");
+            }
+            position += read;
+        }
+    }
+
+    /** The finalizer of MurmurHash3, to derive the Bloom filter bits of an ID. */
+    private static long mix(long h) {
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    /**
+     * Reads the entries of the segment in ID order through a reused buffer.
+     */
+    final class Cursor {
+        private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).limit(0);
+        /** File position of the end of the buffered bytes. */
+        private long filePosition;
+        private long id;
+        private TaskRecord record;
+
+        /**
+         * Moves to the next entry.
+         * @return False if there are no more entries.
+         * @throws IOException If reading fails.
+         */
+        boolean next() throws IOException {
+            if (!buffer.hasRemaining() && filePosition >= dataEnd) {
+                return false;
+            }
+            ensure(1 + 8);
+            if (buffer.get(buffer.position()) == KIND_DELETE) {
+                buffer.get();
+                id = buffer.getLong();
+                record = TOMBSTONE;
+                return true;
+            }
+            ensure(1 + TaskRecordCodec.FIXED_SIZE);
+            int length = buffer.getInt(buffer.position() + 1 + TaskRecordCodec.FIXED_SIZE - 4);
+            ensure(1 + TaskRecordCodec.FIXED_SIZE + length);
+            buffer.get();
+            record = TaskRecordCodec.decode(buffer);
+            id = record.id();
+            return true;
+        }
+
+        /** @return The ID of the current entry. */
+        long id() {
+            return id;
+        }
+
+        /** @return The record of the current entry, or {@link #TOMBSTONE} for a deletion. */
+        TaskRecord record() {
+            return record;
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            if (bytes > buffer.capacity()) {
+                buffer = ByteBuffer.allocate(bytes).put(buffer).flip();
+            }
+            buffer.compact();
+            int toRead = (int) Math.min(buffer.remaining(), dataEnd - filePosition);
+            buffer.limit(buffer.position() + toRead);
+            readFully(channel, buffer, filePosition);
+            filePosition += toRead;
+            buffer.flip();
+            if (buffer.remaining() < bytes) {
+                throw new EOFException("Truncated entry in task segment " + path);
+            }
+        }
+    }
+
+    /** A growable array of longs. */
+    private static final class LongList {
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long get(int index) {
+            return values[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
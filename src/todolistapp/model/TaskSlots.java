@@ -0,0 +1,82 @@
+package todolistapp.model;
+
+/**
+ * Assigns every task in a {@link TodoListManager} a slot: a small integer that stays the same
+ * while the task is in the list and is reused after the task is removed.
+ * Slots let index structures ({@link TaskIndex}, {@link TaskSearchIndex}) use bitsets and
+ * int arrays instead of maps keyed by task objects.
+ * The manager allocates the slot before announcing an added task and releases it after
+ * announcing its removal, so every {@link TaskChangeListener} sees valid slots.
+ */
+final class TaskSlots {
+
+    private TodoItem[] items = new TodoItem[1024];
+    private int[] free = new int[64];
+    private int freeCount;
+    private int next;
+
+    /**
+     * Assigns a slot to a task that is being added.
+     * @param item The task.
+     * @return The assigned slot.
+     */
+    int allocate(TodoItem item) {
+        int slot;
+        if (freeCount > 0) {
+            slot = free[--freeCount];
+        } else {
+            if (next == items.length) {
+                TodoItem[] grown = new TodoItem[items.length * 2];
+                System.arraycopy(items, 0, grown, 0, next);
+                items = grown;
+            }
+            slot = next++;
+        }
+        items[slot] = item;
+        item.slot = slot;
+        return slot;
+    }
+
+    /**
+     * Frees the slot of a task that has been removed.
+     * @param item The task.
+     */
+    void release(TodoItem item) {
+        int slot = slotOf(item);
+        if (slot < 0) {
+            return;
+        }
+        items[slot] = null;
+        item.slot = -1;
+        if (freeCount == free.length) {
+            int[] grown = new int[free.length * 2];
+            System.arraycopy(free, 0, grown, 0, freeCount);
+            free = grown;
+        }
+        free[freeCount++] = slot;
+    }
+
+    /**
+     * Gets the slot of a task.
+     * @param item The task.
+     * @return The slot, or -1 if the task has none.
+     */
+    int slotOf(TodoItem item) {
+        int slot = item.slot;
+        return slot >= 0 && slot < next && items[slot] == item ? slot : -1;
+    }
+
+    /**
+     * Gets the task in a slot.
+     * @param slot The slot.
+     * @return The task, or null if the slot is free.
+     */
+    TodoItem itemAt(int slot) {
+        return slot >= 0 && slot < next ? items[slot] : null;
+    }
+
+    /** @return An upper bound (exclusive) for all slots in use. */
+    int capacity() {
+        return next;
+    }
+}
@@ -0,0 +1,400 @@
+package todolistapp.model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * An immutable, versioned list of {@link TaskRecord}s: the tasks of a {@link TodoListManager} at one point
+ * in time, see {@link TodoListManager#snapshot()}.
+ * <p>
+ * Snapshots are persistent: the records sit in the leaves of a tree with up to 32 entries per node, and a
+ * change copies only the nodes on its path while sharing all others with the previous snapshot. Keeping
+ * one costs nothing, an edit costs O(log n), and inserting or removing a run of k tasks O(k + log n).
+ * Lookups by position take O(log n) steps with base 32 (four or five for millions of tasks), and iteration
+ * walks the leaves in order. Next to the tree, every snapshot shares a persistent {@link TaskIdTrie} with its
+ * predecessor, so {@link #find(long)} looks up a task by ID in O(log n) as well, in any snapshot.
+ * <p>
+ * Since nothing in a snapshot ever changes, any number of threads can read it without locking.
+ */
+public final class TaskSnapshot extends AbstractList<TaskRecord> implements RandomAccess {
+
+    private static final int WIDTH = 32;
+    /** After a removal, a node with fewer entries is merged with a neighbour if they fit into one. */
+    private static final int MIN_WIDTH = WIDTH / 4;
+
+    /** The empty snapshot with version 0. */
+    public static final TaskSnapshot EMPTY = new TaskSnapshot(new Leaf(new TaskRecord[0]), TaskIdTrie.EMPTY, 0);
+
+    private final Node root;
+    private final TaskIdTrie ids;
+    private final long version;
+
+    private TaskSnapshot(Node root, TaskIdTrie ids, long version) {
+        this.root = root;
+        this.ids = ids;
+        this.version = version;
+    }
+
+    /**
+     * @return The number of the change this snapshot was published after; it grows with every change of
+     *         the list, so a higher version is always a later state of the same manager.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public TaskRecord get(int index) {
+        if (index < 0 || index >= root.size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + root.size());
+        }
+        return root.get(index);
+    }
+
+    @Override
+    public int size() {
+        return root.size();
+    }
+
+    /**
+     * Looks up a task by ID.
+     * @param id The ID.
+     * @return The record of the task with this ID, or null if there is none in this snapshot.
+     */
+    public TaskRecord find(long id) {
+        return ids.get(id);
+    }
+
+    /** Walks the leaves instead of looking up every position from the root. */
+    @Override
+    public Iterator<TaskRecord> iterator() {
+        return new Iterator<>() {
+            private int index;
+            private TaskRecord[] leaf = new TaskRecord[0];
+            private int leafStart;
+
+            @Override
+            public boolean hasNext() {
+                return index < root.size();
+            }
+
+            @Override
+            public TaskRecord next() {
+                if (index >= root.size()) {
+                    throw new NoSuchElementException();
+                }
+                if (index - leafStart >= leaf.length) {
+                    findLeaf();
+                }
+                return leaf[index++ - leafStart];
+            }
+
+            private void findLeaf() {
+                Node node = root;
+                int start = 0;
+                while (node instanceof Branch branch) {
+                    int child = branch.childAt(index - start);
+                    start += branch.start(child);
+                    node = branch.children[child];
+                }
+                leaf = ((Leaf) node).records;
+                leafStart = start;
+            }
+        };
+    }
+
+    /**
+     * @param version The version of the copy.
+     * @return A snapshot with the same tasks and the given version.
+     */
+    TaskSnapshot withVersion(long version) {
+        return new TaskSnapshot(root, ids, version);
+    }
+
+    /**
+     * @param index The position to replace.
+     * @param record The new record.
+     * @return A snapshot with the record at the given position replaced.
+     */
+    TaskSnapshot withRecord(int index, TaskRecord record) {
+        TaskRecord old = get(index);
+        TaskIdTrie changed = old.id() == record.id() ? ids : ids.without(List.of(old));
+        return new TaskSnapshot(root.set(index, record), changed.with(List.of(record)), version);
+    }
+
+    /**
+     * @param index The position of the first inserted record.
+     * @param records The records to insert, in order.
+     * @return A snapshot with the records inserted.
+     */
+    TaskSnapshot withInserted(int index, List<TaskRecord> records) {
+        if (index < 0 || index > root.size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + root.size());
+        }
+        if (records.isEmpty()) {
+            return this;
+        }
+        Node[] nodes = root.insert(index, records.toArray(new TaskRecord[0]));
+        // Splitting the root adds a level on top, so all leaves stay at the same depth
+        while (nodes.length > 1) {
+            nodes = Branch.split(nodes);
+        }
+        return new TaskSnapshot(nodes[0], ids.with(records), version);
+    }
+
+    /**
+     * @param from The position of the first removed record.
+     * @param to The position after the last removed record.
+     * @return A snapshot without the records in {@code [from, to)}.
+     */
+    TaskSnapshot withRemoved(int from, int to) {
+        if (from < 0 || to > root.size() || from > to) {
+            throw new IndexOutOfBoundsException("Range: [" + from + ", " + to + "), Size: " + root.size());
+        }
+        if (from == to) {
+            return this;
+        }
+        Node node = root.remove(from, to);
+        if (node == null) {
+            return EMPTY.withVersion(version);
+        }
+        while (node instanceof Branch branch && branch.children.length == 1) {
+            node = branch.children[0];
+        }
+        return new TaskSnapshot(node, ids.without(subList(from, to)), version);
+    }
+
+    private abstract static class Node {
+
+        abstract int size();
+
+        /** @return The number of records of a leaf or children of a branch. */
+        abstract int width();
+
+        abstract TaskRecord get(int index);
+
+        abstract Node set(int index, TaskRecord record);
+
+        /** @return The nodes that replace this one, at the same height; more than one if it overflowed. */
+        abstract Node[] insert(int index, TaskRecord[] records);
+
+        /** @return The node that replaces this one, or null if nothing is left. */
+        abstract Node remove(int from, int to);
+
+        /** @return A node with the entries of this one followed by those of its right neighbour. */
+        abstract Node concat(Node next);
+    }
+
+    private static final class Leaf extends Node {
+        final TaskRecord[] records;
+
+        Leaf(TaskRecord[] records) {
+            this.records = records;
+        }
+
+        @Override
+        int size() {
+            return records.length;
+        }
+
+        @Override
+        int width() {
+            return records.length;
+        }
+
+        @Override
+        TaskRecord get(int index) {
+            return records[index];
+        }
+
+        @Override
+        Node set(int index, TaskRecord record) {
+            TaskRecord[] copy = records.clone();
+            copy[index] = record;
+            return new Leaf(copy);
+        }
+
+        @Override
+        Node[] insert(int index, TaskRecord[] added) {
+            TaskRecord[] all = new TaskRecord[records.length + added.length];
+            System.arraycopy(records, 0, all, 0, index);
+            System.arraycopy(added, 0, all, index, added.length);
+            System.arraycopy(records, index, all, index + added.length, records.length - index);
+            if (all.length <= WIDTH) {
+                return new Node[] {new Leaf(all)};
+            }
+            // Evenly filled leaves, so later inserts do not split again right away
+            int count = (all.length + WIDTH - 1) / WIDTH;
+            Node[] leaves = new Node[count];
+            int start = 0;
+            for (int i = 0; i < count; i++) {
+                int end = (int) ((long) all.length * (i + 1) / count);
+                TaskRecord[] part = new TaskRecord[end - start];
+                System.arraycopy(all, start, part, 0, part.length);
+                leaves[i] = new Leaf(part);
+                start = end;
+            }
+            return leaves;
+        }
+
+        @Override
+        Node remove(int from, int to) {
+            if (to - from == records.length) {
+                return null;
+            }
+            TaskRecord[] rest = new TaskRecord[records.length - (to - from)];
+            System.arraycopy(records, 0, rest, 0, from);
+            System.arraycopy(records, to, rest, from, records.length - to);
+            return new Leaf(rest);
+        }
+
+        @Override
+        Node concat(Node next) {
+            TaskRecord[] other = ((Leaf) next).records;
+            TaskRecord[] all = new TaskRecord[records.length + other.length];
+            System.arraycopy(records, 0, all, 0, records.length);
+            System.arraycopy(other, 0, all, records.length, other.length);
+            return new Leaf(all);
+        }
+    }
+
+    private static final class Branch extends Node {
+        final Node[] children;
+        /** {@code ends[i]} is the number of records in {@code children[0..i]}. */
+        final int[] ends;
+
+        Branch(Node[] children) {
+            this.children = children;
+            this.ends = new int[children.length];
+            int end = 0;
+            for (int i = 0; i < children.length; i++) {
+                end += children[i].size();
+                ends[i] = end;
+            }
+        }
+
+        private Branch(Node[] children, int[] ends) {
+            this.children = children;
+            this.ends = ends;
+        }
+
+        /** @return Branches over the given nodes, more than one if they do not fit into one. */
+        static Node[] split(Node[] nodes) {
+            if (nodes.length <= WIDTH) {
+                return new Node[] {new Branch(nodes)};
+            }
+            int count = (nodes.length + WIDTH - 1) / WIDTH;
+            Node[] branches = new Node[count];
+            int start = 0;
+            for (int i = 0; i < count; i++) {
+                int end = (int) ((long) nodes.length * (i + 1) / count);
+                Node[] part = new Node[end - start];
+                System.arraycopy(nodes, start, part, 0, part.length);
+                branches[i] = new Branch(part);
+                start = end;
+            }
+            return branches;
+        }
+
+        @Override
+        int size() {
+            return ends[ends.length - 1];
+        }
+
+        @Override
+        int width() {
+            return children.length;
+        }
+
+        /** @return The child that holds the record at the given position. */
+        int childAt(int index) {
+            int low = 0;
+            int high = ends.length - 1;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (ends[middle] <= index) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /** @return The position of the first record of a child. */
+        int start(int child) {
+            return child == 0 ? 0 : ends[child - 1];
+        }
+
+        @Override
+        TaskRecord get(int index) {
+            int child = childAt(index);
+            return children[child].get(index - start(child));
+        }
+
+        @Override
+        Node set(int index, TaskRecord record) {
+            int child = childAt(index);
+            Node[] copy = children.clone();
+            copy[child] = children[child].set(index - start(child), record);
+            return new Branch(copy, ends);
+        }
+
+        @Override
+        Node[] insert(int index, TaskRecord[] records) {
+            // Appending goes into the last child
+            int child = index == size() ? children.length - 1 : childAt(index);
+            Node[] replacement = children[child].insert(index - start(child), records);
+            Node[] all = new Node[children.length - 1 + replacement.length];
+            System.arraycopy(children, 0, all, 0, child);
+            System.arraycopy(replacement, 0, all, child, replacement.length);
+            System.arraycopy(children, child + 1, all, child + replacement.length, children.length - child - 1);
+            return split(all);
+        }
+
+        @Override
+        Node remove(int from, int to) {
+            List<Node> kept = new ArrayList<>(children.length);
+            for (int i = 0; i < children.length; i++) {
+                int start = start(i);
+                int end = ends[i];
+                if (end <= from || start >= to) {
+                    kept.add(children[i]);
+                } else if (start < from || end > to) {
+                    Node rest = children[i].remove(Math.max(from, start) - start, Math.min(to, end) - start);
+                    if (rest != null) {
+                        kept.add(rest);
+                    }
+                }
+            }
+            if (kept.isEmpty()) {
+                return null;
+            }
+            // Merge small nodes left behind by the removal with a neighbour
+            for (int i = 0; i + 1 < kept.size();) {
+                Node node = kept.get(i);
+                Node next = kept.get(i + 1);
+                if ((node.width() < MIN_WIDTH || next.width() < MIN_WIDTH) && node.width() + next.width() <= WIDTH) {
+                    kept.set(i, node.concat(next));
+                    kept.remove(i + 1);
+                } else {
+                    i++;
+                }
+            }
+            return new Branch(kept.toArray(new Node[0]));
+        }
+
+        @Override
+        Node concat(Node next) {
+            Node[] other = ((Branch) next).children;
+            Node[] all = new Node[children.length + other.length];
+            System.arraycopy(children, 0, all, 0, children.length);
+            System.arraycopy(other, 0, all, children.length, other.length);
+            return new Branch(all);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package todolistapp.model;
+
+import java.time.LocalDate;
+import java.util.List;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+
+/**
+ * Live aggregate counters over the tasks of a {@link TodoListManager}.
+ * The counts are maintained incrementally from {@link TaskChangeListener} notifications,
+ * so reading them is O(1) and every add, remove, or edit costs O(1) to account for,
+ * instead of scanning the whole list whenever a summary is shown.
+ * <p>
+ * A task is overdue if it is not done and its due date is before {@link #getToday() today}.
+ * Since "today" moves, the owner has to call {@link #setToday(LocalDate)} on date rollover
+ * (or let a {@link TaskDueScheduler} move it).
+ * During a batch the properties are only updated once, when the batch finishes.
+ */
+public class TaskStatistics implements TaskChangeListener {
+
+    private final ReadOnlyIntegerWrapper total = new ReadOnlyIntegerWrapper(this, "total");
+    private final ReadOnlyIntegerWrapper pending = new ReadOnlyIntegerWrapper(this, "pending");
+    private final ReadOnlyIntegerWrapper completed = new ReadOnlyIntegerWrapper(this, "completed");
+    private final ReadOnlyIntegerWrapper overdue = new ReadOnlyIntegerWrapper(this, "overdue");
+    private final ReadOnlyIntegerWrapper[] byPriority = new ReadOnlyIntegerWrapper[TodoItem.Priority.values().length];
+
+    private final List<TodoItem> tasks;
+    private LocalDate today;
+
+    // Working counters; published to the properties once per notification.
+    private int totalCount;
+    private int completedCount;
+    private int overdueCount;
+    private final int[] priorityCounts = new int[TodoItem.Priority.values().length];
+    private boolean inBatch;
+
+    /**
+     * Creates statistics for the given tasks and counts the tasks already in the list.
+     * The owner must register the instance as a {@link TaskChangeListener} of the same list.
+     * @param tasks The task list that is being counted.
+     */
+    TaskStatistics(List<TodoItem> tasks) {
+        this.tasks = tasks;
+        for (TodoItem.Priority priority : TodoItem.Priority.values()) {
+            byPriority[priority.ordinal()] = new ReadOnlyIntegerWrapper(this, priority.name().toLowerCase());
+        }
+        this.today = LocalDate.now();
+        tasksAdded(0, tasks);
+    }
+
+    /** @return The number of tasks. */
+    public ReadOnlyIntegerProperty totalProperty() {
+        return total.getReadOnlyProperty();
+    }
+
+    /** @return The number of tasks that are not done. */
+    public ReadOnlyIntegerProperty pendingProperty() {
+        return pending.getReadOnlyProperty();
+    }
+
+    /** @return The number of tasks that are done. */
+    public ReadOnlyIntegerProperty completedProperty() {
+        return completed.getReadOnlyProperty();
+    }
+
+    /** @return The number of tasks that are not done and past their due date. */
+    public ReadOnlyIntegerProperty overdueProperty() {
+        return overdue.getReadOnlyProperty();
+    }
+
+    /**
+     * @param priority The priority to count.
+     * @return The number of tasks with the given priority.
+     */
+    public ReadOnlyIntegerProperty priorityCountProperty(TodoItem.Priority priority) {
+        return byPriority[priority.ordinal()].getReadOnlyProperty();
+    }
+
+    /** @return The number of tasks. */
+    public int getTotal() {
+        return totalCount;
+    }
+
+    /** @return The number of tasks that are not done. */
+    public int getPending() {
+        return totalCount - completedCount;
+    }
+
+    /** @return The number of tasks that are done. */
+    public int getCompleted() {
+        return completedCount;
+    }
+
+    /** @return The number of tasks that are not done and past their due date. */
+    public int getOverdue() {
+        return overdueCount;
+    }
+
+    /**
+     * @param priority The priority to count.
+     * @return The number of tasks with the given priority.
+     */
+    public int getPriorityCount(TodoItem.Priority priority) {
+        return priorityCounts[priority.ordinal()];
+    }
+
+    /** @return The date overdue tasks are counted against. */
+    public LocalDate getToday() {
+        return today;
+    }
+
+    /**
+     * Moves the reference date for the overdue count, e.g. at midnight.
+     * This is the only operation that recounts all tasks.
+     * @param today The new current date.
+     */
+    public void setToday(LocalDate today) {
+        if (today.equals(this.today)) {
+            return;
+        }
+        this.today = today;
+        overdueCount = 0;
+        for (TodoItem item : tasks) {
+            if (isOverdue(item.isDone(), item.getDueDate())) {
+                overdueCount++;
+            }
+        }
+        publish();
+    }
+
+    /**
+     * Moves the reference date forward when the tasks that became overdue are known, without recounting.
+     * @param today The new current date, after the current one.
+     * @param newlyOverdue The number of tasks that are not done and whose due date is from the current date
+     *                     up to the day before the new one.
+     */
+    void moveToday(LocalDate today, int newlyOverdue) {
+        this.today = today;
+        overdueCount += newlyOverdue;
+        publish();
+    }
+
+    @Override
+    public void tasksAdded(int from, List<? extends TodoItem> added) {
+        for (TodoItem item : added) {
+            count(item, 1);
+        }
+        publish();
+    }
+
+    @Override
+    public void tasksRemoved(int from, List<? extends TodoItem> removed) {
+        for (TodoItem item : removed) {
+            count(item, -1);
+        }
+        publish();
+    }
+
+    @Override
+    public void taskUpdated(TodoItem item, TaskField field, Object oldValue, Object newValue) {
+        switch (field) {
+            case DONE: {
+                boolean wasDone = Boolean.TRUE.equals(oldValue);
+                completedCount += (item.isDone() ? 1 : 0) - (wasDone ? 1 : 0);
+                overdueCount += overdueDelta(isOverdue(wasDone, item.getDueDate()), item);
+                break;
+            }
+            case PRIORITY:
+                if (oldValue != null) {
+                    priorityCounts[((TodoItem.Priority) oldValue).ordinal()]--;
+                }
+                if (newValue != null) {
+                    priorityCounts[((TodoItem.Priority) newValue).ordinal()]++;
+                }
+                break;
+            case DUE_DATE:
+                overdueCount += overdueDelta(isOverdue(item.isDone(), (LocalDate) oldValue), item);
+                break;
+            default:
+                return;
+        }
+        publish();
+    }
+
+    @Override
+    public void batchStarted() {
+        inBatch = true;
+    }
+
+    @Override
+    public void batchFinished() {
+        inBatch = false;
+        publish();
+    }
+
+    private void count(TodoItem item, int delta) {
+        totalCount += delta;
+        if (item.isDone()) {
+            completedCount += delta;
+        }
+        if (item.getPriority() != null) {
+            priorityCounts[item.getPriority().ordinal()] += delta;
+        }
+        if (isOverdue(item.isDone(), item.getDueDate())) {
+            overdueCount += delta;
+        }
+    }
+
+    private int overdueDelta(boolean wasOverdue, TodoItem item) {
+        return (isOverdue(item.isDone(), item.getDueDate()) ? 1 : 0) - (wasOverdue ? 1 : 0);
+    }
+
+    private boolean isOverdue(boolean done, LocalDate dueDate) {
+        return !done && dueDate != null && dueDate.isBefore(today);
+    }
+
+    private void publish() {
+        if (inBatch) {
+            return;
+        }
+        total.set(totalCount);
+        completed.set(completedCount);
+        pending.set(totalCount - completedCount);
+        overdue.set(overdueCount);
+        for (int i = 0; i < priorityCounts.length; i++) {
+            byPriority[i].set(priorityCounts[i]);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package todolistapp.model;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Storage backend for the tasks of a {@link TodoListManager}.
+ * Implementations read and write a complete snapshot of the task list in one file.
+ * Saving must replace the file atomically, so a failed save never loses the previous data.
+ */
+public interface TaskStore {
+
+    /**
+     * Gets the file this store reads and writes.
+     * @return The path of the data file.
+     */
+    Path getPath();
+
+    /**
+     * Loads all tasks from the data file.
+     * May be called on a background thread; the returned items are not attached to any list yet.
+     * @return The tasks in stored order. Empty if the file does not exist.
+     * @throws IOException If the file exists but cannot be read.
+     */
+    List<TodoItem> load() throws IOException;
+
+    /**
+     * Replaces the data file with the given snapshot.
+     * May be called on a background thread.
+     * @param records The tasks to write, in order.
+     * @throws IOException If writing fails; the previous file is left untouched in that case.
+     */
+    void save(List<TaskRecord> records) throws IOException;
+}
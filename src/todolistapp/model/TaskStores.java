@@ -0,0 +1,92 @@
+package todolistapp.model;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Factory methods for {@link TaskStore}s and conversion between storage formats.
+ */
+public final class TaskStores {
+
+    /** System property selecting the default storage format: {@code csv} (default), {@code binary}, or {@code lsm}. */
+    public static final String STORAGE_PROPERTY = "todolist.storage";
+
+    private static final String CSV_FILE_PATH = "tasks.csv";
+    private static final String BINARY_FILE_PATH = "tasks.bin";
+    private static final String LSM_DIRECTORY_PATH = "tasks.lsm";
+    private static final String BINARY_EXTENSION = ".bin";
+    private static final String JSON_LINES_EXTENSION = ".jsonl";
+    private static final String LSM_EXTENSION = ".lsm";
+
+    private TaskStores() {
+    }
+
+    /**
+     * Creates the store used by the application, as selected by the {@value #STORAGE_PROPERTY} system property.
+     * @return A store for {@code tasks.csv}, for {@code tasks.bin} if the binary format is selected,
+     *         or for the {@code tasks.lsm} directory if the log-structured store is selected.
+     */
+    public static TaskStore defaultStore() {
+        String storage = System.getProperty(STORAGE_PROPERTY);
+        if ("binary".equalsIgnoreCase(storage)) {
+            return new BinaryTaskStore(Paths.get(BINARY_FILE_PATH));
+        }
+        if ("lsm".equalsIgnoreCase(storage)) {
+            return new LogStructuredTaskStore(Paths.get(LSM_DIRECTORY_PATH));
+        }
+        return new CsvTaskStore(Paths.get(CSV_FILE_PATH));
+    }
+
+    /**
+     * Creates a store for the given file, choosing the format by file extension.
+     * @param path The data file. Files ending in {@code .bin} use the binary format, files ending in
+     *             {@code .jsonl} JSON Lines, directories ending in {@code .lsm} the {@link LogStructuredTaskStore},
+     *             all others CSV.
+     * @return A store for the file.
+     */
+    public static TaskStore forPath(Path path) {
+        String name = path.getFileName().toString();
+        if (name.endsWith(BINARY_EXTENSION)) {
+            return new BinaryTaskStore(path);
+        }
+        if (name.endsWith(JSON_LINES_EXTENSION)) {
+            return new JsonLinesTaskStore(path);
+        }
+        if (name.endsWith(LSM_EXTENSION)) {
+            return new LogStructuredTaskStore(path);
+        }
+        return new CsvTaskStore(path);
+    }
+
+    /**
+     * Copies all tasks from one store to another, e.g. to convert {@code tasks.csv} to the binary format or back.
+     * @param source The store to read.
+     * @param target The store to replace.
+     * @return The number of converted tasks.
+     * @throws IOException If reading or writing fails.
+     */
+    public static int convert(TaskStore source, TaskStore target) throws IOException {
+        List<TodoItem> items = source.load();
+        List<TaskRecord> records = new ArrayList<>(items.size());
+        for (TodoItem item : items) {
+            records.add(TaskRecord.of(item));
+        }
+        target.save(records);
+        return records.size();
+    }
+
+    /**
+     * Derives the journal file that belongs to a data file, e.g. {@code tasks.journal} for {@code tasks.csv}.
+     * @param dataFile The data file.
+     * @return The journal path in the same directory.
+     */
+    static Path journalPathFor(Path dataFile) {
+        String name = dataFile.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        return dataFile.resolveSibling(base + ".journal");
+    }
+}
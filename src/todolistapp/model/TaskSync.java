@@ -0,0 +1,564 @@
+package todolistapp.model;
+
+import java.io.IOException;
+import java.lang.System.Logger.Level;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import javafx.collections.ObservableList;
+import todolistapp.metrics.Metrics;
+
+/**
+ * Synchronizes the tasks of a {@link TodoListManager} with a {@link TaskReplica}, shipping only changed tasks.
+ * <p>
+ * Tasks are partitioned into {@value #BUCKETS} buckets by ID, and each side has a digest per bucket: the XOR of
+ * the {@link #contentHash(TaskRecord) content hashes} of its tasks. The digests of the list are kept up to date
+ * on every change, so comparing them with the replica's costs the same for ten tasks as for a million, and only
+ * buckets whose digests differ are read, merged, and written. With 100 edits in a list of 1M tasks, a sync
+ * moves about 100 buckets of some 250 tasks each.
+ * <p>
+ * After a sync, the digest both sides agreed on and the time of the sync are kept per bucket in a state file.
+ * The next sync uses them to tell which side changed a differing bucket:
+ * <ul>
+ * <li>only one side changed it: that side's tasks are copied to the other, including removals;</li>
+ * <li>both changed it, or the bucket was never synced: the tasks are merged by ID. A task that the two sides
+ *     changed differently is a conflict; the version with the later {@link TodoItem#getLastModified() last-modified
+ *     time} wins, and on equal times the one with the larger content hash, so every machine picks the same one.
+ *     A task that only one side has is kept if it changed after the last sync of its bucket, and is otherwise
+ *     taken as removed by the other side.</li>
+ * </ul>
+ * Last-modified times come from the clocks of the machines that made the changes, so resolving conflicts assumes
+ * the clocks roughly agree.
+ * <p>
+ * {@link #sync} reads and writes the replica and the state file on a virtual thread; only comparing and applying
+ * the differing buckets happens on the owner thread, where the changes are made as one {@link TodoListManager#batch
+ * batch} (and thereby also reach the journal). The synced list still has to be saved like after any other change.
+ * Must be created and used on the thread that owns the manager's list, with one sync at a time.
+ */
+public class TaskSync {
+
+    private static final System.Logger LOG = System.getLogger(TaskSync.class.getName());
+
+    /** Number of buckets tasks are partitioned into; part of the replica and state file formats. */
+    public static final int BUCKETS = 1 << 12;
+
+    /**
+     * What a sync changed.
+     * @param bucketsCompared The buckets whose tasks were compared because their digests differed.
+     * @param pulled The tasks added to or replaced in the list.
+     * @param removedLocally The tasks removed from the list.
+     * @param pushed The tasks added to or replaced in the replica.
+     * @param removedRemotely The tasks removed from the replica.
+     * @param conflicts The tasks that both sides changed differently since the last sync.
+     */
+    public record Result(int bucketsCompared, int pulled, int removedLocally, int pushed, int removedRemotely,
+            int conflicts) {
+    }
+
+    private static final int STATE_MAGIC = 0x54445354; // "TDST"
+    private static final int STATE_VERSION = 1;
+    /** Sync time of a bucket that was never synced. */
+    private static final long NEVER = Long.MIN_VALUE;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    private final TodoListManager manager;
+    /** The tasks of the list by bucket; a bucket is created when its first task arrives. */
+    private final Bucket[] buckets = new Bucket[BUCKETS];
+    private final TaskChangeListener listener = new TaskChangeListener() {
+        @Override
+        public void tasksAdded(int from, List<? extends TodoItem> added) {
+            for (TodoItem item : added) {
+                add(item);
+            }
+        }
+
+        @Override
+        public void tasksRemoved(int from, List<? extends TodoItem> removed) {
+            for (TodoItem item : removed) {
+                remove(item);
+            }
+        }
+
+        @Override
+        public void taskUpdated(TodoItem item, TaskField field, Object oldValue, Object newValue) {
+            update(item);
+        }
+    };
+
+    /**
+     * Starts tracking the bucket digests of a manager's list.
+     * @param manager The manager; its list should be loaded already, otherwise the load is tracked too.
+     */
+    public TaskSync(TodoListManager manager) {
+        this.manager = manager;
+        for (TodoItem item : manager.getTasks()) {
+            add(item);
+        }
+        manager.addTaskChangeListener(listener);
+    }
+
+    /**
+     * Stops tracking the manager's list. The instance cannot sync afterwards.
+     */
+    public void close() {
+        manager.removeTaskChangeListener(listener);
+    }
+
+    /**
+     * Partitions tasks by ID. The result must stay the same across versions and machines.
+     * @param id The ID of a task.
+     * @return The bucket of the task, between 0 and {@value #BUCKETS} - 1.
+     */
+    public static int bucketOf(long id) {
+        return TaskIds.hash(id) & (BUCKETS - 1);
+    }
+
+    /**
+     * Hashes the content of a task: description, completion status, priority, due and creation date, and ID.
+     * The last-modified time is left out, so tasks that were changed to the same values on two machines match.
+     * @param record The task.
+     * @return The 64-bit content hash.
+     */
+    public static long contentHash(TaskRecord record) {
+        return contentHash(record.description(), record.done(), record.priority(), epochDay(record.dueDate()),
+                epochDay(record.creationDate()), record.id());
+    }
+
+    private static long contentHash(TodoItem item) {
+        return contentHash(item.getDescription(), item.isDone(), item.getPriority(), item.getDueEpochDay(),
+                item.getCreationEpochDay(), item.getId());
+    }
+
+    private static long contentHash(String description, boolean done, TodoItem.Priority priority,
+            int dueEpochDay, int creationEpochDay, long id) {
+        // FNV-1a over the description, then the fixed-size fields mixed in one word at a time
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < description.length(); i++) {
+            h = (h ^ description.charAt(i)) * 0x100000001B3L;
+        }
+        h = mix(h ^ id);
+        h = mix(h ^ ((long) dueEpochDay << 32 | (creationEpochDay & 0xFFFFFFFFL)));
+        return mix(h ^ ((done ? 1 : 0) | (priority == null ? 0 : priority.ordinal() + 1) << 1));
+    }
+
+    /**
+     * Synchronizes the list with a replica; see the class description.
+     * @param replica The replica.
+     * @param stateFile The file with the state of the last sync between this list and this replica;
+     *                  created by the first sync. Use one state file per pair of list and replica.
+     * @param ownerThread Runs tasks on the thread that owns the manager's list, e.g. {@code Platform::runLater}.
+     * @return A future with what the sync changed, completed once the replica and the state file are written.
+     *         It fails if the replica cannot be read or written, or if the list is still loading.
+     */
+    public CompletableFuture<Result> sync(TaskReplica replica, Path stateFile, Executor ownerThread) {
+        if (manager.isLoading()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Tasks are still loading"));
+        }
+        Metrics.Sample sample = Metrics.start(Metrics.Operation.SYNC);
+        long[] localDigests = digests();
+        Executor background = runnable -> Thread.ofVirtual().name("todo-sync").start(runnable);
+        return CompletableFuture.supplyAsync(() -> fetch(replica, stateFile, localDigests), background)
+                .thenApplyAsync(this::merge, ownerThread)
+                .thenApplyAsync(plan -> push(replica, stateFile, plan), background)
+                .whenComplete((result, error) -> {
+                    sample.stop();
+                    if (error != null) {
+                        LOG.log(Level.WARNING, "Error synchronizing tasks with " + replica + ": " + error.getMessage());
+                    } else {
+                        LOG.log(Level.INFO, "Tasks synchronized: " + result);
+                    }
+                });
+    }
+
+    /** Background step: reads the last sync state, the replica's digests, and the buckets that differ. */
+    private static Fetched fetch(TaskReplica replica, Path stateFile, long[] localDigests) {
+        try {
+            SyncState base = readState(stateFile);
+            long[] remoteDigests = replica.readDigests();
+            Map<Integer, List<TaskRecord>> remote = new HashMap<>();
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                if (localDigests[bucket] != remoteDigests[bucket]) {
+                    remote.put(bucket, replica.readBucket(bucket));
+                }
+            }
+            return new Fetched(base, remoteDigests, remote);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /** Owner thread step: merges every differing bucket, applies the result to the list, and plans the writes. */
+    private Plan merge(Fetched fetched) {
+        long now = System.currentTimeMillis();
+        SyncState base = fetched.base;
+        SyncState agreed = new SyncState(new long[BUCKETS], new long[BUCKETS]);
+        long[] remoteDigests = fetched.remoteDigests.clone();
+        Map<Integer, List<TaskRecord>> push = new TreeMap<>();
+        Changes changes = new Changes(manager);
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            long local = digest(bucket);
+            List<TaskRecord> remote = fetched.remote.get(bucket);
+            if (local == remoteDigests[bucket]) {
+                agreed.digests[bucket] = local;
+                agreed.times[bucket] = now;
+                continue;
+            }
+            if (remote == null) {
+                // Changed in the list while the replica was read; compared by the next sync
+                agreed.digests[bucket] = base.digests[bucket];
+                agreed.times[bucket] = base.times[bucket];
+                continue;
+            }
+            changes.bucketsCompared++;
+            Map<Long, TaskRecord> localById = localRecords(bucket);
+            Map<Long, TaskRecord> remoteById = new LinkedHashMap<>();
+            for (TaskRecord record : remote) {
+                remoteById.put(record.id(), record);
+            }
+            boolean neverSynced = base.times[bucket] == NEVER;
+            List<TaskRecord> merged;
+            if (!neverSynced && local == base.digests[bucket]) {
+                merged = remote;
+            } else if (!neverSynced && remoteDigests[bucket] == base.digests[bucket]) {
+                merged = new ArrayList<>(localById.values());
+            } else {
+                merged = mergeRecords(localById, remoteById, base.times[bucket], changes);
+            }
+            long mergedDigest = changes.planLocal(merged, localById);
+            if (changes.planRemote(merged, remoteById)) {
+                push.put(bucket, merged);
+                remoteDigests[bucket] = mergedDigest;
+            }
+            agreed.digests[bucket] = mergedDigest;
+            agreed.times[bucket] = now;
+        }
+        changes.apply();
+        return new Plan(push, remoteDigests, agreed, changes.result());
+    }
+
+    /**
+     * Merges the tasks of a bucket that both sides changed since {@code since}.
+     */
+    private static List<TaskRecord> mergeRecords(Map<Long, TaskRecord> local, Map<Long, TaskRecord> remote,
+            long since, Changes changes) {
+        List<TaskRecord> merged = new ArrayList<>(Math.max(local.size(), remote.size()));
+        for (TaskRecord mine : local.values()) {
+            TaskRecord theirs = remote.get(mine.id());
+            if (theirs == null) {
+                if (mine.lastModified() > since) {
+                    merged.add(mine);
+                }
+                continue;
+            }
+            long mineHash = contentHash(mine);
+            long theirHash = contentHash(theirs);
+            if (mineHash == theirHash) {
+                merged.add(mine);
+                continue;
+            }
+            if (mine.lastModified() > since && theirs.lastModified() > since) {
+                changes.conflicts++;
+            }
+            int newer = Long.compare(mine.lastModified(), theirs.lastModified());
+            if (newer == 0) {
+                newer = Long.compare(mineHash, theirHash);
+            }
+            merged.add(newer > 0 ? mine : theirs);
+        }
+        for (TaskRecord theirs : remote.values()) {
+            if (!local.containsKey(theirs.id()) && theirs.lastModified() > since) {
+                merged.add(theirs);
+            }
+        }
+        return merged;
+    }
+
+    /** Background step: writes the changed buckets to the replica and the agreed state to the state file. */
+    private static Result push(TaskReplica replica, Path stateFile, Plan plan) {
+        try {
+            if (!plan.push.isEmpty()) {
+                replica.writeBuckets(plan.push, plan.remoteDigests);
+            }
+            writeState(stateFile, plan.agreed);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+        return plan.result;
+    }
+
+    private void add(TodoItem item) {
+        int index = bucketOf(item.getId());
+        Bucket bucket = buckets[index];
+        if (bucket == null) {
+            bucket = new Bucket();
+            buckets[index] = bucket;
+        }
+        bucket.add(item, contentHash(item));
+    }
+
+    private void remove(TodoItem item) {
+        Bucket bucket = buckets[bucketOf(item.getId())];
+        if (bucket != null) {
+            bucket.remove(item);
+        }
+    }
+
+    private void update(TodoItem item) {
+        Bucket bucket = buckets[bucketOf(item.getId())];
+        if (bucket != null) {
+            bucket.update(item, contentHash(item));
+        }
+    }
+
+    private long digest(int bucket) {
+        return buckets[bucket] == null ? 0 : buckets[bucket].digest;
+    }
+
+    private long[] digests() {
+        long[] digests = new long[BUCKETS];
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            digests[bucket] = digest(bucket);
+        }
+        return digests;
+    }
+
+    private Map<Long, TaskRecord> localRecords(int index) {
+        Map<Long, TaskRecord> records = new LinkedHashMap<>();
+        Bucket bucket = buckets[index];
+        if (bucket != null) {
+            for (int i = 0; i < bucket.size; i++) {
+                records.put(bucket.items[i].getId(), TaskRecord.of(bucket.items[i]));
+            }
+        }
+        return records;
+    }
+
+    private static SyncState readState(Path stateFile) {
+        long[] digests = new long[BUCKETS];
+        long[] times = new long[BUCKETS];
+        Arrays.fill(times, NEVER);
+        SyncState never = new SyncState(digests, times);
+        ByteBuffer buffer;
+        try {
+            buffer = ByteBuffer.wrap(Files.readAllBytes(stateFile));
+        } catch (NoSuchFileException e) {
+            return never;
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Sync state " + stateFile + " cannot be read, merging all differing tasks: " + e.getMessage());
+            return never;
+        }
+        try {
+            if (buffer.getInt() != STATE_MAGIC || buffer.getInt() != STATE_VERSION || buffer.getInt() != BUCKETS) {
+                LOG.log(Level.WARNING, "Not a sync state file, merging all differing tasks: " + stateFile);
+                return never;
+            }
+            SyncState state = new SyncState(new long[BUCKETS], new long[BUCKETS]);
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                state.digests[bucket] = buffer.getLong();
+                state.times[bucket] = buffer.getLong();
+            }
+            return state;
+        } catch (BufferUnderflowException e) {
+            LOG.log(Level.WARNING, "Truncated sync state file, merging all differing tasks: " + stateFile);
+            return never;
+        }
+    }
+
+    private static void writeState(Path stateFile, SyncState state) throws IOException {
+        ByteBuffer content = ByteBuffer.allocate(4 + 4 + 4 + BUCKETS * 16);
+        content.putInt(STATE_MAGIC).putInt(STATE_VERSION).putInt(BUCKETS);
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            content.putLong(state.digests[bucket]).putLong(state.times[bucket]);
+        }
+        content.flip();
+        AtomicFiles.replace(stateFile, channel -> {
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+        });
+    }
+
+    private static int epochDay(LocalDate date) {
+        return date == null ? NO_DATE : (int) date.toEpochDay();
+    }
+
+    /** The finalizer of MurmurHash3: spreads every input bit over the whole word. */
+    private static long mix(long h) {
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    /** The tasks of the list in one bucket, with their content hashes. */
+    private static final class Bucket {
+        TodoItem[] items = new TodoItem[4];
+        long[] hashes = new long[4];
+        int size;
+        long digest;
+
+        void add(TodoItem item, long hash) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+                hashes = Arrays.copyOf(hashes, size * 2);
+            }
+            items[size] = item;
+            hashes[size++] = hash;
+            digest ^= hash;
+        }
+
+        void remove(TodoItem item) {
+            int i = indexOf(item);
+            if (i < 0) {
+                return;
+            }
+            digest ^= hashes[i];
+            size--;
+            items[i] = items[size];
+            hashes[i] = hashes[size];
+            items[size] = null;
+        }
+
+        void update(TodoItem item, long hash) {
+            int i = indexOf(item);
+            if (i >= 0) {
+                digest ^= hashes[i] ^ hash;
+                hashes[i] = hash;
+            }
+        }
+
+        private int indexOf(TodoItem item) {
+            for (int i = 0; i < size; i++) {
+                if (items[i] == item) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /** The changes a sync makes to the list, collected per bucket and applied in one batch. */
+    private static final class Changes {
+        /** IDs of the tasks to remove. */
+        final Set<Long> removals = new HashSet<>();
+        final Map<TodoItem, TaskRecord> replacements = new LinkedHashMap<>();
+        final List<TodoItem> additions = new ArrayList<>();
+        int bucketsCompared;
+        int pushed;
+        int removedRemotely;
+        int conflicts;
+        private final TodoListManager manager;
+
+        Changes(TodoListManager manager) {
+            this.manager = manager;
+        }
+
+        /**
+         * Plans the changes that make a bucket of the list equal to {@code merged}.
+         * @return The digest of the merged bucket.
+         */
+        long planLocal(List<TaskRecord> merged, Map<Long, TaskRecord> local) {
+            long digest = 0;
+            int kept = 0;
+            for (TaskRecord record : merged) {
+                long hash = contentHash(record);
+                digest ^= hash;
+                TaskRecord current = local.get(record.id());
+                if (current == null) {
+                    additions.add(TodoItem.of(record));
+                    continue;
+                }
+                kept++;
+                if (contentHash(current) != hash) {
+                    replacements.put(manager.getTask(record.id()), record);
+                }
+            }
+            if (kept < local.size()) {
+                Map<Long, TaskRecord> mergedById = new HashMap<>();
+                for (TaskRecord record : merged) {
+                    mergedById.put(record.id(), record);
+                }
+                for (TaskRecord record : local.values()) {
+                    if (!mergedById.containsKey(record.id())) {
+                        removals.add(record.id());
+                    }
+                }
+            }
+            return digest;
+        }
+
+        /**
+         * Counts the changes that make a bucket of the replica equal to {@code merged}.
+         * @return True if the bucket has to be written.
+         */
+        boolean planRemote(List<TaskRecord> merged, Map<Long, TaskRecord> remote) {
+            int changed = 0;
+            int kept = 0;
+            for (TaskRecord record : merged) {
+                TaskRecord current = remote.get(record.id());
+                if (current == null || contentHash(current) != contentHash(record)) {
+                    changed++;
+                }
+                if (current != null) {
+                    kept++;
+                }
+            }
+            pushed += changed;
+            removedRemotely += remote.size() - kept;
+            return changed > 0 || kept < remote.size();
+        }
+
+        void apply() {
+            if (removals.isEmpty() && replacements.isEmpty() && additions.isEmpty()) {
+                return;
+            }
+            manager.batch(m -> {
+                ObservableList<TodoItem> tasks = m.getTasks();
+                for (Map.Entry<TodoItem, TaskRecord> replacement : replacements.entrySet()) {
+                    TodoItem item = replacement.getKey();
+                    TaskRecord record = replacement.getValue();
+                    if (item.getCreationEpochDay() == epochDay(record.creationDate())) {
+                        // Edited in place, so the rows, selection, and history keep the same task
+                        item.update(record);
+                    } else {
+                        tasks.set(tasks.indexOf(item), TodoItem.of(record));
+                    }
+                }
+                if (!removals.isEmpty()) {
+                    // One pass over the list instead of a search per removed task
+                    m.removeIf(item -> removals.contains(item.getId()));
+                }
+                m.addAll(additions);
+            });
+        }
+
+        Result result() {
+            return new Result(bucketsCompared, additions.size() + replacements.size(), removals.size(),
+                    pushed, removedRemotely, conflicts);
+        }
+    }
+
+    /** The digest both sides agreed on and the time of the last sync, per bucket. */
+    private record SyncState(long[] digests, long[] times) {
+    }
+
+    private record Fetched(SyncState base, long[] remoteDigests, Map<Integer, List<TaskRecord>> remote) {
+    }
+
+    private record Plan(Map<Integer, List<TaskRecord>> push, long[] remoteDigests, SyncState agreed, Result result) {
+    }
+}
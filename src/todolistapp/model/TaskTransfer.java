@@ -0,0 +1,442 @@
+package todolistapp.model;
+
+import java.io.IOException;
+import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Imports and exports many task files at once, in any format known to {@link TaskStores#forPath(Path)}
+ * (CSV, the binary format, JSON Lines).
+ * <p>
+ * An import is a pipeline of stages on virtual threads, connected by bounded queues, so a slow stage
+ * holds the earlier ones back instead of letting read bytes or loaded tasks pile up in memory:
+ * <ol>
+ * <li>read: every file is read in raw chunks of whole lines or records ({@link TaskFileReader}), at most
+ *     {@code parallelFiles} files at a time, with at most {@value #CHUNKS_PER_FILE} chunks of a file waiting
+ *     to be parsed;</li>
+ * <li>parse: a thread per file being read decodes its chunks in file order and hands the tasks on in batches;</li>
+ * <li>validate and deduplicate: tasks without a description are dropped, as are tasks with the same
+ *     description, priority, and due date as a task already in the list or imported before;</li>
+ * <li>merge: the remaining tasks are gathered into large batches and added to the {@link TodoListManager}
+ *     on its own thread, with at most two batches waiting there, so the JavaFX Application Thread
+ *     sees a few big {@code addAll} calls and never a backlog.</li>
+ * </ol>
+ * Progress is reported per file as {@link TransferProgress} snapshots. A file that cannot be read is
+ * reported as failed; the other files are still imported.
+ */
+public final class TaskTransfer {
+
+    private static final System.Logger LOG = System.getLogger(TaskTransfer.class.getName());
+
+    /** Default number of files read or written at the same time. */
+    public static final int DEFAULT_PARALLEL_FILES = 8;
+
+    private static final int BATCH_SIZE = 4096;
+    /** Read chunks of one file waiting for its parser. */
+    private static final int CHUNKS_PER_FILE = 4;
+    private static final int QUEUE_CAPACITY = 64;
+    private static final int MERGE_BATCH_SIZE = 1 << 16;
+    private static final int MERGES_IN_FLIGHT = 2;
+
+    private final int parallelFiles;
+
+    /** Creates an engine that reads or writes up to {@value #DEFAULT_PARALLEL_FILES} files at a time. */
+    public TaskTransfer() {
+        this(DEFAULT_PARALLEL_FILES);
+    }
+
+    /**
+     * Creates an engine.
+     * @param parallelFiles The number of files read or written at the same time.
+     */
+    public TaskTransfer(int parallelFiles) {
+        if (parallelFiles < 1) {
+            throw new IllegalArgumentException("parallelFiles must be positive: " + parallelFiles);
+        }
+        this.parallelFiles = parallelFiles;
+    }
+
+    /**
+     * Imports tasks from several files into a manager.
+     * Must be called on the thread that owns the manager's list, which is also where {@code managerThread}
+     * runs the merges (e.g. {@code Platform::runLater} in the UI).
+     * @param files The files to import, in order; the format of each is chosen by its extension.
+     * @param manager The manager to add the tasks to.
+     * @param managerThread Runs tasks on the thread that owns the manager's list.
+     * @param listener Receives progress snapshots; called from several threads.
+     * @return A future with the final progress of every file, in the order of {@code files}.
+     *         It fails only if adding tasks to the manager fails; cancelling it stops the import.
+     */
+    public CompletableFuture<List<TransferProgress>> importFiles(List<Path> files, TodoListManager manager,
+            Executor managerThread, Consumer<? super TransferProgress> listener) {
+        Set<TaskKey> known = new HashSet<>();
+        for (TodoItem item : manager.getTasks()) {
+            known.add(TaskKey.of(item));
+        }
+        FileState[] states = new FileState[files.size()];
+        for (int i = 0; i < states.length; i++) {
+            states[i] = new FileState(files.get(i), listener);
+            states[i].emit();
+        }
+        CompletableFuture<List<TransferProgress>> result = new CompletableFuture<>();
+        ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+        result.whenComplete((progress, error) -> threads.shutdownNow());
+
+        BlockingQueue<Batch> loaded = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        BlockingQueue<Batch> validated = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        Semaphore openFiles = new Semaphore(parallelFiles);
+        AtomicInteger remaining = new AtomicInteger(states.length);
+        for (FileState state : states) {
+            threads.execute(() -> read(state, openFiles, threads, loaded, remaining));
+        }
+        if (states.length == 0) {
+            loaded.add(Batch.END);
+        }
+        threads.execute(() -> validate(known, loaded, validated));
+        threads.execute(() -> merge(states, validated, manager, managerThread, result));
+        return result;
+    }
+
+    /**
+     * Writes tasks to several files, e.g. one file per team or priority.
+     * @param records The tasks to write; take them with {@link TodoListManager#snapshot()}.
+     * @param target Chooses the file for each task; the format of each file is chosen by its extension.
+     *               Tasks for the same file are written in their order in {@code records}.
+     * @param listener Receives progress snapshots; called from several threads.
+     * @return A future with the final progress of every file, in the order the files were first chosen.
+     */
+    public CompletableFuture<List<TransferProgress>> exportFiles(List<TaskRecord> records,
+            Function<? super TaskRecord, Path> target, Consumer<? super TransferProgress> listener) {
+        Map<Path, List<TaskRecord>> groups = new LinkedHashMap<>();
+        for (TaskRecord record : records) {
+            groups.computeIfAbsent(target.apply(record), path -> new ArrayList<>()).add(record);
+        }
+        ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+        Semaphore writers = new Semaphore(parallelFiles);
+        List<FileState> states = new ArrayList<>(groups.size());
+        List<CompletableFuture<Void>> writes = new ArrayList<>(groups.size());
+        for (Map.Entry<Path, List<TaskRecord>> group : groups.entrySet()) {
+            FileState state = new FileState(group.getKey(), listener);
+            states.add(state);
+            state.emit();
+            writes.add(CompletableFuture.runAsync(() -> write(state, group.getValue(), writers), threads));
+        }
+        threads.shutdown();
+        return CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0]))
+                .thenApply(done -> states.stream().map(FileState::snapshot).toList());
+    }
+
+    /**
+     * Stage 1: reads one file in chunks and hands them to a parser thread for the file. The file counts
+     * against {@code parallelFiles} until it is parsed, so chunks of at most that many files are in memory.
+     */
+    private void read(FileState state, Semaphore openFiles, ExecutorService threads, BlockingQueue<Batch> loaded,
+            AtomicInteger remaining) {
+        try {
+            openFiles.acquire();
+        } catch (InterruptedException e) {
+            // The import was cancelled.
+            return;
+        }
+        BlockingQueue<ByteBuffer> chunks = new ArrayBlockingQueue<>(CHUNKS_PER_FILE);
+        TaskFileReader reader = null;
+        try {
+            state.status = TransferProgress.Status.RUNNING;
+            state.emit();
+            if (!Files.exists(state.file)) {
+                throw new NoSuchFileException(state.file.toString(), null, "file not found");
+            }
+            reader = TaskFileReader.open(TaskStores.forPath(state.file));
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Error importing tasks from " + state.file + ": " + e.getMessage());
+            state.fail(e);
+        }
+        TaskFileReader opened = reader;
+        try {
+            threads.execute(() -> parse(state, opened, chunks, openFiles, loaded, remaining));
+        } catch (RejectedExecutionException e) {
+            // The import was cancelled.
+            close(state, opened);
+            return;
+        }
+        try {
+            if (opened != null) {
+                ByteBuffer chunk;
+                while ((chunk = opened.nextChunk()) != null) {
+                    chunks.put(chunk);
+                }
+            }
+        } catch (InterruptedException e) {
+            // The import was cancelled.
+            return;
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Error importing tasks from " + state.file + ": " + e.getMessage());
+            state.fail(e);
+        }
+        try {
+            chunks.put(END_OF_FILE);
+        } catch (InterruptedException e) {
+            // The import was cancelled.
+        }
+    }
+
+    /**
+     * Stage 2: parses the chunks of one file in order and hands its tasks on in batches, followed by an
+     * end-of-file marker. After a failure, the remaining chunks are dropped so the reader can finish.
+     */
+    private static void parse(FileState state, TaskFileReader reader, BlockingQueue<ByteBuffer> chunks,
+            Semaphore openFiles, BlockingQueue<Batch> loaded, AtomicInteger remaining) {
+        try {
+            try {
+                ByteBuffer chunk;
+                while ((chunk = chunks.take()) != END_OF_FILE) {
+                    if (state.status == TransferProgress.Status.FAILED) {
+                        continue;
+                    }
+                    try {
+                        List<TodoItem> items = reader.parse(chunk);
+                        for (int from = 0; from < items.size(); from += BATCH_SIZE) {
+                            List<TodoItem> batch = items.subList(from, Math.min(items.size(), from + BATCH_SIZE));
+                            loaded.put(new Batch(state, batch));
+                            state.tasks += batch.size();
+                            state.emit();
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        LOG.log(Level.WARNING, "Error importing tasks from " + state.file + ": " + e.getMessage());
+                        state.fail(e);
+                    }
+                }
+            } finally {
+                close(state, reader);
+                openFiles.release();
+            }
+            loaded.put(new Batch(state, null));
+            if (remaining.decrementAndGet() == 0) {
+                loaded.put(Batch.END);
+            }
+        } catch (InterruptedException e) {
+            // The import was cancelled.
+        }
+    }
+
+    private static void close(FileState state, TaskFileReader reader) {
+        if (reader == null) {
+            return;
+        }
+        try {
+            reader.close();
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Error closing " + state.file + ": " + e.getMessage());
+        }
+    }
+
+    /** Stage 3: drops invalid and duplicate tasks. Runs on a single thread, which owns {@code known}. */
+    private static void validate(Set<TaskKey> known, BlockingQueue<Batch> loaded, BlockingQueue<Batch> validated) {
+        try {
+            while (true) {
+                Batch batch = loaded.take();
+                if (batch == Batch.END || batch.items == null) {
+                    validated.put(batch);
+                    if (batch == Batch.END) {
+                        return;
+                    }
+                    continue;
+                }
+                List<TodoItem> accepted = new ArrayList<>(batch.items.size());
+                long duplicates = 0;
+                long invalid = 0;
+                for (TodoItem item : batch.items) {
+                    if (item.getDescription() == null || item.getDescription().isBlank()) {
+                        invalid++;
+                    } else if (!known.add(TaskKey.of(item))) {
+                        duplicates++;
+                    } else {
+                        accepted.add(item);
+                    }
+                }
+                batch.file.duplicates += duplicates;
+                batch.file.invalid += invalid;
+                validated.put(new Batch(batch.file, accepted));
+            }
+        } catch (InterruptedException e) {
+            // The import was cancelled.
+        }
+    }
+
+    /**
+     * Stage 4: gathers validated tasks into large batches and adds them to the manager on its thread.
+     * A file is reported as done once all of its tasks were added.
+     */
+    private static void merge(FileState[] states, BlockingQueue<Batch> validated, TodoListManager manager,
+            Executor managerThread, CompletableFuture<List<TransferProgress>> result) {
+        Semaphore inFlight = new Semaphore(MERGES_IN_FLIGHT);
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        List<TodoItem> pending = new ArrayList<>();
+        Map<FileState, Integer> pendingCounts = new LinkedHashMap<>();
+        List<FileState> pendingFinished = new ArrayList<>();
+        try {
+            while (true) {
+                Batch batch = validated.take();
+                if (batch == Batch.END) {
+                    break;
+                }
+                if (batch.items == null) {
+                    pendingFinished.add(batch.file);
+                    continue;
+                }
+                pending.addAll(batch.items);
+                pendingCounts.merge(batch.file, batch.items.size(), Integer::sum);
+                if (pending.size() >= MERGE_BATCH_SIZE) {
+                    flush(pending, pendingCounts, pendingFinished, inFlight, manager, managerThread, failure);
+                    pending = new ArrayList<>();
+                    pendingCounts = new LinkedHashMap<>();
+                    pendingFinished = new ArrayList<>();
+                }
+            }
+            flush(pending, pendingCounts, pendingFinished, inFlight, manager, managerThread, failure);
+            inFlight.acquire(MERGES_IN_FLIGHT);
+        } catch (InterruptedException e) {
+            result.cancel(false);
+            return;
+        }
+        if (failure.get() != null) {
+            result.completeExceptionally(failure.get());
+            return;
+        }
+        List<TransferProgress> progress = new ArrayList<>(states.length);
+        for (FileState state : states) {
+            progress.add(state.snapshot());
+        }
+        result.complete(progress);
+    }
+
+    /** Adds one merge batch to the manager, waiting while {@value #MERGES_IN_FLIGHT} batches are still queued there. */
+    private static void flush(List<TodoItem> items, Map<FileState, Integer> counts, List<FileState> finished,
+            Semaphore inFlight, TodoListManager manager, Executor managerThread, AtomicReference<RuntimeException> failure)
+            throws InterruptedException {
+        if (items.isEmpty() && finished.isEmpty()) {
+            return;
+        }
+        inFlight.acquire();
+        managerThread.execute(() -> {
+            try {
+                if (failure.get() == null) {
+                    manager.addAll(items);
+                    for (Map.Entry<FileState, Integer> count : counts.entrySet()) {
+                        count.getKey().merged += count.getValue();
+                        count.getKey().emit();
+                    }
+                }
+                for (FileState state : finished) {
+                    state.finish();
+                }
+            } catch (RuntimeException e) {
+                failure.set(e);
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    /** Writes the tasks of one export file. */
+    private void write(FileState state, List<TaskRecord> records, Semaphore writers) {
+        try {
+            writers.acquire();
+        } catch (InterruptedException e) {
+            state.fail(e);
+            return;
+        }
+        try {
+            state.status = TransferProgress.Status.RUNNING;
+            state.emit();
+            TaskStores.forPath(state.file).save(records);
+            state.tasks = records.size();
+            state.finish();
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Error exporting tasks to " + state.file + ": " + e.getMessage());
+            state.fail(e);
+        } finally {
+            writers.release();
+        }
+    }
+
+    /**
+     * Mutable progress of one file. Each counter is written by a single stage only.
+     */
+    private static final class FileState {
+        final Path file;
+        final Consumer<? super TransferProgress> listener;
+        volatile TransferProgress.Status status = TransferProgress.Status.QUEUED;
+        volatile long tasks;
+        volatile long merged;
+        volatile long duplicates;
+        volatile long invalid;
+        volatile String error;
+
+        FileState(Path file, Consumer<? super TransferProgress> listener) {
+            this.file = file;
+            this.listener = listener;
+        }
+
+        void fail(Exception e) {
+            error = e.getMessage() != null ? e.getMessage() : e.toString();
+            status = TransferProgress.Status.FAILED;
+            emit();
+        }
+
+        void finish() {
+            if (status != TransferProgress.Status.FAILED) {
+                status = TransferProgress.Status.DONE;
+                emit();
+            }
+        }
+
+        TransferProgress snapshot() {
+            return new TransferProgress(file, status, tasks, merged, duplicates, invalid, error);
+        }
+
+        void emit() {
+            listener.accept(snapshot());
+        }
+    }
+
+    /** Marks the end of the chunks of a file. */
+    private static final ByteBuffer END_OF_FILE = ByteBuffer.allocate(0);
+
+    /**
+     * Tasks of one file passed between stages. A batch without items marks the end of its file;
+     * {@link #END} marks the end of all files.
+     */
+    private record Batch(FileState file, List<TodoItem> items) {
+        static final Batch END = new Batch(null, null);
+    }
+
+    /** The fields that make two tasks duplicates of each other. */
+    private record TaskKey(String description, TodoItem.Priority priority, LocalDate dueDate) {
+        static TaskKey of(TodoItem item) {
+            return new TaskKey(item.getDescription(), item.getPriority(), item.getDueDate());
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package todolistapp.model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Computes the visible rows of a task table (filtered, searched, and sorted) off the owner thread.
+ * <p>
+ * {@link #compute} takes the manager's {@link TodoListManager#currentSnapshot() snapshot} on the calling
+ * (owner) thread, which costs O(1). Filtering and sorting then run on a {@link ForkJoinPool} against the
+ * immutable records, so edits made in the meantime cannot disturb them; only the matching rows are turned
+ * back into tasks on the owner thread.
+ * A sort order of several columns is compiled into one int key per row and column and applied as
+ * stable passes of {@link Arrays#parallelSort(long[])} over packed {@code key << 32 | position} values,
+ * least significant column first; only a description column needs string comparisons, once, to rank
+ * the descriptions.
+ * <p>
+ * Edits of single tasks do not need a new computation: {@link #applyEdits} moves just the rows of the
+ * edited tasks, checking the query in the {@link TaskIndex} and finding their places by binary search.
+ * <p>
+ * Every call supersedes the previous one: the older computation stops at its next check and its future
+ * is cancelled, so only the latest request ever reaches the table. Results are delivered on the owner
+ * thread, where they can be swapped into the table in one step.
+ * Must be called from the owner thread.
+ */
+public class TaskViewEngine {
+
+    /** Columns a view can be sorted by. */
+    public enum SortField {
+        /** The completion status; not done first. */
+        DONE,
+        /** The description, in natural string order. */
+        DESCRIPTION,
+        /** The priority, in declaration order. */
+        PRIORITY,
+        /** The due date. */
+        DUE_DATE,
+        /** The creation date. */
+        CREATION_DATE
+    }
+
+    /**
+     * One column of a sort order. Tasks without a value (no priority or date) come first when ascending.
+     * @param field The column.
+     * @param ascending True for ascending, false for descending order.
+     */
+    public record SortKey(SortField field, boolean ascending) {
+    }
+
+    /** Rows filtered between two checks for a newer request. */
+    private static final int CANCEL_CHECK_INTERVAL = 1 << 14;
+    /** Sort key of a missing date, like {@link TodoItem#getDueEpochDay()}; comes first when ascending. */
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    /** Edited tasks above which {@link #applyEdits} leaves it to a new computation. */
+    private static final int MAX_APPLIED_EDITS = 64;
+
+    private final Executor ownerThread;
+    private final ForkJoinPool pool;
+    /** Number of the latest request; older computations stop once they see a newer one. */
+    private final AtomicLong latest = new AtomicLong();
+    /** The result of the latest request, until it is delivered. */
+    private CompletableFuture<List<TodoItem>> pending;
+
+    /**
+     * Creates an engine that computes on the common fork-join pool.
+     * @param ownerThread Runs tasks on the owner thread, e.g. {@code Platform::runLater}.
+     */
+    public TaskViewEngine(Executor ownerThread) {
+        this(ownerThread, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates an engine.
+     * @param ownerThread Runs tasks on the owner thread, e.g. {@code Platform::runLater}.
+     * @param pool The pool that filters and sorts.
+     */
+    public TaskViewEngine(Executor ownerThread, ForkJoinPool pool) {
+        this.ownerThread = ownerThread;
+        this.pool = pool;
+    }
+
+    /**
+     * Starts computing a view and cancels the computation of the previous one.
+     * @param manager The manager of the tasks; its snapshot and the date of its {@link TaskIndex} are taken on
+     *                the calling thread.
+     * @param query The filter; {@link TaskQuery#ALL} for none.
+     * @param search The search result the rows must be in, or null for no search.
+     * @param order The sort order, most significant column first. If it is empty, search matches are
+     *              ranked by relevance and otherwise the list order is kept.
+     * @return A future with the rows of the view, completed on the owner thread. It is cancelled if
+     *         another view is requested before this one is delivered.
+     */
+    public CompletableFuture<List<TodoItem>> compute(TodoListManager manager, TaskQuery query, SearchResult search,
+            List<SortKey> order) {
+        if (pending != null) {
+            pending.cancel(false);
+        }
+        long request = latest.incrementAndGet();
+        TaskSnapshot snapshot = manager.currentSnapshot();
+        LocalDate today = manager.getIndex().getToday();
+        List<SortKey> sortOrder = List.copyOf(order);
+        CompletableFuture<List<TodoItem>> result = new CompletableFuture<>();
+        pending = result;
+        CompletableFuture.supplyAsync(() -> {
+            TaskRecord[] records = snapshot.toArray(new TaskRecord[0]);
+            int[] rows = filter(records, query, search, today, request);
+            return sort(records, rows, search, sortOrder, request);
+        }, pool).whenCompleteAsync((rows, error) -> {
+            if (pending == result) {
+                pending = null;
+            }
+            if (request != latest.get()) {
+                result.cancel(false);
+            } else if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(resolve(manager, snapshot, rows));
+            }
+        }, ownerThread);
+        return result;
+    }
+
+    /**
+     * Updates rows delivered by {@link #compute} after tasks were edited, instead of computing the whole view
+     * again. Every edited task is checked against the query in the {@link TaskIndex} and moved to its place by
+     * binary search; a single edited task that keeps its place keeps its row, and thereby its selection in a table.
+     * Must not be used for rows of a search, since a {@link SearchResult} does not follow edits.
+     * Must be called from the owner thread.
+     * @param rows The rows, computed for the same query and order; changed in place.
+     * @param edited The tasks whose fields changed since the rows were computed.
+     * @param manager The manager of the tasks.
+     * @param query The filter of the rows.
+     * @param order The sort order of the rows.
+     * @return False if too many tasks were edited to move them one by one; the view must then be computed again.
+     */
+    public boolean applyEdits(List<TodoItem> rows, Collection<TodoItem> edited, TodoListManager manager,
+            TaskQuery query, List<SortKey> order) {
+        if (edited.size() > MAX_APPLIED_EDITS) {
+            return false;
+        }
+        Comparator<TodoItem> rowOrder = rowOrder(manager, order);
+        TaskIndex index = manager.getIndex();
+        if (edited.size() == 1) {
+            TodoItem item = edited.iterator().next();
+            int row = rowOf(rows, item, rowOrder);
+            boolean shown = index.matches(query, item);
+            if (row >= 0 && shown && isInPlace(rows, row, rowOrder)) {
+                return true;
+            }
+            if (row >= 0) {
+                rows.remove(row);
+            }
+            if (shown) {
+                insert(rows, item, rowOrder);
+            }
+            return true;
+        }
+        // Other edited rows may be out of place too, so binary search is only reliable once they are all out
+        Set<TodoItem> moved = Collections.newSetFromMap(new IdentityHashMap<>());
+        moved.addAll(edited);
+        rows.removeIf(moved::contains);
+        for (TodoItem item : moved) {
+            if (index.matches(query, item)) {
+                insert(rows, item, rowOrder);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Turns rows of a snapshot into the tasks of the list. If the list changed while the rows were computed,
+     * they are looked up by ID, and tasks removed in the meantime are left out.
+     */
+    private static List<TodoItem> resolve(TodoListManager manager, TaskSnapshot snapshot, int[] rows) {
+        if (manager.currentSnapshot() == snapshot) {
+            List<TodoItem> tasks = manager.getTasks();
+            TodoItem[] view = new TodoItem[rows.length];
+            for (int i = 0; i < rows.length; i++) {
+                view[i] = tasks.get(rows[i]);
+            }
+            return Arrays.asList(view);
+        }
+        List<TodoItem> view = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            TodoItem item = manager.getTask(snapshot.get(row).id());
+            if (item != null) {
+                view.add(item);
+            }
+        }
+        return view;
+    }
+
+    private int[] filter(TaskRecord[] records, TaskQuery query, SearchResult search, LocalDate today, long request) {
+        if (query == TaskQuery.ALL && search == null) {
+            return IntStream.range(0, records.length).toArray();
+        }
+        return IntStream.range(0, records.length).parallel().filter(row -> {
+            if ((row & (CANCEL_CHECK_INTERVAL - 1)) == 0) {
+                checkLatest(request);
+            }
+            return query.matches(records[row], today) && (search == null || search.contains(records[row]));
+        }).toArray();
+    }
+
+    private int[] sort(TaskRecord[] records, int[] rows, SearchResult search, List<SortKey> order, long request) {
+        if (order.isEmpty()) {
+            if (search == null) {
+                return rows;
+            }
+            int[] relevance = new int[records.length];
+            for (int row : rows) {
+                relevance[row] = -search.score(records[row]);
+            }
+            return sortPass(rows, relevance, request);
+        }
+        // Stable passes from the least to the most significant column give the multi-column order
+        for (int i = order.size() - 1; i >= 0; i--) {
+            SortKey key = order.get(i);
+            int[] keys = keys(records, rows, key.field());
+            if (!key.ascending()) {
+                for (int row : rows) {
+                    keys[row] = ~keys[row];
+                }
+            }
+            rows = sortPass(rows, keys, request);
+        }
+        return rows;
+    }
+
+    /**
+     * Sorts rows by one key column, keeping the current order of rows with equal keys.
+     * @param keys The key of every row, indexed by row.
+     */
+    private int[] sortPass(int[] rows, int[] keys, long request) {
+        checkLatest(request);
+        long[] packed = new long[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            packed[i] = (long) keys[rows[i]] << 32 | i;
+        }
+        Arrays.parallelSort(packed);
+        checkLatest(request);
+        int[] sorted = new int[rows.length];
+        for (int i = 0; i < packed.length; i++) {
+            sorted[i] = rows[(int) packed[i]];
+        }
+        return sorted;
+    }
+
+    /**
+     * Compiles one sort column into an int key per row (indexed by row). Only the given rows are filled.
+     */
+    private static int[] keys(TaskRecord[] records, int[] rows, SortField field) {
+        int[] keys = new int[records.length];
+        switch (field) {
+            case DONE:
+                for (int row : rows) {
+                    keys[row] = records[row].done() ? 1 : 0;
+                }
+                break;
+            case PRIORITY:
+                for (int row : rows) {
+                    keys[row] = priorityKey(records[row].priority());
+                }
+                break;
+            case DUE_DATE:
+                for (int row : rows) {
+                    keys[row] = epochDay(records[row].dueDate());
+                }
+                break;
+            case CREATION_DATE:
+                for (int row : rows) {
+                    keys[row] = epochDay(records[row].creationDate());
+                }
+                break;
+            case DESCRIPTION:
+                rankDescriptions(records, rows, keys);
+                break;
+        }
+        return keys;
+    }
+
+    /** Replaces the descriptions by their rank among the given rows; equal descriptions share a rank. */
+    private static void rankDescriptions(TaskRecord[] records, int[] rows, int[] keys) {
+        Integer[] byDescription = new Integer[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            byDescription[i] = rows[i];
+        }
+        Comparator<String> naturalOrder = Comparator.nullsFirst(Comparator.naturalOrder());
+        Arrays.parallelSort(byDescription, (a, b) -> naturalOrder.compare(records[a].description(), records[b].description()));
+        int rank = 0;
+        for (int i = 0; i < byDescription.length; i++) {
+            if (i > 0 && naturalOrder.compare(records[byDescription[i - 1]].description(), records[byDescription[i]].description()) != 0) {
+                rank++;
+            }
+            keys[byDescription[i]] = rank;
+        }
+    }
+
+    private static int epochDay(LocalDate date) {
+        return date == null ? NO_DATE : (int) date.toEpochDay();
+    }
+
+    /** @return The priority ordinal, or -1 for no priority, so tasks without one come first. */
+    private static int priorityKey(TodoItem.Priority priority) {
+        return priority == null ? -1 : priority.ordinal();
+    }
+
+    /**
+     * The order of the rows of {@link #compute} as a comparator of tasks: the sort columns, then the list
+     * position, which the stable sort passes keep for equal keys.
+     */
+    private static Comparator<TodoItem> rowOrder(TodoListManager manager, List<SortKey> order) {
+        Comparator<TodoItem> rowOrder = null;
+        for (SortKey key : order) {
+            Comparator<TodoItem> column = columnOrder(key.field());
+            if (!key.ascending()) {
+                column = column.reversed();
+            }
+            rowOrder = rowOrder == null ? column : rowOrder.thenComparing(column);
+        }
+        Comparator<TodoItem> byPosition = Comparator.comparingInt(manager::positionOf);
+        return rowOrder == null ? byPosition : rowOrder.thenComparing(byPosition);
+    }
+
+    private static Comparator<TodoItem> columnOrder(SortField field) {
+        switch (field) {
+            case DONE:
+                return Comparator.comparing(TodoItem::isDone);
+            case PRIORITY:
+                return Comparator.comparingInt(item -> priorityKey(item.getPriority()));
+            case DUE_DATE:
+                return Comparator.comparingInt(TodoItem::getDueEpochDay);
+            case CREATION_DATE:
+                return Comparator.comparingInt(TodoItem::getCreationEpochDay);
+            case DESCRIPTION:
+                return Comparator.comparing(TodoItem::getDescription, Comparator.nullsFirst(Comparator.naturalOrder()));
+            default:
+                throw new IllegalArgumentException("Unknown sort field: " + field);
+        }
+    }
+
+    /**
+     * @return The row of a task, or -1 if it has none. Binary search finds it unless the edit changed its
+     *         sort key, in which case the rows are scanned.
+     */
+    private static int rowOf(List<TodoItem> rows, TodoItem item, Comparator<TodoItem> rowOrder) {
+        int row = Collections.binarySearch(rows, item, rowOrder);
+        if (row >= 0) {
+            return row;
+        }
+        for (row = 0; row < rows.size(); row++) {
+            if (rows.get(row) == item) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isInPlace(List<TodoItem> rows, int row, Comparator<TodoItem> rowOrder) {
+        TodoItem item = rows.get(row);
+        return (row == 0 || rowOrder.compare(rows.get(row - 1), item) < 0)
+                && (row == rows.size() - 1 || rowOrder.compare(item, rows.get(row + 1)) < 0);
+    }
+
+    private static void insert(List<TodoItem> rows, TodoItem item, Comparator<TodoItem> rowOrder) {
+        int row = Collections.binarySearch(rows, item, rowOrder);
+        if (row < 0) {
+            rows.add(-row - 1, item);
+        }
+    }
+
+    private void checkLatest(long request) {
+        if (request != latest.get()) {
+            throw new CancellationException("A newer view was requested");
+        }
+    }
+}
@@ -0,0 +1,437 @@
+package todolistapp.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.System.Logger.Level;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import javafx.collections.ListChangeListener;
+
+/**
+ * A set of named task lists (e.g. one per project or team), each with its own file and {@link TodoListManager}.
+ * <p>
+ * Lists are loaded lazily when they are first opened. Loaded lists are kept in least-recently-used order,
+ * and when their estimated size exceeds the memory budget the least recently used ones are evicted:
+ * a list with unsaved changes is saved first, then its manager is closed and dropped. The active list
+ * (the one opened last) is never evicted, so the heap stays bounded by the budget plus the active list,
+ * however many lists there are.
+ * <p>
+ * Lists are discovered as task files ({@code .csv}, {@code .bin}, {@code .jsonl}) and {@code .lsm} store
+ * directories in the workspace directory; the default list {@value #DEFAULT_LIST} is the application's {@link TaskStores#defaultStore()}.
+ * <p>
+ * Binary task files with the extension {@value #ARCHIVE_EXTENSION} are archives: lists too large to hold as one
+ * {@link TodoItem} per task. They are opened with {@link #openArchive(String, Executor)} as a {@link ColumnarTaskList}
+ * instead of a manager. Only one archive is held in memory at a time, outside the memory budget; opening another
+ * archive or a list saves it if it changed and drops it.
+ * Must be used from one thread (the JavaFX Application Thread in the UI).
+ */
+public class TaskWorkspace {
+
+    private static final System.Logger LOG = System.getLogger(TaskWorkspace.class.getName());
+
+    /** Name of the list stored in the default data file. */
+    public static final String DEFAULT_LIST = "Tasks";
+    /** System property with the memory budget for loaded lists, in megabytes. */
+    public static final String BUDGET_PROPERTY = "todolist.workspace.budget.mb";
+
+    /** Rough heap cost of one loaded task: the item, its description, its list slot, its index entries, and its snapshot record. */
+    static final long ESTIMATED_BYTES_PER_TASK = 450;
+
+    private static final String DEFAULT_DIRECTORY = "lists";
+    private static final long DEFAULT_BUDGET_MB = 256;
+    private static final String[] EXTENSIONS = {".csv", ".bin", ".jsonl", ".lsm"};
+    /** File extension of archives, which are binary task files. */
+    public static final String ARCHIVE_EXTENSION = ".archive";
+    private static final long CLOSE_TIMEOUT_SECONDS = 60;
+
+    private final Path directory;
+    private final long memoryBudget;
+    private final Map<String, TaskStore> stores = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    /** Loaded lists in access order, least recently used first. */
+    private final LinkedHashMap<String, LoadedList> loaded = new LinkedHashMap<>(16, 0.75f, true);
+    /** Saves and closes of evicted lists that may still be running, by list name. */
+    private final Map<String, CompletableFuture<Void>> closing = new HashMap<>();
+    private final Map<String, BinaryTaskStore> archives = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    /** The archive held in memory, or null. */
+    private LoadedArchive archive;
+    private String active;
+
+    /**
+     * Creates a workspace over the task files in a directory.
+     * @param directory The directory holding the list files; created when the first list is created.
+     * @param memoryBudget The estimated heap size, in bytes, above which inactive lists are evicted.
+     */
+    public TaskWorkspace(Path directory, long memoryBudget) {
+        this.directory = directory;
+        this.memoryBudget = memoryBudget;
+        scanDirectory();
+    }
+
+    /**
+     * Creates the workspace used by the application: the lists in the {@code lists} directory plus
+     * {@value #DEFAULT_LIST} in the default data file, with the budget from {@value #BUDGET_PROPERTY}.
+     * @return The workspace.
+     */
+    public static TaskWorkspace defaultWorkspace() {
+        long budgetMb = Long.getLong(BUDGET_PROPERTY, DEFAULT_BUDGET_MB);
+        TaskWorkspace workspace = new TaskWorkspace(Paths.get(DEFAULT_DIRECTORY), budgetMb << 20);
+        workspace.addList(DEFAULT_LIST, TaskStores.defaultStore());
+        return workspace;
+    }
+
+    /**
+     * Registers a list with an existing store. The list is not loaded until it is opened.
+     * @param name The name of the list.
+     * @param store The store of the list.
+     */
+    public void addList(String name, TaskStore store) {
+        stores.put(name, store);
+    }
+
+    /**
+     * Creates a new, empty list file in the workspace directory.
+     * @param name The name of the list; used as file name.
+     * @return The store of the new list.
+     * @throws IllegalArgumentException If the name is empty, not usable as a file name, or already taken.
+     * @throws IOException If the file cannot be created.
+     */
+    public TaskStore createList(String name) throws IOException {
+        if (name == null || name.isBlank() || !name.equals(name.strip())
+                || name.contains("/") || name.contains("\\") || name.startsWith(".")) {
+            throw new IllegalArgumentException("Not a valid list name: " + name);
+        }
+        if (stores.containsKey(name) || archives.containsKey(name)) {
+            throw new IllegalArgumentException("A list named " + name + " already exists");
+        }
+        Files.createDirectories(directory);
+        TaskStore store = TaskStores.forPath(directory.resolve(name + EXTENSIONS[0]));
+        store.save(List.of());
+        stores.put(name, store);
+        return store;
+    }
+
+    /**
+     * @return The names of all lists and archives, loaded or not, in alphabetical order.
+     */
+    public List<String> getListNames() {
+        List<String> names = new ArrayList<>(stores.keySet());
+        for (String name : archives.keySet()) {
+            if (!stores.containsKey(name)) {
+                names.add(name);
+            }
+        }
+        names.sort(String.CASE_INSENSITIVE_ORDER);
+        return names;
+    }
+
+    /**
+     * @param name The name of a list.
+     * @return True if the name is that of an archive, which is opened with {@link #openArchive(String, Executor)}.
+     */
+    public boolean isArchive(String name) {
+        return archives.containsKey(name) && !stores.containsKey(name);
+    }
+
+    /**
+     * @return The name of the list opened last, or null if none was opened yet.
+     */
+    public String getActiveList() {
+        return active;
+    }
+
+    /**
+     * @param name The name of a list.
+     * @return True if the list is currently held in memory.
+     */
+    public boolean isLoaded(String name) {
+        return loaded.containsKey(name);
+    }
+
+    /**
+     * @return The estimated heap size of all loaded lists, in bytes.
+     */
+    public long getEstimatedMemory() {
+        long tasks = 0;
+        for (LoadedList list : loaded.values()) {
+            tasks += list.manager.getTasks().size();
+        }
+        return tasks * ESTIMATED_BYTES_PER_TASK;
+    }
+
+    /**
+     * Makes a list the active one, loading it if it is not in memory, and evicts least recently used
+     * lists that no longer fit into the memory budget.
+     * @param name The name of the list.
+     * @return The manager of the list.
+     * @throws IllegalArgumentException If there is no list with this name.
+     * @throws IllegalStateException If the file of the list cannot be read; the list is not kept in memory then.
+     */
+    public TodoListManager open(String name) {
+        return open(name, null);
+    }
+
+    /**
+     * Makes a list the active one like {@link #open(String)}, but if the list is not in memory it is
+     * loaded with {@link TodoListManager#loadTasksAsync(Executor)}: the manager is returned right away
+     * and fills up on the owner thread, and eviction runs once the load is finished. If the file cannot be
+     * read, the manager is closed and dropped again, so it is neither saved over the file nor kept in memory;
+     * {@link #whenLoaded(String)} reports the failure.
+     * @param name The name of the list.
+     * @param ownerThread Runs tasks on the thread this workspace is used from, e.g. {@code Platform::runLater}.
+     * @return The manager of the list; check {@link TodoListManager#isLoading()} before editing it.
+     * @throws IllegalArgumentException If there is no list with this name.
+     */
+    public TodoListManager open(String name, Executor ownerThread) {
+        TaskStore store = stores.get(name);
+        if (store == null) {
+            throw new IllegalArgumentException("No list named " + name);
+        }
+        LoadedList list = loaded.get(name);
+        active = name;
+        closeArchive();
+        if (list == null) {
+            // An earlier eviction of this list must have written its file before it is read again.
+            CompletableFuture<Void> pendingClose = closing.remove(name);
+            if (pendingClose != null) {
+                pendingClose.join();
+            }
+            LoadedList opened = new LoadedList(new TodoListManager(store));
+            loaded.put(name, opened);
+            if (ownerThread != null) {
+                opened.load = opened.manager.loadTasksAsync(ownerThread).whenComplete((count, error) -> {
+                    if (error != null) {
+                        drop(name, opened);
+                        return;
+                    }
+                    opened.manager.addTaskChangeListener(opened);
+                    evictOverBudget();
+                });
+                return opened.manager;
+            }
+            if (!opened.manager.loadTasks()) {
+                drop(name, opened);
+                throw new IllegalStateException("The list " + name + " could not be loaded from " + store.getPath());
+            }
+            opened.manager.addTaskChangeListener(opened);
+            list = opened;
+        }
+        evictOverBudget();
+        return list.manager;
+    }
+
+    /**
+     * @param name The name of a list opened with {@link #open(String, Executor)}.
+     * @return A future that completes on the owner thread once the list is loaded, or fails with the error
+     *         that kept it from loading; completed right away if the list is not loading.
+     */
+    public CompletableFuture<Integer> whenLoaded(String name) {
+        LoadedList list = loaded.get(name);
+        return list != null ? list.load : CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Makes an archive the active list and loads it on a virtual thread, after saving and dropping the archive
+     * held so far. Tasks edited in the returned list are saved when it is dropped or the workspace is closed.
+     * @param name The name of the archive.
+     * @param ownerThread Runs tasks on the thread this workspace is used from, e.g. {@code Platform::runLater}.
+     * @return Completes on the owner thread with the loaded archive, or with a {@link CancellationException}
+     *         if another list was opened while it loaded.
+     * @throws IllegalArgumentException If there is no archive with this name.
+     */
+    public CompletableFuture<ColumnarTaskList> openArchive(String name, Executor ownerThread) {
+        if (!isArchive(name)) {
+            throw new IllegalArgumentException("No archive named " + name);
+        }
+        active = name;
+        if (archive != null && archive.name.equalsIgnoreCase(name)) {
+            return CompletableFuture.completedFuture(archive.list);
+        }
+        closeArchive();
+        BinaryTaskStore store = archives.get(name);
+        // An earlier close of this archive must have written its file before it is read again.
+        CompletableFuture<Void> pendingClose = closing.getOrDefault(name, CompletableFuture.completedFuture(null));
+        return pendingClose.handleAsync((result, error) -> {
+            try {
+                return ColumnarTaskList.load(store);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, runnable -> Thread.ofVirtual().start(runnable)).thenApplyAsync(list -> {
+            if (!name.equals(active) || archive != null) {
+                throw new CancellationException("Another list was opened while " + name + " was loading");
+            }
+            closing.remove(name, pendingClose);
+            archive = new LoadedArchive(name, store, list);
+            list.addListener(archive);
+            return list;
+        }, ownerThread);
+    }
+
+    /**
+     * Saves all lists with unsaved changes and closes all managers, waiting for the writes to finish.
+     * @param timeout The maximum time to wait.
+     * @param unit The unit of {@code timeout}.
+     * @return True if all writes finished in time.
+     */
+    public boolean close(long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        List<CompletableFuture<Void>> saves = new ArrayList<>();
+        for (LoadedList list : loaded.values()) {
+            if (list.dirty) {
+                saves.add(list.manager.saveTasksAsync());
+            }
+        }
+        closeArchive();
+        saves.addAll(closing.values());
+        boolean finished = true;
+        try {
+            CompletableFuture.allOf(saves.toArray(new CompletableFuture<?>[0]))
+                    .get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finished = false;
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Not all lists could be saved: " + e.getMessage());
+            finished = false;
+        }
+        for (LoadedList list : loaded.values()) {
+            finished &= list.manager.close(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+        loaded.clear();
+        closing.clear();
+        return finished;
+    }
+
+    private void evictOverBudget() {
+        Iterator<Map.Entry<String, LoadedList>> lru = loaded.entrySet().iterator();
+        while (getEstimatedMemory() > memoryBudget && lru.hasNext()) {
+            Map.Entry<String, LoadedList> entry = lru.next();
+            if (entry.getKey().equals(active) || entry.getValue().manager.isLoading()) {
+                continue;
+            }
+            lru.remove();
+            closing.put(entry.getKey(), evict(entry.getKey(), entry.getValue()));
+        }
+    }
+
+    /**
+     * Saves a list if it has unsaved changes and closes its manager; the closing (which waits for the
+     * writes) happens on a virtual thread.
+     */
+    private static CompletableFuture<Void> evict(String name, LoadedList list) {
+        LOG.log(Level.DEBUG, "Evicting list " + name + " (" + list.manager.getTasks().size() + " tasks).");
+        CompletableFuture<Void> saved = list.dirty ? list.manager.saveTasksAsync() : CompletableFuture.completedFuture(null);
+        return saved.handleAsync((result, error) -> {
+            if (error != null) {
+                LOG.log(Level.ERROR, "List " + name + " could not be saved before eviction: " + error.getMessage());
+            }
+            list.manager.close(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            return null;
+        }, runnable -> Thread.ofVirtual().start(runnable));
+    }
+
+    /** Forgets a list whose file could not be loaded and closes its manager. */
+    private void drop(String name, LoadedList list) {
+        loaded.remove(name, list);
+        list.manager.close(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /** Drops the archive held in memory, saving it on a virtual thread if it changed. */
+    private void closeArchive() {
+        if (archive == null) {
+            return;
+        }
+        LoadedArchive closed = archive;
+        archive = null;
+        closed.list.removeListener(closed);
+        if (closed.dirty) {
+            closing.put(closed.name, CompletableFuture.runAsync(() -> {
+                try {
+                    closed.list.save(closed.store);
+                } catch (IOException e) {
+                    LOG.log(Level.ERROR, "Archive " + closed.name + " could not be saved: " + e.getMessage());
+                }
+            }, runnable -> Thread.ofVirtual().start(runnable)));
+        }
+    }
+
+    private void scanDirectory() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                if (fileName.endsWith(ARCHIVE_EXTENSION) && fileName.length() > ARCHIVE_EXTENSION.length()) {
+                    archives.putIfAbsent(fileName.substring(0, fileName.length() - ARCHIVE_EXTENSION.length()), new BinaryTaskStore(file));
+                }
+                for (String extension : EXTENSIONS) {
+                    if (fileName.endsWith(extension) && fileName.length() > extension.length()) {
+                        stores.putIfAbsent(fileName.substring(0, fileName.length() - extension.length()), TaskStores.forPath(file));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Error listing task lists in " + directory + ": " + e.getMessage());
+        }
+    }
+
+    /** A list held in memory; tracks whether it changed since it was loaded or last saved. */
+    private static final class LoadedList implements TaskChangeListener {
+        final TodoListManager manager;
+        /** Completes once the list is loaded; fails if it could not be. */
+        CompletableFuture<Integer> load = CompletableFuture.completedFuture(null);
+        boolean dirty;
+
+        LoadedList(TodoListManager manager) {
+            this.manager = manager;
+        }
+
+        @Override
+        public void tasksAdded(int from, List<? extends TodoItem> added) {
+            dirty = true;
+        }
+
+        @Override
+        public void tasksRemoved(int from, List<? extends TodoItem> removed) {
+            dirty = true;
+        }
+
+        @Override
+        public void taskUpdated(TodoItem item, TaskField field, Object oldValue, Object newValue) {
+            dirty = true;
+        }
+    }
+
+    /** The archive held in memory; tracks whether it changed since it was loaded. */
+    private static final class LoadedArchive implements ListChangeListener<TodoItem> {
+        final String name;
+        final BinaryTaskStore store;
+        final ColumnarTaskList list;
+        boolean dirty;
+
+        LoadedArchive(String name, BinaryTaskStore store, ColumnarTaskList list) {
+            this.name = name;
+            this.store = store;
+            this.list = list;
+        }
+
+        @Override
+        public void onChanged(Change<? extends TodoItem> change) {
+            dirty = true;
+        }
+    }
+}
@@ -7,11 +7,22 @@ import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 import java.time.LocalDate;
+import java.util.Objects;
 
 /**
  * Represents a single task in the TODO list application.
  * It contains properties for the task's description, completion status,
  * priority, due date, and creation date.
+ * <p>
+ * To keep large lists small in memory, the values are stored in plain fields (dates as epoch days,
+ * the completion status and priority packed into one byte). The JavaFX properties are only created
+ * when they are first requested, e.g. by a table cell that shows the task, and stay in sync with the fields.
+ * The {@link TodoListManager} that holds the task is notified about changes directly, without
+ * observing the properties.
+ * <p>
+ * Every task has a stable 64-bit {@link #getId() ID}, assigned when it is created (see {@link TaskIds})
+ * and kept by all task stores, and a {@link #getLastModified() last-modified} time that every field
+ * change advances.
  */
 public class TodoItem {
 
@@ -27,26 +38,139 @@ public class TodoItem {
         LOW
     }
 
-    private final StringProperty description;
-    private final BooleanProperty done;
-    private final ObjectProperty<Priority> priority;
-    private final ObjectProperty<LocalDate> dueDate;
-    private final LocalDate creationDate;
+    /** Receives the changes of the fields of a task; see {@link TodoItem#owner}. */
+    interface Owner {
+
+        /**
+         * Called after a field of the task changed.
+         * @param item The changed task.
+         * @param field The field that changed.
+         * @param oldValue The previous value of the field.
+         * @param newValue The new value of the field.
+         */
+        void taskChanged(TodoItem item, TaskField field, Object oldValue, Object newValue);
+    }
+
+    /** Epoch day that stands for "no date". */
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    /**
+     * Recently returned dates by epoch day (direct-mapped, about eleven years), so the snapshot records of
+     * many tasks share their date objects instead of allocating two per task.
+     */
+    private static final LocalDate[] DATES = new LocalDate[1 << 12];
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    /** Change time that stands for "now". */
+    private static final long CURRENT_TIME = Long.MIN_VALUE;
+    private static final int DONE_BIT = 1;
+    private static final int PRIORITY_SHIFT = 1;
+    private static final int PRIORITY_MASK = 0b11;
+
+    private long id;
+    private long lastModified;
+    private String description;
+    private int dueEpochDay;
+    private final int creationEpochDay;
+    /** Bit 0: done; bits 1-2: priority ordinal + 1. */
+    private byte flags;
+
+    // Created on first request only.
+    private StringProperty descriptionProperty;
+    private BooleanProperty doneProperty;
+    private ObjectProperty<Priority> priorityProperty;
+    private ObjectProperty<LocalDate> dueDateProperty;
+
+    /** Notified about field changes; set by the {@link TodoListManager} whose list contains the item. */
+    Owner owner;
+    /** Position hint maintained by {@link TaskList}; only meaningful while the item is in a list. */
+    int listPosition = -1;
+    /** Slot assigned by {@link TaskSlots}; -1 while the item is not in a manager's list. */
+    int slot = -1;
 
     /**
      * Constructs a new TodoItem with the specified description, priority, and due date.
      * The creation date is set to the current date, and the task is initially marked as not done.
+     * The task gets a new ID, and its last-modified time is the current time.
      *
      * @param description The description of the task.
      * @param priority The priority of the task.
      * @param dueDate The due date of the task.
+     * @throws NullPointerException If {@code priority} is null.
      */
     public TodoItem(String description, Priority priority, LocalDate dueDate) {
-        this.description = new SimpleStringProperty(description);
-        this.priority = new SimpleObjectProperty<>(priority);
-        this.dueDate = new SimpleObjectProperty<>(dueDate);
-        this.creationDate = LocalDate.now();
-        this.done = new SimpleBooleanProperty(false);
+        this.id = TaskIds.next();
+        this.lastModified = System.currentTimeMillis();
+        this.description = description;
+        this.flags = (byte) (priorityBits(priority) << PRIORITY_SHIFT);
+        this.dueEpochDay = toEpochDay(dueDate);
+        this.creationEpochDay = (int) LocalDate.now().toEpochDay();
+    }
+
+    /**
+     * Constructs a TodoItem from stored values, e.g. a line of a task file.
+     * @param description The description of the task.
+     * @param done The completion status.
+     * @param priority The priority of the task.
+     * @param dueEpochDay The due date as epoch day, or {@code Integer.MIN_VALUE} for none.
+     * @param creationEpochDay The creation date as epoch day, or {@code Integer.MIN_VALUE} for none.
+     * @param id The stored ID, or {@link TaskIds#NONE} to assign a new one (files written before tasks had IDs).
+     * @param lastModified The last-modified time in epoch milliseconds, or 0 if unknown.
+     */
+    TodoItem(String description, boolean done, Priority priority, int dueEpochDay, int creationEpochDay,
+            long id, long lastModified) {
+        if (id != TaskIds.NONE) {
+            TaskIds.observe(id);
+            this.id = id;
+        } else {
+            this.id = TaskIds.next();
+        }
+        this.lastModified = lastModified;
+        this.description = description;
+        this.flags = (byte) ((done ? DONE_BIT : 0) | priorityBits(priority) << PRIORITY_SHIFT);
+        this.dueEpochDay = dueEpochDay;
+        this.creationEpochDay = creationEpochDay;
+    }
+
+    /**
+     * Constructs a TodoItem from a snapshot, keeping its ID and last-modified time.
+     * @param record The snapshot, e.g. a task received from a {@link TaskReplica}.
+     * @return A new task that is not in any list yet.
+     */
+    static TodoItem of(TaskRecord record) {
+        return new TodoItem(record.description(), record.done(), record.priority(), toEpochDay(record.dueDate()),
+                toEpochDay(record.creationDate()), record.id(), record.lastModified());
+    }
+
+    /**
+     * Gets the ID of the task. It is unique within a list and stays the same across saves and loads.
+     * @return The ID; never 0.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Replaces the ID, e.g. when a task is added to a list that already has a task with this ID.
+     * @param id The new ID.
+     */
+    void setId(long id) {
+        this.id = id;
+    }
+
+    /**
+     * Gets the time of the last change of a field of the task.
+     * @return The time in epoch milliseconds, or 0 if unknown (tasks loaded from files written before it was stored).
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Sets the last-modified time, e.g. when a change is replayed from the journal.
+     * @param lastModified The time in epoch milliseconds.
+     */
+    void setLastModified(long lastModified) {
+        this.lastModified = lastModified;
     }
 
     // Description Property
@@ -56,7 +180,15 @@ public class TodoItem {
      * @return The StringProperty for the description.
      */
     public StringProperty descriptionProperty() {
-        return description;
+        if (descriptionProperty == null) {
+            descriptionProperty = new SimpleStringProperty(this, "description", description) {
+                @Override
+                protected void invalidated() {
+                    changeDescription(get(), CURRENT_TIME);
+                }
+            };
+        }
+        return descriptionProperty;
     }
 
     /**
@@ -64,7 +196,7 @@ public class TodoItem {
      * @return The task description.
      */
     public String getDescription() {
-        return description.get();
+        return description;
     }
 
     /**
@@ -72,7 +204,20 @@ public class TodoItem {
      * @param description The new task description.
      */
     public void setDescription(String description) {
-        this.description.set(description);
+        if (descriptionProperty != null) {
+            descriptionProperty.set(description);
+        } else {
+            changeDescription(description, CURRENT_TIME);
+        }
+    }
+
+    private void changeDescription(String newValue, long time) {
+        String oldValue = description;
+        if (Objects.equals(oldValue, newValue)) {
+            return;
+        }
+        description = newValue;
+        fireChanged(TaskField.DESCRIPTION, oldValue, newValue, time);
     }
 
     // Done Property
@@ -82,7 +227,15 @@ public class TodoItem {
      * @return The BooleanProperty for the completion status.
      */
     public BooleanProperty doneProperty() {
-        return done;
+        if (doneProperty == null) {
+            doneProperty = new SimpleBooleanProperty(this, "done", isDone()) {
+                @Override
+                protected void invalidated() {
+                    changeDone(get(), CURRENT_TIME);
+                }
+            };
+        }
+        return doneProperty;
     }
 
     /**
@@ -90,7 +243,7 @@ public class TodoItem {
      * @return True if the task is done, false otherwise.
      */
     public boolean isDone() {
-        return done.get();
+        return (flags & DONE_BIT) != 0;
     }
 
     /**
@@ -98,7 +251,20 @@ public class TodoItem {
      * @param done True to mark the task as done, false otherwise.
      */
     public void setDone(boolean done) {
-        this.done.set(done);
+        if (doneProperty != null) {
+            doneProperty.set(done);
+        } else {
+            changeDone(done, CURRENT_TIME);
+        }
+    }
+
+    private void changeDone(boolean newValue, long time) {
+        boolean oldValue = isDone();
+        if (oldValue == newValue) {
+            return;
+        }
+        flags = (byte) (newValue ? flags | DONE_BIT : flags & ~DONE_BIT);
+        fireChanged(TaskField.DONE, oldValue, newValue, time);
     }
 
     // Priority Property
@@ -108,7 +274,15 @@ public class TodoItem {
      * @return The ObjectProperty for the priority.
      */
     public ObjectProperty<Priority> priorityProperty() {
-        return priority;
+        if (priorityProperty == null) {
+            priorityProperty = new SimpleObjectProperty<>(this, "priority", getPriority()) {
+                @Override
+                protected void invalidated() {
+                    changePriority(get(), CURRENT_TIME);
+                }
+            };
+        }
+        return priorityProperty;
     }
 
     /**
@@ -116,15 +290,30 @@ public class TodoItem {
      * @return The task priority.
      */
     public Priority getPriority() {
-        return priority.get();
+        return PRIORITIES[((flags >> PRIORITY_SHIFT) & PRIORITY_MASK) - 1];
     }
 
     /**
      * Sets the priority of the task.
      * @param priority The new task priority.
+     * @throws NullPointerException If {@code priority} is null.
      */
     public void setPriority(Priority priority) {
-        this.priority.set(priority);
+        Objects.requireNonNull(priority, "priority");
+        if (priorityProperty != null) {
+            priorityProperty.set(priority);
+        } else {
+            changePriority(priority, CURRENT_TIME);
+        }
+    }
+
+    private void changePriority(Priority newValue, long time) {
+        Priority oldValue = getPriority();
+        if (oldValue == newValue) {
+            return;
+        }
+        flags = (byte) ((flags & ~(PRIORITY_MASK << PRIORITY_SHIFT)) | priorityBits(newValue) << PRIORITY_SHIFT);
+        fireChanged(TaskField.PRIORITY, oldValue, newValue, time);
     }
 
     // DueDate Property
@@ -134,7 +323,15 @@ public class TodoItem {
      * @return The ObjectProperty for the due date.
      */
     public ObjectProperty<LocalDate> dueDateProperty() {
-        return dueDate;
+        if (dueDateProperty == null) {
+            dueDateProperty = new SimpleObjectProperty<>(this, "dueDate", getDueDate()) {
+                @Override
+                protected void invalidated() {
+                    changeDueDate(get(), CURRENT_TIME);
+                }
+            };
+        }
+        return dueDateProperty;
     }
 
     /**
@@ -142,7 +339,7 @@ public class TodoItem {
      * @return The task due date.
      */
     public LocalDate getDueDate() {
-        return dueDate.get();
+        return toDate(dueEpochDay);
     }
 
     /**
@@ -150,7 +347,21 @@ public class TodoItem {
      * @param dueDate The new task due date.
      */
     public void setDueDate(LocalDate dueDate) {
-        this.dueDate.set(dueDate);
+        if (dueDateProperty != null) {
+            dueDateProperty.set(dueDate);
+        } else {
+            changeDueDate(dueDate, CURRENT_TIME);
+        }
+    }
+
+    private void changeDueDate(LocalDate newValue, long time) {
+        int newEpochDay = toEpochDay(newValue);
+        if (newEpochDay == dueEpochDay) {
+            return;
+        }
+        LocalDate oldValue = getDueDate();
+        dueEpochDay = newEpochDay;
+        fireChanged(TaskField.DUE_DATE, oldValue, newValue, time);
     }
 
     // CreationDate (read-only, only getter)
@@ -159,6 +370,99 @@ public class TodoItem {
      * @return The task creation date.
      */
     public LocalDate getCreationDate() {
-        return creationDate;
+        return toDate(creationEpochDay);
+    }
+
+    /**
+     * @return The due date as epoch day, or {@code Integer.MIN_VALUE} for none; reads the field without creating a date.
+     */
+    int getDueEpochDay() {
+        return dueEpochDay;
+    }
+
+    /**
+     * @return The creation date as epoch day, or {@code Integer.MIN_VALUE} for none.
+     */
+    int getCreationEpochDay() {
+        return creationEpochDay;
+    }
+
+    /**
+     * Sets the fields of the task to those of a newer snapshot of it, e.g. received from a {@link TaskReplica}.
+     * Each changed field is reported like an edit, but with the last-modified time of the snapshot.
+     * @param record The snapshot; its ID and creation date are not applied.
+     */
+    void update(TaskRecord record) {
+        long time = record.lastModified();
+        changeDescription(record.description(), time);
+        changeDone(record.done(), time);
+        changePriority(Objects.requireNonNull(record.priority(), "priority"), time);
+        changeDueDate(record.dueDate(), time);
+        // The properties follow without another change, since the fields already hold their values
+        if (descriptionProperty != null) {
+            descriptionProperty.set(description);
+        }
+        if (doneProperty != null) {
+            doneProperty.set(isDone());
+        }
+        if (priorityProperty != null) {
+            priorityProperty.set(getPriority());
+        }
+        if (dueDateProperty != null) {
+            dueDateProperty.set(getDueDate());
+        }
+        lastModified = time;
+    }
+
+    /**
+     * Sets one field of the task, e.g. to undo a change.
+     * @param field The field to set.
+     * @param value The new value, of the field's type.
+     */
+    void set(TaskField field, Object value) {
+        switch (field) {
+            case DESCRIPTION:
+                setDescription((String) value);
+                break;
+            case DONE:
+                setDone(Boolean.TRUE.equals(value));
+                break;
+            case PRIORITY:
+                setPriority((Priority) value);
+                break;
+            case DUE_DATE:
+                setDueDate((LocalDate) value);
+                break;
+        }
+    }
+
+    private void fireChanged(TaskField field, Object oldValue, Object newValue, long time) {
+        lastModified = time == CURRENT_TIME ? System.currentTimeMillis() : time;
+        if (owner != null) {
+            owner.taskChanged(this, field, oldValue, newValue);
+        }
+    }
+
+    /** Every task has a priority; the journal and the task stores encode it by ordinal. */
+    private static int priorityBits(Priority priority) {
+        return Objects.requireNonNull(priority, "priority").ordinal() + 1;
+    }
+
+    private static int toEpochDay(LocalDate date) {
+        return date == null ? NO_DATE : (int) date.toEpochDay();
+    }
+
+    private static LocalDate toDate(int epochDay) {
+        if (epochDay == NO_DATE) {
+            return null;
+        }
+        // Dates are immutable, so a racing thread at worst replaces an entry with an equal one
+        int slot = epochDay & (DATES.length - 1);
+        LocalDate date = DATES[slot];
+        if (date == null || date.toEpochDay() != epochDay) {
+            date = LocalDate.ofEpochDay(epochDay);
+            DATES[slot] = date;
+        }
+        return date;
     }
-} 
\ No newline at end of file
+}
@@ -1,30 +1,143 @@
 package todolistapp.model;
 
-import javafx.collections.FXCollections;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
+import java.lang.System.Logger.Level;
 import java.time.LocalDate;
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.Closeable;
 import java.io.IOException;
 import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
-// import java.util.ArrayList; // No longer explicitly used
-// import java.util.List; // No longer explicitly used
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import todolistapp.metrics.Metrics;
 
 /**
  * Manages a list of {@link TodoItem} objects.
  * This class handles adding, removing, updating, saving, and loading tasks.
  * Tasks are stored in an {@link ObservableList} for easy binding with JavaFX UI components.
- * Persistence is handled via a CSV file.
+ * Persistence is handled by a {@link TaskStore} (a CSV file by default, see {@link TaskStores#defaultStore()}),
+ * written in the background by a {@link TaskPersistenceService}.
+ * Every mutation is additionally appended to a {@link TaskJournal}, so edits are durable
+ * immediately without rewriting the whole file.
+ * <p>
+ * Changes to many tasks should go through the bulk operations ({@link #addAll(Collection)},
+ * {@link #removeIf(Predicate)}, {@link #markAllDone(Collection, boolean)}, {@link #setPriority(Collection, TodoItem.Priority)})
+ * or a {@link #batch(Consumer)}; each of them reaches list listeners as a single change event.
+ * <p>
+ * Tasks can be looked up and removed by their {@link TodoItem#getId() ID} in constant time; a task added
+ * with an ID that is already in the list gets a new one.
+ * <p>
+ * Next to the observable list, the manager keeps the same tasks as a persistent {@link TaskSnapshot} of
+ * immutable records, updated in O(log n) per change from the same notifications. It is published with a
+ * new version at the end of every change of the list (a whole batch at its end), so background work such as
+ * saving, exporting, or serving the tasks reads a consistent state through {@link #snapshot()} on any thread,
+ * without locks and without copying the list. Code on the owner thread that runs inside a batch, such as the
+ * commands of a script, sees its own changes through {@link #currentSnapshot()}.
+ * <p>
+ * Load and save times and the number of added, removed, and edited tasks are recorded in {@link Metrics}.
  */
-public class TodoListManager {
+public final class TodoListManager {
 
-    private final ObservableList<TodoItem> tasks = FXCollections.observableArrayList();
-    private static final String DATA_FILE_PATH = "tasks.csv";
+    private static final System.Logger LOG = System.getLogger(TodoListManager.class.getName());
+
+    private final TaskList tasks = new TaskList(new TaskList.StructureListener() {
+        @Override
+        public void removed(int from, List<TodoItem> removed) {
+            onTasksRemoved(from, removed);
+        }
+
+        @Override
+        public void added(int from, List<TodoItem> added) {
+            onTasksAdded(from, added);
+        }
+    });
+    private final TaskSlots slots = new TaskSlots();
+    private final TaskIdIndex idIndex = new TaskIdIndex();
+    private final TaskStore store;
+    private final TaskPersistenceService persistence = new TaskPersistenceService();
+    private final TaskJournal journal;
+    private final TaskStatistics statistics;
+    private final TaskIndex index;
+    private final TaskSearchIndex searchIndex;
+    /** True while {@code searchIndex} is not a listener and has to be rebuilt before it is used. */
+    private boolean searchIndexSuspended;
+    private final TaskHistory history;
+    /** Created on first use, since a list that is not shown does not need to follow the date. */
+    private TaskDueScheduler dueScheduler;
+    private final List<TaskChangeListener> changeListeners = new ArrayList<>();
+
+    /** The tasks as records, kept in step with {@code tasks} on the owner thread, also within a change. */
+    private TaskSnapshot records = TaskSnapshot.EMPTY;
+    /** The records as of the end of the latest change of the list, for readers on any thread. */
+    private volatile TaskSnapshot published = TaskSnapshot.EMPTY;
+    /** True if {@code records} changed since it was last published. */
+    private boolean recordsChanged;
+    private long version;
+
+    /** Number of tasks in the first batch of a background load; about one screenful of table rows. */
+    private static final int FIRST_LOAD_BATCH = 200;
+    /** Upper limit for the doubling batch size of a background load. */
+    private static final int MAX_LOAD_BATCH = 1 << 16;
+
+    /** Nesting depth of {@link #batch(Consumer)} calls. */
+    private int batchDepth;
+    /** Inverse operations of the changes made in the current batch, or null outside a batch. */
+    private List<Runnable> rollbackLog;
+    /** True while a load replaces or fills the list; loaded tasks are not counted as added. */
+    private final ReadOnlyBooleanWrapper loading = new ReadOnlyBooleanWrapper(this, "loading");
+
+    /** Receives the field changes of every task in the list; see {@link TodoItem#owner}. */
+    private final TodoItem.Owner itemOwner = this::fireTaskUpdated;
+
+    /**
+     * Creates a manager with an empty task list backed by the default store.
+     * Call {@link #loadTasks()} to load the persisted tasks.
+     */
+    public TodoListManager() {
+        this(TaskStores.defaultStore());
+    }
+
+    /**
+     * Creates a manager with an empty task list backed by the given store.
+     * Call {@link #loadTasks()} to load the persisted tasks.
+     * @param store The storage backend for the tasks.
+     */
+    public TodoListManager(TaskStore store) {
+        this.store = store;
+        // The journal may compact in the middle of a change, so it needs the records up to its latest entry
+        journal = new TaskJournal(TaskStores.journalPathFor(store.getPath()), store, persistence, tasks,
+                () -> records, TaskJournal.DEFAULT_COMPACTION_THRESHOLD);
+        addTaskChangeListener(journal);
+        statistics = new TaskStatistics(tasks);
+        addTaskChangeListener(statistics);
+        index = new TaskIndex(slots);
+        addTaskChangeListener(index);
+        searchIndex = new TaskSearchIndex(slots);
+        addTaskChangeListener(searchIndex);
+        history = new TaskHistory(this, tasks);
+        addTaskChangeListener(history);
+        // List change events are delivered once the outermost change or batch is complete
+        tasks.addListener((ListChangeListener<TodoItem>) change -> publishRecords());
+    }
+
+    /**
+     * Gets the storage backend of this manager.
+     * @return The {@link TaskStore} tasks are loaded from and saved to.
+     */
+    public TaskStore getStore() {
+        return store;
+    }
 
     /**
      * Gets the observable list of tasks.
@@ -35,16 +148,110 @@ public class TodoListManager {
         return tasks;
     }
 
+    /**
+     * Gets the live counters (total, pending, completed, overdue, per priority) over all tasks.
+     * @return The {@link TaskStatistics} of this manager.
+     */
+    public TaskStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Gets the secondary indexes (completion status, priority, due bucket) over all tasks.
+     * @return The {@link TaskIndex} of this manager.
+     */
+    public TaskIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Gets the full-text index over the task descriptions.
+     * @return The {@link TaskSearchIndex} of this manager.
+     */
+    public TaskSearchIndex getSearchIndex() {
+        if (searchIndexSuspended) {
+            searchIndexSuspended = false;
+            searchIndex.clear();
+            searchIndex.tasksAdded(0, tasks);
+            addTaskChangeListener(searchIndex);
+        }
+        return searchIndex;
+    }
+
+    /**
+     * Stops maintaining the full-text index until the next {@link #getSearchIndex()}, which rebuilds it in one pass.
+     * Tokenizing every description is the largest part of the cost of adding a task, so this speeds up bulk
+     * changes that do not search, e.g. by a script.
+     */
+    public void suspendSearchIndex() {
+        if (!searchIndexSuspended) {
+            searchIndexSuspended = true;
+            removeTaskChangeListener(searchIndex);
+        }
+    }
+
+    /**
+     * Gets the undo and redo history of the changes to the tasks.
+     * @return The {@link TaskHistory} of this manager.
+     */
+    public TaskHistory getHistory() {
+        return history;
+    }
+
+    /**
+     * Gets the scheduler that moves the reference date for overdue counts and due buckets at midnight
+     * and reports the tasks that became due or overdue. It is created, and starts tracking the due dates
+     * of the tasks, on the first call; it wakes only after {@link TaskDueScheduler#start(java.util.concurrent.Executor)}.
+     * @return The {@link TaskDueScheduler} of this manager.
+     */
+    public TaskDueScheduler getDueScheduler() {
+        if (dueScheduler == null) {
+            dueScheduler = new TaskDueScheduler(this, statistics.getToday());
+            addTaskChangeListener(dueScheduler);
+        }
+        return dueScheduler;
+    }
+
+    /**
+     * Moves the reference date for overdue counts and due buckets, recomputing them for all tasks.
+     * @param today The new current date.
+     */
+    public void setToday(LocalDate today) {
+        if (dueScheduler != null) {
+            dueScheduler.reset(today);
+            return;
+        }
+        statistics.setToday(today);
+        index.setToday(today);
+    }
+
+    /**
+     * Registers a listener that is notified about added and removed tasks and about edits of task fields.
+     * @param listener The listener to add.
+     */
+    public void addTaskChangeListener(TaskChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener added with {@link #addTaskChangeListener(TaskChangeListener)}.
+     * @param listener The listener to remove.
+     */
+    public void removeTaskChangeListener(TaskChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
     /**
      * Adds a new task to the list.
      * @param description The description of the task.
      * @param priority The priority of the task.
      * @param dueDate The due date of the task.
+     * @throws NullPointerException If {@code priority} is null; the list is left unchanged then.
      */
     public void addTask(String description, TodoItem.Priority priority, LocalDate dueDate) {
+        Objects.requireNonNull(priority, "priority");
         TodoItem newItem = new TodoItem(description, priority, dueDate);
         tasks.add(newItem);
-        // Consider calling saveTasks() here if save-on-change is desired
     }
 
     /**
@@ -53,20 +260,132 @@ public class TodoListManager {
      */
     public void addTask(TodoItem item) {
         tasks.add(item);
-        // Consider calling saveTasks() here if save-on-change is desired
     }
 
     /**
      * Removes a task from the list.
+     * The task is found through its position hint, without scanning the list.
      * @param item The {@link TodoItem} to remove.
      */
     public void removeTask(TodoItem item) {
-        tasks.remove(item);
-        // Consider calling saveTasks() here if save-on-change is desired
+        int position = tasks.positionOf(item);
+        if (position >= 0) {
+            tasks.remove(position);
+        }
+    }
+
+    /**
+     * Looks up a task by its {@link TodoItem#getId() ID} in constant time.
+     * @param id The ID.
+     * @return The task, or null if the list has no task with this ID.
+     */
+    public TodoItem getTask(long id) {
+        return idIndex.get(id);
     }
 
     /**
-     * Updates an existing task with new details.
+     * @param item A task.
+     * @return The position of the task in the list, or -1 if it is not in the list.
+     */
+    int positionOf(TodoItem item) {
+        return tasks.positionOf(item);
+    }
+
+    /**
+     * Removes the task with the given ID.
+     * @param id The ID.
+     * @return The removed task, or null if the list has no task with this ID.
+     */
+    public TodoItem removeTask(long id) {
+        TodoItem item = idIndex.get(id);
+        if (item != null) {
+            removeTask(item);
+        }
+        return item;
+    }
+
+    /**
+     * Adds several tasks at the end of the list with a single change event.
+     * @param items The tasks to add, in order.
+     */
+    public void addAll(Collection<? extends TodoItem> items) {
+        tasks.addAll(items);
+    }
+
+    /**
+     * Removes all tasks that match a condition in one pass over the list, with a single change event
+     * and as a single step of the {@link #getHistory() history}.
+     * @param filter Selects the tasks to remove.
+     * @return The number of removed tasks.
+     */
+    public int removeIf(Predicate<? super TodoItem> filter) {
+        int before = tasks.size();
+        batch(manager -> tasks.removeIf(filter));
+        return before - tasks.size();
+    }
+
+    /**
+     * Sets the completion status of several tasks, reported to list listeners as a single change event.
+     * @param items The tasks to change.
+     * @param done The new completion status.
+     */
+    public void markAllDone(Collection<? extends TodoItem> items, boolean done) {
+        batch(manager -> items.forEach(item -> item.setDone(done)));
+    }
+
+    /**
+     * Sets the priority of several tasks, reported to list listeners as a single change event.
+     * @param items The tasks to change.
+     * @param priority The new priority.
+     */
+    public void setPriority(Collection<? extends TodoItem> items, TodoItem.Priority priority) {
+        batch(manager -> items.forEach(item -> item.setPriority(priority)));
+    }
+
+    /**
+     * Runs several changes as one unit.
+     * List listeners (and thereby filtered and sorted views and the table) receive a single change event
+     * when the outermost batch ends, and {@link TaskChangeListener}s are told about the batch boundaries.
+     * If the action throws, all changes it made are undone before the exception is rethrown.
+     * Batches nest; only the outermost one delivers events or rolls back.
+     * @param action The changes, made through this manager or directly on its tasks.
+     */
+    public void batch(Consumer<? super TodoListManager> action) {
+        boolean outermost = batchDepth++ == 0;
+        if (outermost) {
+            rollbackLog = new ArrayList<>();
+            for (TaskChangeListener listener : changeListeners) {
+                listener.batchStarted();
+            }
+        }
+        tasks.beginBatch();
+        boolean completed = false;
+        try {
+            action.accept(this);
+            completed = true;
+        } finally {
+            if (outermost) {
+                List<Runnable> log = rollbackLog;
+                rollbackLog = null;
+                if (!completed) {
+                    for (int i = log.size() - 1; i >= 0; i--) {
+                        log.get(i).run();
+                    }
+                    history.discardBatch();
+                }
+            }
+            tasks.endBatch();
+            batchDepth--;
+            if (outermost) {
+                for (TaskChangeListener listener : changeListeners) {
+                    listener.batchFinished();
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates an existing task with new details, as a single change event.
      * @param item The {@link TodoItem} to update.
      * @param newDescription The new description for the task.
      * @param newPriority The new priority for the task.
@@ -74,114 +393,304 @@ public class TodoListManager {
      * @param isDone The new completion status for the task.
      */
     public void updateTask(TodoItem item, String newDescription, TodoItem.Priority newPriority, LocalDate newDueDate, boolean isDone) {
-        item.setDescription(newDescription);
-        item.setPriority(newPriority);
-        item.setDueDate(newDueDate);
-        item.setDone(isDone);
-        // saveTasks(); // Task 4.4: Implemented save-on-modification, so this can be uncommented or called from controller.
-                       // For now, persistence is handled by saveOnClose and explicit save calls triggered by user actions in controller.
+        batch(manager -> {
+            item.setDescription(newDescription);
+            item.setPriority(newPriority);
+            item.setDueDate(newDueDate);
+            item.setDone(isDone);
+        });
+    }
+
+    /**
+     * Returns the tasks as of the end of the latest change of the list, in O(1).
+     * May be called on any thread; a change, or a whole {@link #batch(Consumer) batch}, is seen either completely
+     * or not at all. On the owner thread outside a change, this is the current state of the list.
+     * @return An immutable {@link TaskSnapshot} that is safe to hand to background threads.
+     */
+    public TaskSnapshot snapshot() {
+        return published;
+    }
+
+    /**
+     * Returns the tasks as they are right now, in O(1), including the changes of a {@link #batch(Consumer) batch}
+     * that has not ended yet. Must be called on the owner thread; other threads use {@link #snapshot()}.
+     * @return An immutable {@link TaskSnapshot}; within a change, its version is still that of the latest
+     *         published snapshot, so the returned object (not the version) tells states apart.
+     */
+    public TaskSnapshot currentSnapshot() {
+        return recordsChanged ? records : published;
+    }
+
+    /** Publishes the records with a new version, at the end of a change of the list. */
+    private void publishRecords() {
+        if (recordsChanged) {
+            recordsChanged = false;
+            published = records.withVersion(++version);
+        }
     }
 
     /**
-     * Saves the current list of tasks to a CSV file specified by {@code DATA_FILE_PATH}.
-     * Each task is written as a line in the CSV file.
-     * The format is: "description",isDone,priority,dueDate,creationDate.
+     * Saves the current list of tasks to the data file of the {@link TaskStore}
+     * and waits for the write to finish.
+     * For the CSV store, each task is written as a line in the format: "description",isDone,priority,dueDate,creationDate,id,lastModified.
      * Descriptions containing commas or quotes are handled by enclosing in double quotes and escaping internal quotes.
+     * The file is replaced atomically, so a crash during the save never truncates it.
      */
     public void saveTasks() {
-        System.out.println("Attempting to save tasks to: " + Paths.get(DATA_FILE_PATH).toAbsolutePath());
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(DATA_FILE_PATH))) {
-            for (TodoItem item : tasks) {
-                // Format: "description",isDone,priority,dueDate,creationDate
-                String descriptionCsv = "\"" + item.getDescription().replace("\"", "\"\"") + "\"";
-                String dueDateStr = item.getDueDate() != null ? item.getDueDate().format(DateTimeFormatter.ISO_LOCAL_DATE) : "";
-                String creationDateStr = item.getCreationDate() != null ? item.getCreationDate().format(DateTimeFormatter.ISO_LOCAL_DATE) : "";
-                
-                String line = String.join(",",
-                        descriptionCsv,
-                        String.valueOf(item.isDone()),
-                        item.getPriority().name(),
-                        dueDateStr,
-                        creationDateStr
-                );
-                writer.write(line);
-                writer.newLine();
-            }
-            System.out.println("Tasks saved successfully.");
-        } catch (IOException e) {
-            System.err.println("Error saving tasks to " + DATA_FILE_PATH + ": " + e.getMessage());
-            e.printStackTrace();
+        try {
+            saveTasksAsync().join();
+        } catch (CompletionException e) {
+            // Already logged by the persistence service.
             // In a real application, inform the user via an Alert dialog.
         }
     }
 
     /**
-     * Loads tasks from the CSV file specified by {@code DATA_FILE_PATH}.
-     * The existing list of tasks is cleared before loading.
+     * Saves the current list of tasks in the background.
+     * The snapshot is taken on the calling thread; formatting and writing the file
+     * happen on the {@link TaskPersistenceService} thread. Afterwards the journal is reset,
+     * since the data file now contains all of its changes.
+     * @return A future that completes once the file has been written.
+     */
+    public CompletableFuture<Void> saveTasksAsync() {
+        if (loading.get()) {
+            // Writing a partly published list would lose the rest of the file.
+            return CompletableFuture.failedFuture(new IllegalStateException("Tasks are still loading"));
+        }
+        LOG.log(Level.DEBUG, "Attempting to save tasks to: " + store.getPath().toAbsolutePath());
+        Metrics.Sample sample = Metrics.start(Metrics.Operation.SAVE);
+        return journal.checkpoint().whenComplete((result, error) -> sample.stop());
+    }
+
+    /**
+     * Stops writing changes to the journal until the next save, for a large batch of changes that is saved
+     * as a whole afterwards, e.g. by a script. This spares the journal records and the compactions they would
+     * trigger; if the process dies before the save, the batch is lost and the list recovers to its state
+     * from before this call.
+     */
+    public void suspendJournal() {
+        journal.suspend();
+    }
+
+    /**
+     * Releases background resources, waiting for pending saves and journal writes to finish, and then closes
+     * the store if it keeps files open, like the {@link LogStructuredTaskStore}.
+     * @param timeout The maximum time to wait.
+     * @param unit The unit of {@code timeout}.
+     * @return True if all pending writes finished in time and the store was closed.
+     */
+    public boolean close(long timeout, TimeUnit unit) {
+        journal.close();
+        if (!persistence.shutdown(timeout, unit)) {
+            // A write may still be using the store
+            return false;
+        }
+        if (store instanceof Closeable closeable) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Error closing " + store.getPath() + ": " + e.getMessage());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Loads tasks from the data file of the {@link TaskStore}.
      * If the file does not exist, the application starts with an empty task list.
-     * Each line in the CSV file is parsed to create a {@link TodoItem}.
+     * CSV files are parsed in parallel by {@link CsvTaskLoader}, changes recorded in the journal since
+     * the file was written are replayed on top, and the result replaces the existing list of tasks
+     * in a single {@code setAll}, so listeners see one change event instead of one per task.
      * Errors during parsing of a line are logged, and the application attempts to continue loading other tasks.
+     * @return False if the data file exists but could not be read; the list is left unchanged then.
      */
-    public void loadTasks() {
-        if (!Files.exists(Paths.get(DATA_FILE_PATH))) {
-            System.out.println("Data file not found, starting with an empty task list: " + Paths.get(DATA_FILE_PATH).toAbsolutePath());
+    public boolean loadTasks() {
+        Metrics.Sample sample = Metrics.start(Metrics.Operation.LOAD);
+        journal.stopRecording();
+        boolean recovered = false;
+        try {
+            Path dataFile = store.getPath();
+            if (!Files.exists(dataFile)) {
+                LOG.log(Level.INFO, "Data file not found, starting with an empty task list: " + dataFile.toAbsolutePath());
+            } else {
+                LOG.log(Level.DEBUG, "Attempting to load tasks from: " + dataFile.toAbsolutePath());
+            }
+            List<TodoItem> loaded;
+            try {
+                // Creation dates, IDs, and last-modified times are restored from the file.
+                loaded = store.load();
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Error loading tasks from " + dataFile, e);
+                // In a real application, inform the user via an Alert dialog.
+                return false;
+            }
+            journal.recover(loaded);
+            recovered = true;
+            loading.set(true);
+            try {
+                tasks.setAll(loaded);
+            } finally {
+                loading.set(false);
+            }
+        } finally {
+            // The list is unchanged unless the journal was recovered for it; either way changes are recorded again
+            if (recovered) {
+                journal.open();
+            } else {
+                journal.resumeRecording();
+            }
+        }
+        sample.stop();
+        LOG.log(Level.INFO, tasks.size() + " tasks loaded successfully from " + store.getPath() + ".");
+        return true;
+    }
+
+    /**
+     * Loads tasks like {@link #loadTasks()}, but reads and parses the file on a background thread and
+     * then publishes the tasks on the owner thread in batches: first about a screenful, so a table shows
+     * its rows right away, then batches of doubling size, each in its own {@code ownerThread} task so the
+     * UI stays responsive in between. While this runs, {@link #loadingProperty()} is true and saving is refused;
+     * the list must not be edited until it turns false.
+     * Must be called on the owner thread (the JavaFX Application Thread in the UI).
+     * @param ownerThread Runs tasks on the owner thread, e.g. {@code Platform::runLater}.
+     * @return A future with the number of loaded tasks, completed on the owner thread once all are published.
+     *         It fails if the file cannot be read; the list is left unchanged then.
+     */
+    public CompletableFuture<Integer> loadTasksAsync(Executor ownerThread) {
+        Metrics.Sample sample = Metrics.start(Metrics.Operation.LOAD);
+        journal.stopRecording();
+        loading.set(true);
+        Path dataFile = store.getPath();
+        LOG.log(Level.DEBUG, "Attempting to load tasks in the background from: " + dataFile.toAbsolutePath());
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                List<TodoItem> loaded = store.load();
+                journal.recover(loaded);
+                return loaded;
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, runnable -> Thread.ofVirtual().name("todo-load").start(runnable)).whenCompleteAsync((loaded, error) -> {
+            if (error != null) {
+                LOG.log(Level.WARNING, "Error loading tasks from " + dataFile + ": " + error.getMessage());
+                // The list is unchanged; record changes again as before the load
+                journal.resumeRecording();
+                loading.set(false);
+                sample.stop();
+                result.completeExceptionally(error);
+                return;
+            }
+            int first = Math.min(FIRST_LOAD_BATCH, loaded.size());
+            tasks.setAll(loaded.subList(0, first));
+            publishLoaded(loaded, first, FIRST_LOAD_BATCH * 2, ownerThread, sample, result);
+        }, ownerThread);
+        return result;
+    }
+
+    /** Adds the next batch of loaded tasks, and schedules the rest or finishes the load. */
+    private void publishLoaded(List<TodoItem> loaded, int from, int batchSize, Executor ownerThread,
+            Metrics.Sample sample, CompletableFuture<Integer> result) {
+        if (from < loaded.size()) {
+            int to = Math.min(loaded.size(), from + batchSize);
+            tasks.addAll(loaded.subList(from, to));
+            ownerThread.execute(() -> publishLoaded(loaded, to, Math.min(batchSize * 2, MAX_LOAD_BATCH),
+                    ownerThread, sample, result));
             return;
         }
-        tasks.clear();
-        System.out.println("Attempting to load tasks from: " + Paths.get(DATA_FILE_PATH).toAbsolutePath());
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(DATA_FILE_PATH))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                // Expected format: "description",isDone,priority,dueDate,creationDate
-                String[] parts = line.split(",", 5); 
-                if (parts.length == 5) {
-                    try {
-                        String description = parts[0];
-                        // Remove surrounding quotes and unescape double quotes within the description
-                        if (description.length() >= 2 && description.startsWith("\"") && description.endsWith("\"")) {
-                            description = description.substring(1, description.length() - 1).replace("\"\"", "\"");
-                        }
-                        
-                        boolean isDone = Boolean.parseBoolean(parts[1]);
-                        TodoItem.Priority priority = TodoItem.Priority.valueOf(parts[2]);
-                        
-                        LocalDate dueDate = null;
-                        if (parts[3] != null && !parts[3].trim().isEmpty()) {
-                            dueDate = LocalDate.parse(parts[3], DateTimeFormatter.ISO_LOCAL_DATE);
-                        }
-                        
-                        // The TodoItem constructor sets creationDate to LocalDate.now().
-                        // If preserving the creationDate from the CSV is crucial, the TodoItem class
-                        // would need a way to set it after construction, or the constructor
-                        // would need to accept it as a parameter.
-                        // For this project, the original creationDate from the file is not restored to keep it simple.
-                        // LocalDate creationDateFromFile = (parts[4] != null && !parts[4].trim().isEmpty()) ? LocalDate.parse(parts[4], DateTimeFormatter.ISO_LOCAL_DATE) : null;
-
-                        TodoItem item = new TodoItem(description, priority, dueDate);
-                        item.setDone(isDone);
-
-                        tasks.add(item);
-                    } catch (DateTimeParseException e) {
-                        System.err.println("Error parsing date for task line: [" + line + "]. Details: " + e.getMessage());
-                    } catch (IllegalArgumentException e) {
-                        System.err.println("Error parsing priority or boolean for task line: [" + line + "]. Details: " + e.getMessage());
-                    } catch (Exception e) { 
-                        System.err.println("Unexpected error parsing task line: [" + line + "]. Details: " + e.getMessage());
-                        e.printStackTrace();
-                    }
-                } else {
-                    System.err.println("Skipping malformed task line (incorrect number of parts, expected 5): [" + line + "]");
-                }
+        loading.set(false);
+        journal.open();
+        sample.stop();
+        LOG.log(Level.INFO, tasks.size() + " tasks loaded successfully from " + store.getPath() + ".");
+        result.complete(tasks.size());
+    }
+
+    /**
+     * Tells whether a {@link #loadTasksAsync(Executor) background load} is still publishing tasks.
+     * @return The read-only loading property.
+     */
+    public ReadOnlyBooleanProperty loadingProperty() {
+        return loading.getReadOnlyProperty();
+    }
+
+    /**
+     * @return True while a load is in progress.
+     */
+    public boolean isLoading() {
+        return loading.get();
+    }
+
+    /**
+     * Keeps the item owner and the slots attached to exactly the tasks that are in the list,
+     * and forwards the change to the {@link TaskChangeListener}s.
+     */
+    private void onTasksRemoved(int from, List<TodoItem> removed) {
+        records = records.withRemoved(from, from + removed.size());
+        recordsChanged = true;
+        for (TodoItem item : removed) {
+            if (item.owner == itemOwner) {
+                item.owner = null;
             }
-            System.out.println(tasks.size() + " tasks loaded successfully from " + DATA_FILE_PATH + ".");
-        } catch (IOException e) {
-            System.err.println("Error loading tasks from " + DATA_FILE_PATH + ": " + e.getMessage());
-            e.printStackTrace();
-            // In a real application, inform the user via an Alert dialog.
+        }
+        for (TaskChangeListener listener : changeListeners) {
+            listener.tasksRemoved(from, removed);
+        }
+        if (!loading.get()) {
+            Metrics.add(Metrics.Counter.TASKS_REMOVED, removed.size());
+        }
+        for (TodoItem item : removed) {
+            slots.release(item);
+            idIndex.remove(item);
+        }
+        if (rollbackLog != null) {
+            List<TodoItem> copy = new ArrayList<>(removed);
+            rollbackLog.add(() -> tasks.addAll(from, copy));
         }
     }
 
-    // Note: The comment below referring to "Section VI" is from the TODO.md plan and is now implicitly covered by the methods above.
-    // Persistence methods loadTasks() and saveTasks() will be detailed in Section VI 
-} 
\ No newline at end of file
+    private void onTasksAdded(int from, List<TodoItem> added) {
+        for (TodoItem item : added) {
+            slots.allocate(item);
+            if (idIndex.get(item.getId()) != null) {
+                // E.g. a task copied from another list, or imported twice; IDs must be unique within a list
+                item.setId(TaskIds.next());
+            }
+            idIndex.put(item);
+            item.owner = itemOwner;
+        }
+        List<TaskRecord> addedRecords = new ArrayList<>(added.size());
+        for (TodoItem item : added) {
+            addedRecords.add(TaskRecord.of(item));
+        }
+        records = records.withInserted(from, addedRecords);
+        recordsChanged = true;
+        for (TaskChangeListener listener : changeListeners) {
+            listener.tasksAdded(from, added);
+        }
+        if (!loading.get()) {
+            Metrics.add(Metrics.Counter.TASKS_ADDED, added.size());
+        }
+        if (rollbackLog != null) {
+            int count = added.size();
+            rollbackLog.add(() -> tasks.remove(from, from + count));
+        }
+    }
+
+    private void fireTaskUpdated(TodoItem item, TaskField field, Object oldValue, Object newValue) {
+        Metrics.increment(Metrics.Counter.TASKS_EDITED);
+        int position = tasks.positionOf(item);
+        if (position >= 0) {
+            records = records.withRecord(position, TaskRecord.of(item));
+            recordsChanged = true;
+        }
+        for (TaskChangeListener listener : changeListeners) {
+            listener.taskUpdated(item, field, oldValue, newValue);
+        }
+        // Listeners (and thereby the index) are up to date before views re-evaluate the task.
+        tasks.fireUpdated(item);
+        if (rollbackLog != null) {
+            rollbackLog.add(() -> item.set(field, oldValue));
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package todolistapp.model;
+
+import java.nio.file.Path;
+
+/**
+ * Progress of one file in an import or export run by {@link TaskTransfer}.
+ *
+ * @param file The file being read or written.
+ * @param status How far the file has got.
+ * @param tasks The number of tasks read from (or written to) the file so far.
+ * @param merged The number of imported tasks that were added to the list; 0 for exports.
+ * @param duplicates The number of imported tasks skipped because an equal task was already there.
+ * @param invalid The number of imported tasks skipped because they failed validation.
+ * @param error The error message if the file failed, otherwise null.
+ */
+public record TransferProgress(Path file, Status status, long tasks, long merged, long duplicates, long invalid,
+        String error) {
+
+    /** The stages a file goes through. */
+    public enum Status {
+        /** Waiting for a free reader or writer. */
+        QUEUED,
+        /** Being read and parsed, or written. */
+        RUNNING,
+        /** Completely read and merged, or written. */
+        DONE,
+        /** Could not be read or written; see {@link TransferProgress#error()}. */
+        FAILED
+    }
+
+    /**
+     * @return True if the file will not change any more.
+     */
+    public boolean isFinished() {
+        return status == Status.DONE || status == Status.FAILED;
+    }
+}
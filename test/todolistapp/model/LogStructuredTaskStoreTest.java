@@ -0,0 +1,152 @@
+package todolistapp.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link LogStructuredTaskStore}: reopening after puts and deletes, merging segments, the saved list
+ * order, and recovery from a log that was already written into a segment.
+ */
+public class LogStructuredTaskStoreTest {
+
+    private Path directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("lsm-test").resolve("tasks.lsm");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory.getParent())) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static TaskRecord record(long id, String description) {
+        return new TaskRecord(description, false, TodoItem.Priority.MEDIUM, LocalDate.of(2026, 1, (int) (id % 28) + 1),
+                LocalDate.of(2025, 12, 1), id, id);
+    }
+
+    private static List<Long> ids(List<TodoItem> items) {
+        List<Long> ids = new ArrayList<>();
+        for (TodoItem item : items) {
+            ids.add(item.getId());
+        }
+        return ids;
+    }
+
+    private int countFiles(String suffix) throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + suffix)) {
+            for (Path ignored : files) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void reopenReplaysLog() throws IOException {
+        LogStructuredTaskStore store = new LogStructuredTaskStore(directory);
+        store.put(record(1, "one"));
+        store.put(record(2, "two"));
+        store.put(record(2, "two, edited"));
+        store.delete(1);
+        store.sync();
+        store.close();
+
+        store = new LogStructuredTaskStore(directory);
+        assertNull(store.get(1));
+        assertEquals(record(2, "two, edited"), store.get(2));
+        assertEquals(List.of(2L), ids(store.load()));
+        store.close();
+    }
+
+    @Test
+    public void mergeKeepsNewestAndDropsDeleted() throws IOException {
+        // A tiny table limit writes a segment for every change, so segments are merged repeatedly
+        LogStructuredTaskStore store = new LogStructuredTaskStore(directory, 1);
+        for (long id = 1; id <= 30; id++) {
+            store.put(record(id, "task " + id));
+        }
+        for (long id = 1; id <= 30; id += 3) {
+            store.put(record(id, "edited " + id));
+        }
+        for (long id = 2; id <= 30; id += 3) {
+            store.delete(id);
+        }
+        assertEquals(true, countFiles(".seg") <= LogStructuredTaskStore.MAX_SEGMENTS);
+        store.compact();
+        assertEquals(1, countFiles(".seg"));
+        store.close();
+
+        store = new LogStructuredTaskStore(directory);
+        List<TodoItem> items = store.load();
+        assertEquals(20, items.size());
+        assertEquals("edited 1", store.get(1).description());
+        assertNull(store.get(2));
+        assertEquals("task 3", store.get(3).description());
+        List<TaskRecord> due = store.scanByDueDate(LocalDate.of(2026, 1, 2), LocalDate.of(2026, 1, 5));
+        List<Long> dueIds = new ArrayList<>();
+        for (TaskRecord record : due) {
+            dueIds.add(record.id());
+        }
+        // IDs 1 to 4 and 29, 30 fall on these days; 2 and 29 are deleted
+        assertEquals(List.of(1L, 30L, 3L, 4L), dueIds);
+        store.close();
+    }
+
+    @Test
+    public void loadKeepsSavedOrder() throws IOException {
+        LogStructuredTaskStore store = new LogStructuredTaskStore(directory);
+        store.save(List.of(record(30, "c"), record(10, "a"), record(20, "b")));
+        store.put(record(5, "put after save"));
+        store.close();
+
+        store = new LogStructuredTaskStore(directory);
+        assertEquals(List.of(30L, 10L, 20L, 5L), ids(store.load()));
+        store.saveChanges(List.of(record(20, "b, edited"), record(40, "d"), record(30, "c")),
+                Set.of(20L, 40L), Set.of(10L, 5L));
+        store.close();
+
+        store = new LogStructuredTaskStore(directory);
+        assertEquals(List.of(20L, 40L, 30L), ids(store.load()));
+        assertEquals("b, edited", store.get(20).description());
+        assertEquals(1, countFiles(LogStructuredTaskStore.ORDER_SUFFIX));
+        store.close();
+    }
+
+    @Test
+    public void logAlreadyInSegmentsIsNotReplayed() throws IOException {
+        LogStructuredTaskStore store = new LogStructuredTaskStore(directory);
+        store.put(record(1, "deleted by the save"));
+        store.sync();
+        byte[] log = Files.readAllBytes(directory.resolve(LogStructuredTaskStore.WAL_FILE));
+        store.save(List.of(record(2, "saved")));
+        store.close();
+        // As if the process died after publishing the segment but before starting the log over
+        Files.write(directory.resolve(LogStructuredTaskStore.WAL_FILE), log);
+
+        store = new LogStructuredTaskStore(directory);
+        assertNull(store.get(1));
+        assertEquals(List.of(2L), ids(store.load()));
+        store.close();
+    }
+}
@@ -0,0 +1,129 @@
+package todolistapp.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests recovery from the {@link TaskJournal} of a {@link TodoListManager}: edits made after the last save
+ * are replayed, and a torn or corrupt last record is dropped.
+ */
+public class TaskJournalTest {
+
+    private Path directory;
+    private Path dataFile;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("journal-test");
+        dataFile = directory.resolve("tasks.bin");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private TodoListManager open() {
+        TodoListManager manager = new TodoListManager(TaskStores.forPath(dataFile));
+        assertTrue(manager.loadTasks());
+        return manager;
+    }
+
+    private static void close(TodoListManager manager) {
+        assertTrue(manager.close(10, TimeUnit.SECONDS));
+    }
+
+    private static List<String> descriptions(TodoListManager manager) {
+        List<String> descriptions = new ArrayList<>();
+        for (TodoItem item : manager.getTasks()) {
+            descriptions.add(item.getDescription());
+        }
+        return descriptions;
+    }
+
+    /** Saves three tasks, then leaves two adds and an edit in the journal only. */
+    private void writeJournal() {
+        TodoListManager manager = open();
+        manager.addTask("one", TodoItem.Priority.LOW, null);
+        manager.addTask("two", TodoItem.Priority.MEDIUM, null);
+        manager.addTask("three", TodoItem.Priority.HIGH, null);
+        manager.saveTasksAsync().join();
+        manager.addTask("four", TodoItem.Priority.LOW, null);
+        manager.getTasks().get(0).setDone(true);
+        manager.addTask("five", TodoItem.Priority.LOW, null);
+        close(manager);
+    }
+
+    @Test
+    public void replaysEditsAfterLastSave() {
+        writeJournal();
+        TodoListManager manager = open();
+        assertEquals(List.of("one", "two", "three", "four", "five"), descriptions(manager));
+        assertTrue(manager.getTasks().get(0).isDone());
+        close(manager);
+    }
+
+    @Test
+    public void dropsTornLastRecord() throws IOException {
+        writeJournal();
+        Path journal = TaskStores.journalPathFor(dataFile);
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+        TodoListManager manager = open();
+        assertEquals(List.of("one", "two", "three", "four"), descriptions(manager));
+        assertTrue(manager.getTasks().get(0).isDone());
+        // The torn tail is cut off, so records appended now are replayed as well
+        manager.addTask("six", TodoItem.Priority.LOW, null);
+        close(manager);
+        manager = open();
+        assertEquals(List.of("one", "two", "three", "four", "six"), descriptions(manager));
+        close(manager);
+    }
+
+    @Test
+    public void dropsCorruptLastRecord() throws IOException {
+        writeJournal();
+        Path journal = TaskStores.journalPathFor(dataFile);
+        byte[] bytes = Files.readAllBytes(journal);
+        bytes[bytes.length - 1] ^= 0x55;
+        Files.write(journal, bytes);
+        TodoListManager manager = open();
+        assertEquals(List.of("one", "two", "three", "four"), descriptions(manager));
+        close(manager);
+    }
+
+    @Test
+    public void ignoresJournalOfOlderSnapshot() throws IOException {
+        writeJournal();
+        Path journal = TaskStores.journalPathFor(dataFile);
+        byte[] stale = Files.readAllBytes(journal);
+        TodoListManager manager = open();
+        manager.addTask("six", TodoItem.Priority.LOW, null);
+        manager.saveTasksAsync().join();
+        close(manager);
+        // As if the process died between writing the snapshot and replacing the journal
+        Files.write(journal, stale);
+        manager = open();
+        assertEquals(List.of("one", "two", "three", "four", "five", "six"), descriptions(manager));
+        close(manager);
+    }
+}
@@ -0,0 +1,91 @@
+package todolistapp.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Tests {@link TaskSnapshot}: positions and the ID index after inserts and removals, and that older
+ * versions keep their content.
+ */
+public class TaskSnapshotTest {
+
+    private static TaskRecord record(long id) {
+        return new TaskRecord("task " + id, false, TodoItem.Priority.MEDIUM, null, null, id, id);
+    }
+
+    private static List<TaskRecord> records(long fromId, int count) {
+        List<TaskRecord> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(record(fromId + i));
+        }
+        return records;
+    }
+
+    @Test
+    public void insertKeepsPositionsAndFindsById() {
+        // Enough records for several levels of branches
+        TaskSnapshot snapshot = TaskSnapshot.EMPTY.withInserted(0, records(1, 5000));
+        snapshot = snapshot.withInserted(2500, records(10_001, 10));
+        assertEquals(5010, snapshot.size());
+        assertEquals(2499, snapshot.get(2498).id());
+        assertEquals(10_001, snapshot.get(2500).id());
+        assertEquals(10_010, snapshot.get(2509).id());
+        assertEquals(2501, snapshot.get(2510).id());
+        assertSame(snapshot.get(2505), snapshot.find(10_006));
+        assertEquals(5000, snapshot.find(5000).id());
+        assertNull(snapshot.find(9999));
+        List<TaskRecord> iterated = new ArrayList<>(snapshot);
+        for (int i = 0; i < iterated.size(); i++) {
+            assertSame(snapshot.get(i), iterated.get(i));
+        }
+    }
+
+    @Test
+    public void removeDropsPositionsAndIds() {
+        TaskSnapshot snapshot = TaskSnapshot.EMPTY.withInserted(0, records(1, 3000));
+        TaskSnapshot removed = snapshot.withRemoved(1000, 2000);
+        assertEquals(2000, removed.size());
+        assertEquals(1000, removed.get(999).id());
+        assertEquals(2001, removed.get(1000).id());
+        assertNull(removed.find(1001));
+        assertNull(removed.find(2000));
+        assertEquals(2001, removed.find(2001).id());
+        TaskSnapshot empty = removed.withRemoved(0, removed.size());
+        assertEquals(0, empty.size());
+        assertNull(empty.find(1));
+    }
+
+    @Test
+    public void replaceUpdatesIndex() {
+        TaskSnapshot snapshot = TaskSnapshot.EMPTY.withInserted(0, records(1, 100));
+        TaskRecord edited = new TaskRecord("edited", true, TodoItem.Priority.HIGH, null, null, 50, 1);
+        TaskSnapshot replaced = snapshot.withRecord(49, edited);
+        assertSame(edited, replaced.get(49));
+        assertSame(edited, replaced.find(50));
+        TaskSnapshot moved = replaced.withRecord(49, record(500));
+        assertNull(moved.find(50));
+        assertEquals(500, moved.find(500).id());
+    }
+
+    @Test
+    public void olderVersionsAreUnchanged() {
+        TaskSnapshot original = TaskSnapshot.EMPTY.withInserted(0, records(1, 1000));
+        original.withInserted(500, records(2001, 100)).withRemoved(0, 300).withRecord(0, record(4000));
+        assertEquals(1000, original.size());
+        for (int i = 0; i < original.size(); i++) {
+            assertEquals(i + 1, original.get(i).id());
+        }
+        assertNull(original.find(2001));
+        assertEquals(1, original.find(1).id());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void insertBeyondEndFails() {
+        TaskSnapshot.EMPTY.withInserted(1, records(1, 1));
+    }
+}
@@ -0,0 +1,133 @@
+package todolistapp.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link TaskSync} between two lists through a {@link DirectoryTaskReplica}: changes travel both ways,
+ * and a task edited on both sides ends up with the same version everywhere.
+ */
+public class TaskSyncTest {
+
+    /** Runs the owner thread steps of a sync on the calling thread; the tests do not touch the lists meanwhile. */
+    private static final Executor OWNER_THREAD = Runnable::run;
+
+    private Path directory;
+    private TodoListManager first;
+    private TodoListManager second;
+    private TaskSync firstSync;
+    private TaskSync secondSync;
+    private TaskReplica replica;
+
+    @Before
+    public void createLists() throws IOException {
+        directory = Files.createTempDirectory("sync-test");
+        first = new TodoListManager(TaskStores.forPath(directory.resolve("first.bin")));
+        second = new TodoListManager(TaskStores.forPath(directory.resolve("second.bin")));
+        firstSync = new TaskSync(first);
+        secondSync = new TaskSync(second);
+        replica = new DirectoryTaskReplica(directory.resolve("replica"));
+        for (int i = 0; i < 50; i++) {
+            first.addTask("task " + i, TodoItem.Priority.MEDIUM, null);
+        }
+        syncFirst();
+        syncSecond();
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        firstSync.close();
+        secondSync.close();
+        first.close(10, TimeUnit.SECONDS);
+        second.close(10, TimeUnit.SECONDS);
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private TaskSync.Result syncFirst() {
+        return firstSync.sync(replica, directory.resolve("first.sync"), OWNER_THREAD).join();
+    }
+
+    private TaskSync.Result syncSecond() {
+        return secondSync.sync(replica, directory.resolve("second.sync"), OWNER_THREAD).join();
+    }
+
+    /** Edits a task as if on another machine at a given time. */
+    private static void edit(TodoItem item, String description, long time) {
+        item.update(new TaskRecord(description, item.isDone(), item.getPriority(), item.getDueDate(),
+                item.getCreationDate(), item.getId(), time));
+    }
+
+    @Test
+    public void changesTravelBothWays() {
+        assertEquals(50, second.getTasks().size());
+        TodoItem edited = first.getTasks().get(3);
+        TodoItem held = second.getTask(edited.getId());
+        edited.setDone(true);
+        long removed = first.getTasks().get(4).getId();
+        first.removeTask(removed);
+        second.addTask("added on the second", TodoItem.Priority.HIGH, null);
+
+        syncFirst();
+        syncSecond();
+        syncFirst();
+
+        // Remote edits are applied to the existing task
+        assertSame(held, second.getTask(edited.getId()));
+        assertEquals(true, held.isDone());
+        assertNull(second.getTask(removed));
+        assertEquals(50, first.getTasks().size());
+        assertEquals(50, second.getTasks().size());
+        assertEquals(1, first.getTasks().filtered(item -> item.getDescription().equals("added on the second")).size());
+    }
+
+    @Test
+    public void laterEditWinsConflict() {
+        long id = first.getTasks().get(10).getId();
+        long now = System.currentTimeMillis();
+        edit(first.getTask(id), "first version", now + 60_000);
+        edit(second.getTask(id), "second version", now + 120_000);
+
+        assertEquals(0, syncFirst().conflicts());
+        assertEquals(1, syncSecond().conflicts());
+        syncFirst();
+
+        assertEquals("second version", first.getTask(id).getDescription());
+        assertEquals("second version", second.getTask(id).getDescription());
+        assertEquals(now + 120_000, first.getTask(id).getLastModified());
+    }
+
+    @Test
+    public void equalTimesPickTheSameVersionEverywhere() {
+        long id = first.getTasks().get(20).getId();
+        long time = System.currentTimeMillis() + 60_000;
+        edit(first.getTask(id), "first version", time);
+        edit(second.getTask(id), "second version", time);
+        TaskRecord mine = TaskRecord.of(first.getTask(id));
+        TaskRecord theirs = TaskRecord.of(second.getTask(id));
+        String expected = TaskSync.contentHash(mine) > TaskSync.contentHash(theirs)
+                ? mine.description() : theirs.description();
+
+        syncFirst();
+        syncSecond();
+        syncFirst();
+
+        assertEquals(expected, first.getTask(id).getDescription());
+        assertEquals(expected, second.getTask(id).getDescription());
+    }
+}